@@ -0,0 +1,69 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.shapes.BBox;
+import com.graphhopper.util.shapes.GHPoint;
+import java.util.Random;
+
+/**
+ * Creates the graphs used in the benchmarks. The OSM file can be changed via the system property
+ * graphhopper.benchmark.osm and defaults to the Andorra extract of the core module. The graphs are
+ * imported only once and loaded by later benchmark runs.
+ * <p/>
+ * @author Peter Karich
+ */
+public class BenchmarkHelper
+{
+    public static final String OSM_FILE = System.getProperty("graphhopper.benchmark.osm", "../core/files/andorra.osm.pbf");
+    public static final String GRAPH_LOCATION = System.getProperty("graphhopper.benchmark.graph", "./target/benchmark-gh");
+
+    /**
+     * @param ch true if the contraction hierarchies should be prepared
+     */
+    public static GraphHopper loadGraphHopper( boolean ch )
+    {
+        return new GraphHopper().
+                setInMemory().
+                setOSMFile(OSM_FILE).
+                setGraphHopperLocation(GRAPH_LOCATION + (ch ? "-ch" : "")).
+                setEncodingManager(new EncodingManager("CAR")).
+                setCHEnable(ch).
+                importOrLoad();
+    }
+
+    /**
+     * @return count random points within the bounds of the graph, always the same for the same
+     * graph
+     */
+    public static GHPoint[] createRandomPoints( Graph graph, int count )
+    {
+        BBox bounds = graph.getBounds();
+        Random rand = new Random(123);
+        GHPoint[] points = new GHPoint[count];
+        for (int i = 0; i < count; i++)
+        {
+            points[i] = new GHPoint(bounds.minLat + rand.nextDouble() * (bounds.maxLat - bounds.minLat),
+                    bounds.minLon + rand.nextDouble() * (bounds.maxLon - bounds.minLon));
+        }
+        return points;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.util.Helper;
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares sequential and random reads of the DataAccess implementations.
+ * <p/>
+ * @author Peter Karich
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class DataAccessBenchmark
+{
+    private static final int INTS = 16 * 1024 * 1024;
+    @Param(
+            {
+                "RAM", "RAM_INT", "MMAP", "UNSAFE"
+            })
+    public String type;
+    private final String location = "./target/benchmark-da";
+    private GHDirectory dir;
+    private DataAccess da;
+    private long[] randomPointers;
+    private int counter;
+
+    @Setup
+    public void setUp()
+    {
+        DAType daType;
+        if ("RAM".equals(type))
+            daType = DAType.RAM;
+        else if ("RAM_INT".equals(type))
+            daType = DAType.RAM_INT;
+        else if ("MMAP".equals(type))
+            daType = DAType.MMAP;
+        else if ("UNSAFE".equals(type))
+            daType = DAType.UNSAFE_STORE;
+        else
+            throw new IllegalArgumentException("Unknown type " + type);
+
+        dir = new GHDirectory(location, daType);
+        da = dir.find("ints").create(4L * INTS);
+        for (int i = 0; i < INTS; i++)
+        {
+            da.setInt(4L * i, i);
+        }
+
+        Random rand = new Random(123);
+        randomPointers = new long[1024 * 1024];
+        for (int i = 0; i < randomPointers.length; i++)
+        {
+            randomPointers[i] = 4L * rand.nextInt(INTS);
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        dir.clear();
+        Helper.removeDir(new File(location));
+    }
+
+    @Benchmark
+    public int getIntRandom()
+    {
+        return da.getInt(randomPointers[counter++ & (randomPointers.length - 1)]);
+    }
+
+    /**
+     * Reads 1024 consecutive integers.
+     */
+    @Benchmark
+    @OperationsPerInvocation(1024)
+    public int getIntSequential()
+    {
+        long pointer = 4L * ((counter++ * 1024) & (INTS - 1));
+        int sum = 0;
+        for (int i = 0; i < 1024; i++, pointer += 4)
+        {
+            sum += da.getInt(pointer);
+        }
+        return sum;
+    }
+}
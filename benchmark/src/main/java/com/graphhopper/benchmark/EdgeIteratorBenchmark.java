@@ -0,0 +1,81 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the iteration over the edges of all nodes of the graph, the innermost loop of every
+ * routing algorithm.
+ * <p/>
+ * @author Peter Karich
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class EdgeIteratorBenchmark
+{
+    private Graph graph;
+    private EdgeExplorer explorer;
+
+    @Setup
+    public void setUp()
+    {
+        graph = BenchmarkHelper.loadGraphHopper(false).getGraph();
+        explorer = graph.createEdgeExplorer();
+    }
+
+    @Benchmark
+    public long iterateAllEdges()
+    {
+        long sum = 0;
+        int nodes = graph.getNodes();
+        for (int node = 0; node < nodes; node++)
+        {
+            EdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next())
+            {
+                sum += iter.getAdjNode();
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double iterateAllEdgesWithDistance()
+    {
+        double sum = 0;
+        int nodes = graph.getNodes();
+        for (int node = 0; node < nodes; node++)
+        {
+            EdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next())
+            {
+                sum += iter.getDistance() + iter.getFlags();
+            }
+        }
+        return sum;
+    }
+}
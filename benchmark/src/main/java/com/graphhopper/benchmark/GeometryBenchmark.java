@@ -0,0 +1,106 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.http.WebHelper;
+import com.graphhopper.util.DouglasPeucker;
+import com.graphhopper.util.PointList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the simplification and serialization of a route geometry like it happens for every
+ * route response.
+ * <p/>
+ * @author Peter Karich
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class GeometryBenchmark
+{
+    @Param(
+            {
+                "100", "2000"
+            })
+    public int points;
+    private PointList pointList;
+    private String polyline;
+    private final DouglasPeucker douglasPeucker = new DouglasPeucker().setMaxDistance(1);
+
+    @Setup
+    public void setUp()
+    {
+        // a random walk with steps of roughly 10m
+        Random rand = new Random(123);
+        pointList = new PointList(points, false);
+        double lat = 42.5, lon = 1.5;
+        for (int i = 0; i < points; i++)
+        {
+            lat += (rand.nextDouble() - 0.5) * 0.0002;
+            lon += (rand.nextDouble() - 0.5) * 0.0002;
+            pointList.add(lat, lon);
+        }
+        polyline = WebHelper.encodePolyline(pointList);
+    }
+
+    /**
+     * The baseline for simplify as the simplification modifies the list.
+     */
+    @Benchmark
+    public PointList copy()
+    {
+        return pointList.copy(0, pointList.size());
+    }
+
+    @Benchmark
+    public PointList simplify()
+    {
+        PointList copy = pointList.copy(0, pointList.size());
+        douglasPeucker.simplify(copy);
+        return copy;
+    }
+
+    @Benchmark
+    public String encodePolyline()
+    {
+        return WebHelper.encodePolyline(pointList);
+    }
+
+    @Benchmark
+    public PointList decodePolyline()
+    {
+        return WebHelper.decodePolyline(polyline, points, false);
+    }
+
+    @Benchmark
+    public String toGeoJson()
+    {
+        Map<String, Object> json = new HashMap<String, Object>();
+        json.put("type", "LineString");
+        json.put("coordinates", pointList.toGeoJson());
+        return new JSONObject(json).toString();
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.util.shapes.GHPoint;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures LocationIndexTree.findClosest for random points within the bounds of the graph.
+ * <p/>
+ * @author Peter Karich
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class LocationIndexBenchmark
+{
+    private LocationIndex index;
+    private EdgeFilter edgeFilter;
+    private GHPoint[] points;
+    private int counter;
+
+    @Setup
+    public void setUp()
+    {
+        GraphHopper hopper = BenchmarkHelper.loadGraphHopper(false);
+        index = hopper.getLocationIndex();
+        edgeFilter = new DefaultEdgeFilter(hopper.getEncodingManager().getSingle());
+        points = BenchmarkHelper.createRandomPoints(hopper.getGraph(), 10000);
+    }
+
+    @Benchmark
+    public QueryResult findClosest()
+    {
+        GHPoint point = points[counter++ % points.length];
+        return index.findClosest(point.lat, point.lon, edgeFilter);
+    }
+}
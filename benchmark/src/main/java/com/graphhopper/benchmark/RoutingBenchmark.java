@@ -0,0 +1,104 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.AlgorithmOptions;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.RoutingAlgorithmFactory;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.util.WeightingMap;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.util.shapes.GHPoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures calcPath of the routing algorithms between random nodes. Use "ch" to measure the
+ * bidirectional Dijkstra on the contraction hierarchies.
+ * <p/>
+ * @author Peter Karich
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RoutingBenchmark
+{
+    @Param(
+            {
+                AlgorithmOptions.DIJKSTRA, AlgorithmOptions.ASTAR, AlgorithmOptions.DIJKSTRA_NATIVE,
+                AlgorithmOptions.ASTAR_NATIVE, AlgorithmOptions.DIJKSTRA_BI, AlgorithmOptions.ASTAR_BI, "ch"
+            })
+    public String algorithm;
+    private Graph graph;
+    private RoutingAlgorithmFactory algoFactory;
+    private AlgorithmOptions algoOpts;
+    private int[] fromNodes;
+    private int[] toNodes;
+    private int index;
+
+    @Setup
+    public void setUp()
+    {
+        boolean ch = "ch".equals(algorithm);
+        GraphHopper hopper = BenchmarkHelper.loadGraphHopper(ch);
+        graph = hopper.getGraph();
+        algoFactory = hopper.getAlgorithmFactory();
+        FlagEncoder encoder = hopper.getEncodingManager().getSingle();
+        algoOpts = AlgorithmOptions.start().
+                algorithm(ch ? AlgorithmOptions.DIJKSTRA_BI : algorithm).
+                traversalMode(TraversalMode.NODE_BASED).
+                flagEncoder(encoder).
+                weighting(hopper.createWeighting(new WeightingMap("fastest"), encoder)).
+                build();
+
+        // use the same snapped nodes for all algorithms
+        EdgeFilter edgeFilter = new DefaultEdgeFilter(encoder);
+        List<Integer> nodes = new ArrayList<Integer>();
+        for (GHPoint point : BenchmarkHelper.createRandomPoints(graph, 2000))
+        {
+            QueryResult qr = hopper.getLocationIndex().findClosest(point.lat, point.lon, edgeFilter);
+            if (qr.isValid())
+                nodes.add(qr.getClosestNode());
+        }
+        int pairs = nodes.size() / 2;
+        fromNodes = new int[pairs];
+        toNodes = new int[pairs];
+        for (int i = 0; i < pairs; i++)
+        {
+            fromNodes[i] = nodes.get(2 * i);
+            toNodes[i] = nodes.get(2 * i + 1);
+        }
+    }
+
+    @Benchmark
+    public Path calcPath()
+    {
+        int i = index++ % fromNodes.length;
+        return algoFactory.createAlgo(graph, algoOpts).calcPath(fromNodes[i], toNodes[i]);
+    }
+}
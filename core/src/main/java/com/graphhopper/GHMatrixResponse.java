@@ -0,0 +1,156 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds the distances, times and weights from every origin to every destination of a
+ * GHMatrixRequest. The first index is the origin, the second the destination.
+ * <p/>
+ * @author Peter Karich
+ */
+public class GHMatrixResponse
+{
+    private String debugInfo = "";
+    private final List<Throwable> errors = new ArrayList<Throwable>(4);
+    private double[][] distances = new double[0][0];
+    private long[][] times = new long[0][0];
+    private double[][] weights = new double[0][0];
+    private boolean[][] found = new boolean[0][0];
+
+    public GHMatrixResponse()
+    {
+    }
+
+    public String getDebugInfo()
+    {
+        check("getDebugInfo");
+        return debugInfo;
+    }
+
+    public GHMatrixResponse setDebugInfo( String debugInfo )
+    {
+        if (debugInfo != null)
+            this.debugInfo = debugInfo;
+        return this;
+    }
+
+    private void check( String method )
+    {
+        if (hasErrors())
+        {
+            throw new RuntimeException("You cannot call " + method + " if response contains errors. Check this with hasErrors(). "
+                    + "Errors are: " + getErrors());
+        }
+    }
+
+    /**
+     * @return true if one or more error found
+     */
+    public boolean hasErrors()
+    {
+        return !errors.isEmpty();
+    }
+
+    public List<Throwable> getErrors()
+    {
+        return errors;
+    }
+
+    public GHMatrixResponse addError( Throwable error )
+    {
+        errors.add(error);
+        return this;
+    }
+
+    /**
+     * Initializes the matrix for the specified number of origins and destinations where every
+     * entry is not found.
+     */
+    public GHMatrixResponse init( int fromSize, int toSize )
+    {
+        distances = new double[fromSize][toSize];
+        times = new long[fromSize][toSize];
+        weights = new double[fromSize][toSize];
+        found = new boolean[fromSize][toSize];
+        return this;
+    }
+
+    public GHMatrixResponse set( int fromIndex, int toIndex, double distance, long millis, double weight )
+    {
+        distances[fromIndex][toIndex] = distance;
+        times[fromIndex][toIndex] = millis;
+        weights[fromIndex][toIndex] = weight;
+        found[fromIndex][toIndex] = true;
+        return this;
+    }
+
+    /**
+     * @return false if the destination cannot be reached from the origin
+     */
+    public boolean isFound( int fromIndex, int toIndex )
+    {
+        check("isFound");
+        return found[fromIndex][toIndex];
+    }
+
+    /**
+     * @return distance in meter
+     */
+    public double getDistance( int fromIndex, int toIndex )
+    {
+        check("getDistance");
+        return distances[fromIndex][toIndex];
+    }
+
+    /**
+     * @return time in millis
+     */
+    public long getMillis( int fromIndex, int toIndex )
+    {
+        check("getMillis");
+        return times[fromIndex][toIndex];
+    }
+
+    public double getWeight( int fromIndex, int toIndex )
+    {
+        check("getWeight");
+        return weights[fromIndex][toIndex];
+    }
+
+    public int getFromSize()
+    {
+        return found.length;
+    }
+
+    public int getToSize()
+    {
+        return found.length == 0 ? 0 : found[0].length;
+    }
+
+    @Override
+    public String toString()
+    {
+        if (hasErrors())
+            return "errors:" + errors;
+
+        return "matrix " + getFromSize() + "x" + getToSize();
+    }
+}
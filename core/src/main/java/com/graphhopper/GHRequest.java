@@ -17,6 +17,7 @@
  */
 package com.graphhopper;
 
+import com.graphhopper.routing.RoutingBudget;
 import com.graphhopper.routing.util.WeightingMap;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.shapes.GHPoint;
@@ -38,6 +39,7 @@ public class GHRequest
     private String vehicle = "";
     private boolean possibleToAdd = false;
     private Locale locale = Locale.US;
+    private RoutingBudget budget;
 
     public GHRequest()
     {
@@ -156,6 +158,24 @@ public class GHRequest
         return vehicle;
     }
 
+    /**
+     * Limits the work of this request, which overrules the limits configured in GraphHopper. Keep
+     * a reference to cancel the request from another thread.
+     */
+    public GHRequest setBudget( RoutingBudget budget )
+    {
+        this.budget = budget;
+        return this;
+    }
+
+    /**
+     * @return the budget of this request or null if the limits of GraphHopper should be used
+     */
+    public RoutingBudget getBudget()
+    {
+        return budget;
+    }
+
     @Override
     public String toString()
     {
@@ -194,6 +194,23 @@ public class GHResponse
         return str;
     }
 
+    /**
+     * Creates a copy of this response without the errors. The points and instructions are copied
+     * too, so modifying them does not change this response.
+     */
+    GHResponse copy()
+    {
+        GHResponse rsp = new GHResponse();
+        rsp.debugInfo = debugInfo;
+        rsp.list = list == PointList.EMPTY ? list : list.clone(false);
+        rsp.distance = distance;
+        rsp.routeWeight = routeWeight;
+        rsp.time = time;
+        rsp.instructions = instructions == null ? null : instructions.copy();
+        rsp.found = found;
+        return rsp;
+    }
+
     public void setInstructions( InstructionList instructions )
     {
         this.instructions = instructions;
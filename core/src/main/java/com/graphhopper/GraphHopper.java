@@ -23,7 +23,11 @@ import com.graphhopper.reader.dem.CGIARProvider;
 import com.graphhopper.reader.dem.ElevationProvider;
 import com.graphhopper.reader.dem.SRTMProvider;
 import com.graphhopper.routing.*;
+import com.graphhopper.routing.ch.ManyToManyCH;
 import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.routing.ch.PrepareEdgeBasedCH;
+import com.graphhopper.routing.ch.PrepareMultipleCH;
+import com.graphhopper.routing.lm.PrepareLandmarks;
 import com.graphhopper.routing.util.*;
 import com.graphhopper.storage.*;
 import com.graphhopper.storage.index.*;
@@ -54,7 +58,18 @@ public class GraphHopper implements GraphHopperAPI
     private int defaultSegmentSize = -1;
     private String ghLocation = "";
     private DAType dataAccessType = DAType.RAM_STORE;
+    private int warmupThreads = 0;
+    private int loadThreads = 1;
+    private int flushThreads = 1;
+    private boolean fsync = false;
+    private DirectoryWarmup warmup;
     private boolean sortGraph = false;
+    private String sortOrder = "dfs";
+    private boolean freezeGraph = false;
+    private boolean compressGeometry = false;
+    private boolean coldEdges = false;
+    private boolean deduplicateNames = false;
+    private int nameCacheSize = 0;
     boolean removeZipped = true;
     private boolean elevation = false;
     private LockFactory lockFactory = new NativeFSLockFactory();
@@ -66,10 +81,16 @@ public class GraphHopper implements GraphHopperAPI
     private boolean simplifyResponse = true;
     private TraversalMode traversalMode = TraversalMode.NODE_BASED;
     private RoutingAlgorithmFactory algoFactory;
+    private boolean reuseCollections = false;
+    private RouteCache routeCache;
+    private int maxVisitedNodes = Integer.MAX_VALUE;
+    private long maxRoutingMillis = 0;
     // for index
     private LocationIndex locationIndex;
     private int preciseIndexResolution = 300;
     private int maxRegionSearch = 4;
+    private SnapCache snapCache;
+    private int indexBulkLoadRunSize = 0;
     // for prepare
     private int minNetworkSize = 200;
     private int minOnewayNetworkSize = 0;
@@ -81,10 +102,17 @@ public class GraphHopper implements GraphHopperAPI
     private int lazyUpdates = -1;
     private int neighborUpdates = -1;
     private double logMessages = -1;
+    private int prepareThreads = -1;
+    // for landmark prepare, only used if CH is disabled
+    private int landmarks = 0;
+    private String lmWeighting = "fastest";
     // for OSM import
     private String osmFile;
     private double osmReaderWayPointMaxDistance = 1;
     private int workerThreads = -1;
+    private int wayWorkerThreads = 1;
+    private boolean pbfBlockIndex = false;
+    private String nodeMapType = "";
     private boolean calcPoints = true;
     // utils    
     private final TranslationMap trMap = new TranslationMap().doImport();
@@ -172,6 +200,63 @@ public class GraphHopper implements GraphHopperAPI
         return traversalMode;
     }
 
+    /**
+     * Caches the responses of route requests with the same snapped points and parameters. Specify
+     * null to disable the cache.
+     */
+    public GraphHopper setRouteCache( RouteCache routeCache )
+    {
+        this.routeCache = routeCache;
+        return this;
+    }
+
+    /**
+     * @return the route cache or null if disabled
+     */
+    public RouteCache getRouteCache()
+    {
+        return routeCache;
+    }
+
+    /**
+     * Lets the routing algorithms reuse the collections of the current thread instead of
+     * allocating new ones for every request. This reduces the garbage on a busy server.
+     */
+    public GraphHopper setReuseCollections( boolean reuseCollections )
+    {
+        this.reuseCollections = reuseCollections;
+        return this;
+    }
+
+    /**
+     * Limits the nodes a routing algorithm is allowed to visit. Requests exceeding it return a
+     * RoutingAbortedException as error. A request can only lower it via the hint maxVisitedNodes.
+     */
+    public GraphHopper setMaxVisitedNodes( int maxVisitedNodes )
+    {
+        this.maxVisitedNodes = maxVisitedNodes;
+        return this;
+    }
+
+    public int getMaxVisitedNodes()
+    {
+        return maxVisitedNodes;
+    }
+
+    /**
+     * Limits the time in milliseconds to calculate the paths of a request. 0 means unlimited.
+     */
+    public GraphHopper setMaxRoutingTime( long maxRoutingMillis )
+    {
+        this.maxRoutingMillis = maxRoutingMillis;
+        return this;
+    }
+
+    public long getMaxRoutingTime()
+    {
+        return maxRoutingMillis;
+    }
+
     /**
      * Configures the underlying storage to be used on a well equipped server.
      */
@@ -214,6 +299,28 @@ public class GraphHopper implements GraphHopperAPI
         return this;
     }
 
+    /**
+     * Caches the results of the location lookups, e.g. for repeated GPS positions. Use null to
+     * disable the cache.
+     */
+    public GraphHopper setSnapCache( SnapCache snapCache )
+    {
+        ensureNotLoaded();
+        this.snapCache = snapCache;
+        return this;
+    }
+
+    /**
+     * Builds the location index from sorted runs of the specified number of entries instead of an
+     * in-memory object tree, which keeps the heap usage small for big graphs. 0 disables it.
+     */
+    public GraphHopper setIndexBulkLoadRunSize( int runSize )
+    {
+        ensureNotLoaded();
+        this.indexBulkLoadRunSize = runSize;
+        return this;
+    }
+
     /**
      * This method call results in an in-memory graph.
      */
@@ -251,6 +358,50 @@ public class GraphHopper implements GraphHopperAPI
         return this;
     }
 
+    /**
+     * Loads the memory mapped files in the specified number of background threads after the graph
+     * was loaded, see isReady. Disabled by default.
+     */
+    public GraphHopper setWarmupThreads( int warmupThreads )
+    {
+        ensureNotLoaded();
+        this.warmupThreads = warmupThreads;
+        return this;
+    }
+
+    /**
+     * Reads the segments of every in-memory file in the specified number of threads when loading
+     * the graph. Defaults to 1.
+     */
+    public GraphHopper setLoadThreads( int loadThreads )
+    {
+        ensureNotLoaded();
+        this.loadThreads = loadThreads;
+        return this;
+    }
+
+    /**
+     * Writes the segments of every in-memory file in the specified number of threads when the
+     * graph is flushed. Defaults to 1.
+     */
+    public GraphHopper setFlushThreads( int flushThreads )
+    {
+        ensureNotLoaded();
+        this.flushThreads = flushThreads;
+        return this;
+    }
+
+    /**
+     * @param fsync if true flushing the graph returns only after the in-memory files reached the
+     * disk. Default is false.
+     */
+    public GraphHopper setFsync( boolean fsync )
+    {
+        ensureNotLoaded();
+        this.fsync = fsync;
+        return this;
+    }
+
     /**
      * Not yet stable enough to offer it for everyone
      */
@@ -273,7 +424,9 @@ public class GraphHopper implements GraphHopperAPI
     /**
      * Enables the use of contraction hierarchies to reduce query times. Enabled by default.
      * <p/>
-     * @param weighting can be "fastest", "shortest" or your own weight-calculation type.
+     * @param weighting can be "fastest", "shortest" or your own weight-calculation type. Use a
+     * comma separated list like "fastest,shortest" to prepare every weighting, then every vehicle
+     * and weighting gets its own hierarchy in the same graph directory.
      * @see #setCHEnable(boolean)
      */
     public GraphHopper setCHWeighting( String weighting )
@@ -304,6 +457,37 @@ public class GraphHopper implements GraphHopperAPI
         return chEnabled;
     }
 
+    /**
+     * Enables the landmark preparation (ALT) which speeds up astar and astarbi. It is only used if
+     * contraction hierarchies are disabled. Disabled by default.
+     * <p/>
+     * @param landmarks the number of landmarks, 0 disables the preparation
+     */
+    public GraphHopper setLandmarks( int landmarks )
+    {
+        ensureNotLoaded();
+        if (landmarks < 0)
+            throw new IllegalArgumentException("Landmark count cannot be negative: " + landmarks);
+
+        this.landmarks = landmarks;
+        return this;
+    }
+
+    public int getLandmarks()
+    {
+        return landmarks;
+    }
+
+    /**
+     * @param weighting the weighting the landmarks are prepared for e.g. "fastest" or "shortest"
+     */
+    public GraphHopper setLMWeighting( String weighting )
+    {
+        ensureNotLoaded();
+        lmWeighting = weighting;
+        return this;
+    }
+
     /**
      * @return true if storing and fetching elevation data is enabled. Default is false
      */
@@ -434,6 +618,75 @@ public class GraphHopper implements GraphHopperAPI
         return this;
     }
 
+    /**
+     * @param sortOrder the order of the node ids if the graph is sorted: 'dfs' for a depth-first
+     * traversal or 'hilbert' for a Hilbert curve through the coordinates.
+     */
+    public GraphHopper setSortOrder( String sortOrder )
+    {
+        ensureNotLoaded();
+        if (!"dfs".equals(sortOrder) && !"hilbert".equals(sortOrder))
+            throw new IllegalArgumentException("Unknown sort order " + sortOrder + ", use dfs or hilbert");
+
+        this.sortOrder = sortOrder;
+        return this;
+    }
+
+    /**
+     * Stores the adjacency of the graph in a compact, read-only layout after import and
+     * preparation, which makes edge traversal more cache friendly. No edges can be added later.
+     */
+    public GraphHopper setFreezeGraph( boolean freezeGraph )
+    {
+        ensureNotLoaded();
+        this.freezeGraph = freezeGraph;
+        return this;
+    }
+
+    /**
+     * Stores the way geometry delta encoded with variable length integers, which makes the
+     * geometry file roughly 40% smaller. Only applies to newly imported graphs.
+     */
+    public GraphHopper setCompressGeometry( boolean compressGeometry )
+    {
+        ensureNotLoaded();
+        this.compressGeometry = compressGeometry;
+        return this;
+    }
+
+    /**
+     * Stores the geometry and name references of the edges in a separate file so that the edges
+     * file read while routing is smaller. Only applies to newly imported graphs.
+     */
+    public GraphHopper setColdEdges( boolean coldEdges )
+    {
+        ensureNotLoaded();
+        this.coldEdges = coldEdges;
+        return this;
+    }
+
+    /**
+     * Stores every distinct street name only once while importing, which makes the names file
+     * smaller.
+     */
+    public GraphHopper setDeduplicateNames( boolean deduplicateNames )
+    {
+        ensureNotLoaded();
+        this.deduplicateNames = deduplicateNames;
+        return this;
+    }
+
+    /**
+     * Caches the specified number of decoded street names which are requested when creating the
+     * instructions. 0 disables the cache.
+     */
+    public GraphHopper setNameCacheSize( int nameCacheSize )
+    {
+        ensureNotLoaded();
+        this.nameCacheSize = nameCacheSize;
+        return this;
+    }
+
     /**
      * Specifies if it is allowed for GraphHopper to write. E.g. for read only filesystems it is not
      * possible to create a lock file and so we can avoid write locks.
@@ -481,8 +734,18 @@ public class GraphHopper implements GraphHopperAPI
 
         String graphDATypeStr = args.get("graph.dataaccess", "RAM_STORE");
         dataAccessType = DAType.fromString(graphDATypeStr);
+        warmupThreads = args.getInt("graph.dataaccess.warmupThreads", warmupThreads);
+        loadThreads = args.getInt("graph.dataaccess.loadThreads", loadThreads);
+        flushThreads = args.getInt("graph.dataaccess.flushThreads", flushThreads);
+        fsync = args.getBool("graph.dataaccess.fsync", fsync);
 
         sortGraph = args.getBool("graph.doSort", sortGraph);
+        setSortOrder(args.get("graph.sortOrder", sortOrder));
+        freezeGraph = args.getBool("graph.freeze", freezeGraph);
+        compressGeometry = args.getBool("graph.compressGeometry", compressGeometry);
+        coldEdges = args.getBool("graph.coldEdges", coldEdges);
+        deduplicateNames = args.getBool("graph.names.deduplicate", deduplicateNames);
+        nameCacheSize = args.getInt("graph.names.cacheSize", nameCacheSize);
         removeZipped = args.getBool("graph.removeZipped", removeZipped);
         int bytesForFlags = args.getInt("graph.bytesForFlags", 4);
         if (args.get("graph.locktype", "native").equals("simple"))
@@ -521,7 +784,13 @@ public class GraphHopper implements GraphHopperAPI
         // prepare CH
         doPrepare = args.getBool("prepare.doPrepare", doPrepare);
         String tmpCHWeighting = args.get("prepare.chWeighting", "fastest");
-        chEnabled = "fastest".equals(tmpCHWeighting) || "shortest".equals(tmpCHWeighting);
+        chEnabled = !tmpCHWeighting.trim().isEmpty();
+        for (String tmpWeighting : tmpCHWeighting.split(","))
+        {
+            tmpWeighting = tmpWeighting.trim();
+            if (!"fastest".equals(tmpWeighting) && !"shortest".equals(tmpWeighting))
+                chEnabled = false;
+        }
         if (chEnabled)
             setCHWeighting(tmpCHWeighting);
 
@@ -529,6 +798,11 @@ public class GraphHopper implements GraphHopperAPI
         lazyUpdates = args.getInt("prepare.updates.lazy", lazyUpdates);
         neighborUpdates = args.getInt("prepare.updates.neighbor", neighborUpdates);
         logMessages = args.getDouble("prepare.logmessages", logMessages);
+        prepareThreads = args.getInt("prepare.threads", prepareThreads);
+
+        // prepare landmarks
+        setLandmarks(args.getInt("prepare.lm.count", landmarks));
+        setLMWeighting(args.get("prepare.lm.weighting", lmWeighting));
 
         // osm import
         osmReaderWayPointMaxDistance = args.getDouble("osmreader.wayPointMaxDistance", osmReaderWayPointMaxDistance);
@@ -537,11 +811,26 @@ public class GraphHopper implements GraphHopperAPI
             traversalMode = TraversalMode.EDGE_BASED_2DIR;
         encodingManager = new EncodingManager(flagEncoders, bytesForFlags);
         workerThreads = args.getInt("osmreader.workerThreads", workerThreads);
+        wayWorkerThreads = args.getInt("osmreader.wayWorkerThreads", wayWorkerThreads);
+        pbfBlockIndex = args.getBool("osmreader.pbfBlockIndex", pbfBlockIndex);
+        nodeMapType = args.get("osmreader.nodeMap", nodeMapType);
         enableInstructions = args.getBool("osmreader.instructions", enableInstructions);
 
+        // routing
+        reuseCollections = args.getBool("routing.reuseCollections", reuseCollections);
+        maxVisitedNodes = args.getInt("routing.maxVisitedNodes", maxVisitedNodes);
+        maxRoutingMillis = args.getLong("routing.maxTime", maxRoutingMillis);
+        int routeCacheSize = args.getInt("routing.cache.size", 0);
+        if (routeCacheSize > 0)
+            routeCache = new RouteCache(routeCacheSize, args.getLong("routing.cache.ttl", 0) * 1000);
+
         // index
         preciseIndexResolution = args.getInt("index.highResolution", preciseIndexResolution);
         maxRegionSearch = args.getInt("index.maxRegionSearch", maxRegionSearch);
+        indexBulkLoadRunSize = args.getInt("index.bulkLoadRunSize", indexBulkLoadRunSize);
+        int snapCacheSize = args.getInt("index.cache.size", 0);
+        if (snapCacheSize > 0)
+            snapCache = new SnapCache(snapCacheSize, args.getDouble("index.cache.cellSize", 1));
         return this;
     }
 
@@ -598,6 +887,8 @@ public class GraphHopper implements GraphHopperAPI
             cleanUp();
             optimize();
             postProcessing();
+            if (freezeGraph)
+                freeze();
             flush();
         } finally
         {
@@ -636,13 +927,24 @@ public class GraphHopper implements GraphHopperAPI
 
         logger.info("start creating graph from " + osmFile);
         File osmTmpFile = new File(osmFile);
+        if (!nodeMapType.isEmpty())
+            reader.setNodeMapType(DAType.fromString(nodeMapType));
+
         return reader.setOSMFile(osmTmpFile).
                 setElevationProvider(eleProvider).
                 setWorkerThreads(workerThreads).
+                setWayWorkerThreads(wayWorkerThreads).
+                setPbfBlockIndex(pbfBlockIndex).
                 setEncodingManager(encodingManager).
                 setWayPointMaxDistance(osmReaderWayPointMaxDistance);
     }
 
+    private GHDirectory createDirectory( String location )
+    {
+        return new GHDirectory(location, dataAccessType).setLoadThreads(loadThreads).
+                setFlushThreads(flushThreads).setFsync(fsync);
+    }
+
     /**
      * Opens existing graph.
      * <p/>
@@ -692,14 +994,24 @@ public class GraphHopper implements GraphHopperAPI
         if (!allowWrites && dataAccessType.isMMap())
             dataAccessType = DAType.MMAP_RO;
 
-        GHDirectory dir = new GHDirectory(ghLocation, dataAccessType);
-        if (chEnabled)
-            graph = new LevelGraphStorage(dir, encodingManager, hasElevation());
+        GHDirectory dir = createDirectory(ghLocation);
+        // with turn costs the contraction is done on a separate turn graph, see PrepareEdgeBasedCH
+        // and multiple hierarchies store their shortcuts next to the graph, see PrepareMultipleCH
+        GraphHopperStorage storage;
+        if (isMultipleCH())
+            storage = new GraphHopperStorage(dir, encodingManager, hasElevation());
+        else if (chEnabled && !encodingManager.needsTurnCostsSupport())
+            storage = new LevelGraphStorage(dir, encodingManager, hasElevation());
         else if (encodingManager.needsTurnCostsSupport())
-            graph = new GraphHopperStorage(dir, encodingManager, hasElevation(), new TurnCostExtension());
+            storage = new GraphHopperStorage(dir, encodingManager, hasElevation(), new TurnCostExtension());
         else
-            graph = new GraphHopperStorage(dir, encodingManager, hasElevation());
+            storage = new GraphHopperStorage(dir, encodingManager, hasElevation());
 
+        storage.setCompressedGeometry(compressGeometry);
+        storage.setColdEdges(coldEdges);
+        storage.setDeduplicateNames(deduplicateNames);
+        storage.setNameCacheSize(nameCacheSize);
+        graph = storage;
         graph.setSegmentSize(defaultSegmentSize);
 
         Lock lock = null;
@@ -720,6 +1032,9 @@ public class GraphHopper implements GraphHopperAPI
 
             postProcessing();
             fullyLoaded = true;
+            if (warmupThreads > 0 && dataAccessType.isMMap())
+                warmup = dir.warmup(warmupThreads);
+
             return true;
         } finally
         {
@@ -728,6 +1043,23 @@ public class GraphHopper implements GraphHopperAPI
         }
     }
 
+    /**
+     * @return true if the graph is loaded and all memory mapped files are loaded into memory if a
+     * warmup was configured, e.g. for the health check of a load balancer
+     */
+    public boolean isReady()
+    {
+        return fullyLoaded && (warmup == null || warmup.isReady());
+    }
+
+    /**
+     * @return the warmup of the memory mapped files or null if not enabled
+     */
+    public DirectoryWarmup getWarmup()
+    {
+        return warmup;
+    }
+
     public RoutingAlgorithmFactory getAlgorithmFactory()
     {
         if (algoFactory == null)
@@ -747,13 +1079,36 @@ public class GraphHopper implements GraphHopperAPI
     protected void postProcessing()
     {
         encodingManager = graph.getEncodingManager();
-        if (chEnabled)
+        if (chEnabled && encodingManager.needsTurnCostsSupport())
+            algoFactory = createEdgeBasedPrepare();
+        else if (isMultipleCH())
+            algoFactory = createMultiplePrepare();
+        else if (chEnabled)
             algoFactory = createPrepare();
+        else if (landmarks > 0)
+            algoFactory = createLMPrepare();
         else
             algoFactory = new RoutingAlgorithmFactorySimple();
 
-        if (!isPrepared())
+        boolean prepared = isPrepared();
+        if (prepared && algoFactory instanceof PrepareLandmarks)
+            prepared = ((PrepareLandmarks) algoFactory).loadExisting();
+        else if (prepared && algoFactory instanceof PrepareEdgeBasedCH)
+            prepared = ((PrepareEdgeBasedCH) algoFactory).loadExisting();
+        else if (prepared && algoFactory instanceof PrepareMultipleCH)
+            prepared = ((PrepareMultipleCH) algoFactory).loadExisting();
+
+        if (!prepared)
+        {
             prepare();
+            if (sortGraph && graph instanceof LevelGraphStorage)
+            {
+                sortGraph();
+                // the preparation has to refer to the sorted graph
+                if (algoFactory instanceof PrepareContractionHierarchies)
+                    algoFactory = createPrepare();
+            }
+        }
         initLocationIndex();
     }
 
@@ -762,6 +1117,27 @@ public class GraphHopper implements GraphHopperAPI
         return "true".equals(graph.getProperties().get("prepare.done"));
     }
 
+    private List<String> getCHWeightings()
+    {
+        List<String> list = new ArrayList<String>();
+        for (String tmpWeighting : chWeighting.split(","))
+        {
+            if (!tmpWeighting.trim().isEmpty())
+                list.add(tmpWeighting.trim());
+        }
+        return list;
+    }
+
+    /**
+     * @return true if more than one contraction hierarchy is necessary, i.e. for more than one
+     * vehicle or weighting
+     */
+    private boolean isMultipleCH()
+    {
+        return chEnabled && !encodingManager.needsTurnCostsSupport()
+                && (encodingManager.getVehicleCount() > 1 || getCHWeightings().size() > 1);
+    }
+
     protected RoutingAlgorithmFactory createPrepare()
     {
         FlagEncoder encoder = encodingManager.getSingle();
@@ -770,11 +1146,60 @@ public class GraphHopper implements GraphHopperAPI
         tmpPrepareCH.setPeriodicUpdates(periodicUpdates).
                 setLazyUpdates(lazyUpdates).
                 setNeighborUpdates(neighborUpdates).
-                setLogMessages(logMessages);
+                setLogMessages(logMessages).
+                setThreads(prepareThreads);
 
         return tmpPrepareCH;
     }
 
+    protected RoutingAlgorithmFactory createEdgeBasedPrepare()
+    {
+        FlagEncoder encoder = encodingManager.getSingle();
+        TraversalMode tMode = traversalMode.isEdgeBased() ? traversalMode : TraversalMode.EDGE_BASED_2DIR;
+        if (tMode != traversalMode)
+        {
+            // otherwise every request without traversal_mode would miss the turn graph
+            logger.info("turn costs with CH, using " + tMode + " as default traversal mode instead of " + traversalMode);
+            traversalMode = tMode;
+        }
+        GHDirectory turnDir = createDirectory(graph.getDirectory().getLocation() + "edge_ch");
+        PrepareEdgeBasedCH tmpPrepare = new PrepareEdgeBasedCH(turnDir, graph, encoder,
+                createWeighting(new WeightingMap(chWeighting), encoder), tMode);
+        tmpPrepare.getPrepareCH().setPeriodicUpdates(periodicUpdates).
+                setLazyUpdates(lazyUpdates).
+                setNeighborUpdates(neighborUpdates).
+                setLogMessages(logMessages).
+                setThreads(prepareThreads);
+
+        return tmpPrepare;
+    }
+
+    protected RoutingAlgorithmFactory createMultiplePrepare()
+    {
+        PrepareMultipleCH tmpPrepare = new PrepareMultipleCH(graph);
+        for (FlagEncoder encoder : encodingManager.fetchEdgeEncoders())
+        {
+            for (String tmpWeighting : getCHWeightings())
+            {
+                tmpPrepare.addPreparation(encoder + "_" + tmpWeighting, encoder,
+                        createWeighting(new WeightingMap(tmpWeighting), encoder), traversalMode).
+                        setPeriodicUpdates(periodicUpdates).
+                        setLazyUpdates(lazyUpdates).
+                        setNeighborUpdates(neighborUpdates).
+                        setLogMessages(logMessages).
+                        setThreads(prepareThreads);
+            }
+        }
+        return tmpPrepare;
+    }
+
+    protected RoutingAlgorithmFactory createLMPrepare()
+    {
+        FlagEncoder encoder = encodingManager.getSingle();
+        return new PrepareLandmarks(graph.getDirectory(), graph, encoder,
+                createWeighting(new WeightingMap(lmWeighting), encoder), landmarks);
+    }
+
     /**
      * Based on the weightingParameters and the specified vehicle a Weighting instance can be
      * created. Note that all URL parameters are available in the weightingParameters as String if
@@ -827,7 +1252,20 @@ public class GraphHopper implements GraphHopperAPI
             throw new IllegalStateException("You need to create a new GraphHopper instance as it is already closed");
 
         GHResponse response = new GHResponse();
-        List<Path> paths = getPaths(request, response);
+        List<QueryResult> qResults = lookup(request, response);
+        if (response.hasErrors())
+            return response;
+
+        String cacheKey = null;
+        if (routeCache != null)
+        {
+            cacheKey = RouteCache.createKey(request, qResults);
+            GHResponse cachedResponse = routeCache.get(cacheKey);
+            if (cachedResponse != null)
+                return cachedResponse.setDebugInfo(response.getDebugInfo() + ", routeCache:hit");
+        }
+
+        List<Path> paths = calcPaths(request, response, qResults);
         if (response.hasErrors())
             return response;
 
@@ -843,15 +1281,36 @@ public class GraphHopper implements GraphHopperAPI
                 setEnableInstructions(tmpEnableInstructions).
                 setSimplifyResponse(simplifyResponse && wayPointMaxDistance > 0).
                 doWork(response, paths, trMap.getWithFallBack(locale));
+
+        if (cacheKey != null && !response.hasErrors())
+            routeCache.put(cacheKey, response);
+
         return response;
     }
 
     protected List<Path> getPaths( GHRequest request, GHResponse rsp )
+    {
+        List<QueryResult> qResults = lookup(request, rsp);
+        if (rsp.hasErrors())
+            return Collections.emptyList();
+
+        return calcPaths(request, rsp, qResults);
+    }
+
+    private String getVehicle( GHRequest request )
     {
         String vehicle = request.getVehicle();
         if (vehicle.isEmpty())
             vehicle = encodingManager.getSingle().toString();
+        return vehicle;
+    }
 
+    /**
+     * Validates the request and finds the closest location for every point.
+     */
+    protected List<QueryResult> lookup( GHRequest request, GHResponse rsp )
+    {
+        String vehicle = getVehicle(request);
         if (!encodingManager.supports(vehicle))
         {
             rsp.addError(new IllegalArgumentException("Vehicle " + vehicle + " unsupported. "
@@ -859,11 +1318,9 @@ public class GraphHopper implements GraphHopperAPI
             return Collections.emptyList();
         }
 
-        TraversalMode tMode;
-        String tModeStr = request.getHints().get("traversal_mode", traversalMode.toString());
         try
         {
-            tMode = TraversalMode.fromString(tModeStr);
+            TraversalMode.fromString(request.getHints().get("traversal_mode", traversalMode.toString()));
         } catch (Exception ex)
         {
             rsp.addError(ex);
@@ -883,41 +1340,65 @@ public class GraphHopper implements GraphHopperAPI
         EdgeFilter edgeFilter = new DefaultEdgeFilter(encoder);
 
         StopWatch sw = new StopWatch().start();
-        List<QueryResult> qResults = new ArrayList<QueryResult>(points.size());
+        List<QueryResult> qResults = findClosest(points, edgeFilter);
         for (int placeIndex = 0; placeIndex < points.size(); placeIndex++)
         {
-            GHPoint point = points.get(placeIndex);
-            QueryResult res = locationIndex.findClosest(point.lat, point.lon, edgeFilter);
-            if (!res.isValid())
-                rsp.addError(new IllegalArgumentException("Cannot find point " + placeIndex + ": " + point));
-
-            qResults.add(res);
+            if (!qResults.get(placeIndex).isValid())
+                rsp.addError(new IllegalArgumentException("Cannot find point " + placeIndex + ": " + points.get(placeIndex)));
         }
 
         if (rsp.hasErrors())
             return Collections.emptyList();
 
-        String debug = "idLookup:" + sw.stop().getSeconds() + "s";
-        QueryGraph queryGraph = new QueryGraph(graph);
+        rsp.setDebugInfo("idLookup:" + sw.stop().getSeconds() + "s");
+        return qResults;
+    }
+
+    /**
+     * Calculates the paths between the specified query results which were found via lookup.
+     */
+    protected List<Path> calcPaths( GHRequest request, GHResponse rsp, List<QueryResult> qResults )
+    {
+        FlagEncoder encoder = encodingManager.getEncoder(getVehicle(request));
+        TraversalMode tMode = TraversalMode.fromString(request.getHints().get("traversal_mode", traversalMode.toString()));
+        String debug = rsp.getDebugInfo();
+        String algoStr = request.getAlgorithm();
+        if (algoStr.isEmpty())
+            algoStr = algoFactory instanceof PrepareLandmarks ? AlgorithmOptions.ASTAR_BI : AlgorithmOptions.DIJKSTRA_BI;
+
+        Weighting weighting = createWeighting(request.getHints(), encoder);
+        QueryGraph queryGraph = new QueryGraph(getRoutingGraph(algoStr, encoder, weighting));
         queryGraph.lookup(qResults);
 
-        List<Path> paths = new ArrayList<Path>(points.size() - 1);
+        List<Path> paths = new ArrayList<Path>(qResults.size() - 1);
         QueryResult fromQResult = qResults.get(0);
-        Weighting weighting = createWeighting(request.getHints(), encoder);
         weighting = createTurnWeighting(weighting, queryGraph, encoder);
-
-        String algoStr = request.getAlgorithm().isEmpty() ? AlgorithmOptions.DIJKSTRA_BI : request.getAlgorithm();
-        AlgorithmOptions algoOpts = AlgorithmOptions.start().algorithm(algoStr).traversalMode(tMode).flagEncoder(encoder).weighting(weighting).build();
-
-        for (int placeIndex = 1; placeIndex < points.size(); placeIndex++)
+        AlgorithmOptions algoOpts = AlgorithmOptions.start().algorithm(algoStr).traversalMode(tMode).flagEncoder(encoder).weighting(weighting).
+                reuseCollections(reuseCollections).budget(createBudget(request.getBudget(), request.getHints())).build();
+        String approxKey = algoStr.toLowerCase() + ".approximation";
+        String approx = request.getHints().get(approxKey, "");
+        if (!approx.isEmpty())
+            algoOpts.getHints().put(approxKey, approx);
+
+        for (int placeIndex = 1; placeIndex < qResults.size(); placeIndex++)
         {
             QueryResult toQResult = qResults.get(placeIndex);
-            sw = new StopWatch().start();
+            StopWatch sw = new StopWatch().start();
             RoutingAlgorithm algo = getAlgorithmFactory().createAlgo(queryGraph, algoOpts);
             debug += ", algoInit:" + sw.stop().getSeconds() + "s";
 
             sw = new StopWatch().start();
-            Path path = algo.calcPath(fromQResult.getClosestNode(), toQResult.getClosestNode());
+            Path path;
+            try
+            {
+                path = algo.calcPath(fromQResult.getClosestNode(), toQResult.getClosestNode());
+            } catch (RoutingAbortedException ex)
+            {
+                visitedSum.addAndGet(ex.getVisitedNodes());
+                rsp.addError(ex);
+                return Collections.emptyList();
+            }
+
             if (path.getMillis() < 0)
                 throw new RuntimeException("Time was negative. Please report as bug and include:" + request);
 
@@ -931,13 +1412,168 @@ public class GraphHopper implements GraphHopperAPI
         if (rsp.hasErrors())
             return Collections.emptyList();
 
-        if (points.size() - 1 != paths.size())
-            throw new RuntimeException("There should be exactly one more places than paths. places:" + points.size() + ", paths:" + paths.size());
+        if (qResults.size() - 1 != paths.size())
+            throw new RuntimeException("There should be exactly one more places than paths. places:" + qResults.size() + ", paths:" + paths.size());
 
         rsp.setDebugInfo(debug);
         return paths;
     }
 
+    /**
+     * @return the prepared graph of the specified algorithm, vehicle and weighting if there are
+     * multiple contraction hierarchies, otherwise the graph
+     */
+    private Graph getRoutingGraph( String algoStr, FlagEncoder encoder, Weighting weighting )
+    {
+        if (algoFactory instanceof PrepareMultipleCH)
+        {
+            LevelGraph levelGraph = ((PrepareMultipleCH) algoFactory).getGraph(algoStr, encoder, weighting);
+            if (levelGraph != null)
+                return levelGraph;
+        }
+        return graph;
+    }
+
+    /**
+     * @return the budget of the request or one created from the configured limits, null if there
+     * are no limits
+     */
+    RoutingBudget createBudget( RoutingBudget requestBudget, PMap hints )
+    {
+        if (requestBudget != null)
+            return requestBudget;
+
+        int tmpMaxVisitedNodes = Math.min(maxVisitedNodes, hints.getInt("maxVisitedNodes", maxVisitedNodes));
+        if (tmpMaxVisitedNodes == Integer.MAX_VALUE && maxRoutingMillis <= 0)
+            return null;
+
+        return new RoutingBudget(tmpMaxVisitedNodes, Math.max(0, maxRoutingMillis));
+    }
+
+    /**
+     * Calculates the distances and times from every origin to every destination of the specified
+     * request. All points are looked up only once and one query graph is used for all of them.
+     * Requires contraction hierarchies as the matrix is calculated with bucket based searches on
+     * the prepared graph, see ManyToManyCH.
+     */
+    public GHMatrixResponse matrix( GHMatrixRequest request )
+    {
+        if (graph == null || !fullyLoaded)
+            throw new IllegalStateException("Call load or importOrLoad before routing");
+
+        if (graph.isClosed())
+            throw new IllegalStateException("You need to create a new GraphHopper instance as it is already closed");
+
+        GHMatrixResponse rsp = new GHMatrixResponse();
+        if (!(getAlgorithmFactory() instanceof PrepareContractionHierarchies)
+                && !(getAlgorithmFactory() instanceof PrepareMultipleCH))
+            return rsp.addError(new IllegalStateException("Matrix calculation requires contraction hierarchies"));
+
+        String vehicle = request.getVehicle();
+        if (vehicle.isEmpty())
+            vehicle = encodingManager.getSingle().toString();
+
+        if (!encodingManager.supports(vehicle))
+            return rsp.addError(new IllegalArgumentException("Vehicle " + vehicle + " unsupported. "
+                    + "Supported are: " + getEncodingManager()));
+
+        List<GHPoint> fromPoints = request.getFromPoints();
+        List<GHPoint> toPoints = request.getToPoints();
+        if (fromPoints.isEmpty() || toPoints.isEmpty())
+            return rsp.addError(new IllegalStateException("At least one origin and one destination has to be specified, but was:"
+                    + fromPoints.size() + "x" + toPoints.size()));
+
+        FlagEncoder encoder = encodingManager.getEncoder(vehicle);
+        PrepareContractionHierarchies prepareCH;
+        Graph routingGraph = graph;
+        if (getAlgorithmFactory() instanceof PrepareMultipleCH)
+        {
+            Weighting weighting = createWeighting(request.getHints(), encoder);
+            prepareCH = ((PrepareMultipleCH) getAlgorithmFactory()).getPreparation(encoder, weighting);
+            if (prepareCH == null)
+                return rsp.addError(new IllegalArgumentException("No contraction hierarchy prepared for " + vehicle
+                        + " and " + weighting));
+
+            routingGraph = getRoutingGraph(AlgorithmOptions.DIJKSTRA_BI, encoder, weighting);
+        } else
+        {
+            prepareCH = (PrepareContractionHierarchies) getAlgorithmFactory();
+            Weighting weighting = createWeighting(request.getHints(), encoder);
+            if (!weighting.toString().equals(prepareCH.getWeighting().toString()))
+                return rsp.addError(new IllegalArgumentException("No contraction hierarchy prepared for " + vehicle
+                        + " and " + weighting + ", only for " + prepareCH.getWeighting()));
+        }
+        EdgeFilter edgeFilter = new DefaultEdgeFilter(encoder);
+        StopWatch sw = new StopWatch().start();
+        List<QueryResult> fromResults = lookup(fromPoints, edgeFilter, "origin", rsp);
+        List<QueryResult> toResults = fromPoints == toPoints ? fromResults : lookup(toPoints, edgeFilter, "destination", rsp);
+        if (rsp.hasErrors())
+            return rsp;
+
+        String debug = "idLookup:" + sw.stop().getSeconds() + "s";
+        List<QueryResult> allResults = new ArrayList<QueryResult>(fromResults);
+        if (toResults != fromResults)
+            allResults.addAll(toResults);
+
+        QueryGraph queryGraph = new QueryGraph(routingGraph);
+        queryGraph.lookup(allResults);
+        int[] fromNodes = new int[fromResults.size()];
+        for (int i = 0; i < fromNodes.length; i++)
+        {
+            fromNodes[i] = fromResults.get(i).getClosestNode();
+        }
+        int[] toNodes = new int[toResults.size()];
+        for (int i = 0; i < toNodes.length; i++)
+        {
+            toNodes[i] = toResults.get(i).getClosestNode();
+        }
+
+        sw = new StopWatch().start();
+        ManyToManyCH algo = prepareCH.createManyToMany(queryGraph).
+                setCalcTimes(request.getHints().getBool("calcTimes", true)).
+                setBudget(createBudget(request.getBudget(), request.getHints()));
+        rsp.init(fromNodes.length, toNodes.length);
+        try
+        {
+            algo.calcMatrix(fromNodes, toNodes, rsp);
+        } catch (RoutingAbortedException ex)
+        {
+            visitedSum.set(ex.getVisitedNodes());
+            return rsp.addError(ex);
+        }
+        visitedSum.set(algo.getVisitedNodes());
+        debug += ", matrix:" + sw.stop().getSeconds() + "s, visited nodes:" + algo.getVisitedNodes();
+        return rsp.setDebugInfo(debug);
+    }
+
+    private List<QueryResult> lookup( List<GHPoint> points, EdgeFilter edgeFilter, String type, GHMatrixResponse rsp )
+    {
+        List<QueryResult> qResults = findClosest(points, edgeFilter);
+        for (int placeIndex = 0; placeIndex < points.size(); placeIndex++)
+        {
+            if (!qResults.get(placeIndex).isValid())
+                rsp.addError(new IllegalArgumentException("Cannot find " + type + " " + placeIndex + ": " + points.get(placeIndex)));
+        }
+        return qResults;
+    }
+
+    /**
+     * Looks up all points at once if the location index supports it, see
+     * LocationIndexTree.findClosest
+     */
+    private List<QueryResult> findClosest( List<GHPoint> points, EdgeFilter edgeFilter )
+    {
+        if (locationIndex instanceof LocationIndexTree)
+            return ((LocationIndexTree) locationIndex).findClosest(points, edgeFilter);
+
+        List<QueryResult> qResults = new ArrayList<QueryResult>(points.size());
+        for (GHPoint point : points)
+        {
+            qResults.add(locationIndex.findClosest(point.lat, point.lon, edgeFilter));
+        }
+        return qResults;
+    }
+
     protected LocationIndex createLocationIndex( Directory dir )
     {
         LocationIndex tmpIndex;
@@ -949,7 +1585,8 @@ public class GraphHopper implements GraphHopperAPI
             tmpIndex = new LocationIndexTree(graph, dir);
         }
         tmpIndex.setResolution(preciseIndexResolution);
-        ((LocationIndexTree) tmpIndex).setMaxRegionSearch(maxRegionSearch);
+        ((LocationIndexTree) tmpIndex).setMaxRegionSearch(maxRegionSearch).setSnapCache(snapCache).
+                setBulkLoadRunSize(indexBulkLoadRunSize);
 
         if (!tmpIndex.loadExisting())
         {
@@ -980,32 +1617,55 @@ public class GraphHopper implements GraphHopperAPI
         graph.optimize();
         logger.info("finished optimize (" + Helper.getMemInfo() + ")");
 
-        // Later: move this into the GraphStorage.optimize method
-        // Or: Doing it after preparation to optimize shortcuts too. But not possible yet #12
-        if (sortGraph)
-        {
-            if (graph instanceof LevelGraph && isPrepared())
-                throw new IllegalArgumentException("Sorting prepared LevelGraph is not possible yet. See #12");
+        // a LevelGraphStorage is sorted after the preparation to place the shortcuts next to
+        // the other edges of their nodes, see postProcessing
+        if (sortGraph && !(graph instanceof LevelGraphStorage))
+            sortGraph();
+    }
+
+    /**
+     * Renumbers the nodes and edges of the graph. This is not possible for landmarks or the other
+     * contraction hierarchies as they store node or edge ids separately, so sort before preparing
+     * them.
+     */
+    protected void sortGraph()
+    {
+        if (encodingManager.needsTurnCostsSupport())
+            throw new IllegalArgumentException("Sorting a graph with turn costs is not supported as they would be lost");
 
-            GraphStorage newGraph = GHUtility.newStorage(graph);
+        GraphStorage newGraph = GHUtility.newStorage(graph);
+        if ("hilbert".equals(sortOrder))
+            GHUtility.sortHilbert(graph, newGraph);
+        else
             GHUtility.sortDFS(graph, newGraph);
-            logger.info("graph sorted (" + Helper.getMemInfo() + ")");
-            graph = newGraph;
-        }
+
+        graph.getProperties().copyTo(newGraph.getProperties());
+        graph.close();
+        graph = newGraph;
+        logger.info("graph sorted via " + sortOrder + " (" + Helper.getMemInfo() + ")");
+    }
+
+    protected void freeze()
+    {
+        logger.info("freezing graph ... (" + Helper.getMemInfo() + ")");
+        graph.freeze();
+        logger.info("finished freezing graph (" + Helper.getMemInfo() + ")");
     }
 
     protected void prepare()
     {
-        boolean tmpPrepare = doPrepare && algoFactory instanceof PrepareContractionHierarchies;
+        boolean tmpPrepare = doPrepare && (algoFactory instanceof PrepareContractionHierarchies
+                || algoFactory instanceof PrepareEdgeBasedCH || algoFactory instanceof PrepareLandmarks
+                || algoFactory instanceof PrepareMultipleCH);
         if (tmpPrepare)
         {
             ensureWriteAccess();
-            if (encodingManager.getVehicleCount() > 1)
-                throw new IllegalArgumentException("Contraction hierarchies preparation "
+            if (encodingManager.getVehicleCount() > 1 && !(algoFactory instanceof PrepareMultipleCH))
+                throw new IllegalArgumentException("Contraction hierarchies or landmark preparation "
                         + "requires (at the moment) only one vehicle. But was:" + encodingManager);
 
             logger.info("calling prepare.doWork for " + encodingManager.toString() + " ... (" + Helper.getMemInfo() + ")");
-            ((PrepareContractionHierarchies) algoFactory).doWork();
+            ((AbstractAlgoPreparation) algoFactory).doWork();
             graph.getProperties().put("prepare.date", formatDateTime(new Date()));
         }
         graph.getProperties().put("prepare.done", tmpPrepare);
@@ -1030,6 +1690,13 @@ public class GraphHopper implements GraphHopperAPI
     {
         logger.info("flushing graph " + graph.toString() + ", details:" + graph.toDetailsString() + ", " + Helper.getMemInfo() + ")");
         graph.flush();
+        if (algoFactory instanceof PrepareLandmarks)
+            ((PrepareLandmarks) algoFactory).flush();
+        else if (algoFactory instanceof PrepareEdgeBasedCH)
+            ((PrepareEdgeBasedCH) algoFactory).flush();
+        else if (algoFactory instanceof PrepareMultipleCH)
+            ((PrepareMultipleCH) algoFactory).flush();
+
         fullyLoaded = true;
     }
 
@@ -1039,9 +1706,20 @@ public class GraphHopper implements GraphHopperAPI
      */
     public void close()
     {
+        // the segments must not be unmapped while loading them
+        if (warmup != null)
+            warmup.stop();
+
         if (graph != null)
             graph.close();
 
+        if (algoFactory instanceof PrepareLandmarks)
+            ((PrepareLandmarks) algoFactory).close();
+        else if (algoFactory instanceof PrepareEdgeBasedCH)
+            ((PrepareEdgeBasedCH) algoFactory).close();
+        else if (algoFactory instanceof PrepareMultipleCH)
+            ((PrepareMultipleCH) algoFactory).close();
+
         if (locationIndex != null)
             locationIndex.close();
 
@@ -0,0 +1,201 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper;
+
+import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.shapes.GHPoint;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded cache of merged route responses. The key is created from the snapped query results and
+ * only those request parameters influencing the response, so a hit avoids creating the QueryGraph and
+ * running the algorithm. The least recently used entry is evicted if the cache is full and
+ * entries expire after the time to live.
+ * <p/>
+ * @author Peter Karich
+ */
+public class RouteCache
+{
+    // the hints changing the route or its representation, others like the type are ignored
+    private static final String[] RESULT_HINTS =
+    {
+        "weighting", "traversal_mode", "instructions", "calcPoints", "wayPointMaxDistance"
+    };
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Map<String, CacheEntry> map;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxSize the maximum number of cached responses
+     * @param ttlMillis the time to live of an entry, use 0 to never expire entries
+     */
+    public RouteCache( int maxSize, long ttlMillis )
+    {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("Size of the route cache must be positive but was " + maxSize);
+        if (ttlMillis < 0)
+            throw new IllegalArgumentException("Time to live must not be negative but was " + ttlMillis);
+
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.map = new LinkedHashMap<String, CacheEntry>(Math.min(maxSize, 1000), 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, CacheEntry> eldest )
+            {
+                if (size() <= RouteCache.this.maxSize)
+                    return false;
+
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Creates the cache key from the request parameters and the snapped positions of the query
+     * points. The query points itself are not part of the key as the route only depends on the
+     * snapped positions. Of the hints only the ones in RESULT_HINTS and the approximation of the
+     * algorithm are used, so e.g. the web parameters type or callback do not prevent a hit.
+     */
+    public static String createKey( GHRequest request, List<QueryResult> qResults )
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(request.getVehicle()).append('|').append(request.getAlgorithm()).
+                append('|').append(request.getLocale());
+        PMap hints = request.getHints();
+        for (String hint : RESULT_HINTS)
+        {
+            sb.append('|').append(hints.get(hint, ""));
+        }
+        sb.append('|').append(hints.get(request.getAlgorithm().toLowerCase() + ".approximation", ""));
+        for (QueryResult res : qResults)
+        {
+            EdgeIteratorState edge = res.getClosestEdge();
+            GHPoint snapped = res.getSnappedPoint();
+            sb.append('|').append(res.getClosestNode()).
+                    append(',').append(edge.getEdge()).
+                    append(',').append(edge.getBaseNode()).
+                    append(',').append(res.getWayIndex()).
+                    append(',').append(res.getSnappedPosition()).
+                    append(',').append(snapped.lat).
+                    append(',').append(snapped.lon);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return a copy of the cached response or null if not found or expired
+     */
+    public synchronized GHResponse get( String key )
+    {
+        CacheEntry entry = map.get(key);
+        if (entry != null && ttlMillis > 0 && getCurrentMillis() - entry.createdMillis > ttlMillis)
+        {
+            map.remove(key);
+            evictions++;
+            entry = null;
+        }
+
+        if (entry == null)
+        {
+            misses++;
+            return null;
+        }
+
+        hits++;
+        return entry.response.copy();
+    }
+
+    /**
+     * Stores a copy of the specified response. Responses with errors are not cached.
+     */
+    public synchronized void put( String key, GHResponse rsp )
+    {
+        if (rsp.hasErrors())
+            return;
+
+        map.put(key, new CacheEntry(rsp.copy(), getCurrentMillis()));
+    }
+
+    long getCurrentMillis()
+    {
+        return System.currentTimeMillis();
+    }
+
+    public synchronized void clear()
+    {
+        map.clear();
+    }
+
+    public synchronized int getSize()
+    {
+        return map.size();
+    }
+
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    public long getTTLMillis()
+    {
+        return ttlMillis;
+    }
+
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    public synchronized long getEvictions()
+    {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "size:" + map.size() + "/" + maxSize + ", hits:" + hits + ", misses:" + misses
+                + ", evictions:" + evictions;
+    }
+
+    private static class CacheEntry
+    {
+        final GHResponse response;
+        final long createdMillis;
+
+        public CacheEntry( GHResponse response, long createdMillis )
+        {
+            this.response = response;
+            this.createdMillis = createdMillis;
+        }
+    }
+}
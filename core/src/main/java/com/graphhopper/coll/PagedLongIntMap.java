@@ -0,0 +1,160 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.util.Helper;
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * A LongIntMap which stores the values in a DataAccess and can therefore live off-heap e.g. via
+ * MMAP or UNSAFE. The key range is split into pages of 2^pageBits consecutive keys and a page is
+ * only allocated if one of its keys is used. Only the small page table lives on the heap. This
+ * works well for dense keys like the node ids of OSM, but the page table gets big for very high
+ * keys. Negative keys are supported via a second page table and the few keys out of the range of
+ * the page tables, like the artificial ids of barrier nodes, are stored in a GHLongIntBTree.
+ * <p/>
+ * @author Peter Karich
+ */
+public class PagedLongIntMap implements LongIntMap
+{
+    // limits the heap usage of a page table to 64MB
+    private static final long MAX_PAGES = 1 << 24;
+    private static final long OUT_OF_RANGE = -1;
+    private static final long NOT_ALLOCATED = -2;
+    private final DataAccess da;
+    private final int pageBits;
+    private final long pageMask;
+    private final int pageBytes;
+    private final int noEntryValue = -1;
+    // maps the key range to the page number + 1, 0 means not allocated
+    private final TIntArrayList positivePages = new TIntArrayList();
+    private final TIntArrayList negativePages = new TIntArrayList();
+    private final GHLongIntBTree outOfRange = new GHLongIntBTree(200);
+    private int pages;
+    private long size;
+
+    public PagedLongIntMap( DataAccess da )
+    {
+        this(da, 12);
+    }
+
+    /**
+     * @param da the storage which is created by this map. It relies on newly allocated bytes being
+     * zero.
+     */
+    public PagedLongIntMap( DataAccess da, int pageBits )
+    {
+        if (pageBits < 4 || pageBits > 24)
+            throw new IllegalArgumentException("pageBits must be in [4, 24] but was " + pageBits);
+
+        this.da = da;
+        this.pageBits = pageBits;
+        this.pageMask = (1L << pageBits) - 1;
+        this.pageBytes = 4 << pageBits;
+        da.create(pageBytes);
+    }
+
+    @Override
+    public int put( long key, int value )
+    {
+        long pointer = getPointer(key, true);
+        if (pointer == OUT_OF_RANGE)
+            return outOfRange.put(key, value);
+
+        // store the value XOR noEntryValue so that the zeroed memory of a new page means 'no entry'
+        int oldValue = da.getInt(pointer) ^ noEntryValue;
+        da.setInt(pointer, value ^ noEntryValue);
+        if (oldValue == noEntryValue)
+        {
+            if (value != noEntryValue)
+                size++;
+        } else if (value == noEntryValue)
+            size--;
+
+        return oldValue;
+    }
+
+    @Override
+    public int get( long key )
+    {
+        long pointer = getPointer(key, false);
+        if (pointer == OUT_OF_RANGE)
+            return outOfRange.get(key);
+        if (pointer == NOT_ALLOCATED)
+            return noEntryValue;
+
+        return da.getInt(pointer) ^ noEntryValue;
+    }
+
+    private long getPointer( long key, boolean create )
+    {
+        TIntArrayList pageTable = positivePages;
+        if (key < 0)
+        {
+            pageTable = negativePages;
+            key = ~key;
+        }
+
+        long pageIndex = key >>> pageBits;
+        if (pageIndex >= MAX_PAGES)
+            return OUT_OF_RANGE;
+
+        int page = pageIndex < pageTable.size() ? pageTable.get((int) pageIndex) : 0;
+        if (page == 0)
+        {
+            if (!create)
+                return NOT_ALLOCATED;
+
+            if (pageIndex >= pageTable.size())
+                pageTable.fill(pageTable.size(), (int) pageIndex + 1, 0);
+
+            page = ++pages;
+            da.ensureCapacity((long) page * pageBytes);
+            pageTable.set((int) pageIndex, page);
+        }
+        return (long) (page - 1) * pageBytes + ((key & pageMask) << 2);
+    }
+
+    @Override
+    public long getSize()
+    {
+        return size + outOfRange.getSize();
+    }
+
+    @Override
+    public void optimize()
+    {
+    }
+
+    /**
+     * @return the memory in MB of the page table and the used pages.
+     */
+    @Override
+    public int getMemoryUsage()
+    {
+        long bytes = 4L * (positivePages.size() + negativePages.size()) + (long) pages * pageBytes;
+        return Math.round(bytes / Helper.MB) + outOfRange.getMemoryUsage();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "size:" + getSize() + ", pages:" + pages + ", pageBits:" + pageBits + ", out of range:" + outOfRange.getSize();
+    }
+}
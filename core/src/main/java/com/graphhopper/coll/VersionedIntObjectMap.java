@@ -0,0 +1,196 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import java.util.Arrays;
+
+/**
+ * An open addressing hash map from int keys to objects which can be cleared in time proportional
+ * to its size, not its capacity. Instead of wiping the arrays on clear every slot stores the
+ * version it was written with and only slots of the current version are used. The slots written in
+ * the current version are recorded so that clear can release their values for the garbage
+ * collector. This makes it possible to reuse the same instance for many searches without
+ * allocating new memory. Removing single entries is not supported.
+ * <p/>
+ * @author Peter Karich
+ */
+public class VersionedIntObjectMap<T>
+{
+    private static final int MAX_CAPACITY = 1 << 30;
+    private int[] keys;
+    private Object[] values;
+    private int[] versions;
+    // the slots written in the current version, in insertion order
+    private int[] usedSlots;
+    private int version = 1;
+    private int size;
+    private int mask;
+    private int maxSize;
+
+    public VersionedIntObjectMap()
+    {
+        this(16);
+    }
+
+    public VersionedIntObjectMap( int expectedSize )
+    {
+        int capacity = 16;
+        while (capacity < MAX_CAPACITY && capacity / 2 < expectedSize)
+        {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    private void allocate( int capacity )
+    {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        versions = new int[capacity];
+        // put records the slot before it grows the map
+        usedSlots = new int[capacity / 2 + 1];
+        mask = capacity - 1;
+        // load factor 0.5
+        maxSize = capacity / 2;
+    }
+
+    private int getSlot( int key )
+    {
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get( int key )
+    {
+        int slot = getSlot(key);
+        while (versions[slot] == version)
+        {
+            if (keys[slot] == key)
+                return (T) values[slot];
+
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * @return the previous value or null if the key was not contained
+     */
+    @SuppressWarnings("unchecked")
+    public T put( int key, T value )
+    {
+        int slot = getSlot(key);
+        while (versions[slot] == version)
+        {
+            if (keys[slot] == key)
+            {
+                T old = (T) values[slot];
+                values[slot] = value;
+                return old;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        versions[slot] = version;
+        keys[slot] = key;
+        values[slot] = value;
+        usedSlots[size] = slot;
+        size++;
+        if (size > maxSize)
+            rehash();
+
+        return null;
+    }
+
+    private void rehash()
+    {
+        if (keys.length >= MAX_CAPACITY)
+            throw new IllegalStateException("Cannot grow beyond " + MAX_CAPACITY + " entries");
+
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        int[] oldUsedSlots = usedSlots;
+        allocate(oldKeys.length << 1);
+        for (int i = 0; i < size; i++)
+        {
+            int oldSlot = oldUsedSlots[i];
+            int slot = getSlot(oldKeys[oldSlot]);
+            while (versions[slot] == version)
+            {
+                slot = (slot + 1) & mask;
+            }
+            versions[slot] = version;
+            keys[slot] = oldKeys[oldSlot];
+            values[slot] = oldValues[oldSlot];
+            usedSlots[i] = slot;
+        }
+    }
+
+    /**
+     * Removes all entries and releases their values in O(size). The capacity is kept.
+     */
+    public void clear()
+    {
+        for (int i = 0; i < size; i++)
+        {
+            values[usedSlots[i]] = null;
+        }
+        size = 0;
+        if (version == Integer.MAX_VALUE)
+        {
+            Arrays.fill(versions, 0);
+            version = 1;
+        } else
+        {
+            version++;
+        }
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public int getCapacity()
+    {
+        return keys.length;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < keys.length; i++)
+        {
+            if (versions[i] != version)
+                continue;
+
+            if (sb.length() > 1)
+                sb.append(", ");
+
+            sb.append(keys[i]).append('=').append(values[i]);
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -17,6 +17,7 @@
  */
 package com.graphhopper.reader;
 
+import com.graphhopper.reader.pbf.PbfBlockIndex;
 import com.graphhopper.reader.pbf.Sink;
 import com.graphhopper.reader.pbf.PbfReader;
 
@@ -48,6 +49,8 @@ public class OSMInputFile implements Sink, Closeable
     private final BlockingQueue<OSMElement> itemQueue;
     private boolean hasIncomingData;
     private int workerThreads = -1;
+    private PbfBlockIndex blockIndex;
+    private int elementTypes = PbfBlockIndex.ALL;
 
     public OSMInputFile( File file ) throws IOException
     {
@@ -76,6 +79,20 @@ public class OSMInputFile implements Sink, Closeable
         return this;
     }
 
+    /**
+     * Currently only for pbf format. Skips all elements not of the specified types. An incomplete
+     * block index gets filled while reading the file. A complete one is used to skip all blocks
+     * without the specified element types before they get decompressed.
+     * <p/>
+     * @param elementTypes bit mask of PbfBlockIndex.NODES, WAYS and RELATIONS
+     */
+    public OSMInputFile setElementTypes( PbfBlockIndex blockIndex, int elementTypes )
+    {
+        this.blockIndex = blockIndex;
+        this.elementTypes = elementTypes;
+        return this;
+    }
+
     @SuppressWarnings("unchecked")
     private InputStream decode( File file ) throws IOException
     {
@@ -248,7 +265,7 @@ public class OSMInputFile implements Sink, Closeable
         if (workerThreads <= 0)
             workerThreads = 2;
 
-        PbfReader reader = new PbfReader(stream, this, workerThreads);
+        PbfReader reader = new PbfReader(stream, this, workerThreads).setElementTypes(blockIndex, elementTypes);
         pbfReaderThread = new Thread(reader, "PBF Reader");
         pbfReaderThread.start();
     }
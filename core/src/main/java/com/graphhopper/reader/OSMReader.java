@@ -29,9 +29,16 @@ import gnu.trove.set.hash.TLongHashSet;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.xml.stream.XMLStreamException;
 
@@ -40,8 +47,10 @@ import org.slf4j.LoggerFactory;
 
 import com.graphhopper.coll.GHLongIntBTree;
 import com.graphhopper.coll.LongIntMap;
+import com.graphhopper.coll.PagedLongIntMap;
 import com.graphhopper.reader.OSMTurnRelation.TurnCostTableEntry;
 import com.graphhopper.reader.dem.ElevationProvider;
+import com.graphhopper.reader.pbf.PbfBlockIndex;
 import com.graphhopper.routing.util.*;
 import com.graphhopper.storage.*;
 import com.graphhopper.util.*;
@@ -87,6 +96,13 @@ public class OSMReader implements DataReader
     private final NodeAccess nodeAccess;
     private EncodingManager encodingManager = null;
     private int workerThreads = -1;
+    private int wayWorkerThreads = 1;
+    private PbfBlockIndex blockIndex;
+    // number of ways evaluated by one task of the way worker pool
+    private static final int WAY_BATCH_SIZE = 512;
+    private ExecutorService wayExecutor;
+    private final Deque<WayBatch> pendingWayBatches = new ArrayDeque<WayBatch>();
+    private List<OSMWay> currentWayBatch = new ArrayList<OSMWay>(WAY_BATCH_SIZE);
     protected long zeroCounter = 0;
     // Using the correct Map<Long, Integer> is hard. We need a memory efficient and fast solution for big data sets!
     //
@@ -98,6 +114,8 @@ public class OSMReader implements DataReader
     // smaller memory overhead for bigger data sets because of avoiding a "rehash"
     // remember how many times a node was used to identify tower nodes
     private LongIntMap osmNodeIdToInternalNodeMap;
+    // only used if the node map lives in a DataAccess
+    private DataAccess nodeMapDA;
     private TLongLongHashMap osmNodeIdToNodeFlagsMap;
     private TLongLongHashMap osmWayIdToRouteWeightMap;
     // stores osm way ids used by relations to identify which edge ids needs to be mapped later
@@ -163,8 +181,11 @@ public class OSMReader implements DataReader
         OSMInputFile in = null;
         try
         {
-            in = new OSMInputFile(osmFile).setWorkerThreads(workerThreads).open();
+            in = new OSMInputFile(osmFile).setWorkerThreads(workerThreads);
+            if (blockIndex != null)
+                in.setElementTypes(blockIndex, PbfBlockIndex.WAYS | PbfBlockIndex.RELATIONS);
 
+            in.open();
             long tmpWayCounter = 1;
             long tmpRelationCounter = 1;
             OSMElement item;
@@ -275,12 +296,31 @@ public class OSMReader implements DataReader
         OSMInputFile in = null;
         try
         {
-            in = new OSMInputFile(osmFile).setWorkerThreads(workerThreads).open();
+            in = new OSMInputFile(osmFile).setWorkerThreads(workerThreads);
+            if (blockIndex != null)
+            {
+                // relations are only necessary for turn restrictions
+                int elementTypes = PbfBlockIndex.NODES | PbfBlockIndex.WAYS;
+                if (graphStorage.getExtension() instanceof TurnCostExtension)
+                    elementTypes |= PbfBlockIndex.RELATIONS;
+
+                if (blockIndex.isComplete())
+                    logger.info("skipping " + blockIndex.countSkippable(elementTypes) + " PBF blocks, " + blockIndex);
+                in.setElementTypes(blockIndex, elementTypes);
+            }
+
+            in.open();
             LongIntMap nodeFilter = getNodeMap();
+            if (wayWorkerThreads > 1)
+                wayExecutor = Executors.newFixedThreadPool(wayWorkerThreads);
 
             OSMElement item;
             while ((item = in.getNext()) != null)
             {
+                // nodes and relations need the edges of all previous ways
+                if (item.getType() != OSMElement.WAY)
+                    flushWays();
+
                 switch (item.getType())
                 {
                     case OSMElement.NODE:
@@ -296,7 +336,10 @@ public class OSMReader implements DataReader
                             logger.info(nf(counter) + ", now parsing ways");
                             wayStart = counter;
                         }
-                        processWay((OSMWay) item);
+                        if (wayExecutor == null)
+                            processWay((OSMWay) item);
+                        else
+                            pipelineWay((OSMWay) item);
                         break;
                     case OSMElement.RELATION:
                         if (relationStart < 0)
@@ -313,12 +356,20 @@ public class OSMReader implements DataReader
                 }
             }
 
+            flushWays();
             // logger.info("storage nodes:" + storage.nodes() + " vs. graph nodes:" + storage.getGraph().nodes());
         } catch (Exception ex)
         {
             throw new RuntimeException("Couldn't process file " + osmFile + ", error: " + ex.getMessage(), ex);
         } finally
         {
+            if (wayExecutor != null)
+            {
+                wayExecutor.shutdownNow();
+                wayExecutor = null;
+            }
+            pendingWayBatches.clear();
+            currentWayBatch.clear();
             Helper.close(in);
         }
 
@@ -339,16 +390,133 @@ public class OSMReader implements DataReader
         if (!way.hasTags())
             return;
 
-        long wayOsmId = way.getId();
-
         long includeWay = encodingManager.acceptWay(way);
         if (includeWay == 0)
             return;
 
+        setEstimatedTags(way);
+        long wayFlags = encodingManager.handleWayTags(way, includeWay, getRelFlagsMap().get(way.getId()));
+        if (wayFlags == 0)
+            return;
+
+        addWay(way, wayFlags);
+    }
+
+    /**
+     * Collects the way into the current batch. Full batches are evaluated by the way worker pool
+     * while the edges of earlier batches are created in file order by the reading thread.
+     */
+    private void pipelineWay( OSMWay way )
+    {
+        if (way.getNodes().size() < 2)
+            return;
+
+        // ignore multipolygon geometry
+        if (!way.hasTags())
+            return;
+
+        // the node map is not thread safe, so do the lookup here. The coordinates stay the same even
+        // if a pillar node of this way is converted into a tower node by a way of a pending batch
+        setEstimatedTags(way);
+        currentWayBatch.add(way);
+        if (currentWayBatch.size() < WAY_BATCH_SIZE)
+            return;
+
+        submitWayBatch();
+        // limit the memory for pending ways and keep the workers busy while we create the edges
+        if (pendingWayBatches.size() > 2 * wayWorkerThreads)
+            addWayBatch(pendingWayBatches.poll());
+    }
+
+    private void submitWayBatch()
+    {
+        final List<OSMWay> ways = currentWayBatch;
+        currentWayBatch = new ArrayList<OSMWay>(WAY_BATCH_SIZE);
+        Future<long[]> future = wayExecutor.submit(new Callable<long[]>()
+        {
+            @Override
+            public long[] call()
+            {
+                long[] flags = new long[ways.size()];
+                for (int i = 0; i < flags.length; i++)
+                {
+                    flags[i] = encodeWay(ways.get(i));
+                }
+                return flags;
+            }
+        });
+        pendingWayBatches.add(new WayBatch(ways, future));
+    }
+
+    private void addWayBatch( WayBatch batch )
+    {
+        long[] flags;
+        try
+        {
+            flags = batch.flags.get();
+        } catch (InterruptedException ex)
+        {
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex)
+        {
+            throw new RuntimeException(ex.getCause());
+        }
+
+        for (int i = 0; i < flags.length; i++)
+        {
+            if (flags[i] != 0)
+                addWay(batch.ways.get(i), flags[i]);
+        }
+    }
+
+    /**
+     * Creates the edges of all pending ways.
+     */
+    private void flushWays()
+    {
+        if (wayExecutor == null)
+            return;
+
+        if (!currentWayBatch.isEmpty())
+            submitWayBatch();
+
+        while (!pendingWayBatches.isEmpty())
+        {
+            addWayBatch(pendingWayBatches.poll());
+        }
+    }
+
+    private static class WayBatch
+    {
+        final List<OSMWay> ways;
+        final Future<long[]> flags;
+
+        public WayBatch( List<OSMWay> ways, Future<long[]> flags )
+        {
+            this.ways = ways;
+            this.flags = flags;
+        }
+    }
+
+    /**
+     * Evaluates the tags of the way and returns the encoded flags or 0 if the way should be
+     * skipped. This does not modify the graph or any of the id maps and can therefore be called
+     * from the way worker threads.
+     */
+    long encodeWay( OSMWay way )
+    {
+        long includeWay = encodingManager.acceptWay(way);
+        if (includeWay == 0)
+            return 0;
+
         long relationFlags = getRelFlagsMap().get(way.getId());
+        return encodingManager.handleWayTags(way, includeWay, relationFlags);
+    }
 
-        // TODO move this after we have created the edge and know the coordinates => encodingManager.applyWayTags
-        // estimate length of the track e.g. for ferry speed calculation
+    // TODO move this after we have created the edge and know the coordinates => encodingManager.applyWayTags
+    // estimate length of the track e.g. for ferry speed calculation
+    private void setEstimatedTags( OSMWay way )
+    {
         TLongList osmNodeIds = way.getNodes();
         if (osmNodeIds.size() > 1)
         {
@@ -363,11 +531,16 @@ public class OSMReader implements DataReader
                 way.setTag("estimated_center", new GHPoint((firstLat + lastLat) / 2, (firstLon + lastLon) / 2));
             }
         }
+    }
 
-        long wayFlags = encodingManager.handleWayTags(way, includeWay, relationFlags);
-        if (wayFlags == 0)
-            return;
-
+    /**
+     * Creates the edges for the way with the already encoded flags. Must be called in the order
+     * the ways appear in the file as pillar nodes are converted to tower nodes here.
+     */
+    void addWay( OSMWay way, long wayFlags )
+    {
+        long wayOsmId = way.getId();
+        TLongList osmNodeIds = way.getNodes();
         List<EdgeIteratorState> createdEdges = new ArrayList<EdgeIteratorState>();
         // look for barriers along the way
         final int size = osmNodeIds.size();
@@ -843,6 +1016,11 @@ public class OSMReader implements DataReader
         pillarInfo.clear();
         eleProvider.release();
         osmNodeIdToInternalNodeMap = null;
+        if (nodeMapDA != null)
+        {
+            graphStorage.getDirectory().remove(nodeMapDA);
+            nodeMapDA = null;
+        }
         osmNodeIdToNodeFlagsMap = null;
         osmWayIdToRouteWeightMap = null;
         osmWayIdSet = null;
@@ -977,6 +1155,48 @@ public class OSMReader implements DataReader
         return this;
     }
 
+    /**
+     * Stores the mapping of OSM node ids to the internal node ids in a DataAccess of the specified
+     * type instead of on the heap. E.g. use MMAP for big imports with a small heap. The data is
+     * removed after the import.
+     */
+    public OSMReader setNodeMapType( DAType type )
+    {
+        if (nodeMapDA != null)
+            throw new IllegalStateException("Node map type was already set");
+
+        Directory dir = graphStorage.getDirectory();
+        // the graph directory is not necessarily created if the graph itself is kept in memory
+        if (type.isMMap())
+            new File(dir.getLocation()).mkdirs();
+
+        nodeMapDA = dir.find("tmp_osm_node_map", type);
+        osmNodeIdToInternalNodeMap = new PagedLongIntMap(nodeMapDA);
+        return this;
+    }
+
+    /**
+     * Remembers which blocks of a PBF file contain nodes, ways or relations while reading it the
+     * first time. The second pass then skips the decompression of blocks without relevant data
+     * e.g. of all relation blocks if no turn restrictions are imported.
+     */
+    public OSMReader setPbfBlockIndex( boolean enable )
+    {
+        blockIndex = enable ? new PbfBlockIndex() : null;
+        return this;
+    }
+
+    /**
+     * Sets the number of threads evaluating the way tags and encoding the flags. The edges are
+     * still created by the reading thread and in the order of the file, so the resulting graph is
+     * identical to the one of a single threaded import.
+     */
+    public OSMReader setWayWorkerThreads( int wayWorkerThreads )
+    {
+        this.wayWorkerThreads = wayWorkerThreads;
+        return this;
+    }
+
     public OSMReader setElevationProvider( ElevationProvider eleProvider )
     {
         if (eleProvider == null)
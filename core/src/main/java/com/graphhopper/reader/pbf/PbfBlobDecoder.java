@@ -31,7 +31,9 @@ public class PbfBlobDecoder implements Runnable
     private final String blobType;
     private final byte[] rawBlob;
     private final PbfBlobDecoderListener listener;
+    private final int elementTypes;
     private List<OSMElement> decodedEntities;
+    private int blobElementTypes;
 
     /**
      * Creates a new instance.
@@ -41,10 +43,22 @@ public class PbfBlobDecoder implements Runnable
      * @param listener The listener for receiving decoding results.
      */
     public PbfBlobDecoder( String blobType, byte[] rawBlob, PbfBlobDecoderListener listener )
+    {
+        this(blobType, rawBlob, listener, PbfBlockIndex.ALL);
+    }
+
+    /**
+     * Creates a new instance.
+     * <p/>
+     * @param elementTypes Bit mask of the element types to decode, see PbfBlockIndex. Other
+     * elements are skipped but still reported to the listener as contained in the blob.
+     */
+    public PbfBlobDecoder( String blobType, byte[] rawBlob, PbfBlobDecoderListener listener, int elementTypes )
     {
         this.blobType = blobType;
         this.rawBlob = rawBlob;
         this.listener = listener;
+        this.elementTypes = elementTypes;
     }
 
     private byte[] readBlobContent() throws IOException
@@ -367,10 +381,27 @@ public class PbfBlobDecoder implements Runnable
         for (Osmformat.PrimitiveGroup primitiveGroup : block.getPrimitivegroupList())
         {
             log.debug("Processing OSM primitive group.");
-            processNodes(primitiveGroup.getDense(), fieldDecoder);
-            processNodes(primitiveGroup.getNodesList(), fieldDecoder);
-            processWays(primitiveGroup.getWaysList(), fieldDecoder);
-            processRelations(primitiveGroup.getRelationsList(), fieldDecoder);
+            if (primitiveGroup.hasDense() || primitiveGroup.getNodesCount() > 0)
+            {
+                blobElementTypes |= PbfBlockIndex.NODES;
+                if ((elementTypes & PbfBlockIndex.NODES) != 0)
+                {
+                    processNodes(primitiveGroup.getDense(), fieldDecoder);
+                    processNodes(primitiveGroup.getNodesList(), fieldDecoder);
+                }
+            }
+            if (primitiveGroup.getWaysCount() > 0)
+            {
+                blobElementTypes |= PbfBlockIndex.WAYS;
+                if ((elementTypes & PbfBlockIndex.WAYS) != 0)
+                    processWays(primitiveGroup.getWaysList(), fieldDecoder);
+            }
+            if (primitiveGroup.getRelationsCount() > 0)
+            {
+                blobElementTypes |= PbfBlockIndex.RELATIONS;
+                if ((elementTypes & PbfBlockIndex.RELATIONS) != 0)
+                    processRelations(primitiveGroup.getRelationsList(), fieldDecoder);
+            }
         }
     }
 
@@ -404,7 +435,7 @@ public class PbfBlobDecoder implements Runnable
         try
         {
             runAndTrapExceptions();
-            listener.complete(decodedEntities);
+            listener.complete(decodedEntities, blobElementTypes);
 
         } catch (RuntimeException e)
         {
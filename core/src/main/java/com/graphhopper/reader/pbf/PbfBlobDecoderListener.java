@@ -16,8 +16,9 @@ public interface PbfBlobDecoderListener
      * Provides the listener with the list of decoded entities.
      * <p/>
      * @param decodedEntities The decoded entities.
+     * @param elementTypes Bit mask of the element types contained in the blob, see PbfBlockIndex.
      */
-    void complete( List<OSMElement> decodedEntities );
+    void complete( List<OSMElement> decodedEntities, int elementTypes );
 
     /**
      * Notifies the listener that an error occurred during processing.
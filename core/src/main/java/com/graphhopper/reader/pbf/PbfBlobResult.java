@@ -16,6 +16,8 @@ public class PbfBlobResult
     private boolean complete;
     private boolean success;
     private Exception ex;
+    private int elementTypes;
+    private long offset = -1;
 
     /**
      * Creates a new instance.
@@ -31,10 +33,12 @@ public class PbfBlobResult
      * Stores the results of a successful blob decoding operation.
      * <p/>
      * @param decodedEntities The entities from the blob.
+     * @param elementTypes Bit mask of the element types contained in the blob.
      */
-    public void storeSuccessResult( List<OSMElement> decodedEntities )
+    public void storeSuccessResult( List<OSMElement> decodedEntities, int elementTypes )
     {
         entities = decodedEntities;
+        this.elementTypes = elementTypes;
         complete = true;
         success = true;
     }
@@ -84,4 +88,26 @@ public class PbfBlobResult
     {
         return entities;
     }
+
+    /**
+     * Gets the bit mask of the element types contained in the blob, see PbfBlockIndex. This is
+     * only valid after complete becomes true, and if success is true.
+     */
+    public int getElementTypes()
+    {
+        return elementTypes;
+    }
+
+    public void setOffset( long offset )
+    {
+        this.offset = offset;
+    }
+
+    /**
+     * Gets the position of the blob in the file.
+     */
+    public long getOffset()
+    {
+        return offset;
+    }
 }
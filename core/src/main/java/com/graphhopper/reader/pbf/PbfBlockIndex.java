@@ -0,0 +1,103 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.pbf;
+
+import com.graphhopper.reader.OSMElement;
+import gnu.trove.list.array.TByteArrayList;
+import gnu.trove.list.array.TLongArrayList;
+
+/**
+ * Remembers the file offset and the contained element types of every blob of a PBF file. It is
+ * filled while the file is read the first time and allows later passes to skip blobs without
+ * decompressing them.
+ * <p/>
+ * @author Peter Karich
+ */
+public class PbfBlockIndex
+{
+    public static final int NODES = 1 << OSMElement.NODE;
+    public static final int WAYS = 1 << OSMElement.WAY;
+    public static final int RELATIONS = 1 << OSMElement.RELATION;
+    public static final int ALL = NODES | WAYS | RELATIONS;
+    private final TLongArrayList offsets = new TLongArrayList();
+    private final TByteArrayList types = new TByteArrayList();
+    private volatile boolean complete;
+
+    /**
+     * Appends the next blob of the file.
+     * <p/>
+     * @param elementTypes bit mask of the element types in the blob, 0 for non-data blobs
+     */
+    public void add( long offset, int elementTypes )
+    {
+        if (complete)
+            throw new IllegalStateException("Index is already complete");
+
+        offsets.add(offset);
+        types.add((byte) elementTypes);
+    }
+
+    /**
+     * Marks the index as complete. Must only be called if all blobs of the file were added.
+     */
+    public void setComplete()
+    {
+        complete = true;
+    }
+
+    public boolean isComplete()
+    {
+        return complete;
+    }
+
+    public int getSize()
+    {
+        return offsets.size();
+    }
+
+    public long getOffset( int blobIndex )
+    {
+        return offsets.get(blobIndex);
+    }
+
+    public int getElementTypes( int blobIndex )
+    {
+        return types.get(blobIndex);
+    }
+
+    /**
+     * @return the number of blobs which do not contain any of the specified element types
+     */
+    public int countSkippable( int elementTypes )
+    {
+        int count = 0;
+        for (int i = 0; i < types.size(); i++)
+        {
+            if ((types.get(i) & elementTypes) == 0)
+                count++;
+        }
+        return count;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "blobs:" + getSize() + ", without nodes:" + countSkippable(NODES) + ", without ways:" + countSkippable(WAYS)
+                + ", without relations:" + countSkippable(RELATIONS);
+    }
+}
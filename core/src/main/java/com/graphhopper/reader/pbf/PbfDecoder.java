@@ -27,6 +27,8 @@ public class PbfDecoder implements Runnable
     private final Lock lock;
     private final Condition dataWaitCondition;
     private final Queue<PbfBlobResult> blobResults;
+    private PbfBlockIndex blockIndex;
+    private int elementTypes = PbfBlockIndex.ALL;
 
     /**
      * Creates a new instance.
@@ -52,6 +54,17 @@ public class PbfDecoder implements Runnable
         blobResults = new LinkedList<PbfBlobResult>();
     }
 
+    /**
+     * Only decodes the specified element types. If the block index is not yet complete the
+     * element types of every blob are added to it.
+     */
+    public PbfDecoder setElementTypes( PbfBlockIndex blockIndex, int elementTypes )
+    {
+        this.blockIndex = blockIndex;
+        this.elementTypes = elementTypes;
+        return this;
+    }
+
     /**
      * Any thread can call this method when they wish to wait until an update has been performed by
      * another thread.
@@ -95,6 +108,9 @@ public class PbfDecoder implements Runnable
                 throw new RuntimeException("A PBF decoding worker thread failed, aborting.", blobResult.getException());
             }
 
+            if (blockIndex != null && !blockIndex.isComplete())
+                blockIndex.add(blobResult.getOffset(), blobResult.getElementTypes());
+
             // Send the processed entities to the sink. We can release the lock
             // for the duration of processing to allow worker threads to post
             // their results.
@@ -123,6 +139,7 @@ public class PbfDecoder implements Runnable
             // Create the result object to capture the results of the decoded
             // blob and add it to the blob results queue.
             final PbfBlobResult blobResult = new PbfBlobResult();
+            blobResult.setOffset(rawBlob.getOffset());
             blobResults.add(blobResult);
 
             // Create the listener object that will update the blob results
@@ -146,12 +163,12 @@ public class PbfDecoder implements Runnable
                 }
 
                 @Override
-                public void complete( List<OSMElement> decodedEntities )
+                public void complete( List<OSMElement> decodedEntities, int blobElementTypes )
                 {
                     lock.lock();
                     try
                     {
-                        blobResult.storeSuccessResult(decodedEntities);
+                        blobResult.storeSuccessResult(decodedEntities, blobElementTypes);
                         signalUpdate();
 
                     } finally
@@ -162,7 +179,8 @@ public class PbfDecoder implements Runnable
             };
 
             // Create the blob decoder itself and execute it on a worker thread.
-            PbfBlobDecoder blobDecoder = new PbfBlobDecoder(rawBlob.getType(), rawBlob.getData(), decoderListener);
+            PbfBlobDecoder blobDecoder = new PbfBlobDecoder(rawBlob.getType(), rawBlob.getData(), decoderListener,
+                    elementTypes);
             executorService.execute(blobDecoder);
 
             // If the number of pending blobs has reached capacity we must begin
@@ -11,6 +11,7 @@ public class PbfRawBlob
 {
     private String type;
     private byte[] data;
+    private long offset;
 
     /**
      * Creates a new instance.
@@ -20,9 +21,20 @@ public class PbfRawBlob
      * @param data The raw contents of the blob in binary undecoded form.
      */
     public PbfRawBlob( String type, byte[] data )
+    {
+        this(type, data, -1);
+    }
+
+    /**
+     * Creates a new instance.
+     * <p/>
+     * @param offset The position of the blob header in the file.
+     */
+    public PbfRawBlob( String type, byte[] data, long offset )
     {
         this.type = type;
         this.data = data;
+        this.offset = offset;
     }
 
     /**
@@ -45,4 +57,12 @@ public class PbfRawBlob
     {
         return data;
     }
+
+    /**
+     * Gets the position of the blob header in the file or -1 if unknown.
+     */
+    public long getOffset()
+    {
+        return offset;
+    }
 }
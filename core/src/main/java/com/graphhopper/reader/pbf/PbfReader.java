@@ -16,6 +16,8 @@ public class PbfReader implements Runnable
     private InputStream inputStream;
     private Sink sink;
     private int workers;
+    private PbfBlockIndex blockIndex;
+    private int elementTypes = PbfBlockIndex.ALL;
 
     /**
      * Creates a new instance.
@@ -30,6 +32,20 @@ public class PbfReader implements Runnable
         this.workers = workers;
     }
 
+    /**
+     * Only reads the specified element types. While the block index is not complete it is filled
+     * with the element types of every blob. Once complete it is used to skip all blobs without
+     * the specified element types before they get decompressed.
+     * <p/>
+     * @param elementTypes bit mask of PbfBlockIndex.NODES, WAYS and RELATIONS
+     */
+    public PbfReader setElementTypes( PbfBlockIndex blockIndex, int elementTypes )
+    {
+        this.blockIndex = blockIndex;
+        this.elementTypes = elementTypes;
+        return this;
+    }
+
     @Override
     public void run()
     {
@@ -37,7 +53,8 @@ public class PbfReader implements Runnable
         try
         {
             // Create a stream splitter to break the PBF stream into blobs.
-            PbfStreamSplitter streamSplitter = new PbfStreamSplitter(new DataInputStream(inputStream));
+            PbfStreamSplitter streamSplitter = new PbfStreamSplitter(new DataInputStream(inputStream)).
+                    setSkipBlobs(blockIndex, elementTypes);
 
             // Process all blobs of data in the stream using threads from the
             // executor service. We allow the decoder to issue an extra blob
@@ -45,8 +62,11 @@ public class PbfReader implements Runnable
             // immediately ready for processing when a worker thread completes.
             // The main thread is responsible for splitting blobs from the
             // request stream, and sending decoded entities to the sink.
-            PbfDecoder pbfDecoder = new PbfDecoder(streamSplitter, executorService, workers + 1, sink);
+            PbfDecoder pbfDecoder = new PbfDecoder(streamSplitter, executorService, workers + 1, sink).
+                    setElementTypes(blockIndex, elementTypes);
             pbfDecoder.run();
+            if (blockIndex != null && !blockIndex.isComplete())
+                blockIndex.setComplete();
 
         } catch (Exception e)
         {
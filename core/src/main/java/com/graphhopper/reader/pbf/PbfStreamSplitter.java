@@ -23,6 +23,10 @@ public class PbfStreamSplitter implements Iterator<PbfRawBlob>
     private int dataBlockCount;
     private boolean eof;
     private PbfRawBlob nextBlob;
+    private long position;
+    private int blobCount;
+    private PbfBlockIndex blockIndex;
+    private int elementTypes = PbfBlockIndex.ALL;
 
     /**
      * Creates a new instance.
@@ -36,6 +40,43 @@ public class PbfStreamSplitter implements Iterator<PbfRawBlob>
         eof = false;
     }
 
+    /**
+     * Skips all blobs which do not contain any of the specified element types without reading
+     * their data. Only used if the index is complete.
+     * <p/>
+     * @param elementTypes bit mask of PbfBlockIndex.NODES, WAYS and RELATIONS
+     */
+    public PbfStreamSplitter setSkipBlobs( PbfBlockIndex blockIndex, int elementTypes )
+    {
+        this.blockIndex = blockIndex;
+        this.elementTypes = elementTypes;
+        return this;
+    }
+
+    private boolean skipBlob( long offset )
+    {
+        if (blockIndex == null || !blockIndex.isComplete())
+            return false;
+
+        if (blobCount >= blockIndex.getSize() || blockIndex.getOffset(blobCount) != offset)
+            throw new IllegalStateException("PBF file does not match block index at blob " + blobCount
+                    + ", offset " + offset);
+
+        return (blockIndex.getElementTypes(blobCount) & elementTypes) == 0;
+    }
+
+    private void skipFully( int length ) throws IOException
+    {
+        while (length > 0)
+        {
+            int skipped = dis.skipBytes(length);
+            if (skipped <= 0)
+                throw new EOFException("Unexpected end of PBF stream while skipping blob");
+
+            length -= skipped;
+        }
+    }
+
     private Fileformat.BlobHeader readHeader( int headerLength ) throws IOException
     {
         byte[] headerBuffer = new byte[headerLength];
@@ -59,33 +100,45 @@ public class PbfStreamSplitter implements Iterator<PbfRawBlob>
     {
         try
         {
-            // Read the length of the next header block. This is the only time
-            // we should expect to encounter an EOF exception. In all other
-            // cases it indicates a corrupt or truncated file.
-            int headerLength;
-            try
+            while (true)
             {
-                headerLength = dis.readInt();
-            } catch (EOFException e)
-            {
-                eof = true;
+                long offset = position;
+                // Read the length of the next header block. This is the only time
+                // we should expect to encounter an EOF exception. In all other
+                // cases it indicates a corrupt or truncated file.
+                int headerLength;
+                try
+                {
+                    headerLength = dis.readInt();
+                } catch (EOFException e)
+                {
+                    eof = true;
+                    return;
+                }
+
+                if (log.isLoggable(Level.FINER))
+                {
+                    log.finer("Reading header for blob " + dataBlockCount++);
+                }
+                Fileformat.BlobHeader blobHeader = readHeader(headerLength);
+                position += 4 + headerLength + blobHeader.getDatasize();
+                boolean skip = skipBlob(offset);
+                blobCount++;
+                if (skip)
+                {
+                    skipFully(blobHeader.getDatasize());
+                    continue;
+                }
+
+                if (log.isLoggable(Level.FINER))
+                {
+                    log.finer("Processing blob of type " + blobHeader.getType() + ".");
+                }
+                byte[] blobData = readRawBlob(blobHeader);
+
+                nextBlob = new PbfRawBlob(blobHeader.getType(), blobData, offset);
                 return;
             }
-
-            if (log.isLoggable(Level.FINER))
-            {
-                log.finer("Reading header for blob " + dataBlockCount++);
-            }
-            Fileformat.BlobHeader blobHeader = readHeader(headerLength);
-
-            if (log.isLoggable(Level.FINER))
-            {
-                log.finer("Processing blob of type " + blobHeader.getType() + ".");
-            }
-            byte[] blobData = readRawBlob(blobHeader);
-
-            nextBlob = new PbfRawBlob(blobHeader.getType(), blobData);
-
         } catch (IOException e)
         {
             throw new RuntimeException("Unable to get next blob from PBF stream.", e);
@@ -18,8 +18,7 @@
 package com.graphhopper.routing;
 
 import com.graphhopper.util.DistancePlaneProjection;
-import gnu.trove.map.TIntObjectMap;
-import gnu.trove.map.hash.TIntObjectHashMap;
+import com.graphhopper.coll.VersionedIntObjectMap;
 
 import java.util.PriorityQueue;
 
@@ -45,7 +44,7 @@ public class AStar extends AbstractRoutingAlgorithm
 {
     private WeightApproximator weightApprox;
     private int visitedCount;
-    private TIntObjectMap<AStarEdge> fromMap;
+    private VersionedIntObjectMap<AStarEdge> fromMap;
     private PriorityQueue<AStarEdge> prioQueueOpenSet;
     private AStarEdge currEdge;
     private int to1 = -1;
@@ -53,7 +52,6 @@ public class AStar extends AbstractRoutingAlgorithm
     public AStar( Graph g, FlagEncoder encoder, Weighting weighting, TraversalMode tMode )
     {
         super(g, encoder, weighting, tMode);
-        initCollections(1000);
         BeelineWeightApproximator defaultApprox = new BeelineWeightApproximator(nodeAccess, weighting);
         defaultApprox.setDistanceCalc(new DistancePlaneProjection());
         setApproximation(defaultApprox);
@@ -70,14 +68,24 @@ public class AStar extends AbstractRoutingAlgorithm
 
     protected void initCollections( int size )
     {
-        fromMap = new TIntObjectHashMap<AStarEdge>();
-        prioQueueOpenSet = new PriorityQueue<AStarEdge>(size);
+        AlgorithmCollections collections = getReusableCollections();
+        if (collections == null)
+        {
+            fromMap = new VersionedIntObjectMap<AStarEdge>();
+            prioQueueOpenSet = new PriorityQueue<AStarEdge>(size);
+        } else
+        {
+            collections.clear();
+            fromMap = collections.getFromMap();
+            prioQueueOpenSet = collections.getFromQueue();
+        }
     }
 
     @Override
     public Path calcPath( int from, int to )
     {
         checkAlreadyRun();
+        initCollections(1000);
         to1 = to;
         weightApprox.setGoalNode(to);
         currEdge = createEdgeEntry(from, 0);
@@ -99,6 +107,8 @@ public class AStar extends AbstractRoutingAlgorithm
             if (finished())
                 break;
 
+            checkAborted();
+
             EdgeIterator iter = explorer.setBaseNode(currVertex);
             while (iter.next())
             {
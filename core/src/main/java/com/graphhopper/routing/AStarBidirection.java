@@ -18,8 +18,7 @@
 package com.graphhopper.routing;
 
 import com.graphhopper.routing.util.*;
-import gnu.trove.map.TIntObjectMap;
-import gnu.trove.map.hash.TIntObjectHashMap;
+import com.graphhopper.coll.VersionedIntObjectMap;
 
 import java.util.PriorityQueue;
 
@@ -56,10 +55,10 @@ public class AStarBidirection extends AbstractBidirAlgo
 {
     private ConsistentWeightApproximator weightApprox;
     private PriorityQueue<AStarEdge> prioQueueOpenSetFrom;
-    private TIntObjectMap<AStarEdge> bestWeightMapFrom;
+    private VersionedIntObjectMap<AStarEdge> bestWeightMapFrom;
     private PriorityQueue<AStarEdge> prioQueueOpenSetTo;
-    private TIntObjectMap<AStarEdge> bestWeightMapTo;
-    private TIntObjectMap<AStarEdge> bestWeightMapOther;
+    private VersionedIntObjectMap<AStarEdge> bestWeightMapTo;
+    private VersionedIntObjectMap<AStarEdge> bestWeightMapOther;
     protected AStarEdge currFrom;
     protected AStarEdge currTo;
     protected PathBidirRef bestPath;
@@ -67,20 +66,36 @@ public class AStarBidirection extends AbstractBidirAlgo
     public AStarBidirection( Graph graph, FlagEncoder encoder, Weighting weighting, TraversalMode tMode )
     {
         super(graph, encoder, weighting, tMode);
-        int nodes = Math.max(20, graph.getNodes());
-        initCollections(nodes);
         BeelineWeightApproximator defaultApprox = new BeelineWeightApproximator(nodeAccess, weighting);
         defaultApprox.setDistanceCalc(new DistancePlaneProjection());
         setApproximation(defaultApprox);
     }
 
+    @Override
+    void initCollections()
+    {
+        initCollections(Math.max(20, graph.getNodes()));
+    }
+
     protected void initCollections( int size )
     {
-        prioQueueOpenSetFrom = new PriorityQueue<AStarEdge>(size / 10);
-        bestWeightMapFrom = new TIntObjectHashMap<AStarEdge>(size / 10);
+        AlgorithmCollections collections = getReusableCollections();
+        if (collections == null)
+        {
+            prioQueueOpenSetFrom = new PriorityQueue<AStarEdge>(size / 10);
+            bestWeightMapFrom = new VersionedIntObjectMap<AStarEdge>(size / 10);
+
+            prioQueueOpenSetTo = new PriorityQueue<AStarEdge>(size / 10);
+            bestWeightMapTo = new VersionedIntObjectMap<AStarEdge>(size / 10);
+        } else
+        {
+            collections.clear();
+            prioQueueOpenSetFrom = collections.getFromQueue();
+            bestWeightMapFrom = collections.getFromMap();
 
-        prioQueueOpenSetTo = new PriorityQueue<AStarEdge>(size / 10);
-        bestWeightMapTo = new TIntObjectHashMap<AStarEdge>(size / 10);
+            prioQueueOpenSetTo = collections.getToQueue();
+            bestWeightMapTo = collections.getToMap();
+        }
     }
 
     /**
@@ -92,6 +107,16 @@ public class AStarBidirection extends AbstractBidirAlgo
         return this;
     }
 
+    /**
+     * @param forwardApprox approximates the weight from a node to the goal node
+     * @param reverseApprox approximates the weight from the start node to a node
+     */
+    public AStarBidirection setApproximation( WeightApproximator forwardApprox, WeightApproximator reverseApprox )
+    {
+        weightApprox = new ConsistentWeightApproximator(forwardApprox, reverseApprox);
+        return this;
+    }
+
     @Override
     protected AStarEdge createEdgeEntry( int node, double dist )
     {
@@ -209,7 +234,7 @@ public class AStarBidirection extends AbstractBidirAlgo
     }
 
     private void fillEdges( AStarEdge currEdge, PriorityQueue<AStarEdge> prioQueueOpenSet,
-            TIntObjectMap<AStarEdge> shortestWeightMap, EdgeExplorer explorer, boolean reverse )
+            VersionedIntObjectMap<AStarEdge> shortestWeightMap, EdgeExplorer explorer, boolean reverse )
     {
 
         int currNode = currEdge.adjNode;
@@ -0,0 +1,74 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.BeelineWeightApproximator;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.util.WeightApproximator;
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.DistancePlaneProjection;
+
+/**
+ * The A* algorithm on the primitive arrays of DijkstraNative. The heap is ordered by the weight
+ * from the start plus the approximated weight to the goal.
+ * <p/>
+ * @see AStar for the object based version
+ * @author Peter Karich
+ */
+public class AStarNative extends DijkstraNative
+{
+    private WeightApproximator weightApprox;
+
+    public AStarNative( Graph g, FlagEncoder encoder, Weighting weighting, TraversalMode tMode )
+    {
+        super(g, encoder, weighting, tMode);
+        BeelineWeightApproximator defaultApprox = new BeelineWeightApproximator(nodeAccess, weighting);
+        defaultApprox.setDistanceCalc(new DistancePlaneProjection());
+        setApproximation(defaultApprox);
+    }
+
+    /**
+     * @param approx defines how distance to goal Node is approximated
+     */
+    public AStarNative setApproximation( WeightApproximator approx )
+    {
+        weightApprox = approx;
+        return this;
+    }
+
+    @Override
+    public Path calcPath( int from, int to )
+    {
+        weightApprox.setGoalNode(to);
+        return super.calcPath(from, to);
+    }
+
+    @Override
+    protected double calcHeapWeight( int node, double weight )
+    {
+        return weight + weightApprox.approximate(node);
+    }
+
+    @Override
+    public String getName()
+    {
+        return AlgorithmOptions.ASTAR_NATIVE;
+    }
+}
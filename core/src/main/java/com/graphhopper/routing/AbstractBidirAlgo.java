@@ -34,6 +34,11 @@ public abstract class AbstractBidirAlgo extends AbstractRoutingAlgorithm
     protected boolean finishedFrom;
     protected boolean finishedTo;
 
+    /**
+     * Allocates the collections of both searches or takes them from the reusable collections.
+     */
+    abstract void initCollections();
+
     abstract void initFrom( int from, double dist );
 
     abstract void initTo( int to, double dist );
@@ -55,6 +60,7 @@ public abstract class AbstractBidirAlgo extends AbstractRoutingAlgorithm
     public Path calcPath( int from, int to )
     {
         checkAlreadyRun();
+        initCollections();
         createAndInitPath();
         initFrom(from, 0);
         initTo(to, 0);
@@ -66,6 +72,7 @@ public abstract class AbstractBidirAlgo extends AbstractRoutingAlgorithm
     {
         while (!finished())
         {
+            checkAborted();
             if (!finishedFrom)
                 finishedFrom = !fillEdgesFrom();
 
@@ -39,6 +39,9 @@ public abstract class AbstractRoutingAlgorithm implements RoutingAlgorithm
     protected final FlagEncoder flagEncoder;
     protected final TraversalMode traversalMode;
     private boolean alreadyRun;
+    private AlgorithmCollections reusableCollections;
+    private RoutingBudget budget;
+    private int checkCounter;
 
     /**
      * @param graph specifies the graph where this algorithm will run on
@@ -63,6 +66,40 @@ public abstract class AbstractRoutingAlgorithm implements RoutingAlgorithm
         return this;
     }
 
+    /**
+     * Lets this algorithm use the specified collections instead of allocating new ones. Useful to
+     * avoid allocations if many queries are calculated in the same thread, see
+     * AlgorithmCollections.getThreadLocal
+     */
+    public AbstractRoutingAlgorithm setReusableCollections( AlgorithmCollections collections )
+    {
+        this.reusableCollections = collections;
+        return this;
+    }
+
+    /**
+     * @return the collections to be reused or null if the algorithm should allocate its own
+     */
+    protected AlgorithmCollections getReusableCollections()
+    {
+        return reusableCollections;
+    }
+
+    /**
+     * Limits the visited nodes and the time of this algorithm. If exceeded calcPath throws a
+     * RoutingAbortedException.
+     */
+    public AbstractRoutingAlgorithm setBudget( RoutingBudget budget )
+    {
+        this.budget = budget;
+        return this;
+    }
+
+    public RoutingBudget getBudget()
+    {
+        return budget;
+    }
+
     protected boolean accept( EdgeIterator iter, int prevOrNextEdgeId )
     {
         if (!traversalMode.hasUTurnSupport() && iter.getEdge() == prevOrNextEdgeId)
@@ -96,6 +133,36 @@ public abstract class AbstractRoutingAlgorithm implements RoutingAlgorithm
      */
     protected abstract boolean finished();
 
+    /**
+     * Called in the main loop of the search. Stops the search if the thread was interrupted, e.g.
+     * from the web module if the deadline of the request passed, or if the budget is exceeded.
+     * <p/>
+     * @throws RoutingAbortedException if the search should stop without a result
+     */
+    protected void checkAborted()
+    {
+        if (Thread.currentThread().isInterrupted())
+            throw new RoutingAbortedException(RoutingAbortedException.Reason.CANCELLED,
+                    "Routing thread was interrupted", getVisitedNodes());
+
+        if (budget == null)
+            return;
+
+        if (budget.isCancelled())
+            throw new RoutingAbortedException(RoutingAbortedException.Reason.CANCELLED,
+                    "Routing was cancelled", getVisitedNodes());
+
+        int visitedNodes = getVisitedNodes();
+        if (visitedNodes > budget.getMaxVisitedNodes())
+            throw new RoutingAbortedException(RoutingAbortedException.Reason.MAX_VISITED_NODES,
+                    "Routing exceeded the maximum of " + budget.getMaxVisitedNodes() + " visited nodes", visitedNodes);
+
+        // avoid the system call for every node
+        if ((++checkCounter & 0xFF) == 0 && budget.isTimeExceeded())
+            throw new RoutingAbortedException(RoutingAbortedException.Reason.TIMEOUT,
+                    "Routing exceeded the maximum time of " + budget.getMaxMillis() + "ms", visitedNodes);
+    }
+
     /**
      * To be overwritten from extending class. Should we make this available in RoutingAlgorithm
      * interface?
@@ -0,0 +1,123 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.coll.VersionedIntObjectMap;
+import com.graphhopper.storage.EdgeEntry;
+import java.util.PriorityQueue;
+
+/**
+ * Holds the maps and queues of the forward and backward search of a routing algorithm. An
+ * instance can be shared between subsequent algorithms of the same thread so that a query does
+ * not need to allocate and grow new collections. The maps are cleared via a version stamp, see
+ * VersionedIntObjectMap. Collections which grew beyond MAX_RETAINED_CAPACITY, e.g. for a long
+ * route, are replaced on clear so that a thread does not keep them forever.
+ * <p/>
+ * @author Peter Karich
+ */
+public class AlgorithmCollections
+{
+    private static final ThreadLocal<AlgorithmCollections> THREAD_LOCAL = new ThreadLocal<AlgorithmCollections>()
+    {
+        @Override
+        protected AlgorithmCollections initialValue()
+        {
+            return new AlgorithmCollections(1000);
+        }
+    };
+    // the capacity of a map with 64K entries
+    static final int MAX_RETAINED_CAPACITY = 1 << 17;
+    private final int initialSize;
+    private final int maxCapacity;
+    private VersionedIntObjectMap<EdgeEntry> fromMap;
+    private VersionedIntObjectMap<EdgeEntry> toMap;
+    private PriorityQueue<EdgeEntry> fromQueue;
+    private PriorityQueue<EdgeEntry> toQueue;
+
+    /**
+     * @return the instance of the current thread. It must not be used by two algorithms at the
+     * same time, which is the case as long as calcPath is called one after another.
+     */
+    public static AlgorithmCollections getThreadLocal()
+    {
+        return THREAD_LOCAL.get();
+    }
+
+    public AlgorithmCollections( int size )
+    {
+        initialSize = size;
+        fromMap = new VersionedIntObjectMap<EdgeEntry>(size);
+        toMap = new VersionedIntObjectMap<EdgeEntry>(size);
+        fromQueue = new PriorityQueue<EdgeEntry>(size);
+        toQueue = new PriorityQueue<EdgeEntry>(size);
+        maxCapacity = Math.max(MAX_RETAINED_CAPACITY, fromMap.getCapacity());
+    }
+
+    /**
+     * Removes the entries of the previous search. The capacity of the collections is kept unless
+     * it exceeds MAX_RETAINED_CAPACITY, then they are allocated again with the initial size.
+     */
+    public AlgorithmCollections clear()
+    {
+        // the queue holds at most as many entries as the map, so it is replaced with the map
+        if (fromMap.getCapacity() > maxCapacity)
+        {
+            fromMap = new VersionedIntObjectMap<EdgeEntry>(initialSize);
+            fromQueue = new PriorityQueue<EdgeEntry>(initialSize);
+        } else
+        {
+            fromMap.clear();
+            fromQueue.clear();
+        }
+
+        if (toMap.getCapacity() > maxCapacity)
+        {
+            toMap = new VersionedIntObjectMap<EdgeEntry>(initialSize);
+            toQueue = new PriorityQueue<EdgeEntry>(initialSize);
+        } else
+        {
+            toMap.clear();
+            toQueue.clear();
+        }
+        return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    <T extends EdgeEntry> VersionedIntObjectMap<T> getFromMap()
+    {
+        return (VersionedIntObjectMap) fromMap;
+    }
+
+    @SuppressWarnings("unchecked")
+    <T extends EdgeEntry> VersionedIntObjectMap<T> getToMap()
+    {
+        return (VersionedIntObjectMap) toMap;
+    }
+
+    @SuppressWarnings("unchecked")
+    <T extends EdgeEntry> PriorityQueue<T> getFromQueue()
+    {
+        return (PriorityQueue) fromQueue;
+    }
+
+    @SuppressWarnings("unchecked")
+    <T extends EdgeEntry> PriorityQueue<T> getToQueue()
+    {
+        return (PriorityQueue) toQueue;
+    }
+}
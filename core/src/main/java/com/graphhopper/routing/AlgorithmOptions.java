@@ -55,11 +55,21 @@ public class AlgorithmOptions
      * Bidirectional A*
      */
     public static final String ASTAR_BI = "astarbi";
+    /**
+     * Unidirectional Dijkstra storing the shortest path tree in primitive arrays
+     */
+    public static final String DIJKSTRA_NATIVE = "dijkstraNative";
+    /**
+     * Unidirectional A* storing the shortest path tree in primitive arrays
+     */
+    public static final String ASTAR_NATIVE = "astarNative";
     private String algorithm = DIJKSTRA_BI;
     private Weighting weighting;
     private TraversalMode traversalMode = TraversalMode.NODE_BASED;
     private FlagEncoder flagEncoder;
     private final PMap hints = new PMap(5);
+    private boolean reuseCollections = false;
+    private RoutingBudget budget;
 
     private AlgorithmOptions()
     {
@@ -109,6 +119,23 @@ public class AlgorithmOptions
         return flagEncoder;
     }
 
+    /**
+     * @return true if the algorithm should reuse the collections of the current thread instead
+     * of allocating new ones, see AlgorithmCollections.
+     */
+    public boolean isReuseCollections()
+    {
+        return reuseCollections;
+    }
+
+    /**
+     * @return the budget limiting the algorithm or null if unlimited
+     */
+    public RoutingBudget getBudget()
+    {
+        return budget;
+    }
+
     public PMap getHints()
     {
         return hints;
@@ -149,6 +176,8 @@ public class AlgorithmOptions
             b.traversalMode(opts.getTraversalMode());
         if (opts.weighting != null)
             b.weighting(opts.getWeighting());
+        b.reuseCollections(opts.isReuseCollections());
+        b.budget(opts.getBudget());
         return b;
     }
 
@@ -186,6 +215,18 @@ public class AlgorithmOptions
             return this;
         }
 
+        public Builder reuseCollections( boolean reuseCollections )
+        {
+            this.opts.reuseCollections = reuseCollections;
+            return this;
+        }
+
+        public Builder budget( RoutingBudget budget )
+        {
+            this.opts.budget = budget;
+            return this;
+        }
+
         public AlgorithmOptions build()
         {
             return opts;
@@ -17,11 +17,9 @@
  */
 package com.graphhopper.routing;
 
-import gnu.trove.map.TIntObjectMap;
-import gnu.trove.map.hash.TIntObjectHashMap;
-
 import java.util.PriorityQueue;
 
+import com.graphhopper.coll.VersionedIntObjectMap;
 import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.util.Weighting;
@@ -38,7 +36,7 @@ import com.graphhopper.util.EdgeIterator;
  */
 public class Dijkstra extends AbstractRoutingAlgorithm
 {
-    private TIntObjectMap<EdgeEntry> fromMap;
+    private VersionedIntObjectMap<EdgeEntry> fromMap;
     private PriorityQueue<EdgeEntry> fromHeap;
     private int visitedNodes;
     private int to = -1;
@@ -47,19 +45,28 @@ public class Dijkstra extends AbstractRoutingAlgorithm
     public Dijkstra( Graph g, FlagEncoder encoder, Weighting weighting, TraversalMode tMode )
     {
         super(g, encoder, weighting, tMode);
-        initCollections(1000);
     }
 
     protected void initCollections( int size )
     {
-        fromHeap = new PriorityQueue<EdgeEntry>(size);
-        fromMap = new TIntObjectHashMap<EdgeEntry>(size);
+        AlgorithmCollections collections = getReusableCollections();
+        if (collections == null)
+        {
+            fromHeap = new PriorityQueue<EdgeEntry>(size);
+            fromMap = new VersionedIntObjectMap<EdgeEntry>(size);
+        } else
+        {
+            collections.clear();
+            fromHeap = collections.getFromQueue();
+            fromMap = collections.getFromMap();
+        }
     }
 
     @Override
     public Path calcPath( int from, int to )
     {
         checkAlreadyRun();
+        initCollections(1000);
         this.to = to;
         currEdge = createEdgeEntry(from, 0);
         if (!traversalMode.isEdgeBased())
@@ -78,6 +85,8 @@ public class Dijkstra extends AbstractRoutingAlgorithm
             if (finished())
                 break;
 
+            checkAborted();
+
             int startNode = currEdge.adjNode;
             EdgeIterator iter = explorer.setBaseNode(startNode);
             while (iter.next())
@@ -17,11 +17,9 @@
  */
 package com.graphhopper.routing;
 
-import gnu.trove.map.TIntObjectMap;
-import gnu.trove.map.hash.TIntObjectHashMap;
-
 import java.util.PriorityQueue;
 
+import com.graphhopper.coll.VersionedIntObjectMap;
 import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.util.Weighting;
@@ -44,9 +42,9 @@ public class DijkstraBidirectionRef extends AbstractBidirAlgo
 {
     private PriorityQueue<EdgeEntry> openSetFrom;
     private PriorityQueue<EdgeEntry> openSetTo;
-    private TIntObjectMap<EdgeEntry> bestWeightMapFrom;
-    private TIntObjectMap<EdgeEntry> bestWeightMapTo;
-    protected TIntObjectMap<EdgeEntry> bestWeightMapOther;
+    private VersionedIntObjectMap<EdgeEntry> bestWeightMapFrom;
+    private VersionedIntObjectMap<EdgeEntry> bestWeightMapTo;
+    protected VersionedIntObjectMap<EdgeEntry> bestWeightMapOther;
     protected EdgeEntry currFrom;
     protected EdgeEntry currTo;
     protected PathBidirRef bestPath;
@@ -55,16 +53,33 @@ public class DijkstraBidirectionRef extends AbstractBidirAlgo
     public DijkstraBidirectionRef( Graph graph, FlagEncoder encoder, Weighting weighting, TraversalMode tMode )
     {
         super(graph, encoder, weighting, tMode);
+    }
+
+    @Override
+    void initCollections()
+    {
         initCollections(1000);
     }
 
     protected void initCollections( int nodes )
     {
-        openSetFrom = new PriorityQueue<EdgeEntry>(nodes / 10);
-        bestWeightMapFrom = new TIntObjectHashMap<EdgeEntry>(nodes / 10);
+        AlgorithmCollections collections = getReusableCollections();
+        if (collections == null)
+        {
+            openSetFrom = new PriorityQueue<EdgeEntry>(nodes / 10);
+            bestWeightMapFrom = new VersionedIntObjectMap<EdgeEntry>(nodes / 10);
 
-        openSetTo = new PriorityQueue<EdgeEntry>(nodes / 10);
-        bestWeightMapTo = new TIntObjectHashMap<EdgeEntry>(nodes / 10);
+            openSetTo = new PriorityQueue<EdgeEntry>(nodes / 10);
+            bestWeightMapTo = new VersionedIntObjectMap<EdgeEntry>(nodes / 10);
+        } else
+        {
+            collections.clear();
+            openSetFrom = collections.getFromQueue();
+            bestWeightMapFrom = collections.getFromMap();
+
+            openSetTo = collections.getToQueue();
+            bestWeightMapTo = collections.getToMap();
+        }
     }
 
     @Override
@@ -178,7 +193,7 @@ public class DijkstraBidirectionRef extends AbstractBidirAlgo
     }
 
     void fillEdges( EdgeEntry currEdge, PriorityQueue<EdgeEntry> prioQueue,
-            TIntObjectMap<EdgeEntry> shortestWeightMap, EdgeExplorer explorer, boolean reverse )
+            VersionedIntObjectMap<EdgeEntry> shortestWeightMap, EdgeExplorer explorer, boolean reverse )
     {
         int currNode = currEdge.adjNode;
         EdgeIterator iter = explorer.setBaseNode(currNode);
@@ -258,17 +273,17 @@ public class DijkstraBidirectionRef extends AbstractBidirAlgo
         return AlgorithmOptions.DIJKSTRA_BI;
     }
 
-    TIntObjectMap<EdgeEntry> getBestFromMap()
+    VersionedIntObjectMap<EdgeEntry> getBestFromMap()
     {
         return bestWeightMapFrom;
     }
 
-    TIntObjectMap<EdgeEntry> getBestToMap()
+    VersionedIntObjectMap<EdgeEntry> getBestToMap()
     {
         return bestWeightMapTo;
     }
 
-    void setBestOtherMap( TIntObjectMap<EdgeEntry> other )
+    void setBestOtherMap( VersionedIntObjectMap<EdgeEntry> other )
     {
         bestWeightMapOther = other;
     }
@@ -0,0 +1,243 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.coll.IntDoubleBinHeap;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import gnu.trove.map.hash.TIntIntHashMap;
+import java.util.Arrays;
+
+/**
+ * A Dijkstra implementation which avoids the EdgeEntry objects of Dijkstra. Every visited
+ * traversal id gets a slot and the shortest path tree is stored in primitive arrays indexed by this
+ * slot. The heap is an IntDoubleBinHeap of slots where outdated entries are skipped when polled
+ * instead of being removed on a decrease of the weight.
+ * <p/>
+ * @see Dijkstra for the object based version
+ * @author Peter Karich
+ */
+public class DijkstraNative extends AbstractRoutingAlgorithm
+{
+    private static final int NO_SLOT = -1;
+    private TIntIntHashMap traversalIdToSlot;
+    private IntDoubleBinHeap heap;
+    private int[] adjNodes;
+    private int[] edges;
+    private int[] parents;
+    private double[] weights;
+    private boolean[] settled;
+    private int slots;
+    private int visitedNodes;
+    private int to = -1;
+    private int currSlot = NO_SLOT;
+
+    public DijkstraNative( Graph g, FlagEncoder encoder, Weighting weighting, TraversalMode tMode )
+    {
+        super(g, encoder, weighting, tMode);
+    }
+
+    protected void initCollections( int size )
+    {
+        traversalIdToSlot = new TIntIntHashMap(size, 0.5f, -1, NO_SLOT);
+        heap = new IntDoubleBinHeap(size);
+        adjNodes = new int[size];
+        edges = new int[size];
+        parents = new int[size];
+        weights = new double[size];
+        settled = new boolean[size];
+        slots = 0;
+    }
+
+    @Override
+    public Path calcPath( int from, int to )
+    {
+        checkAlreadyRun();
+        initCollections(1000);
+        this.to = to;
+        currSlot = addSlot(from, EdgeIterator.NO_EDGE, NO_SLOT, 0);
+        if (!traversalMode.isEdgeBased())
+        {
+            traversalIdToSlot.put(from, currSlot);
+        }
+        return runAlgo();
+    }
+
+    private Path runAlgo()
+    {
+        EdgeExplorer explorer = outEdgeExplorer;
+        while (true)
+        {
+            visitedNodes++;
+            settled[currSlot] = true;
+            if (finished())
+                break;
+
+            checkAborted();
+
+            int currEdge = edges[currSlot];
+            double currWeight = weights[currSlot];
+            EdgeIterator iter = explorer.setBaseNode(adjNodes[currSlot]);
+            while (iter.next())
+            {
+                if (!accept(iter, currEdge))
+                    continue;
+
+                int traversalId = traversalMode.createTraversalId(iter, false);
+                double tmpWeight = weighting.calcWeight(iter, false, currEdge) + currWeight;
+                if (Double.isInfinite(tmpWeight))
+                    continue;
+
+                int slot = traversalIdToSlot.get(traversalId);
+                if (slot == NO_SLOT)
+                {
+                    slot = addSlot(iter.getAdjNode(), iter.getEdge(), currSlot, tmpWeight);
+                    traversalIdToSlot.put(traversalId, slot);
+                } else if (!settled[slot] && weights[slot] > tmpWeight)
+                {
+                    edges[slot] = iter.getEdge();
+                    parents[slot] = currSlot;
+                    weights[slot] = tmpWeight;
+                } else
+                    continue;
+
+                // the old heap entry of the slot stays and is skipped when polled
+                heap.insert_(calcHeapWeight(iter.getAdjNode(), tmpWeight), slot);
+            }
+
+            if (!pollSlot())
+                return createEmptyPath();
+        }
+        return extractPath();
+    }
+
+    /**
+     * @return the weight used to order the heap. Dijkstra uses the weight from the start.
+     */
+    protected double calcHeapWeight( int node, double weight )
+    {
+        return weight;
+    }
+
+    private boolean pollSlot()
+    {
+        while (!heap.isEmpty())
+        {
+            int slot = heap.poll_element();
+            if (!settled[slot])
+            {
+                currSlot = slot;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int addSlot( int adjNode, int edge, int parent, double weight )
+    {
+        if (slots == adjNodes.length)
+        {
+            int newSize = slots * 2;
+            adjNodes = Arrays.copyOf(adjNodes, newSize);
+            edges = Arrays.copyOf(edges, newSize);
+            parents = Arrays.copyOf(parents, newSize);
+            weights = Arrays.copyOf(weights, newSize);
+            settled = Arrays.copyOf(settled, newSize);
+        }
+
+        adjNodes[slots] = adjNode;
+        edges[slots] = edge;
+        parents[slots] = parent;
+        weights[slots] = weight;
+        settled[slots] = false;
+        return slots++;
+    }
+
+    @Override
+    protected boolean finished()
+    {
+        return adjNodes[currSlot] == to;
+    }
+
+    @Override
+    protected Path extractPath()
+    {
+        if (currSlot == NO_SLOT || !finished())
+            return createEmptyPath();
+
+        return new PathSlots(graph, flagEncoder, adjNodes, edges, parents, currSlot).
+                setWeight(weights[currSlot]).extract();
+    }
+
+    @Override
+    public String getName()
+    {
+        return AlgorithmOptions.DIJKSTRA_NATIVE;
+    }
+
+    @Override
+    public int getVisitedNodes()
+    {
+        return visitedNodes;
+    }
+
+    /**
+     * Extracts the path from the slot arrays of the shortest path tree.
+     */
+    static class PathSlots extends Path
+    {
+        private final int[] adjNodes;
+        private final int[] edges;
+        private final int[] parents;
+        private final int endSlot;
+
+        PathSlots( Graph g, FlagEncoder encoder, int[] adjNodes, int[] edges, int[] parents, int endSlot )
+        {
+            super(g, encoder);
+            this.adjNodes = adjNodes;
+            this.edges = edges;
+            this.parents = parents;
+            this.endSlot = endSlot;
+        }
+
+        @Override
+        public Path extract()
+        {
+            if (isFound())
+                throw new IllegalStateException("Extract can only be called once");
+
+            extractSW.start();
+            int slot = endSlot;
+            setEndNode(adjNodes[slot]);
+            while (EdgeIterator.Edge.isValid(edges[slot]))
+            {
+                processEdge(edges[slot], adjNodes[slot]);
+                slot = parents[slot];
+            }
+
+            setFromNode(adjNodes[slot]);
+            reverseOrder();
+            extractSW.stop();
+            return setFound(true);
+        }
+    }
+}
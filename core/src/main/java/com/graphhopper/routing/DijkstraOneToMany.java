@@ -161,6 +161,7 @@ public class DijkstraOneToMany extends AbstractRoutingAlgorithm
         while (true)
         {
             visitedNodes++;
+            checkAborted();
             EdgeIterator iter = outEdgeExplorer.setBaseNode(currNode);
             while (iter.next())
             {
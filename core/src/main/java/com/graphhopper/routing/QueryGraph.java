@@ -275,16 +275,7 @@ public class QueryGraph implements Graph
                 return 0;
             } else if (isVirtualEdge(edgeFrom) || isVirtualEdge(edgeTo))
             {
-                if (isVirtualEdge(edgeFrom))
-                {
-                    edgeFrom = queryResults.get((edgeFrom - mainEdges) / 4).getClosestEdge().getEdge();
-                }
-                if (isVirtualEdge(edgeTo))
-                {
-                    edgeTo = queryResults.get((edgeTo - mainEdges) / 4).getClosestEdge().getEdge();
-                }
-                return mainTurnExtension.getTurnCostFlags(edgeFrom, nodeVia, edgeTo);
-
+                return mainTurnExtension.getTurnCostFlags(getOriginalEdge(edgeFrom), nodeVia, getOriginalEdge(edgeTo));
             } else
             {
                 return mainTurnExtension.getTurnCostFlags(edgeFrom, nodeVia, edgeTo);
@@ -342,6 +333,18 @@ public class QueryGraph implements Graph
         return edgeId >= mainEdges;
     }
 
+    /**
+     * @return the id of the edge in the main graph the specified virtual edge was created from or
+     * the specified id if the edge is not virtual
+     */
+    public int getOriginalEdge( int edgeId )
+    {
+        if (!isVirtualEdge(edgeId))
+            return edgeId;
+
+        return queryResults.get((edgeId - mainEdges) / 4).getClosestEdge().getEdge();
+    }
+
     private final NodeAccess nodeAccess = new NodeAccess()
     {
         @Override
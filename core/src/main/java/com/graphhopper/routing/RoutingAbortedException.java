@@ -0,0 +1,54 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+/**
+ * Thrown if a routing algorithm was stopped before it finished, e.g. because the RoutingBudget was
+ * exceeded. GraphHopper.route reports it as error of the GHResponse.
+ * <p/>
+ * @author Peter Karich
+ */
+public class RoutingAbortedException extends RuntimeException
+{
+    public enum Reason
+    {
+        CANCELLED, MAX_VISITED_NODES, TIMEOUT
+    }
+    private final Reason reason;
+    private final int visitedNodes;
+
+    public RoutingAbortedException( Reason reason, String message, int visitedNodes )
+    {
+        super(message);
+        this.reason = reason;
+        this.visitedNodes = visitedNodes;
+    }
+
+    public Reason getReason()
+    {
+        return reason;
+    }
+
+    /**
+     * @return the nodes visited until the algorithm was stopped
+     */
+    public int getVisitedNodes()
+    {
+        return visitedNodes;
+    }
+}
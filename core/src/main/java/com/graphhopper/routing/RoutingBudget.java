@@ -0,0 +1,84 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+/**
+ * Limits the work of one route request to enforce response times on a server. The time is measured
+ * from the creation of this object so one instance can be shared by all algorithms of a request
+ * (e.g. for via points), whereas the maximum visited nodes apply to every algorithm separately. A
+ * request can be cancelled from another thread via cancel().
+ * <p/>
+ * @author Peter Karich
+ */
+public class RoutingBudget
+{
+    private final int maxVisitedNodes;
+    private final long maxMillis;
+    private final long deadline;
+    private volatile boolean cancelled;
+
+    /**
+     * @param maxVisitedNodes the maximum number of nodes an algorithm is allowed to visit
+     * @param maxMillis the maximum time in milliseconds. Use 0 if the time should not be limited.
+     */
+    public RoutingBudget( int maxVisitedNodes, long maxMillis )
+    {
+        if (maxVisitedNodes <= 0)
+            throw new IllegalArgumentException("maxVisitedNodes has to be positive " + maxVisitedNodes);
+        if (maxMillis < 0)
+            throw new IllegalArgumentException("maxMillis cannot be negative " + maxMillis);
+
+        this.maxVisitedNodes = maxVisitedNodes;
+        this.maxMillis = maxMillis;
+        this.deadline = maxMillis == 0 ? Long.MAX_VALUE : System.currentTimeMillis() + maxMillis;
+    }
+
+    public int getMaxVisitedNodes()
+    {
+        return maxVisitedNodes;
+    }
+
+    public long getMaxMillis()
+    {
+        return maxMillis;
+    }
+
+    public boolean isTimeExceeded()
+    {
+        return System.currentTimeMillis() > deadline;
+    }
+
+    /**
+     * Stops all algorithms using this budget as soon as possible.
+     */
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    public boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "maxVisitedNodes:" + maxVisitedNodes + ", maxMillis:" + maxMillis + ", cancelled:" + cancelled;
+    }
+}
@@ -0,0 +1,414 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.AbstractRoutingAlgorithm;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.QueryGraph;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.util.TurnWeighting;
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.storage.EdgeEntry;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.LevelGraph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import gnu.trove.iterator.TIntObjectIterator;
+import gnu.trove.list.TIntList;
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import java.util.PriorityQueue;
+
+/**
+ * Calculates the best path with turn costs on the turn graph created by PrepareEdgeBasedCH. The
+ * virtual nodes of the query graph are not part of the turn graph, so first two small local
+ * searches explore them from the start and to the end node until the nodes of the original graph
+ * are reached. The directed edges into these nodes are the start and end nodes in the turn graph,
+ * where one upward search from all start nodes and one from all end nodes find the best meeting
+ * node. Like for the node based CH each upward search stops once its smallest weight is not
+ * smaller than the best weight found. The resulting path is unpacked and translated back into
+ * edges of the query graph in extractPath.
+ * <p/>
+ * @see PrepareEdgeBasedCH#createAlgo
+ * @author Peter Karich
+ */
+public class EdgeBasedCHAlgorithm extends AbstractRoutingAlgorithm
+{
+    private final PrepareEdgeBasedCH prepare;
+    private final TurnWeighting turnWeighting;
+    private final Weighting prepareWeighting;
+    private final LevelGraph turnGraph;
+    private final EdgeExplorer turnOutExplorer;
+    private final EdgeExplorer turnInExplorer;
+    private final int mainNodes;
+    private int visitedNodes;
+    // the start and end nodes of the turn graph with the weight of the local searches
+    private TIntObjectMap<EdgeEntry> fromEntries;
+    private TIntObjectMap<EdgeEntry> toEntries;
+    // the best path which uses only virtual nodes
+    private EdgeEntry virtualEntry;
+    private TIntObjectMap<SearchEntry> fromTree;
+    private TIntObjectMap<SearchEntry> toTree;
+    private PriorityQueue<SearchEntry> fromQueue;
+    private PriorityQueue<SearchEntry> toQueue;
+    private SearchEntry bestFrom;
+    private SearchEntry bestTo;
+    private double bestWeight = Double.MAX_VALUE;
+    private boolean finishedFrom;
+    private boolean finishedTo;
+
+    public EdgeBasedCHAlgorithm( Graph graph, PrepareEdgeBasedCH prepare, TurnWeighting weighting, TraversalMode tMode )
+    {
+        super(graph, prepare.getEncoder(), weighting, tMode);
+        if (!tMode.isEdgeBased())
+            throw new IllegalArgumentException("Edge based contraction hierarchies require an edge based traversal mode but was " + tMode);
+
+        this.prepare = prepare;
+        this.turnWeighting = weighting;
+        prepareWeighting = prepare.getPrepareWeighting();
+        turnGraph = prepare.getTurnGraph();
+        turnOutExplorer = turnGraph.createEdgeExplorer(new DefaultEdgeFilter(flagEncoder, false, true));
+        turnInExplorer = turnGraph.createEdgeExplorer(new DefaultEdgeFilter(flagEncoder, true, false));
+        mainNodes = prepare.getGraph().getNodes();
+    }
+
+    @Override
+    public Path calcPath( int from, int to )
+    {
+        checkAlreadyRun();
+        if (from == to)
+            return new Path(graph, flagEncoder).setWeight(0).setEdgeEntry(createEdgeEntry(from, 0)).extract();
+
+        fromEntries = new TIntObjectHashMap<EdgeEntry>();
+        virtualEntry = searchFrom(from, to, fromEntries);
+        toEntries = new TIntObjectHashMap<EdgeEntry>();
+        searchTo(to, toEntries);
+
+        fromTree = new TIntObjectHashMap<SearchEntry>();
+        fromQueue = new PriorityQueue<SearchEntry>();
+        initUpward(fromEntries, fromTree, fromQueue);
+        toTree = new TIntObjectHashMap<SearchEntry>();
+        toQueue = new PriorityQueue<SearchEntry>();
+        initUpward(toEntries, toTree, toQueue);
+        runAlgo();
+        return extractPath();
+    }
+
+    void runAlgo()
+    {
+        while (!finished())
+        {
+            checkAborted();
+            if (!finishedFrom)
+                finishedFrom = !fillEdgesUpward(fromQueue, fromTree, toTree, turnOutExplorer, false);
+
+            if (!finishedTo)
+                finishedTo = !fillEdgesUpward(toQueue, toTree, fromTree, turnInExplorer, true);
+        }
+    }
+
+    @Override
+    protected boolean finished()
+    {
+        // like for the node based CH both upward searches have to be finished, a direction is
+        // finished if its smallest weight is not smaller than the best found weight
+        return finishedFrom && finishedTo;
+    }
+
+    /**
+     * Translates the best path of the turn graph back into edges of the query graph and compares
+     * it with the path which only uses virtual nodes.
+     */
+    @Override
+    protected Path extractPath()
+    {
+        EdgeEntry bestEntry = virtualEntry;
+        double weight = virtualEntry == null ? Double.MAX_VALUE : virtualEntry.weight;
+        if (bestFrom != null)
+        {
+            Path4CH turnPath = new Path4CH(turnGraph, flagEncoder);
+            turnPath.setEdgeEntryTo(bestTo);
+            turnPath.setEdgeEntry(bestFrom);
+            TIntList turnNodes = turnPath.extract().calcNodes();
+            int lastTurnNode = turnNodes.get(turnNodes.size() - 1);
+
+            // the weights in the turn graph are rounded, so recalculate the weight of the path
+            EdgeEntry entry = fromEntries.get(turnNodes.get(0));
+            double turnWeight = entry.weight + toEntries.get(lastTurnNode).weight;
+            for (int i = 1; i < turnNodes.size(); i++)
+            {
+                int turnNode = turnNodes.get(i);
+                turnWeight += prepare.calcTurnEdgeWeight(turnNodes.get(i - 1), turnNode);
+                entry = appendEdge(entry, turnNode >>> 1, prepare.getAdjNode(turnNode));
+            }
+
+            EdgeEntry toEntry = toEntries.get(lastTurnNode).parent;
+            while (EdgeIterator.Edge.isValid(toEntry.edge))
+            {
+                entry = appendEdge(entry, toEntry.edge, toEntry.parent.adjNode);
+                toEntry = toEntry.parent;
+            }
+
+            if (turnWeight < weight)
+            {
+                weight = turnWeight;
+                bestEntry = entry;
+            }
+        }
+
+        if (bestEntry == null)
+            return createEmptyPath();
+
+        return new Path(graph, flagEncoder).setWeight(weight).setEdgeEntry(bestEntry).extract();
+    }
+
+    private EdgeEntry appendEdge( EdgeEntry entry, int edge, int adjNode )
+    {
+        EdgeEntry next = new EdgeEntry(edge, adjNode, 0);
+        next.parent = entry;
+        return next;
+    }
+
+    /**
+     * Explores the virtual nodes around the start node. Every edge into a node of the original
+     * graph ends in a start node of the turn graph and its weight includes the weight of this edge.
+     * <p/>
+     * @return the entry of the end node if it was reached via virtual nodes or null
+     */
+    private EdgeEntry searchFrom( int from, int to, TIntObjectMap<EdgeEntry> entries )
+    {
+        TIntObjectMap<SearchEntry> shortestWeightMap = new TIntObjectHashMap<SearchEntry>();
+        PriorityQueue<SearchEntry> prioQueue = new PriorityQueue<SearchEntry>();
+        prioQueue.add(new SearchEntry(EdgeIterator.NO_EDGE, from, 0));
+        SearchEntry currEdge;
+        while ((currEdge = pollValid(prioQueue)) != null)
+        {
+            checkAborted();
+            visitedNodes++;
+            // a longer path cannot pass the end node
+            if (currEdge.adjNode == to)
+                return currEdge;
+
+            EdgeIterator iter = outEdgeExplorer.setBaseNode(currEdge.adjNode);
+            while (iter.next())
+            {
+                if (!accept(iter, currEdge.edge))
+                    continue;
+
+                double tmpWeight = turnWeighting.calcWeight(iter, false, currEdge.edge) + currEdge.weight;
+                if (Double.isInfinite(tmpWeight))
+                    continue;
+
+                int adjNode = iter.getAdjNode();
+                if (isVirtualNode(adjNode))
+                {
+                    relax(iter, currEdge, tmpWeight, traversalMode.createTraversalId(iter, false), shortestWeightMap, prioQueue);
+                    continue;
+                }
+
+                int turnNode = prepare.createTurnNode(getOriginalEdge(iter.getEdge()), adjNode);
+                EdgeEntry ee = entries.get(turnNode);
+                if (ee == null || ee.weight > tmpWeight)
+                {
+                    ee = new EdgeEntry(iter.getEdge(), adjNode, tmpWeight);
+                    ee.parent = currEdge;
+                    entries.put(turnNode, ee);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Explores the virtual nodes around the end node in reverse direction. For every reached node of
+     * the original graph its incoming edges are end nodes of the turn graph, the weight includes
+     * the turn costs at this node but not the weight of the incoming edge.
+     */
+    private void searchTo( int to, TIntObjectMap<EdgeEntry> entries )
+    {
+        TIntObjectMap<SearchEntry> shortestWeightMap = new TIntObjectHashMap<SearchEntry>();
+        PriorityQueue<SearchEntry> prioQueue = new PriorityQueue<SearchEntry>();
+        prioQueue.add(new SearchEntry(EdgeIterator.NO_EDGE, to, 0));
+        SearchEntry currEdge;
+        while ((currEdge = pollValid(prioQueue)) != null)
+        {
+            checkAborted();
+            visitedNodes++;
+            int currNode = currEdge.adjNode;
+            boolean virtual = isVirtualNode(currNode);
+            EdgeIterator iter = inEdgeExplorer.setBaseNode(currNode);
+            while (iter.next())
+            {
+                if (!accept(iter, currEdge.edge))
+                    continue;
+
+                if (virtual)
+                {
+                    double tmpWeight = turnWeighting.calcWeight(iter, true, currEdge.edge) + currEdge.weight;
+                    if (!Double.isInfinite(tmpWeight))
+                        relax(iter, currEdge, tmpWeight, traversalMode.createTraversalId(iter, true), shortestWeightMap, prioQueue);
+
+                    continue;
+                }
+
+                double tmpWeight = calcTurnWeight(iter.getEdge(), currNode, currEdge.edge) + currEdge.weight;
+                if (Double.isInfinite(tmpWeight))
+                    continue;
+
+                int turnNode = prepare.createTurnNode(getOriginalEdge(iter.getEdge()), currNode);
+                EdgeEntry ee = entries.get(turnNode);
+                if (ee == null || ee.weight > tmpWeight)
+                {
+                    ee = new EdgeEntry(iter.getEdge(), currNode, tmpWeight);
+                    ee.parent = currEdge;
+                    entries.put(turnNode, ee);
+                }
+            }
+        }
+    }
+
+    /**
+     * Instead of removing an improved entry from the queue, which is linear in its size, the old
+     * entry is marked as deleted and skipped when polled.
+     */
+    private void relax( EdgeIterator iter, SearchEntry currEdge, double tmpWeight, int key,
+            TIntObjectMap<SearchEntry> shortestWeightMap, PriorityQueue<SearchEntry> prioQueue )
+    {
+        SearchEntry ee = shortestWeightMap.get(key);
+        if (ee != null && ee.weight <= tmpWeight)
+            return;
+
+        if (ee != null)
+            ee.deleted = true;
+
+        ee = new SearchEntry(iter.getEdge(), iter.getAdjNode(), tmpWeight);
+        ee.parent = currEdge;
+        shortestWeightMap.put(key, ee);
+        prioQueue.add(ee);
+    }
+
+    /**
+     * @return the entry with the smallest weight which is not deleted or null if there is none
+     */
+    private SearchEntry pollValid( PriorityQueue<SearchEntry> prioQueue )
+    {
+        SearchEntry entry;
+        while ((entry = prioQueue.poll()) != null)
+        {
+            if (!entry.deleted)
+                return entry;
+        }
+        return null;
+    }
+
+    private void initUpward( TIntObjectMap<EdgeEntry> entries, TIntObjectMap<SearchEntry> shortestWeightMap,
+            PriorityQueue<SearchEntry> prioQueue )
+    {
+        TIntObjectIterator<EdgeEntry> entryIter = entries.iterator();
+        while (entryIter.hasNext())
+        {
+            entryIter.advance();
+            SearchEntry startEntry = new SearchEntry(EdgeIterator.NO_EDGE, entryIter.key(), entryIter.value().weight);
+            shortestWeightMap.put(entryIter.key(), startEntry);
+            prioQueue.add(startEntry);
+        }
+    }
+
+    /**
+     * Settles the next node of one upward search in the turn graph and updates the best meeting
+     * node if the other search already reached it.
+     * <p/>
+     * @return false if this search is finished
+     */
+    private boolean fillEdgesUpward( PriorityQueue<SearchEntry> prioQueue, TIntObjectMap<SearchEntry> shortestWeightMap,
+            TIntObjectMap<SearchEntry> otherWeightMap, EdgeExplorer explorer, boolean reverse )
+    {
+        SearchEntry currEdge = pollValid(prioQueue);
+        if (currEdge == null || currEdge.weight >= bestWeight)
+            return false;
+
+        visitedNodes++;
+        SearchEntry otherEdge = otherWeightMap.get(currEdge.adjNode);
+        if (otherEdge != null && currEdge.weight + otherEdge.weight < bestWeight)
+        {
+            bestWeight = currEdge.weight + otherEdge.weight;
+            bestFrom = reverse ? otherEdge : currEdge;
+            bestTo = reverse ? currEdge : otherEdge;
+        }
+
+        EdgeIterator iter = explorer.setBaseNode(currEdge.adjNode);
+        while (iter.next())
+        {
+            double tmpWeight = prepareWeighting.calcWeight(iter, reverse, currEdge.edge) + currEdge.weight;
+            if (!Double.isInfinite(tmpWeight))
+                relax(iter, currEdge, tmpWeight, iter.getAdjNode(), shortestWeightMap, prioQueue);
+        }
+        return true;
+    }
+
+    /**
+     * @return the turn costs like in TurnWeighting.calcWeight but without the weight of the edge
+     */
+    private double calcTurnWeight( int inEdge, int viaNode, int outEdge )
+    {
+        if (!EdgeIterator.Edge.isValid(outEdge))
+            return 0;
+
+        double turnWeight = turnWeighting.calcTurnWeight(inEdge, viaNode, outEdge);
+        if (turnWeight == 0 && inEdge == outEdge)
+            return turnWeighting.getDefaultUTurnCost();
+
+        return turnWeight;
+    }
+
+    private boolean isVirtualNode( int node )
+    {
+        return node >= mainNodes;
+    }
+
+    private int getOriginalEdge( int edge )
+    {
+        if (graph instanceof QueryGraph)
+            return ((QueryGraph) graph).getOriginalEdge(edge);
+
+        return edge;
+    }
+
+    @Override
+    public int getVisitedNodes()
+    {
+        return visitedNodes;
+    }
+
+    @Override
+    public String getName()
+    {
+        return "dijkstrabiEdgeCH";
+    }
+
+    private static class SearchEntry extends EdgeEntry
+    {
+        boolean deleted;
+
+        SearchEntry( int edge, int adjNode, double weight )
+        {
+            super(edge, adjNode, weight);
+        }
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.GHMatrixResponse;
+import com.graphhopper.routing.RoutingAbortedException;
+import com.graphhopper.routing.RoutingBudget;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.storage.EdgeEntry;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import gnu.trove.iterator.TIntObjectIterator;
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Calculates the distances and times from many origins to many destinations on a graph prepared
+ * with contraction hierarchies. Instead of one bidirectional search per pair it does one backward
+ * upward search per destination and stores the reached nodes in buckets. Then one forward upward
+ * search per origin scans the buckets of every reached node, so only N+M searches are necessary
+ * for a NxM matrix. The weight and distance of every pair are summed up in the searches as
+ * shortcuts store both. Only the time requires to unpack the best path of every pair, which is
+ * O(N*M*pathLength) and can be disabled via setCalcTimes.
+ * <p/>
+ * See 'Computing Many-to-Many Shortest Paths Using Highway Hierarchies' by Knopp et al.
+ * <p/>
+ * @see PrepareContractionHierarchies#createManyToMany(Graph)
+ * @author Peter Karich
+ */
+public class ManyToManyCH
+{
+    private final Graph graph;
+    private final FlagEncoder flagEncoder;
+    private final Weighting weighting;
+    private final TraversalMode traversalMode;
+    private final EdgeExplorer outEdgeExplorer;
+    private final EdgeExplorer inEdgeExplorer;
+    private EdgeFilter additionalEdgeFilter;
+    private boolean calcTimes = true;
+    private RoutingBudget budget;
+    private int visitedNodes;
+    private int checkCounter;
+
+    public ManyToManyCH( Graph graph, FlagEncoder encoder, Weighting weighting, TraversalMode tMode )
+    {
+        if (tMode.isEdgeBased())
+            throw new IllegalArgumentException("Matrix calculation does not support the edge based traversal mode " + tMode);
+
+        this.graph = graph;
+        this.flagEncoder = encoder;
+        this.weighting = weighting;
+        this.traversalMode = tMode;
+        outEdgeExplorer = graph.createEdgeExplorer(new DefaultEdgeFilter(flagEncoder, false, true));
+        inEdgeExplorer = graph.createEdgeExplorer(new DefaultEdgeFilter(flagEncoder, true, false));
+    }
+
+    public ManyToManyCH setEdgeFilter( EdgeFilter additionalEdgeFilter )
+    {
+        this.additionalEdgeFilter = additionalEdgeFilter;
+        return this;
+    }
+
+    /**
+     * @param calcTimes false if the times are not necessary. Then the paths are not unpacked, the
+     * times of the response are 0 and the distances are summed from the shortcuts which store them
+     * in millimeter, so they can differ by some millimeters.
+     */
+    public ManyToManyCH setCalcTimes( boolean calcTimes )
+    {
+        this.calcTimes = calcTimes;
+        return this;
+    }
+
+    /**
+     * Limits the time of the matrix calculation and the visited nodes of every search. If exceeded
+     * calcMatrix throws a RoutingAbortedException.
+     */
+    public ManyToManyCH setBudget( RoutingBudget budget )
+    {
+        this.budget = budget;
+        return this;
+    }
+
+    /**
+     * Fills the specified response with the matrix from every node in fromNodes to every node in
+     * toNodes. The response has to be initialized with the correct size.
+     */
+    public void calcMatrix( int[] fromNodes, int[] toNodes, GHMatrixResponse rsp )
+    {
+        visitedNodes = 0;
+        // the bucket of a node contains the entries of all backward searches which reached it
+        TIntObjectMap<List<BucketEntry>> buckets = new TIntObjectHashMap<List<BucketEntry>>();
+        for (int toIndex = 0; toIndex < toNodes.length; toIndex++)
+        {
+            TIntObjectIterator<MatrixEntry> iter = search(toNodes[toIndex], inEdgeExplorer, true).iterator();
+            while (iter.hasNext())
+            {
+                iter.advance();
+                List<BucketEntry> bucket = buckets.get(iter.key());
+                if (bucket == null)
+                {
+                    bucket = new ArrayList<BucketEntry>(2);
+                    buckets.put(iter.key(), bucket);
+                }
+                bucket.add(new BucketEntry(toIndex, iter.value()));
+            }
+        }
+
+        double[] bestWeights = new double[toNodes.length];
+        MatrixEntry[] bestFromEntries = new MatrixEntry[toNodes.length];
+        MatrixEntry[] bestToEntries = new MatrixEntry[toNodes.length];
+        for (int fromIndex = 0; fromIndex < fromNodes.length; fromIndex++)
+        {
+            Arrays.fill(bestWeights, Double.MAX_VALUE);
+            Arrays.fill(bestFromEntries, null);
+            Arrays.fill(bestToEntries, null);
+            // the unpacking of the paths does not check the budget
+            checkAborted(0);
+            TIntObjectIterator<MatrixEntry> iter = search(fromNodes[fromIndex], outEdgeExplorer, false).iterator();
+            while (iter.hasNext())
+            {
+                iter.advance();
+                List<BucketEntry> bucket = buckets.get(iter.key());
+                if (bucket == null)
+                    continue;
+
+                MatrixEntry fromEntry = iter.value();
+                for (BucketEntry bucketEntry : bucket)
+                {
+                    double weight = fromEntry.weight + bucketEntry.edgeEntry.weight;
+                    if (weight < bestWeights[bucketEntry.toIndex])
+                    {
+                        bestWeights[bucketEntry.toIndex] = weight;
+                        bestFromEntries[bucketEntry.toIndex] = fromEntry;
+                        bestToEntries[bucketEntry.toIndex] = bucketEntry.edgeEntry;
+                    }
+                }
+            }
+
+            for (int toIndex = 0; toIndex < toNodes.length; toIndex++)
+            {
+                if (bestFromEntries[toIndex] == null)
+                    continue;
+
+                if (calcTimes)
+                {
+                    Path4CH path = new Path4CH(graph, flagEncoder);
+                    path.setEdgeEntryTo(bestToEntries[toIndex]);
+                    path.setEdgeEntry(bestFromEntries[toIndex]);
+                    path.setWeight(bestWeights[toIndex]);
+                    path.extract();
+                    rsp.set(fromIndex, toIndex, path.getDistance(), path.getMillis(), bestWeights[toIndex]);
+                } else
+                {
+                    double distance = bestFromEntries[toIndex].distance + bestToEntries[toIndex].distance;
+                    rsp.set(fromIndex, toIndex, distance, 0, bestWeights[toIndex]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Explores the complete upward search space of the specified node. As only edges to higher
+     * level nodes are available after the preparation this space is small.
+     * <p/>
+     * @return the shortest path tree which contains only settled entries
+     */
+    TIntObjectMap<MatrixEntry> search( int node, EdgeExplorer explorer, boolean reverse )
+    {
+        TIntObjectMap<MatrixEntry> shortestWeightMap = new TIntObjectHashMap<MatrixEntry>();
+        PriorityQueue<MatrixEntry> prioQueue = new PriorityQueue<MatrixEntry>();
+        MatrixEntry startEntry = new MatrixEntry(EdgeIterator.NO_EDGE, node, 0, 0);
+        shortestWeightMap.put(node, startEntry);
+        prioQueue.add(startEntry);
+        int searchVisitedNodes = 0;
+        while (!prioQueue.isEmpty())
+        {
+            checkAborted(searchVisitedNodes);
+            MatrixEntry currEdge = prioQueue.poll();
+            visitedNodes++;
+            searchVisitedNodes++;
+            EdgeIterator iter = explorer.setBaseNode(currEdge.adjNode);
+            while (iter.next())
+            {
+                if (!accept(iter, currEdge.edge))
+                    continue;
+
+                double tmpWeight = weighting.calcWeight(iter, reverse, currEdge.edge) + currEdge.weight;
+                if (Double.isInfinite(tmpWeight))
+                    continue;
+
+                int adjNode = iter.getAdjNode();
+                double tmpDistance = iter.getDistance() + currEdge.distance;
+                MatrixEntry ee = shortestWeightMap.get(adjNode);
+                if (ee == null)
+                {
+                    ee = new MatrixEntry(iter.getEdge(), adjNode, tmpWeight, tmpDistance);
+                    ee.parent = currEdge;
+                    shortestWeightMap.put(adjNode, ee);
+                    prioQueue.add(ee);
+                } else if (ee.weight > tmpWeight)
+                {
+                    prioQueue.remove(ee);
+                    ee.edge = iter.getEdge();
+                    ee.weight = tmpWeight;
+                    ee.distance = tmpDistance;
+                    ee.parent = currEdge;
+                    prioQueue.add(ee);
+                }
+            }
+        }
+        return shortestWeightMap;
+    }
+
+    /**
+     * Stops the calculation like AbstractRoutingAlgorithm.checkAborted if the thread was interrupted
+     * or the budget is exceeded. The maximum visited nodes apply to every search separately.
+     */
+    private void checkAborted( int searchVisitedNodes )
+    {
+        if (Thread.currentThread().isInterrupted())
+            throw new RoutingAbortedException(RoutingAbortedException.Reason.CANCELLED,
+                    "Matrix thread was interrupted", visitedNodes);
+
+        if (budget == null)
+            return;
+
+        if (budget.isCancelled())
+            throw new RoutingAbortedException(RoutingAbortedException.Reason.CANCELLED,
+                    "Matrix calculation was cancelled", visitedNodes);
+
+        if (searchVisitedNodes > budget.getMaxVisitedNodes())
+            throw new RoutingAbortedException(RoutingAbortedException.Reason.MAX_VISITED_NODES,
+                    "Matrix search exceeded the maximum of " + budget.getMaxVisitedNodes() + " visited nodes", visitedNodes);
+
+        // avoid the system call for every node
+        if ((++checkCounter & 0xFF) == 0 && budget.isTimeExceeded())
+            throw new RoutingAbortedException(RoutingAbortedException.Reason.TIMEOUT,
+                    "Matrix calculation exceeded the maximum time of " + budget.getMaxMillis() + "ms", visitedNodes);
+    }
+
+    private boolean accept( EdgeIterator iter, int prevOrNextEdgeId )
+    {
+        if (!traversalMode.hasUTurnSupport() && iter.getEdge() == prevOrNextEdgeId)
+            return false;
+
+        return additionalEdgeFilter == null || additionalEdgeFilter.accept(iter);
+    }
+
+    /**
+     * @return the number of nodes settled in all searches of the last matrix calculation
+     */
+    public int getVisitedNodes()
+    {
+        return visitedNodes;
+    }
+
+    static class MatrixEntry extends EdgeEntry
+    {
+        // the distance from the start of the search, shortcuts store the distance of all skipped edges
+        double distance;
+
+        public MatrixEntry( int edgeId, int adjNode, double weight, double distance )
+        {
+            super(edgeId, adjNode, weight);
+            this.distance = distance;
+        }
+    }
+
+    private static class BucketEntry
+    {
+        final int toIndex;
+        final MatrixEntry edgeEntry;
+
+        public BucketEntry( int toIndex, MatrixEntry edgeEntry )
+        {
+            this.toIndex = toIndex;
+            this.edgeEntry = edgeEntry;
+        }
+    }
+}
@@ -33,7 +33,13 @@ import com.graphhopper.storage.LevelGraph;
 import com.graphhopper.storage.LevelGraphStorage;
 import com.graphhopper.storage.NodeAccess;
 import com.graphhopper.util.*;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.set.hash.TIntHashSet;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,27 +60,24 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
     private final Logger logger = LoggerFactory.getLogger(getClass());
     private final PreparationWeighting prepareWeighting;
     private final FlagEncoder prepareFlagEncoder;
+    // the access bits of the shortcuts, depend on the position of the vehicle in the flags
+    private final long scFwdDir;
+    private final long scDirMask;
     private final TraversalMode traversalMode;
-    private EdgeSkipExplorer vehicleInExplorer;
     private EdgeSkipExplorer vehicleOutExplorer;
     private EdgeSkipExplorer vehicleAllExplorer;
     private EdgeSkipExplorer vehicleAllTmpExplorer;
-    private EdgeSkipExplorer calcPrioAllExplorer;
     private final LevelGraph prepareGraph;
     // the most important nodes comes last
     private GHTreeMapComposed sortedNodes;
     private int oldPriorities[];
     private final DataAccess originalEdges;
-    private final Map<Shortcut, Shortcut> shortcuts = new HashMap<Shortcut, Shortcut>();
-    private IgnoreNodeFilter ignoreNodeFilter;
-    private DijkstraOneToMany prepareAlgo;
-    private boolean removesHigher2LowerEdges = true;
+    // one witness searcher per thread, the first one is used for the sequential contraction
+    private NodeContractor[] contractors;
+    private boolean removesHigher2LowerEdges;
     private long counter;
     private int newShortcuts;
-    private long dijkstraCount;
-    private double meanDegree;
     private final Random rand = new Random(123);
-    private StopWatch dijkstraSW = new StopWatch();
     private final StopWatch allSW = new StopWatch();
     private int periodicUpdatesPercentage = 20;
     private int lastNodesLazyUpdatePercentage = 10;
@@ -82,19 +85,25 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
     private int initialCollectionSize = 5000;
     private double nodesContractedPercentage = 100;
     private double logMessagesPercentage = 20;
+    private int threads = 1;
 
     public PrepareContractionHierarchies( LevelGraph g, FlagEncoder encoder, Weighting weighting, TraversalMode traversalMode )
     {
         this.prepareGraph = g;
         this.traversalMode = traversalMode;
         this.prepareFlagEncoder = encoder;
-        long scFwdDir = encoder.setAccess(0, true, false);
+        scFwdDir = encoder.setAccess(0, true, false);
+        scDirMask = encoder.setAccess(0, true, true);
 
-        // shortcuts store weight in flags where we assume bit 1 and 2 are used for access restriction
-        if ((scFwdDir & PrepareEncoder.getScFwdDir()) == 0)
+        // LevelGraphStorage stores the weight in the flags where we assume bit 1 and 2 are used for access restriction,
+        // a LevelGraphOverlay stores the weight separately and supports every vehicle
+        if (g instanceof LevelGraphStorage && (scFwdDir & PrepareEncoder.getScFwdDir()) == 0)
             throw new IllegalArgumentException("Currently only one vehicle is supported if you enable CH. "
                     + "It seems that you have imported more than one.");
 
+        // edges can only be disconnected in a LevelGraphStorage, an overlay uses the LevelEdgeFilter instead
+        removesHigher2LowerEdges = g instanceof LevelGraphStorage;
+
         prepareWeighting = new PreparationWeighting(weighting);
         originalEdges = new GHDirectory("", DAType.RAM_INT).find("originalEdges");
         originalEdges.create(1000);
@@ -160,6 +169,24 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         return this;
     }
 
+    /**
+     * Specifies the number of threads used for the contraction. With more than one thread the
+     * nodes are contracted in rounds: every round picks an independent set of nodes (no two of them
+     * are adjacent and each has the lowest priority in its neighborhood), searches the witness
+     * paths of all nodes in the set concurrently and then introduces the shortcuts. Periodic and
+     * lazy updates are not used in this mode, instead the priorities of all neighbors of the
+     * contracted nodes are recalculated after every round. Default is 1 which means the sequential
+     * contraction.
+     */
+    public PrepareContractionHierarchies setThreads( int threads )
+    {
+        if (threads < 1)
+            return this;
+
+        this.threads = threads;
+        return this;
+    }
+
     /**
      * Define how many nodes (percentage) should be contracted. Less nodes means slower query but
      * faster contraction duration. Not yet ready for prime time.
@@ -186,10 +213,13 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
      * Disconnect is very important to improve query time and preparation if enabled. It will remove
      * the edge going from the higher level node to the currently contracted one. But the original
      * graph is no longer available, so it is only useful for bidirectional CH algorithms. Default
-     * is true.
+     * is true for a LevelGraphStorage and not possible for other graphs.
      */
     public PrepareContractionHierarchies setRemoveHigher2LowerEdges( boolean removeHigher2LowerEdges )
     {
+        if (removeHigher2LowerEdges && !(prepareGraph instanceof LevelGraphStorage))
+            throw new IllegalArgumentException("Edges can only be removed from a LevelGraphStorage but was " + prepareGraph.getClass().getSimpleName());
+
         this.removesHigher2LowerEdges = removeHigher2LowerEdges;
         return this;
     }
@@ -210,6 +240,22 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         if (!prepareEdges())
             return;
 
+        if (threads > 1)
+        {
+            ExecutorService executorService = Executors.newFixedThreadPool(threads);
+            try
+            {
+                if (!prepareNodesParallel(executorService))
+                    return;
+
+                contractNodesParallel(executorService);
+            } finally
+            {
+                executorService.shutdownNow();
+            }
+            return;
+        }
+
         if (!prepareNodes())
             return;
 
@@ -228,7 +274,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         return c > 0;
     }
 
-    // TODO we can avoid node level if we store this into a temporary array and 
+    // TODO we can avoid node level if we store this into a temporary array and
     // disconnect all edges which goes from higher to lower level
     // uninitialized nodes have a level of 0
     // TODO we could avoid the second storage for skippedEdge as we could store that info into linkB or A if it is disconnected
@@ -250,7 +296,8 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
 
     void contractNodes()
     {
-        meanDegree = prepareGraph.getAllEdges().getCount() / prepareGraph.getNodes();
+        NodeContractor contractor = contractors[0];
+        contractor.meanDegree = prepareGraph.getAllEdges().getCount() / prepareGraph.getNodes();
         int level = 1;
         counter = 0;
         int initSize = sortedNodes.getSize();
@@ -285,10 +332,10 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
             neighborUpdate = false;
 
         StopWatch neighborSW = new StopWatch();
-        LevelGraphStorage lg = ((LevelGraphStorage) prepareGraph);
+        LevelGraph lg = prepareGraph;
         while (!sortedNodes.isEmpty())
         {
-            // periodically update priorities of ALL nodes            
+            // periodically update priorities of ALL nodes
             if (periodicUpdate && counter > 0 && counter % periodicUpdatesCount == 0)
             {
                 periodSW.start();
@@ -313,15 +360,15 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
                 logger.info(Helper.nf(counter) + ", updates:" + updateCounter
                         + ", nodes: " + Helper.nf(sortedNodes.getSize())
                         + ", shortcuts:" + Helper.nf(newShortcuts)
-                        + ", dijkstras:" + Helper.nf(dijkstraCount)
-                        + ", t(dijk):" + (int) dijkstraSW.getSeconds()
+                        + ", dijkstras:" + Helper.nf(contractor.dijkstraCount)
+                        + ", t(dijk):" + (int) contractor.dijkstraSW.getSeconds()
                         + ", t(period):" + (int) periodSW.getSeconds()
                         + ", t(lazy):" + (int) lazySW.getSeconds()
                         + ", t(neighbor):" + (int) neighborSW.getSeconds()
-                        + ", meanDegree:" + (long) meanDegree
-                        + ", algo:" + prepareAlgo.getMemoryUsageAsString()
+                        + ", meanDegree:" + (long) contractor.meanDegree
+                        + ", algo:" + contractor.prepareAlgo.getMemoryUsageAsString()
                         + ", " + Helper.getMemInfo());
-                dijkstraSW = new StopWatch();
+                contractor.dijkstraSW = new StopWatch();
                 periodSW = new StopWatch();
                 lazySW = new StopWatch();
                 neighborSW = new StopWatch();
@@ -343,7 +390,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
                 lazySW.stop();
             }
 
-            // contract!            
+            // contract!
             newShortcuts += addShortcuts(polledNode);
             lg.setLevel(polledNode, level);
             level++;
@@ -378,7 +425,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
                 }
 
                 if (removesHigher2LowerEdges)
-                    lg.disconnect(vehicleAllTmpExplorer, iter);
+                    ((LevelGraphStorage) lg).disconnect(vehicleAllTmpExplorer, iter);
             }
         }
 
@@ -390,12 +437,12 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
                 + ", " + prepareWeighting
                 + ", " + prepareFlagEncoder
                 + ", removeHigher2LowerEdges:" + removesHigher2LowerEdges
-                + ", dijkstras:" + dijkstraCount
-                + ", t(dijk):" + (int) dijkstraSW.getSeconds()
+                + ", dijkstras:" + contractor.dijkstraCount
+                + ", t(dijk):" + (int) contractor.dijkstraSW.getSeconds()
                 + ", t(period):" + (int) periodSW.getSeconds()
                 + ", t(lazy):" + (int) lazySW.getSeconds()
                 + ", t(neighbor):" + (int) neighborSW.getSeconds()
-                + ", meanDegree:" + (long) meanDegree
+                + ", meanDegree:" + (long) contractor.meanDegree
                 + ", initSize:" + initSize
                 + ", periodic:" + periodicUpdatesPercentage
                 + ", lazy:" + lastNodesLazyUpdatePercentage
@@ -403,15 +450,256 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
                 + ", " + Helper.getMemInfo());
     }
 
+    boolean prepareNodesParallel( ExecutorService executorService )
+    {
+        int len = prepareGraph.getNodes();
+        if (len == 0)
+            return false;
+
+        final TIntArrayList nodes = new TIntArrayList(len);
+        for (int node = 0; node < len; node++)
+        {
+            nodes.add(node);
+        }
+        // like in the sequential case the initial priorities are calculated without a mean degree
+        runParallel(executorService, nodes.size(), new ContractorTask()
+        {
+            @Override
+            public void run( NodeContractor contractor, int index )
+            {
+                int node = nodes.get(index);
+                oldPriorities[node] = contractor.calculatePriority(node);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Contracts the nodes in rounds of independent sets. The witness searches and priority updates
+     * only read the graph and run concurrently with one NodeContractor per thread. All writes like
+     * the introduction of shortcuts, the levels and the disconnecting of edges happen between the
+     * parallel steps in the calling thread as the edge explorers of the other threads would
+     * otherwise follow half updated edge links.
+     */
+    void contractNodesParallel( ExecutorService executorService )
+    {
+        double initialMeanDegree = prepareGraph.getAllEdges().getCount() / prepareGraph.getNodes();
+        for (NodeContractor contractor : contractors)
+        {
+            contractor.meanDegree = initialMeanDegree;
+        }
+
+        final LevelGraph lg = prepareGraph;
+        final TIntArrayList remaining = new TIntArrayList(lg.getNodes());
+        for (int node = 0; node < lg.getNodes(); node++)
+        {
+            remaining.add(node);
+        }
+
+        int initSize = remaining.size();
+        long nodesToAvoidContract = Math.round((100 - nodesContractedPercentage) / 100 * initSize);
+        long logSize = Math.round(Math.max(10, initSize / 100 * logMessagesPercentage));
+        if (logMessagesPercentage == 0)
+            logSize = Integer.MAX_VALUE;
+
+        StopWatch selectSW = new StopWatch();
+        StopWatch witnessSW = new StopWatch();
+        StopWatch neighborSW = new StopWatch();
+        int level = 1;
+        int rounds = 0;
+        counter = 0;
+        long nextLog = 0;
+        final boolean[] selected = new boolean[remaining.size()];
+        while (!remaining.isEmpty())
+        {
+            if (remaining.size() < nodesToAvoidContract)
+            {
+                for (int i = 0; i < remaining.size(); i++)
+                {
+                    lg.setLevel(remaining.get(i), level);
+                }
+                break;
+            }
+
+            if (counter >= nextLog)
+            {
+                nextLog = counter + logSize;
+                logger.info(Helper.nf(counter) + ", rounds:" + rounds
+                        + ", nodes: " + Helper.nf(remaining.size())
+                        + ", shortcuts:" + Helper.nf(newShortcuts)
+                        + ", dijkstras:" + Helper.nf(getDijkstraCount())
+                        + ", t(select):" + (int) selectSW.getSeconds()
+                        + ", t(witness):" + (int) witnessSW.getSeconds()
+                        + ", t(neighbor):" + (int) neighborSW.getSeconds()
+                        + ", threads:" + threads
+                        + ", " + Helper.getMemInfo());
+            }
+
+            // 1. select the independent set: nodes with the lowest priority within their neighbors
+            selectSW.start();
+            runParallel(executorService, remaining.size(), new ContractorTask()
+            {
+                @Override
+                public void run( NodeContractor contractor, int index )
+                {
+                    selected[index] = contractor.isLocalMinimum(remaining.get(index));
+                }
+            });
+            final TIntArrayList independentSet = new TIntArrayList();
+            for (int i = 0; i < remaining.size(); i++)
+            {
+                if (selected[i])
+                    independentSet.add(remaining.get(i));
+            }
+            selectSW.stop();
+
+            // setting the levels before the witness search makes sure that no witness path uses
+            // a node which is contracted in the same round
+            for (int i = 0; i < independentSet.size(); i++)
+            {
+                lg.setLevel(independentSet.get(i), level);
+                level++;
+            }
+
+            // 2. find the shortcuts of all nodes in the set concurrently
+            witnessSW.start();
+            final Shortcut[][] foundShortcuts = new Shortcut[independentSet.size()][];
+            runParallel(executorService, independentSet.size(), new ContractorTask()
+            {
+                @Override
+                public void run( NodeContractor contractor, int index )
+                {
+                    Collection<Shortcut> tmp = contractor.findShortcuts(independentSet.get(index));
+                    foundShortcuts[index] = tmp.toArray(new Shortcut[tmp.size()]);
+                }
+            });
+            witnessSW.stop();
+
+            // 3. introduce shortcuts, disconnect edges and collect neighbors in the calling thread
+            neighborSW.start();
+            TIntHashSet neighborSet = new TIntHashSet();
+            for (int i = 0; i < independentSet.size(); i++)
+            {
+                newShortcuts += addShortcuts(Arrays.asList(foundShortcuts[i]));
+                EdgeSkipIterator iter = vehicleAllExplorer.setBaseNode(independentSet.get(i));
+                while (iter.next())
+                {
+                    int nn = iter.getAdjNode();
+                    if (lg.getLevel(nn) != 0)
+                        continue;
+
+                    neighborSet.add(nn);
+                    if (removesHigher2LowerEdges)
+                        ((LevelGraphStorage) lg).disconnect(vehicleAllTmpExplorer, iter);
+                }
+            }
+
+            // 4. update the priorities of the neighbors, sorted to make it independent of the hashing
+            final int[] neighbors = neighborSet.toArray();
+            Arrays.sort(neighbors);
+            runParallel(executorService, neighbors.length, new ContractorTask()
+            {
+                @Override
+                public void run( NodeContractor contractor, int index )
+                {
+                    oldPriorities[neighbors[index]] = contractor.calculatePriority(neighbors[index]);
+                }
+            });
+            neighborSW.stop();
+
+            int j = 0;
+            for (int i = 0; i < remaining.size(); i++)
+            {
+                int node = remaining.get(i);
+                if (lg.getLevel(node) == 0)
+                    remaining.set(j++, node);
+            }
+            remaining.remove(j, remaining.size() - j);
+            counter += independentSet.size();
+            rounds++;
+        }
+
+        close();
+        logger.info("took:" + (int) allSW.stop().getSeconds()
+                + ", new shortcuts: " + newShortcuts
+                + ", " + prepareWeighting
+                + ", " + prepareFlagEncoder
+                + ", removeHigher2LowerEdges:" + removesHigher2LowerEdges
+                + ", dijkstras:" + getDijkstraCount()
+                + ", t(select):" + (int) selectSW.getSeconds()
+                + ", t(witness):" + (int) witnessSW.getSeconds()
+                + ", t(neighbor):" + (int) neighborSW.getSeconds()
+                + ", rounds:" + rounds
+                + ", initSize:" + initSize
+                + ", threads:" + threads
+                + ", " + Helper.getMemInfo());
+    }
+
+    private long getDijkstraCount()
+    {
+        long sum = 0;
+        for (NodeContractor contractor : contractors)
+        {
+            sum += contractor.dijkstraCount;
+        }
+        return sum;
+    }
+
+    interface ContractorTask
+    {
+        void run( NodeContractor contractor, int index );
+    }
+
+    /**
+     * Calls the task for every index in [0, size) where every thread uses its own NodeContractor.
+     * The indices are distributed round robin so that the result does not depend on the timing.
+     */
+    private void runParallel( ExecutorService executorService, final int size, final ContractorTask task )
+    {
+        List<Future<?>> futures = new ArrayList<Future<?>>(contractors.length);
+        for (int i = 0; i < contractors.length; i++)
+        {
+            final int start = i;
+            final NodeContractor contractor = contractors[i];
+            futures.add(executorService.submit(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for (int index = start; index < size; index += contractors.length)
+                    {
+                        task.run(contractor, index);
+                    }
+                }
+            }));
+        }
+
+        for (Future<?> future : futures)
+        {
+            try
+            {
+                future.get();
+            } catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Contraction was interrupted", ex);
+            } catch (ExecutionException ex)
+            {
+                throw new RuntimeException("Contraction failed", ex.getCause());
+            }
+        }
+    }
+
     public void close()
     {
-        prepareAlgo.close();
+        for (NodeContractor contractor : contractors)
+        {
+            contractor.prepareAlgo.close();
+        }
         originalEdges.close();
         sortedNodes = null;
         oldPriorities = null;
     }
-    AddShortcutHandler addScHandler = new AddShortcutHandler();
-    CalcShortcutHandler calcScHandler = new CalcShortcutHandler();
 
     interface ShortcutHandler
     {
@@ -456,6 +744,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
 
     class AddShortcutHandler implements ShortcutHandler
     {
+        final Map<Shortcut, Shortcut> shortcuts = new HashMap<Shortcut, Shortcut>();
         int node;
 
         public AddShortcutHandler()
@@ -481,12 +770,12 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
                 EdgeIterator outgoingEdges,
                 int skippedEdge1, int incomingEdgeOrigCount )
         {
-            // FOUND shortcut 
-            // but be sure that it is the only shortcut in the collection 
+            // FOUND shortcut
+            // but be sure that it is the only shortcut in the collection
             // and also in the graph for u->w. If existing AND identical weight => update setProperties.
             // Hint: shortcuts are always one-way due to distinct level of every node but we don't
             // know yet the levels so we need to determine the correct direction or if both directions
-            // minor improvement: if (shortcuts.containsKey(sc) 
+            // minor improvement: if (shortcuts.containsKey(sc)
             // then two shortcuts with the same nodes (u<->n.adjNode) exists => check current shortcut against both
             Shortcut sc = new Shortcut(u_fromNode, w_toNode, existingDirectWeight, existingDistSum);
             if (shortcuts.containsKey(sc))
@@ -499,7 +788,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
                 // overwrite flags only if skipped edges are identical
                 if (tmpRetSc.skippedEdge2 == skippedEdge1 && tmpRetSc.skippedEdge1 == outgoingEdges.getEdge())
                 {
-                    tmpRetSc.flags = PrepareEncoder.getScDirMask();
+                    tmpRetSc.flags = scDirMask;
                     return;
                 }
             }
@@ -513,8 +802,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
 
     Set<Shortcut> testFindShortcuts( int node )
     {
-        findShortcuts(addScHandler.setNode(node));
-        return shortcuts.keySet();
+        return contractors[0].findShortcuts(node);
     }
 
     /**
@@ -525,117 +813,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
      */
     int calculatePriority( int v )
     {
-        // set of shortcuts that would be added if adjNode v would be contracted next.
-        findShortcuts(calcScHandler.setNode(v));
-
-//        System.out.println(v + "\t " + tmpShortcuts);
-        // # huge influence: the bigger the less shortcuts gets created and the faster is the preparation
-        //
-        // every adjNode has an 'original edge' number associated. initially it is r=1
-        // when a new shortcut is introduced then r of the associated edges is summed up:
-        // r(u,w)=r(u,v)+r(v,w) now we can define
-        // originalEdgesCount = σ(v) := sum_{ (u,w) ∈ shortcuts(v) } of r(u, w)
-        int originalEdgesCount = calcScHandler.originalEdgesCount;
-//        for (Shortcut sc : tmpShortcuts) {
-//            originalEdgesCount += sc.originalEdges;
-//        }
-
-        // # lowest influence on preparation speed or shortcut creation count 
-        // (but according to paper should speed up queries)
-        //
-        // number of already contracted neighbors of v
-        int contractedNeighbors = 0;
-        int degree = 0;
-        EdgeSkipIterator iter = calcPrioAllExplorer.setBaseNode(v);
-        while (iter.next())
-        {
-            degree++;
-            if (iter.isShortcut())
-                contractedNeighbors++;
-        }
-
-        // from shortcuts we can compute the edgeDifference
-        // # low influence: with it the shortcut creation is slightly faster
-        //
-        // |shortcuts(v)| − |{(u, v) | v uncontracted}| − |{(v, w) | v uncontracted}|        
-        // meanDegree is used instead of outDegree+inDegree as if one adjNode is in both directions
-        // only one bucket memory is used. Additionally one shortcut could also stand for two directions.
-        int edgeDifference = calcScHandler.shortcuts - degree;
-
-        // according to the paper do a simple linear combination of the properties to get the priority.
-        // this is the current optimum for unterfranken:
-        return 10 * edgeDifference + originalEdgesCount + contractedNeighbors;
-    }
-
-    /**
-     * Finds shortcuts, does not change the underlying graph.
-     */
-    void findShortcuts( ShortcutHandler sch )
-    {
-        long tmpDegreeCounter = 0;
-        EdgeIterator incomingEdges = vehicleInExplorer.setBaseNode(sch.getNode());
-        // collect outgoing nodes (goal-nodes) only once
-        while (incomingEdges.next())
-        {
-            int u_fromNode = incomingEdges.getAdjNode();
-            // accept only uncontracted nodes
-            if (prepareGraph.getLevel(u_fromNode) != 0)
-                continue;
-
-            double v_u_dist = incomingEdges.getDistance();
-            double v_u_weight = prepareWeighting.calcWeight(incomingEdges, true, EdgeIterator.NO_EDGE);
-            int skippedEdge1 = incomingEdges.getEdge();
-            int incomingEdgeOrigCount = getOrigEdgeCount(skippedEdge1);
-            // collect outgoing nodes (goal-nodes) only once
-            EdgeIterator outgoingEdges = vehicleOutExplorer.setBaseNode(sch.getNode());
-            // force fresh maps etc as this cannot be determined by from node alone (e.g. same from node but different avoidNode)
-            prepareAlgo.clear();
-            tmpDegreeCounter++;
-            while (outgoingEdges.next())
-            {
-                int w_toNode = outgoingEdges.getAdjNode();
-                // add only uncontracted nodes
-                if (prepareGraph.getLevel(w_toNode) != 0 || u_fromNode == w_toNode)
-                    continue;
-
-                // Limit weight as ferries or forbidden edges can increase local search too much.
-                // If we decrease the correct weight we only explore less and introduce more shortcuts.
-                // I.e. no change to accuracy is made.
-                double existingDirectWeight = v_u_weight + prepareWeighting.calcWeight(outgoingEdges, false, incomingEdges.getEdge());
-                if (Double.isNaN(existingDirectWeight))
-                    throw new IllegalStateException("Weighting should never return NaN values"
-                            + ", in:" + getCoords(incomingEdges, prepareGraph) + ", out:" + getCoords(outgoingEdges, prepareGraph)
-                            + ", dist:" + outgoingEdges.getDistance() + ", speed:" + prepareFlagEncoder.getSpeed(outgoingEdges.getFlags()));
-
-                if (existingDirectWeight >= Double.MAX_VALUE)
-                    continue;
-                double existingDistSum = v_u_dist + outgoingEdges.getDistance();
-                prepareAlgo.setLimitWeight(existingDirectWeight)
-                        .setLimitVisitedNodes((int) meanDegree * 100)
-                        .setEdgeFilter(ignoreNodeFilter.setAvoidNode(sch.getNode()));
-
-                dijkstraSW.start();
-                dijkstraCount++;
-                int endNode = prepareAlgo.findEndNode(u_fromNode, w_toNode);
-                dijkstraSW.stop();
-
-                // compare end node as the limit could force dijkstra to finish earlier
-                if (endNode == w_toNode && prepareAlgo.getWeight(endNode) <= existingDirectWeight)
-                    // FOUND witness path, so do not add shortcut                
-                    continue;
-
-                sch.foundShortcut(u_fromNode, w_toNode,
-                        existingDirectWeight, existingDistSum,
-                        outgoingEdges,
-                        skippedEdge1, incomingEdgeOrigCount);
-            }
-        }
-        if (sch instanceof AddShortcutHandler)
-        {
-            // sliding mean value when using "*2" => slower changes
-            meanDegree = (meanDegree * 2 + tmpDegreeCounter) / 3;
-            // meanDegree = (meanDegree + tmpDegreeCounter) / 2;
-        }
+        return contractors[0].calculatePriority(v);
     }
 
     /**
@@ -643,11 +821,14 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
      */
     int addShortcuts( int v )
     {
-        shortcuts.clear();
-        findShortcuts(addScHandler.setNode(v));
+        return addShortcuts(contractors[0].findShortcuts(v));
+    }
+
+    int addShortcuts( Collection<Shortcut> shortcuts )
+    {
         int tmpNewShortcuts = 0;
         NEXT_SC:
-        for (Shortcut sc : shortcuts.keySet())
+        for (Shortcut sc : shortcuts)
         {
             boolean updatedInGraph = false;
             // check if we need to update some existing shortcut in the graph
@@ -655,7 +836,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
             while (iter.next())
             {
                 if (iter.isShortcut() && iter.getAdjNode() == sc.to
-                        && PrepareEncoder.canBeOverwritten(iter.getFlags(), sc.flags))
+                        && PrepareEncoder.canBeOverwritten(iter.getFlags(), sc.flags, scDirMask))
                 {
                     if (sc.weight >= prepareWeighting.calcWeight(iter, false, EdgeIterator.NO_EDGE))
                         continue NEXT_SC;
@@ -708,19 +889,20 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
 
     PrepareContractionHierarchies initFromGraph()
     {
-        vehicleInExplorer = prepareGraph.createEdgeExplorer(new DefaultEdgeFilter(prepareFlagEncoder, true, false));
         vehicleOutExplorer = prepareGraph.createEdgeExplorer(new DefaultEdgeFilter(prepareFlagEncoder, false, true));
         vehicleAllExplorer = prepareGraph.createEdgeExplorer(new DefaultEdgeFilter(prepareFlagEncoder, true, true));
         vehicleAllTmpExplorer = prepareGraph.createEdgeExplorer(new DefaultEdgeFilter(prepareFlagEncoder, true, true));
-        calcPrioAllExplorer = prepareGraph.createEdgeExplorer(new DefaultEdgeFilter(prepareFlagEncoder, true, true));
-        ignoreNodeFilter = new IgnoreNodeFilter(prepareGraph);
-        // Use an alternative to PriorityQueue as it has some advantages: 
+        // Use an alternative to PriorityQueue as it has some advantages:
         //   1. Gets automatically smaller if less entries are stored => less total RAM used (as Graph is increasing until the end)
         //   2. is slightly faster
         //   but we need additional priorities array to keep old value which is necessary for update method
         sortedNodes = new GHTreeMapComposed();
         oldPriorities = new int[prepareGraph.getNodes()];
-        prepareAlgo = new DijkstraOneToMany(prepareGraph, prepareFlagEncoder, prepareWeighting, traversalMode);
+        contractors = new NodeContractor[threads];
+        for (int i = 0; i < threads; i++)
+        {
+            contractors[i] = new NodeContractor();
+        }
         return this;
     }
 
@@ -729,6 +911,188 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         return newShortcuts;
     }
 
+    /**
+     * @return the weighting this contraction hierarchy was prepared for
+     */
+    public Weighting getWeighting()
+    {
+        return prepareWeighting.getUserWeighting();
+    }
+
+    /**
+     * Holds everything which is necessary to search witness paths for a node. The graph is only
+     * read, so several instances can be used from different threads as long as the graph is not
+     * modified at the same time.
+     */
+    class NodeContractor
+    {
+        private final EdgeSkipExplorer inExplorer;
+        private final EdgeSkipExplorer outExplorer;
+        private final EdgeSkipExplorer allExplorer;
+        private final IgnoreNodeFilter ignoreNodeFilter;
+        private final DijkstraOneToMany prepareAlgo;
+        private final AddShortcutHandler addScHandler = new AddShortcutHandler();
+        private final CalcShortcutHandler calcScHandler = new CalcShortcutHandler();
+        private double meanDegree;
+        private long dijkstraCount;
+        private StopWatch dijkstraSW = new StopWatch();
+
+        public NodeContractor()
+        {
+            inExplorer = prepareGraph.createEdgeExplorer(new DefaultEdgeFilter(prepareFlagEncoder, true, false));
+            outExplorer = prepareGraph.createEdgeExplorer(new DefaultEdgeFilter(prepareFlagEncoder, false, true));
+            allExplorer = prepareGraph.createEdgeExplorer(new DefaultEdgeFilter(prepareFlagEncoder, true, true));
+            ignoreNodeFilter = new IgnoreNodeFilter(prepareGraph);
+            prepareAlgo = new DijkstraOneToMany(prepareGraph, prepareFlagEncoder, prepareWeighting, traversalMode);
+        }
+
+        /**
+         * @return the shortcuts which are necessary if the specified node is contracted. The
+         * returned collection is reused for the next call.
+         */
+        Set<Shortcut> findShortcuts( int v )
+        {
+            findShortcuts(addScHandler.setNode(v));
+            return addScHandler.shortcuts.keySet();
+        }
+
+        int calculatePriority( int v )
+        {
+            // set of shortcuts that would be added if adjNode v would be contracted next.
+            findShortcuts(calcScHandler.setNode(v));
+
+//        System.out.println(v + "\t " + tmpShortcuts);
+            // # huge influence: the bigger the less shortcuts gets created and the faster is the preparation
+            //
+            // every adjNode has an 'original edge' number associated. initially it is r=1
+            // when a new shortcut is introduced then r of the associated edges is summed up:
+            // r(u,w)=r(u,v)+r(v,w) now we can define
+            // originalEdgesCount = σ(v) := sum_{ (u,w) ∈ shortcuts(v) } of r(u, w)
+            int originalEdgesCount = calcScHandler.originalEdgesCount;
+//        for (Shortcut sc : tmpShortcuts) {
+//            originalEdgesCount += sc.originalEdges;
+//        }
+
+            // # lowest influence on preparation speed or shortcut creation count
+            // (but according to paper should speed up queries)
+            //
+            // number of already contracted neighbors of v
+            int contractedNeighbors = 0;
+            int degree = 0;
+            EdgeSkipIterator iter = allExplorer.setBaseNode(v);
+            while (iter.next())
+            {
+                degree++;
+                if (iter.isShortcut())
+                    contractedNeighbors++;
+            }
+
+            // from shortcuts we can compute the edgeDifference
+            // # low influence: with it the shortcut creation is slightly faster
+            //
+            // |shortcuts(v)| − |{(u, v) | v uncontracted}| − |{(v, w) | v uncontracted}|
+            // meanDegree is used instead of outDegree+inDegree as if one adjNode is in both directions
+            // only one bucket memory is used. Additionally one shortcut could also stand for two directions.
+            int edgeDifference = calcScHandler.shortcuts - degree;
+
+            // according to the paper do a simple linear combination of the properties to get the priority.
+            // this is the current optimum for unterfranken:
+            return 10 * edgeDifference + originalEdgesCount + contractedNeighbors;
+        }
+
+        /**
+         * @return true if the priority of v is lower than the priority of all uncontracted neighbors.
+         * Equal priorities are decided via the node id so that two neighbors cannot be both selected.
+         */
+        boolean isLocalMinimum( int v )
+        {
+            int prio = oldPriorities[v];
+            EdgeSkipIterator iter = allExplorer.setBaseNode(v);
+            while (iter.next())
+            {
+                int nn = iter.getAdjNode();
+                if (nn == v || prepareGraph.getLevel(nn) != 0)
+                    continue;
+
+                int nnPrio = oldPriorities[nn];
+                if (nnPrio < prio || nnPrio == prio && nn < v)
+                    return false;
+            }
+            return true;
+        }
+
+        /**
+         * Finds shortcuts, does not change the underlying graph.
+         */
+        void findShortcuts( ShortcutHandler sch )
+        {
+            long tmpDegreeCounter = 0;
+            EdgeIterator incomingEdges = inExplorer.setBaseNode(sch.getNode());
+            // collect outgoing nodes (goal-nodes) only once
+            while (incomingEdges.next())
+            {
+                int u_fromNode = incomingEdges.getAdjNode();
+                // accept only uncontracted nodes
+                if (prepareGraph.getLevel(u_fromNode) != 0)
+                    continue;
+
+                double v_u_dist = incomingEdges.getDistance();
+                double v_u_weight = prepareWeighting.calcWeight(incomingEdges, true, EdgeIterator.NO_EDGE);
+                int skippedEdge1 = incomingEdges.getEdge();
+                int incomingEdgeOrigCount = getOrigEdgeCount(skippedEdge1);
+                // collect outgoing nodes (goal-nodes) only once
+                EdgeIterator outgoingEdges = outExplorer.setBaseNode(sch.getNode());
+                // force fresh maps etc as this cannot be determined by from node alone (e.g. same from node but different avoidNode)
+                prepareAlgo.clear();
+                tmpDegreeCounter++;
+                while (outgoingEdges.next())
+                {
+                    int w_toNode = outgoingEdges.getAdjNode();
+                    // add only uncontracted nodes
+                    if (prepareGraph.getLevel(w_toNode) != 0 || u_fromNode == w_toNode)
+                        continue;
+
+                    // Limit weight as ferries or forbidden edges can increase local search too much.
+                    // If we decrease the correct weight we only explore less and introduce more shortcuts.
+                    // I.e. no change to accuracy is made.
+                    double existingDirectWeight = v_u_weight + prepareWeighting.calcWeight(outgoingEdges, false, incomingEdges.getEdge());
+                    if (Double.isNaN(existingDirectWeight))
+                        throw new IllegalStateException("Weighting should never return NaN values"
+                                + ", in:" + getCoords(incomingEdges, prepareGraph) + ", out:" + getCoords(outgoingEdges, prepareGraph)
+                                + ", dist:" + outgoingEdges.getDistance() + ", speed:" + prepareFlagEncoder.getSpeed(outgoingEdges.getFlags()));
+
+                    if (existingDirectWeight >= Double.MAX_VALUE)
+                        continue;
+                    double existingDistSum = v_u_dist + outgoingEdges.getDistance();
+                    prepareAlgo.setLimitWeight(existingDirectWeight)
+                            .setLimitVisitedNodes((int) meanDegree * 100)
+                            .setEdgeFilter(ignoreNodeFilter.setAvoidNode(sch.getNode()));
+
+                    dijkstraSW.start();
+                    dijkstraCount++;
+                    int endNode = prepareAlgo.findEndNode(u_fromNode, w_toNode);
+                    dijkstraSW.stop();
+
+                    // compare end node as the limit could force dijkstra to finish earlier
+                    if (endNode == w_toNode && prepareAlgo.getWeight(endNode) <= existingDirectWeight)
+                        // FOUND witness path, so do not add shortcut
+                        continue;
+
+                    sch.foundShortcut(u_fromNode, w_toNode,
+                            existingDirectWeight, existingDistSum,
+                            outgoingEdges,
+                            skippedEdge1, incomingEdgeOrigCount);
+                }
+            }
+            if (sch instanceof AddShortcutHandler)
+            {
+                // sliding mean value when using "*2" => slower changes
+                meanDegree = (meanDegree * 2 + tmpDegreeCounter) / 3;
+                // meanDegree = (meanDegree + tmpDegreeCounter) / 2;
+            }
+        }
+    }
+
     static class IgnoreNodeFilter implements EdgeFilter
     {
         int avoidNode;
@@ -764,6 +1128,8 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
     private int getOrigEdgeCount( int index )
     {
         // TODO possible memory usage improvement: avoid storing the value 1 for normal edges (does not change)!
+        // note: ensureCapacity does not grow the storage here as every edge count was set before,
+        // so this is safe to be called concurrently
         long tmp = (long) index * 4;
         originalEdges.ensureCapacity(tmp + 4);
         return originalEdges.getInt(tmp);
@@ -862,6 +1228,24 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
             throw new UnsupportedOperationException("Algorithm " + opts.getAlgorithm() + " not supported for Contraction Hierarchies");
         }
 
+        if (!removesHigher2LowerEdges)
+            algo.setEdgeFilter(new LevelEdgeFilter(prepareGraph));
+
+        if (opts.isReuseCollections())
+            algo.setReusableCollections(AlgorithmCollections.getThreadLocal());
+
+        if (opts.getBudget() != null)
+            algo.setBudget(opts.getBudget());
+
+        return algo;
+    }
+
+    /**
+     * Creates the algorithm to calculate distance and time matrices on the prepared graph.
+     */
+    public ManyToManyCH createManyToMany( Graph graph )
+    {
+        ManyToManyCH algo = new ManyToManyCH(graph, prepareFlagEncoder, prepareWeighting, traversalMode);
         if (!removesHigher2LowerEdges)
             algo.setEdgeFilter(new LevelEdgeFilter(prepareGraph));
 
@@ -901,7 +1285,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         double dist;
         double weight;
         int originalEdges;
-        long flags = PrepareEncoder.getScFwdDir();
+        long flags = scFwdDir;
 
         public Shortcut( int from, int to, double weight, double dist )
         {
@@ -938,7 +1322,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         public String toString()
         {
             String str;
-            if (flags == PrepareEncoder.getScDirMask())
+            if (flags == scDirMask)
                 str = from + "<->";
             else
                 str = from + "->";
@@ -0,0 +1,282 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.AlgorithmOptions;
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.RoutingAlgorithmFactory;
+import com.graphhopper.routing.RoutingAlgorithmFactorySimple;
+import com.graphhopper.routing.util.*;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphStorage;
+import com.graphhopper.storage.LevelGraph;
+import com.graphhopper.storage.LevelGraphStorage;
+import com.graphhopper.storage.TurnCostExtension;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Prepares contraction hierarchies which respect the turn costs and restrictions of the
+ * TurnCostExtension. Instead of contracting the original graph an edge expanded 'turn graph' is
+ * created: every directed edge of the original graph is a node of the turn graph and every allowed
+ * turn is an edge with the weight of the next edge plus the turn costs. This turn graph is stored
+ * in a separate directory and prepared with the normal node based contraction.
+ * <p/>
+ * Algorithms created via createAlgo use the turn graph if the request is edge based and uses the
+ * prepared vehicle and weighting. All other requests, e.g. node based ones, are handled like in
+ * RoutingAlgorithmFactorySimple without the preparation, which is much slower. The first such
+ * request is logged as warning, all further only in debug.
+ * <p/>
+ * @see EdgeBasedCHAlgorithm
+ * @author Peter Karich
+ */
+public class PrepareEdgeBasedCH extends AbstractAlgoPreparation implements RoutingAlgorithmFactory
+{
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final GraphStorage graph;
+    private final FlagEncoder encoder;
+    private final TurnWeighting turnWeighting;
+    private final TraversalMode traversalMode;
+    private final LevelGraphStorage turnGraph;
+    private final PrepareContractionHierarchies prepareCH;
+    private final Weighting prepareWeighting = new PreparationWeighting(new ShortestWeighting());
+    private final RoutingAlgorithmFactorySimple simpleFactory = new RoutingAlgorithmFactorySimple();
+    private boolean loaded;
+    private volatile boolean fallbackLogged;
+
+    /**
+     * @param dir the directory of the turn graph, must be different to the one of the graph
+     * @param weighting the weighting without turn costs, e.g. fastest
+     */
+    public PrepareEdgeBasedCH( Directory dir, GraphStorage graph, FlagEncoder encoder, Weighting weighting,
+            TraversalMode tMode )
+    {
+        if (!tMode.isEdgeBased())
+            throw new IllegalArgumentException("Edge based contraction hierarchies require an edge based traversal mode but was " + tMode);
+
+        if (!(graph.getExtension() instanceof TurnCostExtension))
+            throw new IllegalArgumentException("Edge based contraction hierarchies require a graph with turn costs");
+
+        if (graph.getDirectory() == dir)
+            throw new IllegalArgumentException("The turn graph cannot be stored in the directory of the graph");
+
+        this.graph = graph;
+        this.encoder = encoder;
+        this.traversalMode = tMode;
+        this.turnWeighting = new TurnWeighting(weighting, encoder, (TurnCostExtension) graph.getExtension());
+        turnGraph = new LevelGraphStorage(dir, graph.getEncodingManager(), false);
+        // the weights are already stored in the distance of the turn graph edges
+        prepareCH = new PrepareContractionHierarchies(turnGraph, encoder, new ShortestWeighting(), TraversalMode.NODE_BASED);
+    }
+
+    /**
+     * @return the node based preparation of the turn graph, e.g. to configure the updates or the
+     * threads
+     */
+    public PrepareContractionHierarchies getPrepareCH()
+    {
+        return prepareCH;
+    }
+
+    @Override
+    public void doWork()
+    {
+        super.doWork();
+
+        StopWatch sw = new StopWatch().start();
+        int edges = graph.getAllEdges().getCount();
+        logger.info("Start creating turn graph for " + edges + " edges");
+        turnGraph.create(1000);
+        if (edges > 0)
+            turnGraph.getNodeAccess().setNode(2 * edges - 1, 0, 0);
+
+        long flags = encoder.setProperties(encoder.getMaxSpeed(), true, false);
+        EdgeExplorer inExplorer = graph.createEdgeExplorer(new DefaultEdgeFilter(encoder, true, false));
+        EdgeExplorer outExplorer = graph.createEdgeExplorer(new DefaultEdgeFilter(encoder, false, true));
+        int nodes = graph.getNodes();
+        int turns = 0;
+        for (int node = 0; node < nodes; node++)
+        {
+            EdgeIterator inIter = inExplorer.setBaseNode(node);
+            while (inIter.next())
+            {
+                int inEdge = inIter.getEdge();
+                int inNode = GHUtility.createEdgeKey(inIter.getAdjNode(), node, inEdge, false);
+                EdgeIterator outIter = outExplorer.setBaseNode(node);
+                while (outIter.next())
+                {
+                    if (!traversalMode.hasUTurnSupport() && outIter.getEdge() == inEdge)
+                        continue;
+
+                    int outNode = GHUtility.createEdgeKey(node, outIter.getAdjNode(), outIter.getEdge(), false);
+                    if (inNode == outNode)
+                        continue;
+
+                    double weight = turnWeighting.calcWeight(outIter, false, inEdge);
+                    if (Double.isInfinite(weight))
+                        continue;
+
+                    turnGraph.edge(inNode, outNode).setDistance(weight).setFlags(flags);
+                    turns++;
+                }
+            }
+        }
+        logger.info("Created turn graph with " + turnGraph.getNodes() + " nodes and " + turns + " turns in "
+                + sw.stop().getSeconds() + "s");
+
+        prepareCH.doWork();
+        loaded = true;
+    }
+
+    /**
+     * @return true if the prepared turn graph could be loaded from the directory
+     */
+    public boolean loadExisting()
+    {
+        loaded = turnGraph.loadExisting();
+        if (loaded && turnGraph.getNodes() != 2 * graph.getAllEdges().getCount())
+            throw new IllegalStateException("Turn graph with " + turnGraph.getNodes() + " nodes does not match the "
+                    + graph.getAllEdges().getCount() + " edges of the graph in " + graph.getDirectory());
+
+        return loaded;
+    }
+
+    public void flush()
+    {
+        turnGraph.flush();
+    }
+
+    public void close()
+    {
+        turnGraph.close();
+    }
+
+    public LevelGraph getTurnGraph()
+    {
+        return turnGraph;
+    }
+
+    GraphStorage getGraph()
+    {
+        return graph;
+    }
+
+    FlagEncoder getEncoder()
+    {
+        return encoder;
+    }
+
+    Weighting getPrepareWeighting()
+    {
+        return prepareWeighting;
+    }
+
+    /**
+     * @return the node of the original graph where the directed edge of the specified turn graph
+     * node ends
+     */
+    int getAdjNode( int turnNode )
+    {
+        EdgeIteratorState edgeState = graph.getEdgeProps(turnNode >>> 1, Integer.MIN_VALUE);
+        int min = Math.min(edgeState.getBaseNode(), edgeState.getAdjNode());
+        int max = Math.max(edgeState.getBaseNode(), edgeState.getAdjNode());
+        // see GHUtility.createEdgeKey: the key is odd if the base node is the bigger one
+        return (turnNode & 1) == 1 ? min : max;
+    }
+
+    /**
+     * @return the turn graph node for the specified edge which ends at adjNode
+     */
+    int createTurnNode( int edge, int adjNode )
+    {
+        EdgeIteratorState edgeState = graph.getEdgeProps(edge, adjNode);
+        return GHUtility.createEdgeKey(edgeState.getBaseNode(), adjNode, edge, false);
+    }
+
+    /**
+     * Calculates the exact weight of the turn graph edge between the specified turn graph nodes,
+     * the stored weight is rounded.
+     */
+    double calcTurnEdgeWeight( int fromTurnNode, int toTurnNode )
+    {
+        EdgeIteratorState edgeState = graph.getEdgeProps(toTurnNode >>> 1, getAdjNode(toTurnNode));
+        return turnWeighting.calcWeight(edgeState, false, fromTurnNode >>> 1);
+    }
+
+    @Override
+    public RoutingAlgorithm createAlgo( Graph g, AlgorithmOptions opts )
+    {
+        if (!loaded || !isApplicable(opts))
+        {
+            if (loaded)
+                logFallback(opts);
+
+            return simpleFactory.createAlgo(g, opts);
+        }
+
+        EdgeBasedCHAlgorithm algo = new EdgeBasedCHAlgorithm(g, this, (TurnWeighting) opts.getWeighting(),
+                opts.getTraversalMode());
+        if (opts.getBudget() != null)
+            algo.setBudget(opts.getBudget());
+
+        return algo;
+    }
+
+    private void logFallback( AlgorithmOptions opts )
+    {
+        String msg = "Request not supported by the turn graph of " + this + ", calculated without contraction hierarchies: "
+                + opts.getAlgorithm() + ", " + opts.getTraversalMode() + ", " + opts.getWeighting();
+        if (fallbackLogged)
+        {
+            logger.debug(msg);
+        } else
+        {
+            fallbackLogged = true;
+            logger.warn(msg + ". Further requests like this are logged in debug");
+        }
+    }
+
+    /**
+     * The turn graph contains the weights of the prepared vehicle and weighting with the turn
+     * costs. U-turns are only included if the prepared traversal mode supports them.
+     */
+    boolean isApplicable( AlgorithmOptions opts )
+    {
+        String algoStr = opts.getAlgorithm();
+        if (!AlgorithmOptions.DIJKSTRA_BI.equalsIgnoreCase(algoStr) && !AlgorithmOptions.ASTAR_BI.equalsIgnoreCase(algoStr))
+            return false;
+
+        TraversalMode tMode = opts.getTraversalMode();
+        return tMode.isEdgeBased() && tMode.hasUTurnSupport() == traversalMode.hasUTurnSupport()
+                && opts.getWeighting() instanceof TurnWeighting
+                && opts.getFlagEncoder() == encoder
+                && opts.getWeighting().toString().equals(turnWeighting.toString());
+    }
+
+    @Override
+    public String toString()
+    {
+        return "edgeBasedCH|" + turnWeighting + "|" + traversalMode;
+    }
+}
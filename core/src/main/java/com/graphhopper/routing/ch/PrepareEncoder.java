@@ -55,7 +55,18 @@ public class PrepareEncoder
     // <->        f | f  | t
     public static final boolean canBeOverwritten( long flags1, long flags2 )
     {
-        return (flags2 & scDirMask) == scDirMask
-                || (flags1 & scDirMask) == (flags2 & scDirMask);
+        return canBeOverwritten(flags1, flags2, scDirMask);
+    }
+
+    /**
+     * Same as canBeOverwritten(long, long) but for shortcuts which store the direction in the
+     * access bits of an arbitrary vehicle, e.g. in a LevelGraphOverlay.
+     * <p>
+     * @param dirMask the forward and backward bits of the vehicle
+     */
+    public static final boolean canBeOverwritten( long flags1, long flags2, long dirMask )
+    {
+        return (flags2 & dirMask) == dirMask
+                || (flags1 & dirMask) == (flags2 & dirMask);
     }
 }
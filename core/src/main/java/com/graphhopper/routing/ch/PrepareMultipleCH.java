@@ -0,0 +1,197 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.AlgorithmOptions;
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.RoutingAlgorithmFactory;
+import com.graphhopper.routing.RoutingAlgorithmFactorySimple;
+import com.graphhopper.routing.util.*;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphStorage;
+import com.graphhopper.storage.LevelGraph;
+import com.graphhopper.storage.LevelGraphOverlay;
+import com.graphhopper.util.StopWatch;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Prepares one contraction hierarchy per vehicle and weighting on the same graph. Every
+ * preparation stores only its levels and shortcuts in a LevelGraphOverlay in the directory of the
+ * graph, the nodes and edges are shared.
+ * <p/>
+ * Bidirectional algorithms created via createAlgo use the preparation of the requested vehicle
+ * and weighting. The graph passed to createAlgo has to be based on the graph returned from getGraph
+ * for the same request. All other requests are handled like in RoutingAlgorithmFactorySimple.
+ * <p/>
+ * @author Peter Karich
+ */
+public class PrepareMultipleCH extends AbstractAlgoPreparation implements RoutingAlgorithmFactory
+{
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final GraphStorage graph;
+    private final List<LevelGraphOverlay> overlays = new ArrayList<LevelGraphOverlay>();
+    private final List<PrepareContractionHierarchies> preparations = new ArrayList<PrepareContractionHierarchies>();
+    private final List<FlagEncoder> encoders = new ArrayList<FlagEncoder>();
+    private final List<String> weightings = new ArrayList<String>();
+    private final RoutingAlgorithmFactorySimple simpleFactory = new RoutingAlgorithmFactorySimple();
+    private boolean loaded;
+
+    public PrepareMultipleCH( GraphStorage graph )
+    {
+        this.graph = graph;
+    }
+
+    /**
+     * Adds a contraction hierarchy for the specified vehicle and weighting.
+     * <p/>
+     * @param name the unique name of the preparation used for the files, e.g. car_fastest
+     * @return the preparation e.g. to configure the updates or the threads
+     */
+    public PrepareContractionHierarchies addPreparation( String name, FlagEncoder encoder, Weighting weighting,
+            TraversalMode tMode )
+    {
+        for (LevelGraphOverlay overlay : overlays)
+        {
+            if (overlay.getName().equals(name))
+                throw new IllegalArgumentException("Preparation " + name + " already exists");
+        }
+
+        if (getIndex(encoder, weighting) >= 0)
+            throw new IllegalArgumentException("Preparation for " + encoder + " and " + weighting + " already exists");
+
+        LevelGraphOverlay overlay = new LevelGraphOverlay(name, graph, encoder);
+        PrepareContractionHierarchies prepareCH = new PrepareContractionHierarchies(overlay, encoder, weighting, tMode);
+        overlays.add(overlay);
+        preparations.add(prepareCH);
+        encoders.add(encoder);
+        weightings.add(weighting.toString());
+        return prepareCH;
+    }
+
+    public List<PrepareContractionHierarchies> getPreparations()
+    {
+        return preparations;
+    }
+
+    @Override
+    public void doWork()
+    {
+        if (preparations.isEmpty())
+            throw new IllegalStateException("No preparation added");
+
+        super.doWork();
+        for (int i = 0; i < preparations.size(); i++)
+        {
+            StopWatch sw = new StopWatch().start();
+            overlays.get(i).create(1000);
+            preparations.get(i).doWork();
+            logger.info("Prepared " + overlays.get(i).getName() + " with " + overlays.get(i).getShortcuts()
+                    + " shortcuts in " + sw.stop().getSeconds() + "s");
+        }
+        loaded = true;
+    }
+
+    /**
+     * @return true if all preparations could be loaded from the directory of the graph
+     */
+    public boolean loadExisting()
+    {
+        for (LevelGraphOverlay overlay : overlays)
+        {
+            if (!overlay.loadExisting())
+                return false;
+        }
+        loaded = true;
+        return true;
+    }
+
+    public void flush()
+    {
+        for (LevelGraphOverlay overlay : overlays)
+        {
+            overlay.flush();
+        }
+    }
+
+    public void close()
+    {
+        for (LevelGraphOverlay overlay : overlays)
+        {
+            overlay.close();
+        }
+    }
+
+    private int getIndex( FlagEncoder encoder, Weighting weighting )
+    {
+        String weightingStr = weighting.toString();
+        for (int i = 0; i < encoders.size(); i++)
+        {
+            if (encoders.get(i) == encoder && weightings.get(i).equals(weightingStr))
+                return i;
+        }
+        return -1;
+    }
+
+    private boolean isApplicable( String algorithm )
+    {
+        return AlgorithmOptions.DIJKSTRA_BI.equalsIgnoreCase(algorithm)
+                || AlgorithmOptions.ASTAR_BI.equalsIgnoreCase(algorithm);
+    }
+
+    /**
+     * @return the prepared graph for the specified algorithm, vehicle and weighting or null if
+     * there is no such preparation or the algorithm cannot use it
+     */
+    public LevelGraph getGraph( String algorithm, FlagEncoder encoder, Weighting weighting )
+    {
+        if (!isApplicable(algorithm))
+            return null;
+
+        int index = getIndex(encoder, weighting);
+        return loaded && index >= 0 ? overlays.get(index) : null;
+    }
+
+    /**
+     * @return the preparation for the specified vehicle and weighting or null if there is no such
+     * preparation
+     */
+    public PrepareContractionHierarchies getPreparation( FlagEncoder encoder, Weighting weighting )
+    {
+        int index = getIndex(encoder, weighting);
+        return loaded && index >= 0 ? preparations.get(index) : null;
+    }
+
+    @Override
+    public RoutingAlgorithm createAlgo( Graph g, AlgorithmOptions opts )
+    {
+        PrepareContractionHierarchies prepareCH = getPreparation(opts.getFlagEncoder(), opts.getWeighting());
+        if (prepareCH == null || !isApplicable(opts.getAlgorithm()))
+            return simpleFactory.createAlgo(g, opts);
+
+        return prepareCH.createAlgo(g, opts);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "multipleCH|" + weightings;
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.lm;
+
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.WeightApproximator;
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import java.util.Arrays;
+
+/**
+ * Approximates the weight to the goal node via the triangle inequality and the weights from and to
+ * the landmarks (ALT). For every landmark L the weight of a path from v to t is at least
+ * weight(L,t)-weight(L,v) and weight(v,L)-weight(t,L). The maximum of these lower bounds is
+ * returned.
+ * <p/>
+ * Nodes of the specified graph which are not in the LandmarkStorage (e.g. virtual nodes of a
+ * QueryGraph) get their landmark weights from their neighbors.
+ * <p/>
+ * @author Peter Karich
+ */
+public class LMApproximator implements WeightApproximator
+{
+    private final Graph graph;
+    private final LandmarkStorage lms;
+    private final int landmarks;
+    private final int baseNodes;
+    private final boolean reverse;
+    // weights of the virtual nodes, same layout as the rows in LandmarkStorage
+    private final int[] virtualWeights;
+    // every stored weight is rounded down, so subtract the maximum error to keep a lower bound
+    private final int slack;
+    private final int[] goalWeights;
+
+    /**
+     * @param reverse if true the approximated weight is the weight from the goal node to the node
+     * e.g. for the backward search of a bidirectional algorithm
+     */
+    public LMApproximator( Graph graph, LandmarkStorage lms, boolean reverse )
+    {
+        this.graph = graph;
+        this.lms = lms;
+        this.landmarks = lms.getLandmarkCount();
+        this.baseNodes = lms.getNodes();
+        this.reverse = reverse;
+        int virtualNodes = Math.max(0, graph.getNodes() - baseNodes);
+        this.virtualWeights = new int[virtualNodes * landmarks * 2];
+        this.slack = 1 + virtualNodes;
+        this.goalWeights = new int[landmarks * 2];
+        initVirtualWeights();
+    }
+
+    private LMApproximator( LMApproximator other, boolean reverse )
+    {
+        this.graph = other.graph;
+        this.lms = other.lms;
+        this.landmarks = other.landmarks;
+        this.baseNodes = other.baseNodes;
+        this.reverse = reverse;
+        this.virtualWeights = other.virtualWeights;
+        this.slack = other.slack;
+        this.goalWeights = new int[landmarks * 2];
+    }
+
+    /**
+     * Calculates the landmark weights of the virtual nodes from their neighbors. As virtual nodes
+     * can be connected to other virtual nodes this is repeated until nothing changes.
+     */
+    private void initVirtualWeights()
+    {
+        if (virtualWeights.length == 0)
+            return;
+
+        Arrays.fill(virtualWeights, LandmarkStorage.INFINITY);
+        FlagEncoder encoder = lms.getEncoder();
+        Weighting weighting = lms.getWeighting();
+        double factor = lms.getFactor();
+        EdgeExplorer explorer = graph.createEdgeExplorer(EdgeFilter.ALL_EDGES);
+        int virtualNodes = graph.getNodes() - baseNodes;
+        boolean changed = true;
+        for (int round = 0; changed && round <= virtualNodes; round++)
+        {
+            changed = false;
+            for (int node = baseNodes; node < graph.getNodes(); node++)
+            {
+                EdgeIterator iter = explorer.setBaseNode(node);
+                while (iter.next())
+                {
+                    long flags = iter.getFlags();
+                    int adjNode = iter.getAdjNode();
+                    boolean bwd = encoder.isBool(flags, FlagEncoder.K_BACKWARD);
+                    boolean fwd = encoder.isBool(flags, FlagEncoder.K_FORWARD);
+                    for (int lmIndex = 0; lmIndex < landmarks; lmIndex++)
+                    {
+                        int index = ((node - baseNodes) * landmarks + lmIndex) * 2;
+                        if (bwd)
+                        {
+                            // landmark -> adjNode -> node
+                            int weight = add(getFromWeight(lmIndex, adjNode), weighting.calcWeight(iter, true, EdgeIterator.NO_EDGE) * factor);
+                            if (weight < virtualWeights[index])
+                            {
+                                virtualWeights[index] = weight;
+                                changed = true;
+                            }
+                        }
+                        if (fwd)
+                        {
+                            // node -> adjNode -> landmark
+                            int weight = add(getToWeight(lmIndex, adjNode), weighting.calcWeight(iter, false, EdgeIterator.NO_EDGE) * factor);
+                            if (weight < virtualWeights[index + 1])
+                            {
+                                virtualWeights[index + 1] = weight;
+                                changed = true;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static int add( int storedWeight, double scaledEdgeWeight )
+    {
+        if (storedWeight == LandmarkStorage.INFINITY || Double.isInfinite(scaledEdgeWeight))
+            return LandmarkStorage.INFINITY;
+
+        double sum = storedWeight + scaledEdgeWeight;
+        if (sum >= LandmarkStorage.INFINITY)
+            return LandmarkStorage.INFINITY;
+        return (int) sum;
+    }
+
+    private int getFromWeight( int lmIndex, int node )
+    {
+        if (node >= baseNodes)
+            return virtualWeights[((node - baseNodes) * landmarks + lmIndex) * 2];
+        return lms.getFromWeight(lmIndex, node);
+    }
+
+    private int getToWeight( int lmIndex, int node )
+    {
+        if (node >= baseNodes)
+            return virtualWeights[((node - baseNodes) * landmarks + lmIndex) * 2 + 1];
+        return lms.getToWeight(lmIndex, node);
+    }
+
+    @Override
+    public void setGoalNode( int goalNode )
+    {
+        for (int lmIndex = 0; lmIndex < landmarks; lmIndex++)
+        {
+            goalWeights[lmIndex * 2] = getFromWeight(lmIndex, goalNode);
+            goalWeights[lmIndex * 2 + 1] = getToWeight(lmIndex, goalNode);
+        }
+    }
+
+    @Override
+    public double approximate( int node )
+    {
+        int max = 0;
+        for (int lmIndex = 0; lmIndex < landmarks; lmIndex++)
+        {
+            int fromGoal = goalWeights[lmIndex * 2];
+            int toGoal = goalWeights[lmIndex * 2 + 1];
+            int fromNode = getFromWeight(lmIndex, node);
+            int toNode = getToWeight(lmIndex, node);
+            if (fromGoal != LandmarkStorage.INFINITY && fromNode != LandmarkStorage.INFINITY)
+                max = Math.max(max, reverse ? fromNode - fromGoal : fromGoal - fromNode);
+
+            if (toGoal != LandmarkStorage.INFINITY && toNode != LandmarkStorage.INFINITY)
+                max = Math.max(max, reverse ? toGoal - toNode : toNode - toGoal);
+        }
+
+        if (max <= slack)
+            return 0;
+        return (max - slack) / lms.getFactor();
+    }
+
+    /**
+     * @return an approximator for the opposite direction sharing the weights of the virtual nodes
+     */
+    public LMApproximator reverse()
+    {
+        return new LMApproximator(this, !reverse);
+    }
+
+    @Override
+    public WeightApproximator duplicate()
+    {
+        return new LMApproximator(this, reverse);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "landmarks";
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.lm;
+
+import com.graphhopper.coll.IntDoubleBinHeap;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.Storable;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Stores for every node the weight from and to a small set of landmark nodes. The weights are
+ * scaled and stored as integers, where Integer.MAX_VALUE means the node is not reachable (or too
+ * far away). The landmarks are selected via the 'farthest' heuristic: the next landmark is the
+ * node with the largest weight to all already selected landmarks.
+ * <p/>
+ * The layout of the DataAccess is the list of landmark node ids followed by one row per node
+ * containing the pairs (weight from landmark, weight to landmark) for every landmark.
+ * <p/>
+ * @author Peter Karich
+ */
+public class LandmarkStorage implements Storable<LandmarkStorage>
+{
+    static final int INFINITY = Integer.MAX_VALUE;
+    private final Graph graph;
+    private final FlagEncoder encoder;
+    private final Weighting weighting;
+    private final DataAccess landmarkWeights;
+    private int landmarks;
+    private int nodes;
+    private double factor = 1;
+    private long rowOffset;
+    private long rowBytes;
+    private final Random rand = new Random(123);
+
+    public LandmarkStorage( Graph graph, Directory dir, String name, FlagEncoder encoder,
+            Weighting weighting, int landmarks )
+    {
+        if (landmarks <= 0)
+            throw new IllegalArgumentException("Landmark count has to be positive but was " + landmarks);
+
+        this.graph = graph;
+        this.encoder = encoder;
+        this.weighting = weighting;
+        this.landmarks = landmarks;
+        this.landmarkWeights = dir.find(name);
+    }
+
+    /**
+     * Selects the landmarks and calculates the weights from and to them for all nodes of the
+     * graph. This needs two full Dijkstra searches per landmark.
+     */
+    public void createLandmarks()
+    {
+        nodes = graph.getNodes();
+        if (nodes < landmarks)
+            throw new IllegalStateException("Cannot create " + landmarks + " landmarks for a graph with "
+                    + nodes + " nodes");
+
+        initOffsets();
+        landmarkWeights.create(1000);
+        landmarkWeights.ensureCapacity(rowOffset + (long) nodes * rowBytes);
+
+        // the first landmark is the node farthest away from a random start node
+        double[] weights = calcWeights(rand.nextInt(nodes), false);
+        int landmark = findFarthest(weights, null);
+        double[] minWeights = new double[nodes];
+        Arrays.fill(minWeights, Double.POSITIVE_INFINITY);
+        int[] landmarkNodes = new int[landmarks];
+        Arrays.fill(landmarkNodes, -1);
+        for (int lmIndex = 0; lmIndex < landmarks; lmIndex++)
+        {
+            landmarkNodes[lmIndex] = landmark;
+            landmarkWeights.setInt(lmIndex * 4L, landmark);
+            double[] fromWeights = calcWeights(landmark, false);
+            double[] toWeights = calcWeights(landmark, true);
+            if (lmIndex == 0)
+                factor = createFactor(fromWeights, toWeights);
+
+            for (int node = 0; node < nodes; node++)
+            {
+                long pointer = rowOffset + node * rowBytes + lmIndex * 8L;
+                landmarkWeights.setInt(pointer, toStorage(fromWeights[node]));
+                landmarkWeights.setInt(pointer + 4, toStorage(toWeights[node]));
+                minWeights[node] = Math.min(minWeights[node], fromWeights[node]);
+            }
+
+            if (lmIndex + 1 < landmarks)
+                landmark = findFarthest(minWeights, landmarkNodes);
+        }
+        landmarkWeights.setHeader(0, landmarks);
+        landmarkWeights.setHeader(1 * 4, nodes);
+        landmarkWeights.setHeader(2 * 4, Float.floatToIntBits((float) factor));
+    }
+
+    private void initOffsets()
+    {
+        rowOffset = landmarks * 4L;
+        rowBytes = landmarks * 8L;
+    }
+
+    /**
+     * The factor scales the weights so that twice the largest weight found from the first landmark
+     * still fits into an integer.
+     */
+    static double createFactor( double[] fromWeights, double[] toWeights )
+    {
+        double max = 0;
+        for (int i = 0; i < fromWeights.length; i++)
+        {
+            if (!Double.isInfinite(fromWeights[i]))
+                max = Math.max(max, fromWeights[i]);
+            if (!Double.isInfinite(toWeights[i]))
+                max = Math.max(max, toWeights[i]);
+        }
+        if (max <= 0)
+            return 1;
+
+        return (float) (INFINITY / 4 / max);
+    }
+
+    private int toStorage( double weight )
+    {
+        double scaled = weight * factor;
+        if (Double.isInfinite(scaled) || scaled >= INFINITY)
+            return INFINITY;
+        return (int) scaled;
+    }
+
+    /**
+     * @return the reachable node with the largest weight which is not yet a landmark, or a random
+     * node if no such node exists e.g. because all reachable nodes are already landmarks
+     */
+    private int findFarthest( double[] weights, int[] landmarkNodes )
+    {
+        int farthest = -1;
+        double max = -1;
+        for (int node = 0; node < weights.length; node++)
+        {
+            if (Double.isInfinite(weights[node]) || weights[node] <= max || contains(landmarkNodes, node))
+                continue;
+
+            max = weights[node];
+            farthest = node;
+        }
+
+        while (farthest < 0)
+        {
+            int node = rand.nextInt(nodes);
+            if (!contains(landmarkNodes, node))
+                farthest = node;
+        }
+        return farthest;
+    }
+
+    private static boolean contains( int[] landmarkNodes, int node )
+    {
+        if (landmarkNodes == null)
+            return false;
+
+        for (int i = 0; i < landmarkNodes.length; i++)
+        {
+            if (landmarkNodes[i] == node)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Calculates the weights from the specified node to all other nodes or, if reverse is true,
+     * the weights from all other nodes to the specified node. Turn costs are ignored which only
+     * makes the weights smaller and so they stay valid lower bounds.
+     */
+    double[] calcWeights( int startNode, boolean reverse )
+    {
+        double[] weights = new double[graph.getNodes()];
+        Arrays.fill(weights, Double.POSITIVE_INFINITY);
+        boolean[] settled = new boolean[weights.length];
+        EdgeExplorer explorer = graph.createEdgeExplorer(new DefaultEdgeFilter(encoder, reverse, !reverse));
+        IntDoubleBinHeap heap = new IntDoubleBinHeap();
+        weights[startNode] = 0;
+        heap.insert_(0, startNode);
+        while (!heap.isEmpty())
+        {
+            int node = heap.poll_element();
+            if (settled[node])
+                continue;
+
+            settled[node] = true;
+            EdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next())
+            {
+                int adjNode = iter.getAdjNode();
+                if (settled[adjNode])
+                    continue;
+
+                double weight = weights[node] + weighting.calcWeight(iter, reverse, EdgeIterator.NO_EDGE);
+                if (weight < weights[adjNode])
+                {
+                    weights[adjNode] = weight;
+                    heap.insert_(weight, adjNode);
+                }
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * @return the scaled weight from the specified landmark to the node or INFINITY
+     */
+    final int getFromWeight( int lmIndex, int node )
+    {
+        return landmarkWeights.getInt(rowOffset + node * rowBytes + lmIndex * 8L);
+    }
+
+    /**
+     * @return the scaled weight from the node to the specified landmark or INFINITY
+     */
+    final int getToWeight( int lmIndex, int node )
+    {
+        return landmarkWeights.getInt(rowOffset + node * rowBytes + lmIndex * 8L + 4);
+    }
+
+    public int[] getLandmarks()
+    {
+        int[] landmarkNodes = new int[landmarks];
+        for (int i = 0; i < landmarks; i++)
+        {
+            landmarkNodes[i] = landmarkWeights.getInt(i * 4L);
+        }
+        return landmarkNodes;
+    }
+
+    public int getLandmarkCount()
+    {
+        return landmarks;
+    }
+
+    /**
+     * @return the number of nodes of the graph used in createLandmarks. Nodes with a higher id are
+     * virtual nodes e.g. of a QueryGraph.
+     */
+    public int getNodes()
+    {
+        return nodes;
+    }
+
+    public double getFactor()
+    {
+        return factor;
+    }
+
+    public FlagEncoder getEncoder()
+    {
+        return encoder;
+    }
+
+    public Weighting getWeighting()
+    {
+        return weighting;
+    }
+
+    @Override
+    public boolean loadExisting()
+    {
+        if (!landmarkWeights.loadExisting())
+            return false;
+
+        int storedLandmarks = landmarkWeights.getHeader(0);
+        if (storedLandmarks != landmarks)
+            throw new IllegalStateException("Landmark count of " + landmarkWeights.getName() + " was "
+                    + storedLandmarks + " but requested " + landmarks);
+
+        nodes = landmarkWeights.getHeader(1 * 4);
+        if (nodes != graph.getNodes())
+            throw new IllegalStateException("Landmarks of " + landmarkWeights.getName() + " were created for "
+                    + nodes + " nodes but graph has " + graph.getNodes());
+
+        factor = Float.intBitsToFloat(landmarkWeights.getHeader(2 * 4));
+        initOffsets();
+        return true;
+    }
+
+    @Override
+    public LandmarkStorage create( long byteCount )
+    {
+        throw new IllegalStateException("Use createLandmarks");
+    }
+
+    @Override
+    public void flush()
+    {
+        landmarkWeights.flush();
+    }
+
+    @Override
+    public void close()
+    {
+        landmarkWeights.close();
+    }
+
+    @Override
+    public boolean isClosed()
+    {
+        return landmarkWeights.isClosed();
+    }
+
+    @Override
+    public long getCapacity()
+    {
+        return landmarkWeights.getCapacity();
+    }
+
+    @Override
+    public String toString()
+    {
+        return landmarkWeights.getName() + ", landmarks:" + landmarks + ", factor:" + factor;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.lm;
+
+import com.graphhopper.routing.*;
+import com.graphhopper.routing.util.AbstractAlgoPreparation;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.TurnWeighting;
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Prepares the landmarks (ALT) for the A* algorithms. In contrast to contraction hierarchies this
+ * preparation is fast and does not change the graph, the weights to the landmarks are stored in a
+ * separate file. Algorithms created via createAlgo use the landmark approximation if the algorithm
+ * is astar or astarbi and the requested weighting is the prepared one. All other requests are
+ * handled like in RoutingAlgorithmFactorySimple.
+ * <p/>
+ * The approximation can be disabled per request via the hint &lt;algorithm&gt;.approximation, e.g.
+ * astarbi.approximation=BeelineSimplification
+ * <p/>
+ * @author Peter Karich
+ */
+public class PrepareLandmarks extends AbstractAlgoPreparation implements RoutingAlgorithmFactory
+{
+    public static final String APPROXIMATION = "Landmarks";
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final Graph graph;
+    private final LandmarkStorage lms;
+    private final RoutingAlgorithmFactorySimple simpleFactory = new RoutingAlgorithmFactorySimple();
+    private boolean loaded;
+
+    public PrepareLandmarks( Directory dir, Graph graph, FlagEncoder encoder, Weighting weighting, int landmarks )
+    {
+        this.graph = graph;
+        String name = "landmarks_" + weighting.toString().toLowerCase().replaceAll("[^a-z0-9]+", "_");
+        lms = new LandmarkStorage(graph, dir, name, encoder, weighting, landmarks);
+    }
+
+    @Override
+    public void doWork()
+    {
+        super.doWork();
+
+        StopWatch sw = new StopWatch().start();
+        logger.info("Start creating " + lms.getLandmarkCount() + " landmarks for " + graph.getNodes() + " nodes");
+        lms.createLandmarks();
+        loaded = true;
+        logger.info("Finished creating landmarks in " + sw.stop().getSeconds() + "s, " + lms);
+    }
+
+    /**
+     * @return true if the landmarks could be loaded from the directory
+     */
+    public boolean loadExisting()
+    {
+        loaded = lms.loadExisting();
+        return loaded;
+    }
+
+    public void flush()
+    {
+        lms.flush();
+    }
+
+    public void close()
+    {
+        lms.close();
+    }
+
+    public LandmarkStorage getLandmarkStorage()
+    {
+        return lms;
+    }
+
+    @Override
+    public RoutingAlgorithm createAlgo( Graph g, AlgorithmOptions opts )
+    {
+        String algoStr = opts.getAlgorithm();
+        boolean astar = AlgorithmOptions.ASTAR.equalsIgnoreCase(algoStr);
+        boolean astarBi = AlgorithmOptions.ASTAR_BI.equalsIgnoreCase(algoStr);
+        if (!astar && !astarBi || !loaded || !isApplicable(opts))
+            return simpleFactory.createAlgo(g, opts);
+
+        String approxKey = (astar ? AlgorithmOptions.ASTAR : AlgorithmOptions.ASTAR_BI) + ".approximation";
+        if (!APPROXIMATION.equals(opts.getHints().get(approxKey, APPROXIMATION)))
+            return simpleFactory.createAlgo(g, opts);
+
+        // copy without hints as the simple factory does not know the landmark approximation
+        RoutingAlgorithm algo = simpleFactory.createAlgo(g, AlgorithmOptions.start(opts).build());
+        LMApproximator approx = new LMApproximator(g, lms, false);
+        if (astar)
+            ((AStar) algo).setApproximation(approx);
+        else
+            ((AStarBidirection) algo).setApproximation(approx, approx.reverse());
+
+        return algo;
+    }
+
+    /**
+     * The landmark weights are only lower bounds for the prepared vehicle and weighting. Turn costs
+     * only increase the weights so they are ignored.
+     */
+    boolean isApplicable( AlgorithmOptions opts )
+    {
+        Weighting weighting = opts.getWeighting();
+        String weightingStr = weighting.toString();
+        if (weighting instanceof TurnWeighting)
+            weightingStr = weightingStr.substring("TURN|".length());
+
+        return opts.getFlagEncoder() == lms.getEncoder() && weightingStr.equals(lms.getWeighting().toString());
+    }
+}
@@ -23,6 +23,15 @@ public class ConsistentWeightApproximator {
         uniDirApproximatorReverse = weightApprox.duplicate();
     }
 
+    /**
+     * Use this constructor if the approximation is not symmetric, where reverseApprox approximates
+     * the weight from its goal node to the specified node.
+     */
+    public ConsistentWeightApproximator(WeightApproximator forwardApprox, WeightApproximator reverseApprox){
+        uniDirApproximatorForward = forwardApprox;
+        uniDirApproximatorReverse = reverseApprox;
+    }
+
     public void setSourceNode(int sourceNode){
         uniDirApproximatorReverse.setGoalNode(sourceNode);
     }
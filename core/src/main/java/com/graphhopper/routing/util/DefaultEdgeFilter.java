@@ -50,6 +50,26 @@ public class DefaultEdgeFilter implements EdgeFilter
         return out && encoder.isBool(flags, FlagEncoder.K_FORWARD) || in && encoder.isBool(flags, FlagEncoder.K_BACKWARD);
     }
 
+    @Override
+    public int hashCode()
+    {
+        int hash = 7;
+        hash = 61 * hash + encoder.hashCode();
+        hash = 61 * hash + (in ? 1 : 0);
+        hash = 61 * hash + (out ? 1 : 0);
+        return hash;
+    }
+
+    @Override
+    public boolean equals( Object obj )
+    {
+        if (obj == null || getClass() != obj.getClass())
+            return false;
+
+        final DefaultEdgeFilter other = (DefaultEdgeFilter) obj;
+        return in == other.in && out == other.out && encoder.equals(other.encoder);
+    }
+
     @Override
     public String toString()
     {
@@ -61,6 +61,11 @@ public class TurnWeighting implements Weighting
         return this;
     }
 
+    public double getDefaultUTurnCost()
+    {
+        return defaultUTurnCost;
+    }
+
     @Override
     public double getMinWeight( double distance )
     {
@@ -22,6 +22,7 @@ import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.Storable;
 import com.graphhopper.util.BitUtil;
 import com.graphhopper.util.Helper;
+import java.util.Arrays;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,17 +34,71 @@ public class NameIndex implements Storable<NameIndex>
 {
     private static final Logger logger = LoggerFactory.getLogger(NameIndex.class);
     private static final long START_POINTER = 1;
+    // limits the deduplication table to two int arrays of 8M entries (64MB), while growing the
+    // previous arrays of 4M entries are still referenced which makes a peak of 96MB
+    private static final int MAX_DEDUP_NAMES = 1 << 22;
     private final DataAccess names;
     private long bytePointer = START_POINTER;
     // minor optimization for the previous stored name
     private String lastName;
     private long lastIndex;
+    private boolean deduplicate = false;
+    // open addressing table: hash of the name | pointer to the name, a pointer of 0 marks a free slot
+    private int[] dedupHashes;
+    private int[] dedupPointers;
+    private int dedupSize;
+    private int cacheSize;
+    private CachedName[] cache;
 
     public NameIndex( Directory dir )
     {
         names = dir.find("names");
     }
 
+    /**
+     * Stores every distinct name only once, instead of only skipping a name equal to the previous
+     * one. During import a hash table from the name to its pointer is kept in memory, which is
+     * limited to 4 million distinct names. Names beyond this are stored without deduplication.
+     */
+    public NameIndex setDeduplicate( boolean deduplicate )
+    {
+        this.deduplicate = deduplicate;
+        if (!deduplicate)
+        {
+            dedupHashes = null;
+            dedupPointers = null;
+            dedupSize = 0;
+        }
+        return this;
+    }
+
+    public boolean isDeduplicate()
+    {
+        return deduplicate;
+    }
+
+    /**
+     * Caches the specified number of decoded names for get, so that the same String instance is
+     * returned for frequently requested names. A size of 0 disables the cache.
+     */
+    public NameIndex setCacheSize( int cacheSize )
+    {
+        if (cacheSize < 0)
+            throw new IllegalArgumentException("cacheSize cannot be negative: " + cacheSize);
+
+        this.cacheSize = cacheSize;
+        if (cacheSize == 0)
+            cache = null;
+        else
+            cache = new CachedName[Integer.highestOneBit(Math.max(1, cacheSize - 1)) << 1];
+        return this;
+    }
+
+    public int getCacheSize()
+    {
+        return cacheSize;
+    }
+
     @Override
     public NameIndex create( long cap )
     {
@@ -56,7 +111,7 @@ public class NameIndex implements Storable<NameIndex>
     {
         if (names.loadExisting())
         {
-            bytePointer = BitUtil.LITTLE.combineIntsToLong(names.getHeader(0), names.getHeader(1));
+            bytePointer = BitUtil.LITTLE.combineIntsToLong(names.getHeader(0), names.getHeader(4));
             return true;
         }
 
@@ -77,6 +132,21 @@ public class NameIndex implements Storable<NameIndex>
             return lastIndex;
         }
         byte[] bytes = getBytes(name);
+        int hash = 0;
+        if (deduplicate)
+        {
+            if (dedupPointers == null)
+                initDedupTable();
+
+            hash = hash(bytes);
+            long existing = findDuplicate(hash, bytes);
+            if (existing > 0)
+            {
+                lastName = name;
+                lastIndex = existing;
+                return existing;
+            }
+        }
         long oldPointer = bytePointer;
         names.ensureCapacity(bytePointer + 1 + bytes.length);
         byte[] sizeBytes = new byte[]
@@ -91,11 +161,90 @@ public class NameIndex implements Storable<NameIndex>
         {
             throw new IllegalStateException("Way index is too large. Cannot contain more than 2GB");
         }
+        if (deduplicate && oldPointer <= Integer.MAX_VALUE)
+            addDuplicate(hash, (int) oldPointer);
+
         lastName = name;
         lastIndex = oldPointer;
         return oldPointer;
     }
 
+    /**
+     * Fills the deduplication table with the names which are already stored, e.g. after
+     * loadExisting.
+     */
+    private void initDedupTable()
+    {
+        dedupHashes = new int[1024];
+        dedupPointers = new int[1024];
+        dedupSize = 0;
+        long pointer = START_POINTER;
+        while (pointer < bytePointer && pointer <= Integer.MAX_VALUE)
+        {
+            byte[] bytes = getStoredBytes(pointer);
+            addDuplicate(hash(bytes), (int) pointer);
+            pointer += 1 + bytes.length;
+        }
+    }
+
+    private static int hash( byte[] bytes )
+    {
+        int hash = Arrays.hashCode(bytes);
+        // spread the bits as the table size is a power of two
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * @return the pointer of the stored name with the specified bytes or 0 if not found
+     */
+    private long findDuplicate( int hash, byte[] bytes )
+    {
+        int mask = dedupPointers.length - 1;
+        for (int slot = hash & mask;; slot = (slot + 1) & mask)
+        {
+            int pointer = dedupPointers[slot];
+            if (pointer == 0)
+                return 0;
+
+            if (dedupHashes[slot] == hash && Arrays.equals(bytes, getStoredBytes(pointer)))
+                return pointer;
+        }
+    }
+
+    private void addDuplicate( int hash, int pointer )
+    {
+        if (dedupSize >= MAX_DEDUP_NAMES)
+            return;
+
+        // keep the load factor below 0.5
+        if (2 * (dedupSize + 1) > dedupPointers.length)
+        {
+            int[] oldHashes = dedupHashes;
+            int[] oldPointers = dedupPointers;
+            dedupHashes = new int[oldPointers.length * 2];
+            dedupPointers = new int[oldPointers.length * 2];
+            for (int i = 0; i < oldPointers.length; i++)
+            {
+                if (oldPointers[i] != 0)
+                    insert(oldHashes[i], oldPointers[i]);
+            }
+        }
+        insert(hash, pointer);
+        dedupSize++;
+    }
+
+    private void insert( int hash, int pointer )
+    {
+        int mask = dedupPointers.length - 1;
+        int slot = hash & mask;
+        while (dedupPointers[slot] != 0)
+        {
+            slot = (slot + 1) & mask;
+        }
+        dedupHashes[slot] = hash;
+        dedupPointers[slot] = pointer;
+    }
+
     private byte[] getBytes( String name )
     {
         byte[] bytes = null;
@@ -130,12 +279,29 @@ public class NameIndex implements Storable<NameIndex>
         {
             return "";
         }
+        // read the array only once as setCacheSize could replace it
+        CachedName[] tmpCache = cache;
+        if (tmpCache == null)
+            return new String(getStoredBytes(pointer), Helper.UTF_CS);
+
+        int slot = (int) (pointer ^ (pointer >>> 32)) & (tmpCache.length - 1);
+        CachedName cached = tmpCache[slot];
+        if (cached != null && cached.pointer == pointer)
+            return cached.name;
+
+        String name = new String(getStoredBytes(pointer), Helper.UTF_CS);
+        tmpCache[slot] = new CachedName(pointer, name);
+        return name;
+    }
+
+    private byte[] getStoredBytes( long pointer )
+    {
         byte[] sizeBytes = new byte[1];
         names.getBytes(pointer, sizeBytes, 1);
         int size = sizeBytes[0] & 0xFF;
         byte[] bytes = new byte[size];
         names.getBytes(pointer + sizeBytes.length, bytes, size);
-        return new String(bytes, Helper.UTF_CS);
+        return bytes;
     }
 
     @Override
@@ -172,5 +338,25 @@ public class NameIndex implements Storable<NameIndex>
     public void copyTo( NameIndex nameIndex )
     {
         names.copyTo(nameIndex.names);
+        nameIndex.bytePointer = bytePointer;
+        nameIndex.lastName = null;
+        nameIndex.dedupPointers = null;
+        if (nameIndex.cache != null)
+            Arrays.fill(nameIndex.cache, null);
+    }
+
+    /**
+     * Immutable so that concurrent readers see either the complete entry or none.
+     */
+    private static class CachedName
+    {
+        final long pointer;
+        final String name;
+
+        CachedName( long pointer, String name )
+        {
+            this.pointer = pointer;
+            this.name = name;
+        }
     }
 }
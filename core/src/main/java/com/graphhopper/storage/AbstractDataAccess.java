@@ -22,7 +22,17 @@ import com.graphhopper.util.Helper;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Peter Karich
@@ -43,6 +53,9 @@ public abstract class AbstractDataAccess implements DataAccess
     protected final ByteOrder byteOrder;
     protected final BitUtil bitUtil;
     protected transient boolean closed = false;
+    private int loadThreads = 1;
+    private int flushThreads = 1;
+    private boolean fsync = false;
 
     public AbstractDataAccess( String name, String location, ByteOrder order )
     {
@@ -126,6 +139,173 @@ public abstract class AbstractDataAccess implements DataAccess
         return bytes;
     }
 
+    /**
+     * Sets the number of threads reading the segments of one file in loadExisting. Only used by
+     * the in-memory implementations.
+     */
+    public void setLoadThreads( int loadThreads )
+    {
+        if (loadThreads < 1)
+            throw new IllegalArgumentException("loadThreads has to be at least 1 but was " + loadThreads);
+
+        this.loadThreads = loadThreads;
+    }
+
+    /**
+     * Sets the number of threads writing the segments of one file in flush. Only used by the
+     * in-memory and the unsafe implementations.
+     */
+    public void setFlushThreads( int flushThreads )
+    {
+        if (flushThreads < 1)
+            throw new IllegalArgumentException("flushThreads has to be at least 1 but was " + flushThreads);
+
+        this.flushThreads = flushThreads;
+    }
+
+    /**
+     * @param fsync if true flush returns only after the written data reached the disk. Only used by
+     * the in-memory and the unsafe implementations, memory mapped files are always forced.
+     */
+    public void setFsync( boolean fsync )
+    {
+        this.fsync = fsync;
+    }
+
+    protected interface SegmentTask
+    {
+        /**
+         * Reads or writes the specified segment via the channel. Called concurrently for different
+         * segments. The buffer has the size of a segment and is reused by the calling thread, it is
+         * null if the task was passed with useBuffer false.
+         */
+        void run( FileChannel channel, int segment, byte[] buffer ) throws IOException;
+    }
+
+    /**
+     * Calls the loader for every segment of the file.
+     * <p/>
+     * @param useBuffer false if the loader reads directly into its own arrays and needs no buffer
+     */
+    protected void loadSegments( FileChannel channel, int segmentCount, boolean useBuffer, SegmentTask loader )
+            throws IOException
+    {
+        runSegments(channel, segmentCount, loadThreads, useBuffer, loader);
+    }
+
+    /**
+     * Calls the writer for every segment and forces the written bytes to disk if fsync is enabled.
+     * The header has to be written before.
+     * <p/>
+     * @param useBuffer false if the writer writes its own arrays directly and needs no buffer
+     */
+    protected void flushSegments( FileChannel channel, int segmentCount, boolean useBuffer, SegmentTask writer )
+            throws IOException
+    {
+        runSegments(channel, segmentCount, flushThreads, useBuffer, writer);
+        if (fsync)
+            channel.force(true);
+    }
+
+    /**
+     * With more than one thread the threads take the next unprocessed segment, so that the file is
+     * still read or written roughly from start to end.
+     */
+    private void runSegments( final FileChannel channel, final int segmentCount, int threads,
+            final boolean useBuffer, final SegmentTask task ) throws IOException
+    {
+        threads = Math.min(threads, segmentCount);
+        if (threads <= 1)
+        {
+            byte[] buffer = useBuffer ? new byte[segmentSizeInBytes] : null;
+            for (int s = 0; s < segmentCount; s++)
+            {
+                task.run(channel, s, buffer);
+            }
+            return;
+        }
+
+        final AtomicInteger nextSegment = new AtomicInteger();
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Future<?>> futures = new ArrayList<Future<?>>(threads);
+            for (int i = 0; i < threads; i++)
+            {
+                futures.add(executorService.submit(new Callable<Object>()
+                {
+                    @Override
+                    public Object call() throws IOException
+                    {
+                        byte[] buffer = useBuffer ? new byte[segmentSizeInBytes] : null;
+                        int s;
+                        while ((s = nextSegment.getAndIncrement()) < segmentCount)
+                        {
+                            task.run(channel, s, buffer);
+                        }
+                        return null;
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures)
+            {
+                try
+                {
+                    future.get();
+                } catch (InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Processing the segments of " + getFullName() + " was interrupted", ex);
+                } catch (ExecutionException ex)
+                {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof IOException)
+                        throw (IOException) cause;
+                    if (cause instanceof RuntimeException)
+                        throw (RuntimeException) cause;
+                    throw new RuntimeException("Problem while processing the segments of " + getFullName(), cause);
+                }
+            }
+        } finally
+        {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads bytes of the specified segment with positional reads, which can be used from several
+     * threads on the same channel.
+     * <p/>
+     * @return the number of bytes read, less than the length only for the last segment
+     */
+    protected int readSegment( FileChannel channel, int segment, byte[] bytes ) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long position = HEADER_OFFSET + (long) segment * segmentSizeInBytes;
+        while (buffer.hasRemaining())
+        {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0)
+                break;
+        }
+        return buffer.position();
+    }
+
+    /**
+     * Writes the first length bytes to the position of the specified segment. Like readSegment this
+     * can be used from several threads on the same channel.
+     */
+    protected void writeSegment( FileChannel channel, int segment, byte[] bytes, int length ) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+        long position = HEADER_OFFSET + (long) segment * segmentSizeInBytes;
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
     protected void copyHeader( DataAccess da )
     {
         for (int h = 0; h < header.length * 4; h += 4)
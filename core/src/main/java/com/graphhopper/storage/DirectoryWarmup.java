@@ -0,0 +1,248 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.StopWatch;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads the segments of all memory mapped DataAccess objects of a directory in background threads.
+ * Without this the pages are faulted in randomly by the first requests after a start which makes
+ * them slow. The nodes, edges and the location index are loaded first, the way geometry and the
+ * names last.
+ * <p/>
+ * Call stop before closing the directory as the segments must not be unmapped while loading.
+ * <p/>
+ * @see MMapDataAccess#loadSegment(int)
+ * @author Peter Karich
+ */
+public class DirectoryWarmup
+{
+    // all other DataAccess objects, e.g. the shortcuts of a LevelGraphOverlay, are loaded in between
+    private static final List<String> FIRST = Arrays.asList("nodes", "edges", "adjacency", "locationIndex");
+    private static final List<String> LAST = Arrays.asList("geometry", "names");
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final List<MMapDataAccess> dataAccessList = new ArrayList<MMapDataAccess>();
+    // the tasks are pairs of index into dataAccessList and segment
+    private final int[] taskDataAccess;
+    private final int[] taskSegments;
+    private final AtomicInteger nextTask = new AtomicInteger();
+    private final AtomicInteger finishedTasks = new AtomicInteger();
+    private final AtomicInteger failedTasks = new AtomicInteger();
+    private final StopWatch sw = new StopWatch();
+    private final CountDownLatch finishedLatch;
+    private volatile boolean stopped;
+    private Thread[] threads = new Thread[0];
+
+    public DirectoryWarmup( GHDirectory dir )
+    {
+        for (DataAccess da : dir.getAll())
+        {
+            if (da instanceof MMapDataAccess && !da.isClosed())
+                dataAccessList.add((MMapDataAccess) da);
+        }
+        Collections.sort(dataAccessList, new Comparator<MMapDataAccess>()
+        {
+            @Override
+            public int compare( MMapDataAccess o1, MMapDataAccess o2 )
+            {
+                int res = getPriority(o1.getName()) - getPriority(o2.getName());
+                return res != 0 ? res : o1.getName().compareTo(o2.getName());
+            }
+        });
+
+        int tasks = 0;
+        for (MMapDataAccess da : dataAccessList)
+        {
+            tasks += da.getSegments();
+        }
+        taskDataAccess = new int[tasks];
+        taskSegments = new int[tasks];
+        int task = 0;
+        for (int i = 0; i < dataAccessList.size(); i++)
+        {
+            for (int segment = 0; segment < dataAccessList.get(i).getSegments(); segment++)
+            {
+                taskDataAccess[task] = i;
+                taskSegments[task] = segment;
+                task++;
+            }
+        }
+        finishedLatch = new CountDownLatch(tasks);
+    }
+
+    static int getPriority( String name )
+    {
+        int index = FIRST.indexOf(name);
+        if (index >= 0)
+            return index;
+
+        if (LAST.contains(name))
+            return FIRST.size() + 1 + LAST.indexOf(name);
+
+        return FIRST.size();
+    }
+
+    List<MMapDataAccess> getDataAccessList()
+    {
+        return dataAccessList;
+    }
+
+    Thread[] getThreads()
+    {
+        return threads;
+    }
+
+    /**
+     * Starts the specified number of daemon threads which load the segments in the order of their
+     * priority.
+     */
+    public DirectoryWarmup start( int threadCount )
+    {
+        if (threadCount < 1)
+            throw new IllegalArgumentException("At least one thread is necessary but was " + threadCount);
+
+        if (threads.length > 0)
+            throw new IllegalStateException("Warmup already started");
+
+        sw.start();
+        logger.info("start loading " + taskSegments.length + " segments of " + dataAccessList.size()
+                + " memory mapped files with " + threadCount + " threads");
+        threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++)
+        {
+            threads[i] = new Thread("warmup-" + i)
+            {
+                @Override
+                public void run()
+                {
+                    loadSegments();
+                }
+            };
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+        return this;
+    }
+
+    void loadSegments()
+    {
+        while (!stopped)
+        {
+            int task = nextTask.getAndIncrement();
+            if (task >= taskSegments.length)
+                return;
+
+            MMapDataAccess da = dataAccessList.get(taskDataAccess[task]);
+            try
+            {
+                da.loadSegment(taskSegments[task]);
+                // count the progress before releasing the latch so that getProgress is 1 when ready
+                if (finishedTasks.incrementAndGet() == taskSegments.length)
+                    logger.info("finished loading segments in " + sw.stop().getSeconds() + "s, " + Helper.getMemInfo());
+            } catch (Exception ex)
+            {
+                // a failed segment is not counted as loaded and the warmup never gets ready
+                failedTasks.incrementAndGet();
+                logger.error("Couldn't load segment " + taskSegments[task] + " of " + da.getName(), ex);
+            }
+            finishedLatch.countDown();
+        }
+    }
+
+    /**
+     * @return true if all segments are loaded
+     */
+    public boolean isReady()
+    {
+        return finishedLatch.getCount() == 0 && failedTasks.get() == 0;
+    }
+
+    /**
+     * @return true if at least one segment couldn't be loaded. Then isReady stays false.
+     */
+    public boolean isFailed()
+    {
+        return failedTasks.get() > 0;
+    }
+
+    /**
+     * @return the fraction of the loaded segments, between 0 and 1
+     */
+    public float getProgress()
+    {
+        if (taskSegments.length == 0)
+            return 1;
+
+        return finishedTasks.get() / (float) taskSegments.length;
+    }
+
+    /**
+     * Waits until all segments are loaded.
+     * <p/>
+     * @return true if all segments are loaded, false if the time elapsed before or if a segment
+     * couldn't be loaded
+     */
+    public boolean awaitReady( long timeoutMillis ) throws InterruptedException
+    {
+        return finishedLatch.await(timeoutMillis, TimeUnit.MILLISECONDS) && failedTasks.get() == 0;
+    }
+
+    /**
+     * Stops loading further segments and waits until the segments currently loading are finished.
+     * An interrupt does not end the waiting as the directory must not be closed while a segment is
+     * loading, but the interrupt status is restored afterwards.
+     */
+    public void stop()
+    {
+        stopped = true;
+        boolean interrupted = false;
+        for (Thread thread : threads)
+        {
+            while (thread.isAlive())
+            {
+                try
+                {
+                    thread.join();
+                } catch (InterruptedException ex)
+                {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "warmup " + Math.round(getProgress() * 100) + "% of " + taskSegments.length + " segments"
+                + (isFailed() ? ", " + failedTasks.get() + " failed" : "");
+    }
+}
@@ -36,6 +36,9 @@ public class GHDirectory implements Directory
     protected final String location;
     private final DAType defaultType;
     private final ByteOrder byteOrder = ByteOrder.LITTLE_ENDIAN;
+    private int loadThreads = 1;
+    private int flushThreads = 1;
+    private boolean fsync = false;
 
     public GHDirectory( String _location, DAType defaultType )
     {
@@ -59,11 +62,15 @@ public class GHDirectory implements Directory
             {
                 put("locationIndex", DAType.RAM_INT_STORE);
                 put("edges", DAType.RAM_INT_STORE);
+                put("edges_cold", DAType.RAM_INT_STORE);
+                put("adjacency", DAType.RAM_INT_STORE);
                 put("nodes", DAType.RAM_INT_STORE);
             } else
             {
                 put("locationIndex", DAType.RAM_INT);
                 put("edges", DAType.RAM_INT);
+                put("edges_cold", DAType.RAM_INT);
+                put("adjacency", DAType.RAM_INT);
                 put("nodes", DAType.RAM_INT);
             }
         }
@@ -82,6 +89,57 @@ public class GHDirectory implements Directory
         return this;
     }
 
+    /**
+     * Sets the number of threads which read the segments of one in-memory DataAccess object in
+     * loadExisting. Applies to DataAccess objects created afterwards.
+     */
+    public GHDirectory setLoadThreads( int loadThreads )
+    {
+        if (loadThreads < 1)
+            throw new IllegalArgumentException("loadThreads has to be at least 1 but was " + loadThreads);
+
+        this.loadThreads = loadThreads;
+        return this;
+    }
+
+    public int getLoadThreads()
+    {
+        return loadThreads;
+    }
+
+    /**
+     * Sets the number of threads which write the segments of one in-memory or unsafe DataAccess
+     * object in flush. Applies to DataAccess objects created afterwards.
+     */
+    public GHDirectory setFlushThreads( int flushThreads )
+    {
+        if (flushThreads < 1)
+            throw new IllegalArgumentException("flushThreads has to be at least 1 but was " + flushThreads);
+
+        this.flushThreads = flushThreads;
+        return this;
+    }
+
+    public int getFlushThreads()
+    {
+        return flushThreads;
+    }
+
+    /**
+     * @param fsync if true flushing an in-memory or unsafe DataAccess object returns only after
+     * its data reached the disk. Applies to DataAccess objects created afterwards.
+     */
+    public GHDirectory setFsync( boolean fsync )
+    {
+        this.fsync = fsync;
+        return this;
+    }
+
+    public boolean isFsync()
+    {
+        return fsync;
+    }
+
     @Override
     public DataAccess find( String name )
     {
@@ -127,6 +185,10 @@ public class GHDirectory implements Directory
             da = new UnsafeDataAccess(name, location, byteOrder);
         }
 
+        AbstractDataAccess ada = (AbstractDataAccess) da;
+        ada.setLoadThreads(loadThreads);
+        ada.setFlushThreads(flushThreads);
+        ada.setFsync(fsync);
         if (type.isSynched())
             da = new SynchedDAWrapper(da);
 
@@ -201,6 +263,17 @@ public class GHDirectory implements Directory
         return map.values();
     }
 
+    /**
+     * Loads the segments of all memory mapped DataAccess objects in the specified number of
+     * background threads.
+     * <p/>
+     * @return the started warmup to query the progress or to stop it before closing
+     */
+    public DirectoryWarmup warmup( int threads )
+    {
+        return new DirectoryWarmup(this).start(threads);
+    }
+
     @Override
     public String toString()
     {
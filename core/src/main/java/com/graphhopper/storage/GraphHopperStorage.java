@@ -35,6 +35,7 @@ import com.graphhopper.util.shapes.BBox;
 
 import static com.graphhopper.util.Helper.nf;
 import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
 
 /**
  * The main implementation which handles nodes and edges file format. It can be used with different
@@ -67,6 +68,12 @@ public class GraphHopperStorage implements GraphStorage
      */
     protected int edgeEntryBytes;
     protected final DataAccess edges;
+    // optional cold edge area with the fields which are not read while routing: geo | name | additional
+    // the entry of an edge is at edgeId * coldEntryBytes, see setColdEdges
+    private final DataAccess coldEdges;
+    private boolean coldEdgesEnabled = false;
+    private int coldEntryIndex;
+    private int coldEntryBytes;
     /**
      * interval [0,n)
      */
@@ -88,8 +95,11 @@ public class GraphHopperStorage implements GraphStorage
     private int edgeEntryIndex, nodeEntryIndex;
     // length | nodeA | nextNode | ... | nodeB
     // as we use integer index in 'egdes' area => 'geometry' area is limited to 2GB (currently ~311M for world wide)
+    // with compressed geometry: byte length | count | lat, lon, ele of the first point | deltas to the
+    // previous point ... all as zig-zag encoded VLongs and the entry padded to integers
     private final DataAccess wayGeometry;
     private int maxGeoRef;
+    private boolean compressedGeometry = false;
     private boolean initialized = false;
     private EncodingManager encodingManager;
     private final NameIndex nameIndex;
@@ -98,6 +108,10 @@ public class GraphHopperStorage implements GraphStorage
     private boolean flagsSizeIsLong;
     final GraphExtension extStorage;
     private final NodeAccess nodeAccess;
+    // optional read-only adjacency in compressed sparse row layout, see freeze()
+    // nodeCount+1 offsets | edge ids of node 0 | edge ids of node 1 | ...
+    private final DataAccess adjacency;
+    private boolean frozen = false;
 
     public GraphHopperStorage( Directory dir, EncodingManager encodingManager, boolean withElevation )
     {
@@ -117,7 +131,9 @@ public class GraphHopperStorage implements GraphStorage
         this.bitUtil = BitUtil.get(dir.getByteOrder());
         this.nodes = dir.find("nodes");
         this.edges = dir.find("edges");
+        this.coldEdges = dir.find("edges_cold");
         this.wayGeometry = dir.find("geometry");
+        this.adjacency = dir.find("adjacency");
         this.nameIndex = new NameIndex(dir);
         this.properties = new StorableProperties(dir);
         this.bounds = BBox.INVERSE.clone();
@@ -139,6 +155,13 @@ public class GraphHopperStorage implements GraphStorage
         return tmp;
     }
 
+    private int nextColdEntryIndex( int sizeInBytes )
+    {
+        int tmp = coldEntryIndex;
+        coldEntryIndex += sizeInBytes;
+        return tmp;
+    }
+
     protected final int nextNodeEntryIndex( int sizeInBytes )
     {
         int tmp = nodeEntryIndex;
@@ -150,6 +173,7 @@ public class GraphHopperStorage implements GraphStorage
     {
         nodeEntryBytes = nodeEntryIndex;
         edgeEntryBytes = edgeEntryIndex;
+        coldEntryBytes = coldEntryIndex;
     }
 
     /**
@@ -161,13 +185,79 @@ public class GraphHopperStorage implements GraphStorage
         return dir;
     }
 
+    /**
+     * Stores the pillar nodes as deltas of the previous point in a variable length format, which
+     * makes the geometry roughly 40% smaller. This only applies to a newly created graph, a loaded
+     * graph uses the format in which it was stored.
+     */
+    public GraphHopperStorage setCompressedGeometry( boolean compressedGeometry )
+    {
+        checkInit();
+        this.compressedGeometry = compressedGeometry;
+        return this;
+    }
+
+    public boolean isCompressedGeometry()
+    {
+        return compressedGeometry;
+    }
+
+    /**
+     * Stores the way geometry reference, the name reference and the additional field of every edge
+     * in the separate 'edges_cold' file instead of the edges area. These fields are only read when
+     * the path is extracted, so the edges area which is traversed while routing gets smaller, e.g.
+     * 24 instead of 32 bytes per edge. This only applies to a newly created graph, a loaded graph
+     * uses the layout in which it was stored.
+     */
+    public GraphHopperStorage setColdEdges( boolean coldEdges )
+    {
+        checkInit();
+        this.coldEdgesEnabled = coldEdges;
+        return this;
+    }
+
+    public boolean isColdEdges()
+    {
+        return coldEdgesEnabled;
+    }
+
+    /**
+     * Stores every distinct street name only once, see NameIndex.setDeduplicate
+     */
+    public GraphHopperStorage setDeduplicateNames( boolean deduplicateNames )
+    {
+        nameIndex.setDeduplicate(deduplicateNames);
+        return this;
+    }
+
+    public boolean isDeduplicateNames()
+    {
+        return nameIndex.isDeduplicate();
+    }
+
+    /**
+     * Caches the specified number of decoded street names, see NameIndex.setCacheSize
+     */
+    public GraphHopperStorage setNameCacheSize( int nameCacheSize )
+    {
+        nameIndex.setCacheSize(nameCacheSize);
+        return this;
+    }
+
+    public int getNameCacheSize()
+    {
+        return nameIndex.getCacheSize();
+    }
+
     @Override
     public void setSegmentSize( int bytes )
     {
         checkInit();
         nodes.setSegmentSize(bytes);
         edges.setSegmentSize(bytes);
+        coldEdges.setSegmentSize(bytes);
         wayGeometry.setSegmentSize(bytes);
+        adjacency.setSegmentSize(bytes);
         nameIndex.setSegmentSize(bytes);
         extStorage.setSegmentSize(bytes);
     }
@@ -185,6 +275,8 @@ public class GraphHopperStorage implements GraphStorage
         long initSize = Math.max(byteCount, 100);
         nodes.create(initSize);
         edges.create(initSize);
+        if (coldEdgesEnabled)
+            coldEdges.create(initSize);
         wayGeometry.create(initSize);
         nameIndex.create(1000);
         properties.create(100);
@@ -195,6 +287,7 @@ public class GraphHopperStorage implements GraphStorage
 
         properties.put("graph.byteOrder", dir.getByteOrder());
         properties.put("graph.dimension", nodeAccess.getDimension());
+        properties.put("graph.coldEdges", coldEdgesEnabled);
         properties.putCurrentVersions();
         initStorage();
         // 0 stands for no separate geoRef
@@ -265,6 +358,7 @@ public class GraphHopperStorage implements GraphStorage
         if (nodeIndex < nodeCount)
             return;
 
+        checkNotFrozen();
         long oldNodes = nodeCount;
         nodeCount = nodeIndex + 1;
         boolean capacityIncreased = nodes.ensureCapacity((long) nodeCount * nodeEntryBytes);
@@ -299,6 +393,27 @@ public class GraphHopperStorage implements GraphStorage
     private void ensureEdgeIndex( int edgeIndex )
     {
         edges.ensureCapacity(((long) edgeIndex + 1) * edgeEntryBytes);
+        if (coldEdgesEnabled)
+            coldEdges.ensureCapacity(((long) edgeIndex + 1) * coldEntryBytes);
+    }
+
+    /**
+     * @return the integer of the specified geo, name or additional field of the edge
+     */
+    private int getColdInt( long edgePointer, int field )
+    {
+        if (coldEdgesEnabled)
+            return coldEdges.getInt(edgePointer / edgeEntryBytes * coldEntryBytes + field);
+
+        return edges.getInt(edgePointer + field);
+    }
+
+    private void setColdInt( long edgePointer, int field, int value )
+    {
+        if (coldEdgesEnabled)
+            coldEdges.setInt(edgePointer / edgeEntryBytes * coldEntryBytes + field, value);
+        else
+            edges.setInt(edgePointer + field, value);
     }
 
     private void ensureGeometry( long bytePos, int byteLength )
@@ -346,6 +461,7 @@ public class GraphHopperStorage implements GraphStorage
      */
     int internalEdgeAdd( int fromNodeId, int toNodeId )
     {
+        checkNotFrozen();
         int newEdgeId = nextEdge();
         writeEdge(newEdgeId, fromNodeId, toNodeId, EdgeIterator.NO_EDGE, EdgeIterator.NO_EDGE);
         connectNewEdge(fromNodeId, newEdgeId);
@@ -562,7 +678,7 @@ public class GraphHopperStorage implements GraphStorage
         @Override
         public int getAdditionalField()
         {
-            return edges.getInt(edgePointer + E_ADDITIONAL);
+            return getColdInt(edgePointer, E_ADDITIONAL);
         }
 
         @Override
@@ -608,7 +724,7 @@ public class GraphHopperStorage implements GraphStorage
         @Override
         public String getName()
         {
-            int nameIndexRef = edges.getInt(edgePointer + E_NAME);
+            int nameIndexRef = getColdInt(edgePointer, E_NAME);
             return nameIndex.get(nameIndexRef);
         }
 
@@ -619,7 +735,7 @@ public class GraphHopperStorage implements GraphStorage
             if (nameIndexRef < 0)
                 throw new IllegalStateException("Too many names are stored, currently limited to int pointer");
 
-            edges.setInt(edgePointer + E_NAME, (int) nameIndexRef);
+            setColdInt(edgePointer, E_NAME, (int) nameIndexRef);
             return this;
         }
 
@@ -748,6 +864,10 @@ public class GraphHopperStorage implements GraphStorage
         long edgePointer;
         int nextEdge;
         boolean reverse;
+        // if the graph is frozen the edges of baseNode are read from [adjPointer, adjEndPointer)
+        boolean fromAdjacency;
+        long adjPointer;
+        long adjEndPointer;
 
         public EdgeIterable( EdgeFilter filter )
         {
@@ -759,6 +879,7 @@ public class GraphHopperStorage implements GraphStorage
 
         protected void setEdgeId( int edgeId )
         {
+            this.fromAdjacency = false;
             this.nextEdge = this.edgeId = edgeId;
             this.edgePointer = (long) nextEdge * edgeEntryBytes;
         }
@@ -766,8 +887,18 @@ public class GraphHopperStorage implements GraphStorage
         @Override
         public EdgeIterator setBaseNode( int baseNode )
         {
-            int edge = nodes.getInt((long) baseNode * nodeEntryBytes + N_EDGE_REF);
-            setEdgeId(edge);
+            if (frozen)
+            {
+                long offsetPointer = (long) baseNode * 4;
+                adjPointer = getAdjacencyPointer(adjacency.getInt(offsetPointer));
+                adjEndPointer = getAdjacencyPointer(adjacency.getInt(offsetPointer + 4));
+                nextEdge = edgeId = EdgeIterator.NO_EDGE;
+                fromAdjacency = true;
+            } else
+            {
+                int edge = nodes.getInt((long) baseNode * nodeEntryBytes + N_EDGE_REF);
+                setEdgeId(edge);
+            }
             this.baseNode = baseNode;
             return this;
         }
@@ -787,6 +918,9 @@ public class GraphHopperStorage implements GraphStorage
         @Override
         public final boolean next()
         {
+            if (fromAdjacency)
+                return nextFromAdjacency();
+
             int i = 0;
             boolean foundNext = false;
             for (; i < MAX_EDGES; i++)
@@ -816,6 +950,21 @@ public class GraphHopperStorage implements GraphStorage
             return foundNext;
         }
 
+        private boolean nextFromAdjacency()
+        {
+            while (adjPointer < adjEndPointer)
+            {
+                edgeId = adjacency.getInt(adjPointer);
+                adjPointer += 4;
+                edgePointer = (long) edgeId * edgeEntryBytes;
+                adjNode = getOtherNode(baseNode, edgePointer);
+                reverse = baseNode > adjNode;
+                if (filter.accept(this))
+                    return true;
+            }
+            return false;
+        }
+
         private long getEdgePointer()
         {
             return edgePointer;
@@ -850,7 +999,7 @@ public class GraphHopperStorage implements GraphStorage
         @Override
         public int getAdditionalField()
         {
-            return edges.getInt(edgePointer + E_ADDITIONAL);
+            return getColdInt(edgePointer, E_ADDITIONAL);
         }
 
         @Override
@@ -882,7 +1031,7 @@ public class GraphHopperStorage implements GraphStorage
         @Override
         public String getName()
         {
-            int nameIndexRef = edges.getInt(edgePointer + E_NAME);
+            int nameIndexRef = getColdInt(edgePointer, E_NAME);
             return nameIndex.get(nameIndexRef);
         }
 
@@ -893,7 +1042,7 @@ public class GraphHopperStorage implements GraphStorage
             if (nameIndexRef < 0)
                 throw new IllegalStateException("Too many names are stored, currently limited to int pointer");
 
-            edges.setInt(edgePointer + E_NAME, (int) nameIndexRef);
+            setColdInt(edgePointer, E_NAME, (int) nameIndexRef);
             return this;
         }
 
@@ -947,7 +1096,7 @@ public class GraphHopperStorage implements GraphStorage
     public void setAdditionalEdgeField( long edgePointer, int value )
     {
         if (extStorage.isRequireEdgeField() && E_ADDITIONAL >= 0)
-            edges.setInt(edgePointer + E_ADDITIONAL, value);
+            setColdInt(edgePointer, E_ADDITIONAL, value);
         else
             throw new AssertionError("This graph does not support an additional edge field.");
     }
@@ -960,54 +1109,100 @@ public class GraphHopperStorage implements GraphStorage
                 throw new IllegalArgumentException("Cannot use pointlist which is " + pillarNodes.getDimension()
                         + "D for graph which is " + nodeAccess.getDimension() + "D");
 
-            int len = pillarNodes.getSize();
-            int dim = nodeAccess.getDimension();
-            int tmpRef = nextGeoRef(len * dim);
-            edges.setInt(edgePointer + E_GEO, tmpRef);
-            long geoRef = (long) tmpRef * 4;
-            byte[] bytes = new byte[len * dim * 4 + 4];
-            ensureGeometry(geoRef, bytes.length);
-            bitUtil.fromInt(bytes, len, 0);
             if (reverse)
                 pillarNodes.reverse();
 
-            int tmpOffset = 4;
-            boolean is3D = nodeAccess.is3D();
-            for (int i = 0; i < len; i++)
+            byte[] bytes = compressedGeometry ? toCompressedGeometry(pillarNodes) : toGeometry(pillarNodes);
+            // the first integer is not counted, see nextGeoRef
+            int tmpRef = nextGeoRef(bytes.length / 4 - 1);
+            setColdInt(edgePointer, E_GEO, tmpRef);
+            long geoRef = (long) tmpRef * 4;
+            ensureGeometry(geoRef, bytes.length);
+            wayGeometry.setBytes(geoRef, bytes, bytes.length);
+        } else
+        {
+            setColdInt(edgePointer, E_GEO, 0);
+        }
+    }
+
+    private byte[] toGeometry( PointList pillarNodes )
+    {
+        int len = pillarNodes.getSize();
+        byte[] bytes = new byte[len * nodeAccess.getDimension() * 4 + 4];
+        bitUtil.fromInt(bytes, len, 0);
+
+        int tmpOffset = 4;
+        boolean is3D = nodeAccess.is3D();
+        for (int i = 0; i < len; i++)
+        {
+            double lat = pillarNodes.getLatitude(i);
+            bitUtil.fromInt(bytes, Helper.degreeToInt(lat), tmpOffset);
+            tmpOffset += 4;
+            bitUtil.fromInt(bytes, Helper.degreeToInt(pillarNodes.getLongitude(i)), tmpOffset);
+            tmpOffset += 4;
+
+            if (is3D)
             {
-                double lat = pillarNodes.getLatitude(i);
-                bitUtil.fromInt(bytes, Helper.degreeToInt(lat), tmpOffset);
-                tmpOffset += 4;
-                bitUtil.fromInt(bytes, Helper.degreeToInt(pillarNodes.getLongitude(i)), tmpOffset);
+                bitUtil.fromInt(bytes, Helper.eleToInt(pillarNodes.getElevation(i)), tmpOffset);
                 tmpOffset += 4;
-
-                if (is3D)
-                {
-                    bitUtil.fromInt(bytes, Helper.eleToInt(pillarNodes.getElevation(i)), tmpOffset);
-                    tmpOffset += 4;
-                }
             }
+        }
+        return bytes;
+    }
 
-            wayGeometry.setBytes(geoRef, bytes, bytes.length);
-        } else
+    private byte[] toCompressedGeometry( PointList pillarNodes )
+    {
+        int len = pillarNodes.getSize();
+        boolean is3D = nodeAccess.is3D();
+        // reserve the first integer for the byte length
+        VLongStorage storage = new VLongStorage(4 + 5 + len * nodeAccess.getDimension() * 5);
+        storage.seek(4);
+        storage.writeVLong(len);
+        long prevLat = 0, prevLon = 0, prevEle = 0;
+        for (int i = 0; i < len; i++)
         {
-            edges.setInt(edgePointer + E_GEO, 0);
+            int lat = Helper.degreeToInt(pillarNodes.getLatitude(i));
+            int lon = Helper.degreeToInt(pillarNodes.getLongitude(i));
+            storage.writeSignedVLong(lat - prevLat);
+            storage.writeSignedVLong(lon - prevLon);
+            prevLat = lat;
+            prevLon = lon;
+            if (is3D)
+            {
+                int ele = Helper.eleToInt(pillarNodes.getElevation(i));
+                storage.writeSignedVLong(ele - prevEle);
+                prevEle = ele;
+            }
         }
+
+        int byteLength = (int) storage.getPosition() - 4;
+        // pad to full integers as the geometry reference points to integers
+        byte[] bytes = Arrays.copyOf(storage.getBytes(), 4 + (byteLength + 3) / 4 * 4);
+        bitUtil.fromInt(bytes, byteLength, 0);
+        return bytes;
     }
 
     private PointList fetchWayGeometry( long edgePointer, boolean reverse, int mode, int baseNode, int adjNode )
     {
-        long geoRef = edges.getInt(edgePointer + E_GEO);
+        long geoRef = getColdInt(edgePointer, E_GEO);
         int count = 0;
         byte[] bytes = null;
+        VLongStorage storage = null;
         if (geoRef > 0)
         {
             geoRef *= 4;
-            count = wayGeometry.getInt(geoRef);
-
-            geoRef += 4;
-            bytes = new byte[count * nodeAccess.getDimension() * 4];
-            wayGeometry.getBytes(geoRef, bytes, bytes.length);
+            if (compressedGeometry)
+            {
+                bytes = new byte[wayGeometry.getInt(geoRef)];
+                wayGeometry.getBytes(geoRef + 4, bytes, bytes.length);
+                storage = new VLongStorage(bytes);
+                count = (int) storage.readVLong();
+            } else
+            {
+                count = wayGeometry.getInt(geoRef);
+                bytes = new byte[count * nodeAccess.getDimension() * 4];
+                wayGeometry.getBytes(geoRef + 4, bytes, bytes.length);
+            }
         } else if (mode == 0)
             return PointList.EMPTY;
 
@@ -1022,6 +1217,27 @@ public class GraphHopperStorage implements GraphStorage
                 pillarNodes.add(nodeAccess, baseNode);
         }
 
+        if (storage != null)
+            addCompressedPoints(pillarNodes, storage, count);
+        else
+            addPoints(pillarNodes, bytes, count);
+
+        if (reverse)
+        {
+            if ((mode & 1) != 0)
+                pillarNodes.add(nodeAccess, baseNode);
+            pillarNodes.reverse();
+        } else
+        {
+            if ((mode & 2) != 0)
+                pillarNodes.add(nodeAccess, adjNode);
+        }
+
+        return pillarNodes;
+    }
+
+    private void addPoints( PointList pillarNodes, byte[] bytes, int count )
+    {
         int index = 0;
         for (int i = 0; i < count; i++)
         {
@@ -1038,19 +1254,25 @@ public class GraphHopperStorage implements GraphStorage
                 pillarNodes.add(lat, lon);
             }
         }
+    }
 
-        if (reverse)
-        {
-            if ((mode & 1) != 0)
-                pillarNodes.add(nodeAccess, baseNode);
-            pillarNodes.reverse();
-        } else
+    private void addCompressedPoints( PointList pillarNodes, VLongStorage storage, int count )
+    {
+        boolean is3D = nodeAccess.is3D();
+        long lat = 0, lon = 0, ele = 0;
+        for (int i = 0; i < count; i++)
         {
-            if ((mode & 2) != 0)
-                pillarNodes.add(nodeAccess, adjNode);
+            lat += storage.readSignedVLong();
+            lon += storage.readSignedVLong();
+            if (is3D)
+            {
+                ele += storage.readSignedVLong();
+                pillarNodes.add(Helper.intToDegree((int) lat), Helper.intToDegree((int) lon), Helper.intToEle((int) ele));
+            } else
+            {
+                pillarNodes.add(Helper.intToDegree((int) lat), Helper.intToDegree((int) lon));
+            }
         }
-
-        return pillarNodes;
     }
 
     @Override
@@ -1071,6 +1293,10 @@ public class GraphHopperStorage implements GraphStorage
             throw new IllegalStateException("edgeEntryBytes cannot be different for cloned graph. "
                     + "Cloned: " + clonedG.edgeEntryBytes + " vs " + edgeEntryBytes);
 
+        if (clonedG.coldEdgesEnabled != coldEdgesEnabled)
+            throw new IllegalStateException("cold edges cannot be different for cloned graph. "
+                    + "Cloned: " + clonedG.coldEdgesEnabled + " vs " + coldEdgesEnabled);
+
         if (clonedG.nodeEntryBytes != nodeEntryBytes)
             throw new IllegalStateException("nodeEntryBytes cannot be different for cloned graph. "
                     + "Cloned: " + clonedG.nodeEntryBytes + " vs " + nodeEntryBytes);
@@ -1088,6 +1314,12 @@ public class GraphHopperStorage implements GraphStorage
         setEdgesHeader();
         edges.copyTo(clonedG.edges);
         clonedG.loadEdgesHeader();
+        if (coldEdgesEnabled)
+        {
+            setColdEdgesHeader();
+            coldEdges.copyTo(clonedG.coldEdges);
+            clonedG.loadColdEdgesHeader();
+        }
 
         // name
         nameIndex.copyTo(clonedG.nameIndex);
@@ -1100,6 +1332,14 @@ public class GraphHopperStorage implements GraphStorage
         // extStorage
         extStorage.copyTo(clonedG.extStorage);
 
+        // adjacency
+        if (frozen)
+        {
+            clonedG.adjacency.create(adjacency.getCapacity());
+            adjacency.copyTo(clonedG.adjacency);
+            clonedG.frozen = true;
+        }
+
         properties.copyTo(clonedG.properties);
 
         if (removedNodes == null)
@@ -1123,6 +1363,7 @@ public class GraphHopperStorage implements GraphStorage
     @Override
     public void markNodeRemoved( int index )
     {
+        checkNotFrozen();
         getRemovedNodes().add(index);
     }
 
@@ -1155,6 +1396,60 @@ public class GraphHopperStorage implements GraphStorage
 //        edges.trimTo(edgeCap * 4);
     }
 
+    /**
+     * Stores the edges of every node in one contiguous block (compressed sparse row layout) so
+     * that an EdgeExplorer reads them sequentially instead of jumping through the edges area via
+     * the linked edge lists. The order of the edges is the same as before. Afterwards no nodes or
+     * edges can be added or removed anymore.
+     */
+    @Override
+    public void freeze()
+    {
+        checkNotFrozen();
+        if (removedNodes != null && removedNodes.getCardinality() > 0)
+            throw new IllegalStateException("Call optimize before freezing the graph. Removed nodes: "
+                    + removedNodes.getCardinality());
+
+        long offsetBytes = ((long) nodeCount + 1) * 4;
+        adjacency.create(offsetBytes + (long) edgeCount * 4);
+        EdgeExplorer explorer = createEdgeExplorer();
+        long entries = 0;
+        for (int node = 0; node < nodeCount; node++)
+        {
+            adjacency.setInt((long) node * 4, (int) entries);
+            EdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next())
+            {
+                long pointer = offsetBytes + entries * 4;
+                adjacency.ensureCapacity(pointer + 4);
+                adjacency.setInt(pointer, iter.getEdge());
+                entries++;
+                if (entries > Integer.MAX_VALUE)
+                    throw new IllegalStateException("Too many adjacency entries to freeze the graph: " + entries);
+            }
+        }
+        adjacency.setInt((long) nodeCount * 4, (int) entries);
+        frozen = true;
+        properties.put("graph.frozen", true);
+    }
+
+    @Override
+    public boolean isFrozen()
+    {
+        return frozen;
+    }
+
+    private long getAdjacencyPointer( int entry )
+    {
+        return ((long) nodeCount + 1 + entry) * 4;
+    }
+
+    private void checkNotFrozen()
+    {
+        if (frozen)
+            throw new IllegalStateException("Cannot modify a frozen graph");
+    }
+
     /**
      * This method disconnects the specified edge from the list of edges of the specified node. It
      * does not release the freed space to be reused.
@@ -1164,6 +1459,7 @@ public class GraphHopperStorage implements GraphStorage
      */
     long internalEdgeDisconnect( int edgeToRemove, long edgeToUpdatePointer, int baseNode, int adjNode )
     {
+        checkNotFrozen();
         long edgeToRemovePointer = (long) edgeToRemove * edgeEntryBytes;
         // an edge is shared across the two nodes even if the edge is not in both directions
         // so we need to know two edge-pointers pointing to the edge before edgeToRemovePointer
@@ -1415,6 +1711,10 @@ public class GraphHopperStorage implements GraphStorage
             if (!edges.loadExisting())
                 throw new IllegalStateException("Cannot load nodes. corrupt file or directory? " + dir);
 
+            coldEdgesEnabled = "true".equals(properties.get("graph.coldEdges"));
+            if (coldEdgesEnabled && !coldEdges.loadExisting())
+                throw new IllegalStateException("Cannot load cold edges. corrupt file or directory? " + dir);
+
             if (!wayGeometry.loadExisting())
                 throw new IllegalStateException("Cannot load geometry. corrupt file or directory? " + dir);
 
@@ -1424,12 +1724,21 @@ public class GraphHopperStorage implements GraphStorage
             if (!extStorage.loadExisting())
                 throw new IllegalStateException("Cannot load extended storage. corrupt file or directory? " + dir);
 
+            if ("true".equals(properties.get("graph.frozen")))
+            {
+                if (!adjacency.loadExisting())
+                    throw new IllegalStateException("Cannot load adjacency of frozen graph. corrupt file or directory? " + dir);
+                frozen = true;
+            }
+
             // first define header indices of this storage
             initStorage();
 
             // now load some properties from stored data
             loadNodesHeader();
             loadEdgesHeader();
+            if (coldEdgesEnabled)
+                loadColdEdgesHeader();
             loadWayGeometryHeader();
             return true;
         }
@@ -1447,12 +1756,24 @@ public class GraphHopperStorage implements GraphStorage
         E_DIST = nextEdgeEntryIndex(4);
         this.flagsSizeIsLong = encodingManager.getBytesForFlags() == 8;
         E_FLAGS = nextEdgeEntryIndex(encodingManager.getBytesForFlags());
-        E_GEO = nextEdgeEntryIndex(4);
-        E_NAME = nextEdgeEntryIndex(4);
-        if (extStorage.isRequireEdgeField())
-            E_ADDITIONAL = nextEdgeEntryIndex(4);
-        else
-            E_ADDITIONAL = -1;
+        coldEntryIndex = 0;
+        if (coldEdgesEnabled)
+        {
+            E_GEO = nextColdEntryIndex(4);
+            E_NAME = nextColdEntryIndex(4);
+            if (extStorage.isRequireEdgeField())
+                E_ADDITIONAL = nextColdEntryIndex(4);
+            else
+                E_ADDITIONAL = -1;
+        } else
+        {
+            E_GEO = nextEdgeEntryIndex(4);
+            E_NAME = nextEdgeEntryIndex(4);
+            if (extStorage.isRequireEdgeField())
+                E_ADDITIONAL = nextEdgeEntryIndex(4);
+            else
+                E_ADDITIONAL = -1;
+        }
 
         N_EDGE_REF = nextNodeEntryIndex(4);
         N_LAT = nextNodeEntryIndex(4);
@@ -1515,16 +1836,28 @@ public class GraphHopperStorage implements GraphStorage
         return 4;
     }
 
+    private void loadColdEdgesHeader()
+    {
+        coldEntryBytes = coldEdges.getHeader(0);
+    }
+
+    private void setColdEdgesHeader()
+    {
+        coldEdges.setHeader(0, coldEntryBytes);
+    }
+
     protected int loadWayGeometryHeader()
     {
         maxGeoRef = wayGeometry.getHeader(0);
-        return 1;
+        compressedGeometry = wayGeometry.getHeader(1 * 4) == 1;
+        return 2;
     }
 
     protected int setWayGeometryHeader()
     {
         wayGeometry.setHeader(0, maxGeoRef);
-        return 1;
+        wayGeometry.setHeader(1 * 4, compressedGeometry ? 1 : 0);
+        return 2;
     }
 
     @Override
@@ -1533,10 +1866,16 @@ public class GraphHopperStorage implements GraphStorage
         setNodesHeader();
         setEdgesHeader();
         setWayGeometryHeader();
+        if (coldEdgesEnabled)
+            setColdEdgesHeader();
 
         properties.flush();
         wayGeometry.flush();
+        if (frozen)
+            adjacency.flush();
         nameIndex.flush();
+        if (coldEdgesEnabled)
+            coldEdges.flush();
         edges.flush();
         nodes.flush();
         extStorage.flush();
@@ -1547,7 +1886,11 @@ public class GraphHopperStorage implements GraphStorage
     {
         properties.close();
         wayGeometry.close();
+        if (frozen)
+            adjacency.close();
         nameIndex.close();
+        if (coldEdgesEnabled)
+            coldEdges.close();
         edges.close();
         nodes.close();
         extStorage.close();
@@ -1568,17 +1911,19 @@ public class GraphHopperStorage implements GraphStorage
     @Override
     public long getCapacity()
     {
-        return edges.getCapacity() + nodes.getCapacity() + nameIndex.getCapacity() + wayGeometry.getCapacity()
-                + properties.getCapacity() + extStorage.getCapacity();
+        return edges.getCapacity() + coldEdges.getCapacity() + nodes.getCapacity() + nameIndex.getCapacity() + wayGeometry.getCapacity()
+                + adjacency.getCapacity() + properties.getCapacity() + extStorage.getCapacity();
     }
 
     @Override
     public String toDetailsString()
     {
         return "edges:" + nf(edgeCount) + "(" + edges.getCapacity() / Helper.MB + "), "
+                + (coldEdgesEnabled ? "cold edges:(" + coldEdges.getCapacity() / Helper.MB + "), " : "")
                 + "nodes:" + nf(nodeCount) + "(" + nodes.getCapacity() / Helper.MB + "), "
                 + "name: /(" + nameIndex.getCapacity() / Helper.MB + "), "
                 + "geo:" + nf(maxGeoRef) + "(" + wayGeometry.getCapacity() / Helper.MB + "), "
+                + (frozen ? "adjacency:(" + adjacency.getCapacity() / Helper.MB + "), " : "")
                 + "bounds:" + bounds;
     }
 
@@ -45,4 +45,15 @@ public interface GraphStorage extends Graph, Storable<GraphStorage>
      * Performs optimization routines like deletion or node rearrangements.
      */
     void optimize();
+
+    /**
+     * Switches the graph into a read-only mode with a compact adjacency layout for faster
+     * traversal. Call this after optimize and after all preparations which add edges.
+     */
+    void freeze();
+
+    /**
+     * @return true if freeze was called for this graph or a frozen graph was loaded
+     */
+    boolean isFrozen();
 }
@@ -0,0 +1,655 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.util.AllEdgesSkipIterator;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.util.*;
+import com.graphhopper.util.shapes.BBox;
+
+/**
+ * A LevelGraph which stores only the levels and the shortcuts of one contraction hierarchy and
+ * reads the nodes and edges from a shared GraphStorage. This way several contraction hierarchies,
+ * e.g. one per vehicle and weighting, can be stored in the same directory without duplicating the
+ * graph. The shortcuts get the ids after the last edge of the base graph.
+ * <p/>
+ * The direction of a shortcut is stored in the access bits of the specified vehicle and the weight
+ * is stored separately, so in contrast to LevelGraphStorage any vehicle can be prepared. Edges are
+ * never disconnected, use the LevelEdgeFilter for queries.
+ * <p/>
+ * @see LevelGraphStorage
+ * @author Peter Karich
+ */
+public class LevelGraphOverlay implements LevelGraph, Storable<LevelGraphOverlay>
+{
+    private static final double WEIGHT_FACTOR = 1000d;
+    private static final double MAX_WEIGHT = Integer.MAX_VALUE / WEIGHT_FACTOR;
+    private static final double INT_DIST_FACTOR = 1000d;
+    // node memory layout: the level and the first shortcut of the node
+    private static final int N_LEVEL = 0, N_SHORTCUT = 4, NODE_BYTES = 8;
+    // shortcut memory layout
+    private static final int S_NODEA = 0, S_NODEB = 4, S_LINKA = 8, S_LINKB = 12, S_DIST = 16, S_FLAGS = 20,
+            S_WEIGHT = 28, S_SKIP_EDGE1 = 32, S_SKIP_EDGE2 = 36, SHORTCUT_BYTES = 40;
+    private final String name;
+    private final GraphStorage baseGraph;
+    private final long scDirMask;
+    private final DataAccess levels;
+    private final DataAccess shortcuts;
+    private int nodeCount;
+    private int baseEdgeCount;
+    private int shortcutCount;
+
+    /**
+     * @param name the unique name of this overlay in the directory of the base graph, e.g.
+     * car_fastest
+     * @param encoder the vehicle in which access bits the direction of the shortcuts is stored
+     */
+    public LevelGraphOverlay( String name, GraphStorage baseGraph, FlagEncoder encoder )
+    {
+        if (Helper.isEmpty(name))
+            throw new IllegalArgumentException("The name of the overlay cannot be empty");
+
+        this.name = name;
+        this.baseGraph = baseGraph;
+        this.scDirMask = encoder.setAccess(0, true, true);
+        levels = baseGraph.getDirectory().find("levels_" + name);
+        shortcuts = baseGraph.getDirectory().find("shortcuts_" + name);
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public GraphStorage getBaseGraph()
+    {
+        return baseGraph;
+    }
+
+    /**
+     * @return the number of shortcuts, their ids start at the edge count of the base graph
+     */
+    public int getShortcuts()
+    {
+        return shortcutCount;
+    }
+
+    @Override
+    public LevelGraphOverlay create( long byteCount )
+    {
+        nodeCount = baseGraph.getNodes();
+        baseEdgeCount = baseGraph.getAllEdges().getCount();
+        shortcutCount = 0;
+        levels.create((long) nodeCount * NODE_BYTES);
+        shortcuts.create(byteCount);
+        for (int node = 0; node < nodeCount; node++)
+        {
+            levels.setInt((long) node * NODE_BYTES + N_SHORTCUT, EdgeIterator.NO_EDGE);
+        }
+        return this;
+    }
+
+    @Override
+    public boolean loadExisting()
+    {
+        if (!levels.loadExisting() || !shortcuts.loadExisting())
+            return false;
+
+        nodeCount = levels.getHeader(0);
+        baseEdgeCount = shortcuts.getHeader(0);
+        shortcutCount = shortcuts.getHeader(4);
+        if (nodeCount != baseGraph.getNodes() || baseEdgeCount != baseGraph.getAllEdges().getCount())
+            throw new IllegalStateException("Overlay " + name + " with " + nodeCount + " nodes and " + baseEdgeCount
+                    + " edges does not match the graph with " + baseGraph.getNodes() + " nodes and "
+                    + baseGraph.getAllEdges().getCount() + " edges in " + baseGraph.getDirectory());
+
+        return true;
+    }
+
+    @Override
+    public void flush()
+    {
+        levels.setHeader(0, nodeCount);
+        shortcuts.setHeader(0, baseEdgeCount);
+        shortcuts.setHeader(4, shortcutCount);
+        levels.flush();
+        shortcuts.flush();
+    }
+
+    @Override
+    public void close()
+    {
+        levels.close();
+        shortcuts.close();
+    }
+
+    @Override
+    public boolean isClosed()
+    {
+        return levels.isClosed();
+    }
+
+    @Override
+    public long getCapacity()
+    {
+        return levels.getCapacity() + shortcuts.getCapacity();
+    }
+
+    @Override
+    public final void setLevel( int index, int level )
+    {
+        levels.setInt((long) index * NODE_BYTES + N_LEVEL, level);
+    }
+
+    @Override
+    public final int getLevel( int index )
+    {
+        return levels.getInt((long) index * NODE_BYTES + N_LEVEL);
+    }
+
+    private int getFirstShortcut( int node )
+    {
+        return levels.getInt((long) node * NODE_BYTES + N_SHORTCUT);
+    }
+
+    private void setFirstShortcut( int node, int shortcut )
+    {
+        levels.setInt((long) node * NODE_BYTES + N_SHORTCUT, shortcut);
+    }
+
+    @Override
+    public EdgeSkipIterState shortcut( int a, int b )
+    {
+        if (a >= nodeCount || b >= nodeCount)
+            throw new IllegalArgumentException("Node " + Math.max(a, b) + " does not exist, nodes:" + nodeCount);
+
+        int index = shortcutCount;
+        long pointer = (long) index * SHORTCUT_BYTES;
+        shortcuts.ensureCapacity(pointer + SHORTCUT_BYTES);
+        shortcuts.setInt(pointer + S_NODEA, a);
+        shortcuts.setInt(pointer + S_NODEB, b);
+        shortcuts.setInt(pointer + S_LINKA, getFirstShortcut(a));
+        shortcuts.setInt(pointer + S_LINKB, a == b ? EdgeIterator.NO_EDGE : getFirstShortcut(b));
+        shortcuts.setInt(pointer + S_DIST, 0);
+        shortcuts.setInt(pointer + S_FLAGS, 0);
+        shortcuts.setInt(pointer + S_FLAGS + 4, 0);
+        shortcuts.setInt(pointer + S_WEIGHT, 0);
+        shortcuts.setInt(pointer + S_SKIP_EDGE1, EdgeIterator.NO_EDGE);
+        shortcuts.setInt(pointer + S_SKIP_EDGE2, EdgeIterator.NO_EDGE);
+        setFirstShortcut(a, index);
+        if (a != b)
+            setFirstShortcut(b, index);
+
+        shortcutCount++;
+        return getEdgeProps(baseEdgeCount + index, b);
+    }
+
+    @Override
+    public EdgeSkipIterState getEdgeProps( int edgeId, int adjNode )
+    {
+        if (edgeId < baseEdgeCount)
+        {
+            EdgeIteratorState baseState = baseGraph.getEdgeProps(edgeId, adjNode);
+            if (baseState == null)
+                return null;
+
+            OverlayEdgeIterator iter = new OverlayEdgeIterator(EdgeFilter.ALL_EDGES);
+            iter.baseState = baseState;
+            return iter;
+        }
+
+        int index = edgeId - baseEdgeCount;
+        if (index >= shortcutCount)
+            throw new IllegalStateException("shortcut " + edgeId + " out of bounds [" + baseEdgeCount + ","
+                    + (baseEdgeCount + shortcutCount) + "]");
+
+        long pointer = (long) index * SHORTCUT_BYTES;
+        int nodeA = shortcuts.getInt(pointer + S_NODEA);
+        int nodeB = shortcuts.getInt(pointer + S_NODEB);
+        OverlayEdgeIterator iter = new OverlayEdgeIterator(EdgeFilter.ALL_EDGES);
+        if (adjNode == nodeB || adjNode == Integer.MIN_VALUE)
+            iter.setShortcut(index, nodeA, nodeB, false);
+        else if (adjNode == nodeA)
+            iter.setShortcut(index, nodeB, nodeA, true);
+        else
+            return null;
+
+        return iter;
+    }
+
+    @Override
+    public EdgeSkipExplorer createEdgeExplorer()
+    {
+        return createEdgeExplorer(EdgeFilter.ALL_EDGES);
+    }
+
+    @Override
+    public EdgeSkipExplorer createEdgeExplorer( EdgeFilter filter )
+    {
+        return new OverlayEdgeIterator(filter);
+    }
+
+    @Override
+    public AllEdgesSkipIterator getAllEdges()
+    {
+        return new AllOverlayEdgeIterator();
+    }
+
+    @Override
+    public int getNodes()
+    {
+        return baseGraph.getNodes();
+    }
+
+    @Override
+    public NodeAccess getNodeAccess()
+    {
+        return baseGraph.getNodeAccess();
+    }
+
+    @Override
+    public BBox getBounds()
+    {
+        return baseGraph.getBounds();
+    }
+
+    @Override
+    public EdgeIteratorState edge( int a, int b )
+    {
+        throw new UnsupportedOperationException("Edges have to be added to the base graph, the overlay only stores shortcuts");
+    }
+
+    @Override
+    public EdgeIteratorState edge( int a, int b, double distance, boolean bothDirections )
+    {
+        throw new UnsupportedOperationException("Edges have to be added to the base graph, the overlay only stores shortcuts");
+    }
+
+    @Override
+    public Graph copyTo( Graph g )
+    {
+        throw new UnsupportedOperationException("Not supported for an overlay, copy the base graph and prepare again");
+    }
+
+    @Override
+    public GraphExtension getExtension()
+    {
+        return baseGraph.getExtension();
+    }
+
+    /**
+     * The shortcuts are stored from nodeA to nodeB, the same swapping as in LevelGraphStorage is
+     * necessary if they are read from nodeB.
+     */
+    private long reverseFlags( long flags )
+    {
+        long dir = flags & scDirMask;
+        if (dir == scDirMask || dir == 0)
+            return flags;
+
+        return flags ^ scDirMask;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "overlay " + name + ", shortcuts:" + shortcutCount + ", base:" + baseGraph;
+    }
+
+    /**
+     * Iterates first over the shortcuts of the base node and then over the edges of the base
+     * graph. The filter is applied to this iterator so that it can access the shortcut flags.
+     */
+    class OverlayEdgeIterator implements EdgeSkipExplorer, EdgeSkipIterator
+    {
+        final EdgeFilter filter;
+        private EdgeExplorer baseExplorer;
+        private EdgeIterator baseIter;
+        // the current edge of the base graph or null if the current edge is a shortcut
+        EdgeIteratorState baseState;
+        private int nextShortcut = EdgeIterator.NO_EDGE;
+        private int shortcut;
+        private long pointer;
+        private int baseNode;
+        private int adjNode;
+        private boolean reverse;
+
+        public OverlayEdgeIterator( EdgeFilter filter )
+        {
+            this.filter = filter;
+        }
+
+        final void setShortcut( int index, int base, int adj, boolean reverse )
+        {
+            baseState = null;
+            shortcut = index;
+            pointer = (long) index * SHORTCUT_BYTES;
+            baseNode = base;
+            adjNode = adj;
+            this.reverse = reverse;
+        }
+
+        @Override
+        public EdgeSkipIterator setBaseNode( int baseNode )
+        {
+            this.baseNode = baseNode;
+            nextShortcut = getFirstShortcut(baseNode);
+            baseIter = null;
+            baseState = null;
+            return this;
+        }
+
+        @Override
+        public boolean next()
+        {
+            while (nextShortcut != EdgeIterator.NO_EDGE)
+            {
+                int index = nextShortcut;
+                long tmpPointer = (long) index * SHORTCUT_BYTES;
+                int nodeA = shortcuts.getInt(tmpPointer + S_NODEA);
+                if (nodeA == baseNode)
+                {
+                    setShortcut(index, baseNode, shortcuts.getInt(tmpPointer + S_NODEB), false);
+                    nextShortcut = shortcuts.getInt(tmpPointer + S_LINKA);
+                } else
+                {
+                    setShortcut(index, baseNode, nodeA, true);
+                    nextShortcut = shortcuts.getInt(tmpPointer + S_LINKB);
+                }
+
+                if (filter.accept(this))
+                    return true;
+            }
+
+            if (baseIter == null)
+            {
+                if (baseExplorer == null)
+                    baseExplorer = baseGraph.createEdgeExplorer();
+
+                baseIter = baseExplorer.setBaseNode(baseNode);
+            }
+
+            while (baseIter.next())
+            {
+                baseState = baseIter;
+                if (filter.accept(this))
+                    return true;
+            }
+            return false;
+        }
+
+        @Override
+        public final boolean isShortcut()
+        {
+            return baseState == null;
+        }
+
+        @Override
+        public final int getEdge()
+        {
+            return baseState == null ? baseEdgeCount + shortcut : baseState.getEdge();
+        }
+
+        @Override
+        public final int getBaseNode()
+        {
+            return baseState == null ? baseNode : baseState.getBaseNode();
+        }
+
+        @Override
+        public final int getAdjNode()
+        {
+            return baseState == null ? adjNode : baseState.getAdjNode();
+        }
+
+        @Override
+        public final double getDistance()
+        {
+            if (baseState != null)
+                return baseState.getDistance();
+
+            return shortcuts.getInt(pointer + S_DIST) / INT_DIST_FACTOR;
+        }
+
+        @Override
+        public final EdgeIteratorState setDistance( double dist )
+        {
+            if (baseState != null)
+            {
+                baseState.setDistance(dist);
+                return this;
+            }
+
+            int integ = (int) (dist * INT_DIST_FACTOR);
+            if (integ < 0)
+                throw new IllegalArgumentException("Distance cannot be negative: " + dist + ", maybe overflow issue?");
+
+            shortcuts.setInt(pointer + S_DIST, integ);
+            return this;
+        }
+
+        @Override
+        public final long getFlags()
+        {
+            if (baseState != null)
+                return baseState.getFlags();
+
+            long flags = (long) shortcuts.getInt(pointer + S_FLAGS + 4) << 32
+                    | (shortcuts.getInt(pointer + S_FLAGS) & 0xFFFFFFFFL);
+            return reverse ? reverseFlags(flags) : flags;
+        }
+
+        @Override
+        public final EdgeIteratorState setFlags( long flags )
+        {
+            if (baseState != null)
+            {
+                baseState.setFlags(flags);
+                return this;
+            }
+
+            if (reverse)
+                flags = reverseFlags(flags);
+
+            shortcuts.setInt(pointer + S_FLAGS, (int) flags);
+            shortcuts.setInt(pointer + S_FLAGS + 4, (int) (flags >>> 32));
+            return this;
+        }
+
+        @Override
+        public final EdgeSkipIterState setWeight( double weight )
+        {
+            checkShortcut("setWeight");
+            if (weight < 0)
+                throw new IllegalArgumentException("weight cannot be negative! but was " + weight);
+
+            int weightInt = weight >= MAX_WEIGHT ? Integer.MAX_VALUE : (int) (weight * WEIGHT_FACTOR);
+            shortcuts.setInt(pointer + S_WEIGHT, weightInt);
+            return this;
+        }
+
+        @Override
+        public final double getWeight()
+        {
+            checkShortcut("getWeight");
+            int weightInt = shortcuts.getInt(pointer + S_WEIGHT);
+            if (weightInt == Integer.MAX_VALUE)
+                return Double.POSITIVE_INFINITY;
+
+            return weightInt / WEIGHT_FACTOR;
+        }
+
+        @Override
+        public final int getSkippedEdge1()
+        {
+            return baseState == null ? shortcuts.getInt(pointer + S_SKIP_EDGE1) : EdgeIterator.NO_EDGE;
+        }
+
+        @Override
+        public final int getSkippedEdge2()
+        {
+            return baseState == null ? shortcuts.getInt(pointer + S_SKIP_EDGE2) : EdgeIterator.NO_EDGE;
+        }
+
+        @Override
+        public final void setSkippedEdges( int edge1, int edge2 )
+        {
+            checkShortcut("setSkippedEdges");
+            if (EdgeIterator.Edge.isValid(edge1) != EdgeIterator.Edge.isValid(edge2))
+            {
+                throw new IllegalStateException("Skipped edges of a shortcut needs "
+                        + "to be both valid or invalid but they were not " + edge1 + ", " + edge2);
+            }
+            shortcuts.setInt(pointer + S_SKIP_EDGE1, edge1);
+            shortcuts.setInt(pointer + S_SKIP_EDGE2, edge2);
+        }
+
+        private void checkShortcut( String method )
+        {
+            if (baseState != null)
+                throw new IllegalStateException(method + " is only available for shortcuts");
+        }
+
+        private void checkNoShortcut( String method )
+        {
+            if (baseState == null)
+                throw new IllegalStateException("Cannot call " + method + " on shortcut " + getEdge());
+        }
+
+        @Override
+        public PointList fetchWayGeometry( int mode )
+        {
+            checkNoShortcut("fetchWayGeometry");
+            return baseState.fetchWayGeometry(mode);
+        }
+
+        @Override
+        public EdgeIteratorState setWayGeometry( PointList list )
+        {
+            checkNoShortcut("setWayGeometry");
+            baseState.setWayGeometry(list);
+            return this;
+        }
+
+        @Override
+        public String getName()
+        {
+            checkNoShortcut("getName");
+            return baseState.getName();
+        }
+
+        @Override
+        public EdgeIteratorState setName( String name )
+        {
+            checkNoShortcut("setName");
+            baseState.setName(name);
+            return this;
+        }
+
+        @Override
+        public int getAdditionalField()
+        {
+            checkNoShortcut("getAdditionalField");
+            return baseState.getAdditionalField();
+        }
+
+        @Override
+        public EdgeIteratorState setAdditionalField( int value )
+        {
+            checkNoShortcut("setAdditionalField");
+            baseState.setAdditionalField(value);
+            return this;
+        }
+
+        @Override
+        public EdgeIteratorState detach( boolean reverseArg )
+        {
+            OverlayEdgeIterator iter = new OverlayEdgeIterator(filter);
+            if (baseState != null)
+                iter.baseState = baseState.detach(reverseArg);
+            else if (reverseArg)
+                iter.setShortcut(shortcut, adjNode, baseNode, !reverse);
+            else
+                iter.setShortcut(shortcut, baseNode, adjNode, reverse);
+
+            return iter;
+        }
+
+        @Override
+        public EdgeIteratorState copyPropertiesTo( EdgeIteratorState edge )
+        {
+            if (baseState != null)
+                return baseState.copyPropertiesTo(edge);
+
+            edge.setDistance(getDistance()).setFlags(getFlags());
+            if (edge instanceof EdgeSkipIterState)
+            {
+                EdgeSkipIterState skipEdge = (EdgeSkipIterState) edge;
+                skipEdge.setSkippedEdges(getSkippedEdge1(), getSkippedEdge2());
+                skipEdge.setWeight(getWeight());
+            }
+            return edge;
+        }
+
+        @Override
+        public String toString()
+        {
+            return getEdge() + " " + getBaseNode() + "-" + getAdjNode();
+        }
+    }
+
+    /**
+     * Iterates over all edges of the base graph and then over all shortcuts.
+     */
+    class AllOverlayEdgeIterator extends OverlayEdgeIterator implements AllEdgesSkipIterator
+    {
+        private final AllEdgesIterator baseAllIter = baseGraph.getAllEdges();
+        private int nextIndex;
+
+        public AllOverlayEdgeIterator()
+        {
+            super(EdgeFilter.ALL_EDGES);
+        }
+
+        @Override
+        public boolean next()
+        {
+            if (nextIndex == 0 && baseAllIter.next())
+            {
+                baseState = baseAllIter;
+                return true;
+            }
+
+            if (nextIndex >= shortcutCount)
+                return false;
+
+            long tmpPointer = (long) nextIndex * SHORTCUT_BYTES;
+            setShortcut(nextIndex, shortcuts.getInt(tmpPointer + S_NODEA), shortcuts.getInt(tmpPointer + S_NODEB), false);
+            nextIndex++;
+            return true;
+        }
+
+        @Override
+        public int getCount()
+        {
+            return baseEdgeCount + shortcutCount;
+        }
+    }
+}
@@ -390,6 +390,20 @@ public class MMapDataAccess extends AbstractDataAccess
         return segments.size();
     }
 
+    /**
+     * Loads the content of the specified segment into physical memory, see MappedByteBuffer.load.
+     * This avoids random page faults for the first requests and can be called from a background
+     * thread after loadExisting, but not concurrently to close.
+     * <p/>
+     * @see DirectoryWarmup
+     */
+    public void loadSegment( int segment )
+    {
+        ByteBuffer bb = segments.get(segment);
+        if (bb instanceof MappedByteBuffer)
+            ((MappedByteBuffer) bb).load();
+    }
+
     /**
      * Cleans up MappedByteBuffers. Be sure you bring the segments list in a consistent state
      * afterwards.
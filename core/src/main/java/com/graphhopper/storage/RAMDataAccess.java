@@ -21,6 +21,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 import org.slf4j.LoggerFactory;
 
@@ -148,22 +149,27 @@ public class RAMDataAccess extends AbstractDataAccess
                 if (byteCount < 0)
                     return false;
 
-                raFile.seek(HEADER_OFFSET);
-                // raFile.readInt() <- too slow                
+                // raFile.readInt() <- too slow
                 int segmentCount = (int) (byteCount / segmentSizeInBytes);
                 if (byteCount % segmentSizeInBytes != 0)
                     segmentCount++;
 
-                segments = new byte[segmentCount][];
-                for (int s = 0; s < segmentCount; s++)
+                final byte[][] newSegments = new byte[segmentCount][];
+                // read directly into the segments without a buffer
+                loadSegments(raFile.getChannel(), segmentCount, false, new SegmentTask()
                 {
-                    byte[] bytes = new byte[segmentSizeInBytes];
-                    int read = raFile.read(bytes);
-                    if (read <= 0)
-                        throw new IllegalStateException("segment " + s + " is empty? " + toString());
-
-                    segments[s] = bytes;
-                }
+                    @Override
+                    public void run( FileChannel channel, int segment, byte[] buffer ) throws IOException
+                    {
+                        byte[] bytes = new byte[segmentSizeInBytes];
+                        int read = readSegment(channel, segment, bytes);
+                        if (read <= 0)
+                            throw new IllegalStateException("segment " + segment + " is empty? " + RAMDataAccess.this.toString());
+
+                        newSegments[segment] = bytes;
+                    }
+                });
+                segments = newSegments;
                 return true;
             } finally
             {
@@ -191,13 +197,17 @@ public class RAMDataAccess extends AbstractDataAccess
             {
                 long len = getCapacity();
                 writeHeader(raFile, len, segmentSizeInBytes);
-                raFile.seek(HEADER_OFFSET);
-                // raFile.writeInt() <- too slow, so copy into byte array
-                for (int s = 0; s < segments.length; s++)
+                // raFile.writeInt() <- too slow, the segments are written without copying instead
+                final byte[][] flushSegments = segments;
+                flushSegments(raFile.getChannel(), flushSegments.length, false, new SegmentTask()
                 {
-                    byte area[] = segments[s];
-                    raFile.write(area);
-                }
+                    @Override
+                    public void run( FileChannel channel, int segment, byte[] buffer ) throws IOException
+                    {
+                        byte[] area = flushSegments[segment];
+                        writeSegment(channel, segment, area, area.length);
+                    }
+                });
             } finally
             {
                 raFile.close();
@@ -21,6 +21,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 
 /**
@@ -153,24 +154,27 @@ class RAMIntDataAccess extends AbstractDataAccess
                 {
                     return false;
                 }
-                byte[] bytes = new byte[segmentSizeInBytes];
-                raFile.seek(HEADER_OFFSET);
-                // raFile.readInt() <- too slow                
+                // raFile.readInt() <- too slow
                 int segmentCount = (int) (byteCount / segmentSizeInBytes);
                 if (byteCount % segmentSizeInBytes != 0)
                     segmentCount++;
 
-                segments = new int[segmentCount][];
-                for (int s = 0; s < segmentCount; s++)
+                final int[][] newSegments = new int[segmentCount][];
+                loadSegments(raFile.getChannel(), segmentCount, true, new SegmentTask()
                 {
-                    int read = raFile.read(bytes) / 4;
-                    int area[] = new int[read];
-                    for (int j = 0; j < read; j++)
+                    @Override
+                    public void run( FileChannel channel, int segment, byte[] buffer ) throws IOException
                     {
-                        area[j] = bitUtil.toInt(bytes, j * 4);
+                        int read = readSegment(channel, segment, buffer) / 4;
+                        int area[] = new int[read];
+                        for (int j = 0; j < read; j++)
+                        {
+                            area[j] = bitUtil.toInt(buffer, j * 4);
+                        }
+                        newSegments[segment] = area;
                     }
-                    segments[s] = area;
-                }
+                });
+                segments = newSegments;
                 return true;
             } finally
             {
@@ -200,19 +204,22 @@ class RAMIntDataAccess extends AbstractDataAccess
             {
                 long len = getCapacity();
                 writeHeader(raFile, len, segmentSizeInBytes);
-                raFile.seek(HEADER_OFFSET);
                 // raFile.writeInt() <- too slow, so copy into byte array
-                for (int s = 0; s < segments.length; s++)
+                final int[][] flushSegments = segments;
+                flushSegments(raFile.getChannel(), flushSegments.length, true, new SegmentTask()
                 {
-                    int area[] = segments[s];
-                    int intLen = area.length;
-                    byte[] byteArea = new byte[intLen * 4];
-                    for (int i = 0; i < intLen; i++)
+                    @Override
+                    public void run( FileChannel channel, int segment, byte[] buffer ) throws IOException
                     {
-                        bitUtil.fromInt(byteArea, area[i], i * 4);
+                        int area[] = flushSegments[segment];
+                        int intLen = area.length;
+                        for (int i = 0; i < intLen; i++)
+                        {
+                            bitUtil.fromInt(buffer, area[i], i * 4);
+                        }
+                        writeSegment(channel, segment, buffer, intLen * 4);
                     }
-                    raFile.write(byteArea);
-                }
+                });
             } finally
             {
                 raFile.close();
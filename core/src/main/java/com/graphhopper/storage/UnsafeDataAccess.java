@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.lang.reflect.Field;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 
 /**
  * This is a data structure which uses an unsafe access to native memory. The speed up compared to
@@ -181,14 +182,16 @@ public class UnsafeDataAccess extends AbstractDataAccess
             {
                 long len = getCapacity();
                 writeHeader(raFile, len, segmentSizeInBytes);
-                raFile.seek(HEADER_OFFSET);
-                byte bytes[] = new byte[segmentSizeInBytes];
-                int segs = getSegments();
-                for (int s = 0; s < segs; s++)
+                // reading different segments of the native memory concurrently is safe
+                flushSegments(raFile.getChannel(), getSegments(), true, new SegmentTask()
                 {
-                    getBytes(s * segmentSizeInBytes, bytes, segmentSizeInBytes);
-                    raFile.write(bytes);
-                }
+                    @Override
+                    public void run( FileChannel channel, int segment, byte[] buffer ) throws IOException
+                    {
+                        getBytes((long) segment * segmentSizeInBytes, buffer, segmentSizeInBytes);
+                        writeSegment(channel, segment, buffer, segmentSizeInBytes);
+                    }
+                });
             } finally
             {
                 raFile.close();
@@ -168,6 +168,24 @@ public class VLongStorage
         throw new RuntimeException("Invalid vLong detected (negative values disallowed)");
     }
 
+    /**
+     * Writes a long which can also be negative. The zig-zag encoding maps values close to zero,
+     * positive or negative, to small VLongs, e.g. for deltas.
+     */
+    public final void writeSignedVLong( long i )
+    {
+        writeVLong((i << 1) ^ (i >> 63));
+    }
+
+    /**
+     * Reads a long written via writeSignedVLong.
+     */
+    public long readSignedVLong()
+    {
+        long i = readVLong();
+        return (i >>> 1) ^ -(i & 1);
+    }
+
     public void trimToSize()
     {
         if (bytes.length > pointer)
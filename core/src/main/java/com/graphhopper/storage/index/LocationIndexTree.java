@@ -22,6 +22,7 @@ import com.graphhopper.coll.GHTBitSet;
 import com.graphhopper.geohash.SpatialKeyAlgo;
 import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.storage.DAType;
 import com.graphhopper.storage.DataAccess;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.Graph;
@@ -31,6 +32,7 @@ import com.graphhopper.util.shapes.BBox;
 import com.graphhopper.util.shapes.GHPoint;
 import gnu.trove.iterator.TIntIterator;
 import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
 import gnu.trove.procedure.TIntProcedure;
 import gnu.trove.set.hash.TIntHashSet;
 import java.util.*;
@@ -73,12 +75,16 @@ public class LocationIndexTree implements LocationIndex
      * algorithm can stop search.
      */
     private double equalNormedDelta;
+    private SnapCache snapCache;
+    private final Directory dir;
+    private int bulkLoadRunSize = 0;
 
     public LocationIndexTree( Graph g, Directory dir )
     {
         MAGIC_INT = Integer.MAX_VALUE / 22316;
         this.graph = g;
         this.nodeAccess = g.getNodeAccess();
+        this.dir = dir;
         dataAccess = dir.find("locationIndex");
     }
 
@@ -115,6 +121,39 @@ public class LocationIndexTree implements LocationIndex
         return this;
     }
 
+    /**
+     * Caches the results of findClosest in the specified cache. Use null to disable caching.
+     */
+    public LocationIndexTree setSnapCache( SnapCache snapCache )
+    {
+        this.snapCache = snapCache;
+        return this;
+    }
+
+    public SnapCache getSnapCache()
+    {
+        return snapCache;
+    }
+
+    /**
+     * Builds the index in prepareIndex without the in-memory object tree, which needs several GB
+     * of heap for a world wide graph. Instead the tiles of the edges are sorted in runs of the
+     * specified number of entries (12 bytes each) which are stored in a temporary DataAccess and
+     * merged directly into the index. The resulting index is identical. Use 0 to build the object
+     * tree (the default).
+     * <p/>
+     * If the directory stores its files the runs are memory mapped. For an in-memory directory
+     * which doesn't store the runs are kept on the heap as well and only the object tree is saved.
+     */
+    public LocationIndexTree setBulkLoadRunSize( int bulkLoadRunSize )
+    {
+        if (bulkLoadRunSize < 0)
+            throw new IllegalArgumentException("Run size cannot be negative but was " + bulkLoadRunSize);
+
+        this.bulkLoadRunSize = bulkLoadRunSize;
+        return this;
+    }
+
     void prepareAlgo()
     {
         // 0.1 meter should count as 'equal'
@@ -301,24 +340,45 @@ public class LocationIndexTree implements LocationIndex
 
         StopWatch sw = new StopWatch().start();
         prepareAlgo();
-        // in-memory preparation
-        InMemConstructionIndex inMem = getPrepareInMemIndex();
-
-        // compact & store to dataAccess
+        ConstructionIndex index;
         dataAccess.create(64 * 1024);
-        try
+        if (bulkLoadRunSize > 0)
         {
-            inMem.store(inMem.root, START_POINTER);
-            flush();
-        } catch (Exception ex)
+            BulkConstructionIndex bulk = new BulkConstructionIndex(bulkLoadRunSize);
+            try
+            {
+                bulk.prepare();
+                bulk.store();
+                flush();
+            } catch (Exception ex)
+            {
+                throw new IllegalStateException("Problem while storing location index. " + Helper.getMemInfo(), ex);
+            } finally
+            {
+                bulk.removeRuns();
+            }
+            index = bulk;
+        } else
         {
-            throw new IllegalStateException("Problem while storing location index. " + Helper.getMemInfo(), ex);
+            // in-memory preparation
+            InMemConstructionIndex inMem = getPrepareInMemIndex();
+
+            // compact & store to dataAccess
+            try
+            {
+                inMem.store(inMem.root, START_POINTER);
+                flush();
+            } catch (Exception ex)
+            {
+                throw new IllegalStateException("Problem while storing location index. " + Helper.getMemInfo(), ex);
+            }
+            index = inMem;
         }
-        float entriesPerLeaf = (float) inMem.size / inMem.leafs;
+        float entriesPerLeaf = (float) index.size / index.leafs;
         initialized = true;
         logger.info("location index created in " + sw.stop().getSeconds()
-                + "s, size:" + Helper.nf(inMem.size)
-                + ", leafs:" + Helper.nf(inMem.leafs)
+                + "s, size:" + Helper.nf(index.size)
+                + ", leafs:" + Helper.nf(index.leafs)
                 + ", precision:" + minResolutionInMeter
                 + ", depth:" + entries.length
                 + ", entries:" + Arrays.toString(entries)
@@ -358,16 +418,13 @@ public class LocationIndexTree implements LocationIndex
         dataAccess.setSegmentSize(bytes);
     }
 
-    class InMemConstructionIndex
+    /**
+     * Feeds the tiles of all edges into the index under construction.
+     */
+    abstract class ConstructionIndex
     {
         int size;
         int leafs;
-        InMemTreeEntry root;
-
-        public InMemConstructionIndex( int noOfSubEntries )
-        {
-            root = new InMemTreeEntry(noOfSubEntries);
-        }
 
         void prepare()
         {
@@ -415,7 +472,7 @@ public class LocationIndexTree implements LocationIndex
                     long key = keyAlgo.encode(lat, lon);
                     long keyPart = createReverseKey(key);
                     // no need to feed both nodes as we search neighbors in fillIDs
-                    addNode(root, pickBestNode(nodeA, nodeB), 0, keyPart, key);
+                    addNode(pickBestNode(nodeA, nodeB), keyPart, key);
                 }
             };
             BresenhamLine.calcPoints(lat1, lon1, lat2, lon2, pointEmitter,
@@ -423,6 +480,24 @@ public class LocationIndexTree implements LocationIndex
                     deltaLat, deltaLon);
         }
 
+        abstract void addNode( int nodeId, long keyPart, long key );
+    }
+
+    class InMemConstructionIndex extends ConstructionIndex
+    {
+        InMemTreeEntry root;
+
+        public InMemConstructionIndex( int noOfSubEntries )
+        {
+            root = new InMemTreeEntry(noOfSubEntries);
+        }
+
+        @Override
+        void addNode( int nodeId, long keyPart, long key )
+        {
+            addNode(root, nodeId, 0, keyPart, key);
+        }
+
         void addNode( InMemEntry entry, int nodeId, int depth, long keyPart, long key )
         {
             if (entry.isLeaf())
@@ -566,6 +641,306 @@ public class LocationIndexTree implements LocationIndex
         }
     }
 
+    /**
+     * Writes the tree in the same depth first layout as InMemConstructionIndex.store but from the
+     * leaf tiles in the order of this layout. The order is the order of the subentry indices of all
+     * depths, which is collected as sort key of every (tile, node) entry. Sorted runs of these
+     * entries are stored in a temporary DataAccess and merged, so only one run, the current path
+     * and the nodes of the current leaf are kept on the heap.
+     */
+    class BulkConstructionIndex extends ConstructionIndex
+    {
+        // sort key | node
+        private static final int RUN_ENTRY_BYTES = 12;
+        private final long[] runKeys;
+        private final int[] runNodes;
+        private int runCount;
+        private DataAccess runs;
+        private final TLongArrayList runStarts = new TLongArrayList();
+        private long storedEntries;
+        // the current path: the int index of the tree entry and the subentry index for every depth
+        private final int[] blockStarts = new int[entries.length];
+        private final int[] path = new int[entries.length];
+        private final int[] prevPath = new int[entries.length];
+        private int nextIntIndex;
+
+        public BulkConstructionIndex( int runSize )
+        {
+            runKeys = new long[runSize];
+            runNodes = new int[runSize];
+        }
+
+        @Override
+        void addNode( int nodeId, long keyPart, long key )
+        {
+            if (runCount == runKeys.length)
+                storeRun();
+
+            runKeys[runCount] = toSortKey(keyPart);
+            runNodes[runCount] = nodeId;
+            runCount++;
+        }
+
+        /**
+         * @return the subentry indices of all depths where the first depth has the highest bits.
+         * The sign bit is flipped so that the signed order is the order of the layout even if all
+         * 64 bits are used.
+         */
+        private long toSortKey( long keyPart )
+        {
+            long sortKey = 0;
+            for (int depth = 0; depth < entries.length; depth++)
+            {
+                sortKey = (sortKey << shifts[depth]) | (bitmasks[depth] & keyPart);
+                keyPart = keyPart >>> shifts[depth];
+            }
+            return sortKey ^ Long.MIN_VALUE;
+        }
+
+        private void storeRun()
+        {
+            sort(0, runCount - 1);
+            if (runs == null)
+            {
+                // keep the runs off the heap if possible, also for in-memory directories like RAM_STORE
+                DAType type = dir.getDefaultType().isStoring() ? DAType.MMAP : dir.getDefaultType();
+                runs = dir.find("locationIndex_runs", type).create((long) runKeys.length * RUN_ENTRY_BYTES);
+            }
+
+            runs.ensureCapacity((storedEntries + runCount) * RUN_ENTRY_BYTES);
+            long pointer = storedEntries * RUN_ENTRY_BYTES;
+            for (int i = 0; i < runCount; i++, pointer += RUN_ENTRY_BYTES)
+            {
+                runs.setInt(pointer, BitUtil.LITTLE.getIntLow(runKeys[i]));
+                runs.setInt(pointer + 4, BitUtil.LITTLE.getIntHigh(runKeys[i]));
+                runs.setInt(pointer + 8, runNodes[i]);
+            }
+            runStarts.add(storedEntries);
+            storedEntries += runCount;
+            runCount = 0;
+        }
+
+        void removeRuns()
+        {
+            if (runs != null)
+            {
+                dir.remove(runs);
+                runs = null;
+            }
+        }
+
+        void store()
+        {
+            PriorityQueue<Run> queue = new PriorityQueue<Run>(Math.max(1, runStarts.size() + 1));
+            if (runs == null)
+            {
+                // everything fits into one run, merge it directly from the heap
+                sort(0, runCount - 1);
+                addRun(queue, new Run(0, runCount));
+            } else
+            {
+                if (runCount > 0)
+                    storeRun();
+
+                for (int i = 0; i < runStarts.size(); i++)
+                {
+                    long end = i + 1 < runStarts.size() ? runStarts.get(i + 1) : storedEntries;
+                    addRun(queue, new Run(runStarts.get(i), end));
+                }
+            }
+
+            nextIntIndex = START_POINTER + entries[0];
+            blockStarts[0] = START_POINTER;
+            TIntArrayList leafNodes = new TIntArrayList();
+            long leafKey = 0;
+            while (!queue.isEmpty())
+            {
+                Run run = queue.poll();
+                if (!leafNodes.isEmpty() && run.key != leafKey)
+                {
+                    writeLeaf(leafKey, leafNodes);
+                    leafNodes.resetQuick();
+                }
+                // the entries of a tile are sorted by node, so duplicates are consecutive
+                if (leafNodes.isEmpty() || leafNodes.get(leafNodes.size() - 1) != run.node)
+                    leafNodes.add(run.node);
+
+                leafKey = run.key;
+                addRun(queue, run);
+            }
+            if (!leafNodes.isEmpty())
+                writeLeaf(leafKey, leafNodes);
+        }
+
+        private void addRun( PriorityQueue<Run> queue, Run run )
+        {
+            if (run.next())
+                queue.add(run);
+        }
+
+        private void writeLeaf( long sortKey, TIntArrayList nodes )
+        {
+            sortKey ^= Long.MIN_VALUE;
+            int bits = 0;
+            for (int depth = 0; depth < entries.length; depth++)
+            {
+                bits += shifts[depth];
+            }
+            // the tree entries of the previous leaf are reused up to the first different subentry
+            int firstNewDepth = leafs == 0 ? 0 : entries.length;
+            for (int depth = 0; depth < entries.length; depth++)
+            {
+                bits -= shifts[depth];
+                path[depth] = (int) (bitmasks[depth] & (sortKey >>> bits));
+                if (firstNewDepth == entries.length && path[depth] != prevPath[depth])
+                    firstNewDepth = depth;
+            }
+
+            int len = nodes.size();
+            int maxIntIndex = nextIntIndex + len + 1;
+            for (int depth = firstNewDepth + 1; depth < entries.length; depth++)
+            {
+                maxIntIndex += entries[depth];
+            }
+            dataAccess.ensureCapacity((long) maxIntIndex * 4);
+            for (int depth = firstNewDepth; depth < entries.length; depth++)
+            {
+                dataAccess.setInt((long) (blockStarts[depth] + path[depth]) * 4, nextIntIndex);
+                if (depth + 1 < entries.length)
+                {
+                    blockStarts[depth + 1] = nextIntIndex;
+                    nextIntIndex += entries[depth + 1];
+                }
+            }
+
+            long refPointer = (long) nextIntIndex * 4;
+            nextIntIndex++;
+            if (len == 1)
+            {
+                // less disc space for single entries
+                dataAccess.setInt(refPointer, -nodes.get(0) - 1);
+            } else
+            {
+                for (int index = 0; index < len; index++, nextIntIndex++)
+                {
+                    dataAccess.setInt((long) nextIntIndex * 4, nodes.get(index));
+                }
+                dataAccess.setInt(refPointer, nextIntIndex);
+            }
+            size += len;
+            leafs++;
+            System.arraycopy(path, 0, prevPath, 0, path.length);
+        }
+
+        /**
+         * Sorts the current run by key and node.
+         */
+        private void sort( int from, int to )
+        {
+            while (to - from > 16)
+            {
+                int mid = (from + to) >>> 1;
+                long pivotKey = runKeys[mid];
+                int pivotNode = runNodes[mid];
+                int i = from, j = to;
+                while (i <= j)
+                {
+                    while (compare(runKeys[i], runNodes[i], pivotKey, pivotNode) < 0)
+                    {
+                        i++;
+                    }
+                    while (compare(runKeys[j], runNodes[j], pivotKey, pivotNode) > 0)
+                    {
+                        j--;
+                    }
+                    if (i <= j)
+                    {
+                        swap(i, j);
+                        i++;
+                        j--;
+                    }
+                }
+                // recurse into the smaller part to limit the stack depth
+                if (j - from < to - i)
+                {
+                    sort(from, j);
+                    from = i;
+                } else
+                {
+                    sort(i, to);
+                    to = j;
+                }
+            }
+            for (int i = from + 1; i <= to; i++)
+            {
+                for (int j = i; j > from && compare(runKeys[j - 1], runNodes[j - 1], runKeys[j], runNodes[j]) > 0; j--)
+                {
+                    swap(j - 1, j);
+                }
+            }
+        }
+
+        private void swap( int i, int j )
+        {
+            long tmpKey = runKeys[i];
+            runKeys[i] = runKeys[j];
+            runKeys[j] = tmpKey;
+            int tmpNode = runNodes[i];
+            runNodes[i] = runNodes[j];
+            runNodes[j] = tmpNode;
+        }
+
+        /**
+         * A cursor over one sorted run, either on the heap or in the temporary DataAccess.
+         */
+        private class Run implements Comparable<Run>
+        {
+            private long index;
+            private final long end;
+            long key;
+            int node;
+
+            public Run( long start, long end )
+            {
+                this.index = start;
+                this.end = end;
+            }
+
+            boolean next()
+            {
+                if (index >= end)
+                    return false;
+
+                if (runs == null)
+                {
+                    key = runKeys[(int) index];
+                    node = runNodes[(int) index];
+                } else
+                {
+                    long pointer = index * RUN_ENTRY_BYTES;
+                    key = BitUtil.LITTLE.combineIntsToLong(runs.getInt(pointer), runs.getInt(pointer + 4));
+                    node = runs.getInt(pointer + 8);
+                }
+                index++;
+                return true;
+            }
+
+            @Override
+            public int compareTo( Run o )
+            {
+                return compare(key, node, o.key, o.node);
+            }
+        }
+    }
+
+    static int compare( long key1, int node1, long key2, int node2 )
+    {
+        if (key1 != key2)
+            return key1 < key2 ? -1 : 1;
+
+        return node1 < node2 ? -1 : (node1 == node2 ? 0 : 1);
+    }
+
     TIntArrayList getEntries()
     {
         return new TIntArrayList(entries);
@@ -698,7 +1073,12 @@ public class LocationIndexTree implements LocationIndex
     public final TIntHashSet findNetworkEntries( double queryLat, double queryLon, int maxIteration )
     {
         TIntHashSet foundEntries = new TIntHashSet();
+        findNetworkEntries(queryLat, queryLon, maxIteration, foundEntries);
+        return foundEntries;
+    }
 
+    final void findNetworkEntries( double queryLat, double queryLon, int maxIteration, TIntHashSet foundEntries )
+    {
         for (int iteration = 0; iteration < maxIteration; iteration++)
         {
             // find entries in border of searchbox
@@ -743,7 +1123,6 @@ public class LocationIndexTree implements LocationIndex
                 }
             }
         }
-        return foundEntries;
     }
 
     final double calcMinDistance( double queryLat, double queryLon, TIntHashSet pointset )
@@ -776,15 +1155,88 @@ public class LocationIndexTree implements LocationIndex
         if (isClosed())
             throw new IllegalStateException("You need to create a new LocationIndex instance as it is already closed");
 
-        final TIntHashSet storedNetworkEntryIds = findNetworkEntries(queryLat, queryLon, maxRegionSearch);
+        return findClosest(queryLat, queryLon, edgeFilter, new TIntHashSet(), new TIntHashSet(),
+                graph.createEdgeExplorer(getEdgeFilter()));
+    }
+
+    /**
+     * Finds the closest edge for every point. The points are processed in the order of their
+     * spatial key so that consecutive searches read nearby parts of the index and the graph. The
+     * collections and the explorer are reused for all points and the result of a repeated point is
+     * copied instead of searched again.
+     * <p/>
+     * @return the results in the order of the specified points
+     */
+    public List<QueryResult> findClosest( List<GHPoint> points, EdgeFilter edgeFilter )
+    {
+        if (isClosed())
+            throw new IllegalStateException("You need to create a new LocationIndex instance as it is already closed");
+
+        final long[] keys = new long[points.size()];
+        Integer[] order = new Integer[points.size()];
+        for (int i = 0; i < keys.length; i++)
+        {
+            keys[i] = keyAlgo.encode(points.get(i));
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>()
+        {
+            @Override
+            public int compare( Integer o1, Integer o2 )
+            {
+                long key1 = keys[o1], key2 = keys[o2];
+                return key1 < key2 ? -1 : (key1 == key2 ? 0 : 1);
+            }
+        });
+
+        QueryResult[] results = new QueryResult[keys.length];
+        TIntHashSet storedNetworkEntryIds = new TIntHashSet();
+        TIntHashSet checkedIds = new TIntHashSet();
+        EdgeExplorer explorer = graph.createEdgeExplorer(getEdgeFilter());
+        GHPoint prevPoint = null;
+        QueryResult prevResult = null;
+        for (int index : order)
+        {
+            GHPoint point = points.get(index);
+            if (prevPoint != null && prevPoint.lat == point.lat && prevPoint.lon == point.lon)
+                results[index] = prevResult.copy(point.lat, point.lon, distCalc);
+            else
+                results[index] = findClosest(point.lat, point.lon, edgeFilter, storedNetworkEntryIds, checkedIds, explorer);
+
+            prevPoint = point;
+            prevResult = results[index];
+        }
+        return new ArrayList<QueryResult>(Arrays.asList(results));
+    }
+
+    /**
+     * @param storedNetworkEntryIds and checkedIds are cleared before they are used
+     */
+    private QueryResult findClosest( final double queryLat, final double queryLon, final EdgeFilter edgeFilter,
+            TIntHashSet storedNetworkEntryIds, TIntHashSet checkedIds, final EdgeExplorer explorer )
+    {
+        if (snapCache != null)
+        {
+            QueryResult cached = snapCache.get(queryLat, queryLon, edgeFilter);
+            if (cached != null)
+                return cached.copy(queryLat, queryLon, distCalc);
+        }
+
+        storedNetworkEntryIds.clear();
+        findNetworkEntries(queryLat, queryLon, maxRegionSearch, storedNetworkEntryIds);
         final QueryResult closestMatch = new QueryResult(queryLat, queryLon);
         if (storedNetworkEntryIds.isEmpty())
+        {
+            if (snapCache != null)
+                snapCache.put(queryLat, queryLon, edgeFilter, closestMatch.copy(queryLat, queryLon, distCalc));
             return closestMatch;
+        }
 
-        // clone storedIds to avoid interference with forEach
-        final GHBitSet checkBitset = new GHTBitSet(new TIntHashSet(storedNetworkEntryIds));
+        // copy storedIds to avoid interference with forEach
+        checkedIds.clear();
+        checkedIds.addAll(storedNetworkEntryIds);
+        final GHBitSet checkBitset = new GHTBitSet(checkedIds);
         // find nodes from the network entries which are close to 'point'
-        final EdgeExplorer explorer = graph.createEdgeExplorer(getEdgeFilter());
         storedNetworkEntryIds.forEach(new TIntProcedure()
         {
             @Override
@@ -824,6 +1276,9 @@ public class LocationIndexTree implements LocationIndex
             closestMatch.calcSnappedPoint(distCalc);
         }
 
+        if (snapCache != null)
+            snapCache.put(queryLat, queryLon, edgeFilter, closestMatch.copy(queryLat, queryLon, distCalc));
+
         return closestMatch;
     }
 
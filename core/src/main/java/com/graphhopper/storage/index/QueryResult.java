@@ -187,6 +187,26 @@ public class QueryResult
             snappedPoint = new GHPoint3D(tmpLat, tmpLon, tmpEle);
     }
 
+    /**
+     * Creates a result for the specified query point which snaps to the same edge and way index,
+     * e.g. for a repeated query point. The snapped point and the query distance are calculated for
+     * the new query point.
+     */
+    public QueryResult copy( double queryLat, double queryLon, DistanceCalc distCalc )
+    {
+        QueryResult res = new QueryResult(queryLat, queryLon);
+        if (!isValid())
+            return res;
+
+        res.closestNode = closestNode;
+        res.closestEdge = closestEdge;
+        res.wayIndex = wayIndex;
+        res.snappedPosition = snappedPosition;
+        res.calcSnappedPoint(distCalc);
+        res.queryDistance = distCalc.calcDist(queryLat, queryLon, res.snappedPoint.lat, res.snappedPoint.lon);
+        return res;
+    }
+
     @Override
     public String toString()
     {
@@ -0,0 +1,167 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage.index;
+
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.util.DistanceCalcEarth;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of recent results of LocationIndexTree.findClosest. Query points are mapped to
+ * a grid cell and all points of a cell share the snapped edge of the first query in this cell,
+ * e.g. repeated GPS positions at the same place. The least recently used entry is evicted if the
+ * cache is full.
+ * <p/>
+ * @author Peter Karich
+ */
+public class SnapCache
+{
+    private final int maxSize;
+    private final double cellSizeInMeter;
+    private final double cellDegree;
+    private final Map<CellKey, QueryResult> map;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param maxSize the maximum number of cached results
+     * @param cellSizeInMeter the width and height of a grid cell. Keep this small as a query point
+     * gets the edge of another point in the same cell even if a different edge is closer
+     */
+    public SnapCache( int maxSize, double cellSizeInMeter )
+    {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("Size of the snap cache must be positive but was " + maxSize);
+        if (cellSizeInMeter <= 0)
+            throw new IllegalArgumentException("Cell size must be positive but was " + cellSizeInMeter);
+
+        this.maxSize = maxSize;
+        this.cellSizeInMeter = cellSizeInMeter;
+        this.cellDegree = cellSizeInMeter * 360 / DistanceCalcEarth.C;
+        this.map = new LinkedHashMap<CellKey, QueryResult>(Math.min(maxSize, 1000), 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<CellKey, QueryResult> eldest )
+            {
+                return size() > SnapCache.this.maxSize;
+            }
+        };
+    }
+
+    private CellKey createKey( double lat, double lon, EdgeFilter edgeFilter )
+    {
+        return new CellKey((long) Math.floor(lat / cellDegree), (long) Math.floor(lon / cellDegree), edgeFilter);
+    }
+
+    /**
+     * @return the cached result of the cell of the specified point or null if not found. The
+     * result must not be modified, use QueryResult.copy
+     */
+    public synchronized QueryResult get( double lat, double lon, EdgeFilter edgeFilter )
+    {
+        QueryResult res = map.get(createKey(lat, lon, edgeFilter));
+        if (res == null)
+            misses++;
+        else
+            hits++;
+        return res;
+    }
+
+    /**
+     * Stores the specified result for the cell of the point. The result must not be modified
+     * afterwards.
+     */
+    public synchronized void put( double lat, double lon, EdgeFilter edgeFilter, QueryResult res )
+    {
+        map.put(createKey(lat, lon, edgeFilter), res);
+    }
+
+    public synchronized void clear()
+    {
+        map.clear();
+    }
+
+    public synchronized int getSize()
+    {
+        return map.size();
+    }
+
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    public double getCellSizeInMeter()
+    {
+        return cellSizeInMeter;
+    }
+
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "size:" + map.size() + "/" + maxSize + ", hits:" + hits + ", misses:" + misses;
+    }
+
+    /**
+     * Edge filters without equals are compared by identity, so they only hit their own results.
+     */
+    private static class CellKey
+    {
+        final long latCell;
+        final long lonCell;
+        final EdgeFilter edgeFilter;
+
+        public CellKey( long latCell, long lonCell, EdgeFilter edgeFilter )
+        {
+            this.latCell = latCell;
+            this.lonCell = lonCell;
+            this.edgeFilter = edgeFilter;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int hash = 7;
+            hash = 31 * hash + (int) (latCell ^ (latCell >>> 32));
+            hash = 31 * hash + (int) (lonCell ^ (lonCell >>> 32));
+            hash = 31 * hash + edgeFilter.hashCode();
+            return hash;
+        }
+
+        @Override
+        public boolean equals( Object obj )
+        {
+            if (!(obj instanceof CellKey))
+                return false;
+
+            CellKey other = (CellKey) obj;
+            return latCell == other.latCell && lonCell == other.lonCell && edgeFilter.equals(other.edgeFilter);
+        }
+    }
+}
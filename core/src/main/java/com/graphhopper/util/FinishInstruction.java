@@ -52,4 +52,15 @@ public class FinishInstruction extends Instruction
     {
         return count;
     }
+
+    @Override
+    Instruction copy()
+    {
+        FinishInstruction instr = new FinishInstruction(points.getLatitude(0), points.getLongitude(0),
+                points.getElevation(0));
+        instr.sign = sign;
+        instr.count = count;
+        instr.setDistance(getDistance()).setTime(getTime());
+        return instr;
+    }
 }
@@ -25,8 +25,10 @@ import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.storage.*;
+import com.graphhopper.util.shapes.BBox;
 import gnu.trove.list.TIntList;
 import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -239,21 +241,134 @@ public class GHUtility
         return createSortedGraph(g, sortedGraph, list);
     }
 
+    /**
+     * Sorts the nodes along a Hilbert curve through their coordinates, so that nodes close to each
+     * other get similar ids.
+     */
+    public static Graph sortHilbert( Graph g, Graph sortedGraph )
+    {
+        int nodes = g.getNodes();
+        NodeAccess na = g.getNodeAccess();
+        BBox bounds = g.getBounds();
+        int bits = 16;
+        int max = (1 << bits) - 1;
+        double latFactor = max / Math.max(bounds.maxLat - bounds.minLat, 1e-7);
+        double lonFactor = max / Math.max(bounds.maxLon - bounds.minLon, 1e-7);
+        // the curve index in the upper bits and the node in the lower 31 bits
+        long[] keys = new long[nodes];
+        for (int node = 0; node < nodes; node++)
+        {
+            int x = (int) ((na.getLongitude(node) - bounds.minLon) * lonFactor);
+            int y = (int) ((na.getLatitude(node) - bounds.minLat) * latFactor);
+            x = Math.max(0, Math.min(max, x));
+            y = Math.max(0, Math.min(max, y));
+            keys[node] = hilbertIndex(x, y, bits) << 31 | node;
+        }
+        Arrays.sort(keys);
+
+        TIntList list = new TIntArrayList(nodes, -1);
+        list.fill(0, nodes, -1);
+        for (int i = 0; i < nodes; i++)
+        {
+            list.set((int) (keys[i] & Integer.MAX_VALUE), i);
+        }
+        return createSortedGraph(g, sortedGraph, list);
+    }
+
+    /**
+     * @return the position of the cell x,y on the Hilbert curve through a grid of 2^bits x 2^bits
+     * cells
+     */
+    static long hilbertIndex( int x, int y, int bits )
+    {
+        int n = 1 << bits;
+        long index = 0;
+        for (int s = n / 2; s > 0; s /= 2)
+        {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            index += (long) s * s * ((3 * rx) ^ ry);
+            // rotate the quadrant
+            if (ry == 0)
+            {
+                if (rx == 1)
+                {
+                    x = n - 1 - x;
+                    y = n - 1 - y;
+                }
+                int tmp = x;
+                x = y;
+                y = tmp;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Copies the graph with the new node ids. The edges get new ids too: they are ordered by their
+     * smaller new node so that the edges of a node are close together, shortcuts still after all
+     * other edges. For level graphs the levels and the shortcuts with their skipped edges are
+     * copied, for a prepared LevelGraphStorage the edges from higher to lower level nodes are
+     * disconnected again.
+     */
     static Graph createSortedGraph( Graph fromGraph, Graph toSortedGraph, final TIntList oldToNewNodeList )
     {
+        boolean levelGraphs = fromGraph instanceof LevelGraph && toSortedGraph instanceof LevelGraph;
         AllEdgesIterator eIter = fromGraph.getAllEdges();
+        // shortcut flag | smaller new node | old edge, so that the old edge can be used as index
+        TLongArrayList keys = new TLongArrayList(eIter.getCount());
+        int[] adjNodes = new int[eIter.getCount()];
         while (eIter.next())
         {
-            int base = eIter.getBaseNode();
-            int newBaseIndex = oldToNewNodeList.get(base);
-            int adj = eIter.getAdjNode();
-            int newAdjIndex = oldToNewNodeList.get(adj);
+            int newBaseIndex = oldToNewNodeList.get(eIter.getBaseNode());
+            int newAdjIndex = oldToNewNodeList.get(eIter.getAdjNode());
 
             // ignore empty entries
             if (newBaseIndex < 0 || newAdjIndex < 0)
                 continue;
 
-            eIter.copyPropertiesTo(toSortedGraph.edge(newBaseIndex, newAdjIndex));
+            long key = (long) Math.min(newBaseIndex, newAdjIndex) << 31 | eIter.getEdge();
+            if (levelGraphs && ((AllEdgesSkipIterator) eIter).isShortcut())
+                key |= 1L << 62;
+
+            keys.add(key);
+            adjNodes[eIter.getEdge()] = eIter.getAdjNode();
+        }
+        keys.sort();
+
+        int[] oldToNewEdge = new int[adjNodes.length];
+        Arrays.fill(oldToNewEdge, EdgeIterator.NO_EDGE);
+        for (int i = 0; i < keys.size(); i++)
+        {
+            int oldEdge = (int) (keys.get(i) & Integer.MAX_VALUE);
+            EdgeIteratorState edgeState = fromGraph.getEdgeProps(oldEdge, adjNodes[oldEdge]);
+            int newBaseIndex = oldToNewNodeList.get(edgeState.getBaseNode());
+            int newAdjIndex = oldToNewNodeList.get(edgeState.getAdjNode());
+            EdgeIteratorState newEdge;
+            if (keys.get(i) >= 1L << 62)
+            {
+                // shortcuts have no name or geometry, the weight is stored in the flags
+                newEdge = ((LevelGraph) toSortedGraph).shortcut(newBaseIndex, newAdjIndex).
+                        setDistance(edgeState.getDistance()).setFlags(edgeState.getFlags());
+            } else
+            {
+                newEdge = edgeState.copyPropertiesTo(toSortedGraph.edge(newBaseIndex, newAdjIndex));
+            }
+            oldToNewEdge[oldEdge] = newEdge.getEdge();
+        }
+
+        // a shortcut can skip shortcuts which are copied after it
+        for (int i = 0; i < keys.size(); i++)
+        {
+            if (keys.get(i) < 1L << 62)
+                continue;
+
+            int oldEdge = (int) (keys.get(i) & Integer.MAX_VALUE);
+            EdgeSkipIterState skipState = (EdgeSkipIterState) fromGraph.getEdgeProps(oldEdge, adjNodes[oldEdge]);
+            EdgeSkipIterState newSkipState = (EdgeSkipIterState) toSortedGraph.getEdgeProps(oldToNewEdge[oldEdge],
+                    oldToNewNodeList.get(adjNodes[oldEdge]));
+            newSkipState.setSkippedEdges(getNewEdge(oldToNewEdge, skipState.getSkippedEdge1()),
+                    getNewEdge(oldToNewEdge, skipState.getSkippedEdge2()));
         }
 
         int nodes = fromGraph.getNodes();
@@ -262,14 +377,50 @@ public class GHUtility
         for (int old = 0; old < nodes; old++)
         {
             int newIndex = oldToNewNodeList.get(old);
+            if (newIndex < 0)
+                continue;
+
             if (sna.is3D())
                 sna.setNode(newIndex, na.getLatitude(old), na.getLongitude(old), na.getElevation(old));
             else
                 sna.setNode(newIndex, na.getLatitude(old), na.getLongitude(old));
+
+            if (levelGraphs)
+                ((LevelGraph) toSortedGraph).setLevel(newIndex, ((LevelGraph) fromGraph).getLevel(old));
+        }
+
+        if (levelGraphs && toSortedGraph instanceof LevelGraphStorage)
+        {
+            // the same edges as in PrepareContractionHierarchies, nodes with equal levels stay connected
+            LevelGraphStorage lg = (LevelGraphStorage) toSortedGraph;
+            EdgeSkipExplorer explorer = lg.createEdgeExplorer();
+            EdgeSkipExplorer tmpExplorer = lg.createEdgeExplorer();
+            int newNodes = lg.getNodes();
+            for (int node = 0; node < newNodes; node++)
+            {
+                int level = lg.getLevel(node);
+                EdgeSkipIterator iter = explorer.setBaseNode(node);
+                while (iter.next())
+                {
+                    if (level < lg.getLevel(iter.getAdjNode()))
+                        lg.disconnect(tmpExplorer, iter);
+                }
+            }
         }
         return toSortedGraph;
     }
 
+    private static int getNewEdge( int[] oldToNewEdge, int oldEdge )
+    {
+        if (!EdgeIterator.Edge.isValid(oldEdge))
+            return oldEdge;
+
+        int newEdge = oldToNewEdge[oldEdge];
+        if (newEdge == EdgeIterator.NO_EDGE)
+            throw new IllegalStateException("Skipped edge " + oldEdge + " of a shortcut was not copied");
+        return newEdge;
+    }
+
     /**
      * @return the specified toGraph which is now filled with data from fromGraph
      */
@@ -300,14 +451,17 @@ public class GHUtility
     static Directory guessDirectory( GraphStorage store )
     {
         String location = store.getDirectory().getLocation();
-        Directory outdir;
+        GHDirectory outdir;
         if (store.getDirectory() instanceof MMapDirectory)
         {
             throw new IllegalStateException("not supported yet: mmap will overwrite existing storage at the same location");
         } else
         {
-            boolean isStoring = ((GHDirectory) store.getDirectory()).isStoring();
-            outdir = new RAMDirectory(location, isStoring);
+            GHDirectory dir = (GHDirectory) store.getDirectory();
+            outdir = new RAMDirectory(location, dir.isStoring());
+            outdir.setLoadThreads(dir.getLoadThreads()).
+                    setFlushThreads(dir.getFlushThreads()).
+                    setFsync(dir.isFsync());
         }
         return outdir;
     }
@@ -325,11 +479,21 @@ public class GHUtility
     }
 
     /**
-     * Create a new storage from the specified one without copying the data.
+     * Create a new storage from the specified one without copying the data. The storage settings
+     * like the geometry format, cold edges and name deduplication are the same.
      */
     public static GraphStorage newStorage( GraphStorage store )
     {
-        return guessStorage(store, guessDirectory(store), store.getEncodingManager()).create(store.getNodes());
+        GraphStorage newStore = guessStorage(store, guessDirectory(store), store.getEncodingManager());
+        if (store instanceof GraphHopperStorage && newStore instanceof GraphHopperStorage)
+        {
+            GraphHopperStorage from = (GraphHopperStorage) store;
+            ((GraphHopperStorage) newStore).setCompressedGeometry(from.isCompressedGeometry()).
+                    setColdEdges(from.isColdEdges()).
+                    setDeduplicateNames(from.isDeduplicateNames()).
+                    setNameCacheSize(from.getNameCacheSize());
+        }
+        return newStore.create(store.getNodes());
     }
 
     /**
@@ -122,6 +122,12 @@ public class Instruction
         return points;
     }
 
+    Instruction copy()
+    {
+        return new Instruction(sign, name, annotation, points.clone(false)).
+                setDistance(distance).setTime(time);
+    }
+
     /**
      * This method returns a list of gpx entries where the time (in time) is relative to the first
      * which is 0. It does NOT contain the last point which is the first of the next instruction.
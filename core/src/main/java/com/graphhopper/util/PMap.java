@@ -17,6 +17,7 @@
  */
 package com.graphhopper.util;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -166,6 +167,14 @@ public class PMap
         return this;
     }
 
+    /**
+     * @return an unmodifiable view of all entries
+     */
+    public Map<String, String> toMap()
+    {
+        return Collections.unmodifiableMap(map);
+    }
+
     public boolean has( String key )
     {
         return this.getMap().containsKey(key);
@@ -19,8 +19,15 @@ package com.graphhopper;
 
 import com.graphhopper.reader.DataReader;
 import com.graphhopper.routing.AlgorithmOptions;
+import com.graphhopper.routing.RoutingAbortedException;
+import com.graphhopper.routing.RoutingBudget;
+import com.graphhopper.routing.ch.PrepareEdgeBasedCH;
+import com.graphhopper.routing.ch.PrepareMultipleCH;
+import com.graphhopper.routing.lm.PrepareLandmarks;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.storage.LevelGraphStorage;
 import com.graphhopper.storage.index.QueryResult;
 import com.graphhopper.util.CmdArgs;
 import com.graphhopper.util.Helper;
@@ -28,6 +35,9 @@ import com.graphhopper.util.Instruction;
 import com.graphhopper.util.shapes.GHPoint;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
@@ -126,6 +136,190 @@ public class GraphHopperTest
         gh.close();
     }
 
+    @Test
+    public void testRouteCache()
+    {
+        instance = new GraphHopper().setStoreOnFlush(true).
+                setEncodingManager(new EncodingManager("CAR")).
+                setGraphHopperLocation(ghLoc).
+                setOSMFile(testOsm).
+                setRouteCache(new RouteCache(10, 0));
+        instance.importOrLoad();
+        GHResponse rsp = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertFalse(rsp.hasErrors());
+        assertEquals(1, instance.getRouteCache().getMisses());
+        assertEquals(1, instance.getRouteCache().getSize());
+
+        // slightly different query point but same snapped position
+        GHResponse cachedRsp = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.40001));
+        assertFalse(cachedRsp.hasErrors());
+        assertEquals(1, instance.getRouteCache().getHits());
+        assertEquals(rsp.getDistance(), cachedRsp.getDistance(), 1e-6);
+        assertEquals(rsp.getMillis(), cachedRsp.getMillis());
+        assertEquals(rsp.getPoints().getSize(), cachedRsp.getPoints().getSize());
+        assertTrue(cachedRsp.getDebugInfo(), cachedRsp.getDebugInfo().contains("routeCache:hit"));
+
+        // modifying the points of a response does not change the cached one
+        cachedRsp.getPoints().clear();
+        GHRequest req = new GHRequest(51.2492152, 9.4317166, 51.2, 9.4);
+        // hints without influence on the route do not prevent a hit
+        req.getHints().put("type", "gpx").put("callback", "jQuery123").put("_", "1425387761");
+        cachedRsp = instance.route(req);
+        assertEquals(2, instance.getRouteCache().getHits());
+        assertEquals(rsp.getPoints().getSize(), cachedRsp.getPoints().getSize());
+
+        // different parameters
+        rsp = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4).setWeighting("shortest"));
+        assertFalse(rsp.hasErrors());
+        assertEquals(2, instance.getRouteCache().getHits());
+        assertEquals(2, instance.getRouteCache().getMisses());
+        assertEquals(2, instance.getRouteCache().getSize());
+    }
+
+    @Test
+    public void testMaxVisitedNodes()
+    {
+        instance = new GraphHopper().setStoreOnFlush(true).
+                setEncodingManager(new EncodingManager("CAR")).
+                setGraphHopperLocation(ghLoc).
+                setOSMFile(testOsm).
+                setMaxVisitedNodes(1000);
+        instance.importOrLoad();
+        GHResponse rsp = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertFalse(rsp.getErrors().toString(), rsp.hasErrors());
+
+        // a request can only lower the limit
+        GHRequest req = new GHRequest(51.2492152, 9.4317166, 51.2, 9.4);
+        req.getHints().put("maxVisitedNodes", 2);
+        rsp = instance.route(req);
+        assertTrue(rsp.hasErrors());
+        RoutingAbortedException ex = (RoutingAbortedException) rsp.getErrors().get(0);
+        assertEquals(RoutingAbortedException.Reason.MAX_VISITED_NODES, ex.getReason());
+
+        // a budget of the request overrules the configured one
+        RoutingBudget budget = new RoutingBudget(1000, 0);
+        budget.cancel();
+        rsp = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4).setBudget(budget));
+        ex = (RoutingAbortedException) rsp.getErrors().get(0);
+        assertEquals(RoutingAbortedException.Reason.CANCELLED, ex.getReason());
+    }
+
+    @Test
+    public void testLandmarks()
+    {
+        instance = new GraphHopper().setStoreOnFlush(true).
+                setEncodingManager(new EncodingManager("CAR")).
+                setCHEnable(false).
+                setLandmarks(4).
+                setGraphHopperLocation(ghLoc).
+                setOSMFile(testOsm);
+        instance.importOrLoad();
+        assertTrue(instance.getAlgorithmFactory() instanceof PrepareLandmarks);
+        assertTrue(new File(ghLoc, "landmarks_fastest_car").exists());
+
+        GHResponse rsp = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertFalse(rsp.getErrors().toString(), rsp.hasErrors());
+        GHResponse expected = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4).
+                setAlgorithm(AlgorithmOptions.DIJKSTRA_BI));
+        assertEquals(expected.getDistance(), rsp.getDistance(), 1e-3);
+        assertEquals(expected.getMillis(), rsp.getMillis());
+
+        GHRequest req = new GHRequest(51.2492152, 9.4317166, 51.2, 9.4);
+        req.getHints().put("astarbi.approximation", "BeelineSimplification");
+        rsp = instance.route(req);
+        assertEquals(expected.getDistance(), rsp.getDistance(), 1e-3);
+        instance.close();
+
+        // landmarks are loaded and not prepared again
+        instance = new GraphHopper().setStoreOnFlush(true).
+                setEncodingManager(new EncodingManager("CAR")).
+                setCHEnable(false).
+                setLandmarks(4);
+        assertTrue(instance.load(ghLoc));
+        rsp = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertEquals(expected.getDistance(), rsp.getDistance(), 1e-3);
+        assertTrue(((PrepareLandmarks) instance.getAlgorithmFactory()).getLandmarkStorage().getFactor() > 0);
+        assertFalse(((PrepareLandmarks) instance.getAlgorithmFactory()).isPrepared());
+    }
+
+    @Test
+    public void testEdgeBasedCH()
+    {
+        instance = new GraphHopper().setStoreOnFlush(true).
+                setEncodingManager(new EncodingManager("CAR|turnCosts=true")).
+                setTraversalMode(TraversalMode.EDGE_BASED_2DIR).
+                setGraphHopperLocation(ghLoc).
+                setOSMFile(testOsm);
+        instance.importOrLoad();
+        assertTrue(instance.getAlgorithmFactory() instanceof PrepareEdgeBasedCH);
+        assertTrue(new File(ghLoc, "edge_ch").exists());
+
+        GHResponse rsp = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertFalse(rsp.getErrors().toString(), rsp.hasErrors());
+        assertTrue(rsp.getDebugInfo(), rsp.getDebugInfo().contains("dijkstrabiEdgeCH"));
+        // dijkstra is not prepared and calculates the route without the turn graph
+        GHResponse expected = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4).
+                setAlgorithm(AlgorithmOptions.DIJKSTRA));
+        assertEquals(expected.getDistance(), rsp.getDistance(), 1e-3);
+        assertEquals(expected.getMillis(), rsp.getMillis());
+        instance.close();
+
+        // the turn graph is loaded and not prepared again
+        instance = new GraphHopper().setStoreOnFlush(true).
+                setEncodingManager(new EncodingManager("CAR|turnCosts=true")).
+                setTraversalMode(TraversalMode.EDGE_BASED_2DIR);
+        assertTrue(instance.load(ghLoc));
+        rsp = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertEquals(expected.getDistance(), rsp.getDistance(), 1e-3);
+        assertFalse(((PrepareEdgeBasedCH) instance.getAlgorithmFactory()).isPrepared());
+    }
+
+    @Test
+    public void testEdgeBasedCHWithDefaultTraversalMode()
+    {
+        instance = new GraphHopper().setStoreOnFlush(true).
+                setEncodingManager(new EncodingManager("CAR|turnCosts=true")).
+                setGraphHopperLocation(ghLoc).
+                setOSMFile(testOsm);
+        assertEquals(TraversalMode.NODE_BASED, instance.getTraversalMode());
+        instance.importOrLoad();
+        assertEquals(TraversalMode.EDGE_BASED_2DIR, instance.getTraversalMode());
+
+        GHResponse rsp = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertFalse(rsp.getErrors().toString(), rsp.hasErrors());
+        assertTrue(rsp.getDebugInfo(), rsp.getDebugInfo().contains("dijkstrabiEdgeCH"));
+        instance.close();
+
+        instance = new GraphHopper().setStoreOnFlush(true).
+                setEncodingManager(new EncodingManager("CAR|turnCosts=true"));
+        assertTrue(instance.load(ghLoc));
+        rsp = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertTrue(rsp.getDebugInfo(), rsp.getDebugInfo().contains("dijkstrabiEdgeCH"));
+    }
+
+    @Test
+    public void testWarmup() throws Exception
+    {
+        instance = new GraphHopper().setMemoryMapped().
+                setEncodingManager(new EncodingManager("CAR")).
+                setGraphHopperLocation(ghLoc).
+                setOSMFile(testOsm);
+        instance.importOrLoad();
+        assertNull(instance.getWarmup());
+        assertTrue(instance.isReady());
+        instance.close();
+
+        instance = new GraphHopper().setMemoryMapped().
+                setWarmupThreads(2).
+                setEncodingManager(new EncodingManager("CAR"));
+        assertTrue(instance.load(ghLoc));
+        assertNotNull(instance.getWarmup());
+        assertTrue(instance.getWarmup().awaitReady(10000));
+        assertTrue(instance.isReady());
+        GHResponse rsp = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertFalse(rsp.getErrors().toString(), rsp.hasErrors());
+    }
+
     @Test
     public void testAllowMultipleReadingInstances()
     {
@@ -234,6 +428,30 @@ public class GraphHopperTest
         assertEquals(3, rsp.getPoints().getSize());
     }
 
+    @Test
+    public void testFrozenGraph()
+    {
+        instance = new GraphHopper().setStoreOnFlush(true).
+                setFreezeGraph(true).
+                setEncodingManager(new EncodingManager("CAR")).
+                setGraphHopperLocation(ghLoc).
+                setOSMFile(testOsm);
+        instance.importOrLoad();
+        assertTrue(instance.getGraph().isFrozen());
+        GHResponse rsp = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertFalse(rsp.hasErrors());
+        assertEquals(3, rsp.getPoints().getSize());
+
+        instance.close();
+        instance = new GraphHopper().setStoreOnFlush(true).
+                setEncodingManager(new EncodingManager("CAR"));
+        assertTrue(instance.load(ghLoc));
+        assertTrue(instance.getGraph().isFrozen());
+        rsp = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertFalse(rsp.hasErrors());
+        assertEquals(3, rsp.getPoints().getSize());
+    }
+
     @Test
     public void testSortedGraph_noCH()
     {
@@ -263,6 +481,35 @@ public class GraphHopperTest
         assertEquals("route method should not change instance field", old, instance.enableInstructions);
     }
 
+    @Test
+    public void testSortedGraph_CH()
+    {
+        instance = new GraphHopper().setStoreOnFlush(true).
+                setSortGraph(true).
+                setSortOrder("hilbert").
+                setEncodingManager(new EncodingManager("CAR")).
+                setGraphHopperLocation(ghLoc).
+                setOSMFile(testOsm);
+        instance.importOrLoad();
+        assertTrue(instance.getGraph() instanceof LevelGraphStorage);
+        GHResponse rsp = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertFalse(rsp.hasErrors());
+        assertEquals(3, rsp.getPoints().getSize());
+        assertEquals(new GHPoint(52.0, 9.0), rsp.getPoints().toGHPoint(1));
+        double distance = rsp.getDistance();
+
+        // the sorted graph is stored including the preparation
+        instance.close();
+        instance = new GraphHopper().setStoreOnFlush(true).
+                setEncodingManager(new EncodingManager("CAR"));
+        assertTrue(instance.load(ghLoc));
+        assertEquals("true", instance.getGraph().getProperties().get("prepare.done"));
+        rsp = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertFalse(rsp.hasErrors());
+        assertEquals(3, rsp.getPoints().getSize());
+        assertEquals(distance, rsp.getDistance(), 1e-3);
+    }
+
     @Test
     public void testFootAndCar()
     {
@@ -307,6 +554,51 @@ public class GraphHopperTest
         assertEquals(3, rsp.getPoints().getSize());
     }
 
+    @Test
+    public void testFootAndCarCH()
+    {
+        instance = new GraphHopper().setStoreOnFlush(true).
+                setEncodingManager(new EncodingManager("CAR,FOOT")).
+                setCHWeighting("fastest,shortest").
+                setGraphHopperLocation(ghLoc).
+                setOSMFile(testOsm);
+        instance.importOrLoad();
+        assertTrue(instance.getAlgorithmFactory() instanceof PrepareMultipleCH);
+        assertEquals(4, ((PrepareMultipleCH) instance.getAlgorithmFactory()).getPreparations().size());
+        assertTrue(new File(ghLoc, "shortcuts_foot_shortest").exists());
+
+        List<GHResponse> expectedList = new ArrayList<GHResponse>();
+        for (String vehicle : Arrays.asList(EncodingManager.CAR, EncodingManager.FOOT))
+        {
+            for (String weighting : Arrays.asList("fastest", "shortest"))
+            {
+                GHResponse rsp = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4).
+                        setVehicle(vehicle).setWeighting(weighting));
+                assertFalse(rsp.getErrors().toString(), rsp.hasErrors());
+                assertTrue(rsp.getDebugInfo(), rsp.getDebugInfo().contains("dijkstrabiCH"));
+                // dijkstra is not prepared and calculates the route on the graph without shortcuts
+                GHResponse expected = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4).
+                        setVehicle(vehicle).setWeighting(weighting).setAlgorithm(AlgorithmOptions.DIJKSTRA));
+                assertEquals(vehicle + " " + weighting, expected.getDistance(), rsp.getDistance(), 1e-3);
+                expectedList.add(expected);
+            }
+        }
+        // car and foot use different roads
+        assertTrue(Math.abs(expectedList.get(2).getDistance() - expectedList.get(0).getDistance()) > 1);
+        instance.close();
+
+        // the hierarchies are loaded and not prepared again
+        instance = new GraphHopper().setStoreOnFlush(true).
+                setEncodingManager(new EncodingManager("CAR,FOOT")).
+                setCHWeighting("fastest,shortest");
+        assertTrue(instance.load(ghLoc));
+        assertFalse(((PrepareMultipleCH) instance.getAlgorithmFactory()).isPrepared());
+        GHResponse rsp = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4).
+                setVehicle(EncodingManager.FOOT).setWeighting("shortest"));
+        assertTrue(rsp.getDebugInfo(), rsp.getDebugInfo().contains("dijkstrabiCH"));
+        assertEquals(expectedList.get(3).getDistance(), rsp.getDistance(), 1e-3);
+    }
+
     @Test
     public void testFailsForWrongConfig() throws IOException
     {
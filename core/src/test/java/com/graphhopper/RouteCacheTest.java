@@ -0,0 +1,116 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper;
+
+import com.graphhopper.util.FinishInstruction;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.Instruction;
+import com.graphhopper.util.InstructionAnnotation;
+import com.graphhopper.util.InstructionList;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class RouteCacheTest
+{
+    private long currentMillis = 0;
+
+    private RouteCache createCache( int maxSize, long ttlMillis )
+    {
+        return new RouteCache(maxSize, ttlMillis)
+        {
+            @Override
+            long getCurrentMillis()
+            {
+                return currentMillis;
+            }
+        };
+    }
+
+    private GHResponse createResponse( double distance )
+    {
+        return new GHResponse().setDistance(distance).setPoints(Helper.createPointList(1, 1, 2, 2));
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed()
+    {
+        RouteCache cache = createCache(2, 0);
+        assertNull(cache.get("a"));
+        cache.put("a", createResponse(1));
+        cache.put("b", createResponse(2));
+        assertEquals(1, cache.get("a").getDistance(), 1e-6);
+
+        cache.put("c", createResponse(3));
+        assertEquals(2, cache.getSize());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.get("a").getDistance(), 1e-6);
+        assertEquals(3, cache.get("c").getDistance(), 1e-6);
+        assertEquals(3, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testTimeToLive()
+    {
+        RouteCache cache = createCache(10, 100);
+        cache.put("a", createResponse(1));
+        currentMillis = 100;
+        assertNotNull(cache.get("a"));
+        currentMillis = 101;
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getSize());
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    public void testDoNotCacheErrors()
+    {
+        RouteCache cache = createCache(10, 0);
+        cache.put("a", new GHResponse().addError(new IllegalArgumentException("not found")));
+        assertEquals(0, cache.getSize());
+
+        // modifying the returned response does not change the cached one
+        GHResponse rsp = createResponse(1);
+        InstructionList instructions = new InstructionList(null);
+        instructions.add(new Instruction(Instruction.CONTINUE_ON_STREET, "main", InstructionAnnotation.EMPTY,
+                Helper.createPointList(1, 1)).setDistance(10));
+        instructions.add(new FinishInstruction(2, 2, 0));
+        rsp.setInstructions(instructions);
+        cache.put("b", rsp);
+        // nor does modifying the stored one
+        rsp.getPoints().clear();
+        rsp.getInstructions().get(0).setDistance(20);
+
+        GHResponse cached = cache.get("b");
+        cached.setDistance(5).setDebugInfo("changed");
+        cached.getPoints().add(3, 3);
+        cached.getInstructions().get(0).setDistance(30).getPoints().clear();
+        cached = cache.get("b");
+        assertEquals(1, cached.getDistance(), 1e-6);
+        assertEquals("", cached.getDebugInfo());
+        assertEquals(2, cached.getPoints().getSize());
+        assertEquals(2, cached.getInstructions().getSize());
+        assertEquals(10, cached.getInstructions().get(0).getDistance(), 1e-6);
+        assertEquals(1, cached.getInstructions().get(0).getPoints().getSize());
+        assertEquals(Instruction.FINISH, cached.getInstructions().get(1).getSign());
+    }
+}
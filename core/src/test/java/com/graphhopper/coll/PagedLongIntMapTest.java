@@ -0,0 +1,109 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.Helper;
+import java.io.File;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class PagedLongIntMapTest
+{
+    @Test
+    public void testGetAndPut()
+    {
+        PagedLongIntMap map = new PagedLongIntMap(new RAMDirectory().find("map"), 4);
+        assertEquals(-1, map.get(12));
+        assertEquals(-1, map.put(12, 3));
+        assertEquals(-1, map.put(100000, 0));
+        assertEquals(-1, map.put(-5, 7));
+        assertEquals(-1, map.put(-1, -20));
+        assertEquals(4, map.getSize());
+
+        assertEquals(3, map.get(12));
+        assertEquals(0, map.get(100000));
+        assertEquals(7, map.get(-5));
+        assertEquals(-20, map.get(-1));
+        assertEquals(-1, map.get(13));
+        assertEquals(-1, map.get(0));
+        assertEquals(-1, map.get(-2));
+        assertEquals(-1, map.get(Long.MIN_VALUE));
+
+        // artificial ids e.g. for barrier nodes
+        assertEquals(-1, map.put(-Long.MAX_VALUE, 9));
+        assertEquals(9, map.get(-Long.MAX_VALUE));
+        assertEquals(-1, map.get(-Long.MAX_VALUE + 1));
+        assertEquals(5, map.getSize());
+
+        assertEquals(3, map.put(12, 4));
+        assertEquals(4, map.get(12));
+        assertEquals(5, map.getSize());
+
+        // putting the empty value removes the entry
+        assertEquals(4, map.put(12, -1));
+        assertEquals(4, map.getSize());
+    }
+
+    @Test
+    public void testCompareWithBTree()
+    {
+        Random rand = new Random(0);
+        PagedLongIntMap map = new PagedLongIntMap(new RAMDirectory().find("map"), 8);
+        GHLongIntBTree tree = new GHLongIntBTree(200);
+        for (int i = 0; i < 20000; i++)
+        {
+            long key = rand.nextInt(1000000) - 1000;
+            int value = rand.nextInt(1000);
+            assertEquals(tree.put(key, value), map.put(key, value));
+        }
+        assertEquals(tree.getSize(), map.getSize());
+        for (long key = -1000; key < 1000000; key++)
+        {
+            assertEquals(tree.get(key), map.get(key));
+        }
+    }
+
+    @Test
+    public void testMMap()
+    {
+        String location = "./target/tmp/paged-map";
+        GHDirectory dir = new GHDirectory(location, DAType.MMAP);
+        try
+        {
+            PagedLongIntMap map = new PagedLongIntMap(dir.find("map"));
+            for (long key = 0; key < 100000; key += 3)
+            {
+                map.put(2000000000L + key, (int) key);
+            }
+            assertEquals(33334, map.getSize());
+            assertEquals(99999, map.get(2000099999L));
+            assertEquals(-1, map.get(2000099998L));
+        } finally
+        {
+            dir.clear();
+            Helper.removeDir(new File(location));
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import gnu.trove.map.hash.TIntIntHashMap;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class VersionedIntObjectMapTest
+{
+    @Test
+    public void testPutAndGet()
+    {
+        VersionedIntObjectMap<String> map = new VersionedIntObjectMap<String>(2);
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1));
+        assertNull(map.put(1, "a"));
+        assertNull(map.put(-3, "b"));
+        assertNull(map.put(Integer.MAX_VALUE, "c"));
+        assertEquals("a", map.put(1, "d"));
+        assertEquals(3, map.size());
+        assertEquals("d", map.get(1));
+        assertEquals("b", map.get(-3));
+        assertEquals("c", map.get(Integer.MAX_VALUE));
+        assertNull(map.get(0));
+    }
+
+    @Test
+    public void testClear()
+    {
+        VersionedIntObjectMap<String> map = new VersionedIntObjectMap<String>();
+        map.put(1, "a");
+        map.put(17, "b");
+        int capacity = map.getCapacity();
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1));
+        assertNull(map.get(17));
+        assertEquals("{}", map.toString());
+        assertEquals(capacity, map.getCapacity());
+
+        assertNull(map.put(17, "c"));
+        assertEquals("c", map.get(17));
+        assertNull(map.get(1));
+        assertEquals(1, map.size());
+        assertEquals("{17=c}", map.toString());
+    }
+
+    @Test
+    public void testGrowAfterClear()
+    {
+        VersionedIntObjectMap<String> map = new VersionedIntObjectMap<String>(2);
+        map.put(5, "a");
+        map.put(6, "b");
+        map.clear();
+        for (int i = 0; i < 100; i++)
+        {
+            map.put(i * 7, "v" + i);
+        }
+        assertEquals(100, map.size());
+        assertNull(map.get(6));
+        assertEquals("v3", map.get(21));
+
+        map.clear();
+        assertNull(map.get(21));
+        map.put(21, "c");
+        assertEquals(1, map.size());
+        assertEquals("{21=c}", map.toString());
+    }
+
+    @Test
+    public void testCompareWithTrove()
+    {
+        Random rand = new Random(0);
+        VersionedIntObjectMap<Integer> map = new VersionedIntObjectMap<Integer>();
+        for (int round = 0; round < 5; round++)
+        {
+            map.clear();
+            TIntIntHashMap expected = new TIntIntHashMap(100, 0.5f, -1, -1);
+            for (int i = 0; i < 5000; i++)
+            {
+                int key = rand.nextInt(20000) - 100;
+                int value = rand.nextInt(1000);
+                Integer old = map.put(key, value);
+                assertEquals(expected.put(key, value), old == null ? -1 : old.intValue());
+            }
+            assertEquals(expected.size(), map.size());
+            for (int key = -100; key < 19900; key++)
+            {
+                Integer value = map.get(key);
+                assertEquals(expected.get(key), value == null ? -1 : value.intValue());
+            }
+        }
+    }
+}
@@ -37,6 +37,7 @@ import org.junit.Test;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.reader.dem.ElevationProvider;
 import com.graphhopper.reader.dem.SRTMProvider;
+import com.graphhopper.reader.pbf.PbfBlockIndex;
 import com.graphhopper.routing.util.*;
 import com.graphhopper.storage.*;
 import com.graphhopper.util.EdgeExplorer;
@@ -205,6 +206,117 @@ public class OSMReaderTest
         assertEquals(9, na.getLongitude(hopper.getLocationIndex().findID(51.25, 9.43)), 1e-3);
     }
 
+    @Test
+    public void testWayWorkerThreads()
+    {
+        for (String file : Arrays.asList(file1, file2, fileBarriers, fileTurnRestrictions))
+        {
+            GraphHopper hopper = new GraphHopperTest(file).importOrLoad();
+            List<String> expected = getEdgeStrings(hopper.getGraph());
+            hopper.close();
+            Helper.removeDir(new File(dir));
+
+            hopper = new GraphHopperTest(file)
+            {
+                @Override
+                protected DataReader createReader( GraphStorage tmpGraph )
+                {
+                    return initOSMReader(new OSMReader(tmpGraph)).setWayWorkerThreads(2);
+                }
+            }.importOrLoad();
+            assertEquals(file, expected, getEdgeStrings(hopper.getGraph()));
+            hopper.close();
+            Helper.removeDir(new File(dir));
+        }
+    }
+
+    @Test
+    public void testNodeMapType()
+    {
+        for (String file : Arrays.asList(file1, fileNegIds, fileBarriers))
+        {
+            GraphHopper hopper = new GraphHopperTest(file).importOrLoad();
+            List<String> expected = getEdgeStrings(hopper.getGraph());
+            hopper.close();
+            Helper.removeDir(new File(dir));
+
+            hopper = new GraphHopperTest(file)
+            {
+                @Override
+                protected DataReader createReader( GraphStorage tmpGraph )
+                {
+                    return initOSMReader(new OSMReader(tmpGraph)).setNodeMapType(DAType.MMAP);
+                }
+            }.importOrLoad();
+            assertEquals(file, expected, getEdgeStrings(hopper.getGraph()));
+            assertFalse(new File(dir, "tmp_osm_node_map").exists());
+            hopper.close();
+            Helper.removeDir(new File(dir));
+        }
+    }
+
+    @Test
+    public void testPbfBlockIndex() throws Exception
+    {
+        File pbfFile = new File("files/andorra.osm.pbf");
+        PbfBlockIndex blockIndex = new PbfBlockIndex();
+        int ways = 0;
+        OSMInputFile in = new OSMInputFile(pbfFile).setElementTypes(blockIndex, PbfBlockIndex.WAYS).open();
+        OSMElement item;
+        while ((item = in.getNext()) != null)
+        {
+            assertTrue(item.isType(OSMElement.WAY));
+            ways++;
+        }
+        in.close();
+        assertTrue(blockIndex.isComplete());
+        assertTrue(ways > 0);
+        assertTrue(blockIndex.countSkippable(PbfBlockIndex.WAYS) > 0);
+
+        // now skip all blocks without ways
+        int waysFromIndex = 0;
+        in = new OSMInputFile(pbfFile).setElementTypes(blockIndex, PbfBlockIndex.WAYS).open();
+        while ((item = in.getNext()) != null)
+        {
+            assertTrue(item.isType(OSMElement.WAY));
+            waysFromIndex++;
+        }
+        in.close();
+        assertEquals(ways, waysFromIndex);
+
+        GraphHopper hopper = new GraphHopper().setStoreOnFlush(false).setOSMFile(pbfFile.getPath()).
+                setGraphHopperLocation(dir).setEncodingManager(new EncodingManager("CAR")).
+                setCHEnable(false).importOrLoad();
+        List<String> expected = getEdgeStrings(hopper.getGraph());
+        hopper.close();
+        Helper.removeDir(new File(dir));
+
+        hopper = new GraphHopper()
+        {
+            @Override
+            protected DataReader createReader( GraphStorage tmpGraph )
+            {
+                return initOSMReader(new OSMReader(tmpGraph)).setPbfBlockIndex(true);
+            }
+        }.setStoreOnFlush(false).setOSMFile(pbfFile.getPath()).
+                setGraphHopperLocation(dir).setEncodingManager(new EncodingManager("CAR")).
+                setCHEnable(false).importOrLoad();
+        assertEquals(expected, getEdgeStrings(hopper.getGraph()));
+        hopper.close();
+    }
+
+    private List<String> getEdgeStrings( Graph graph )
+    {
+        List<String> list = new ArrayList<String>();
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next())
+        {
+            list.add(iter.getBaseNode() + "->" + iter.getAdjNode() + ", flags:" + iter.getFlags()
+                    + ", dist:" + iter.getDistance() + ", name:" + iter.getName() + ", " + iter.fetchWayGeometry(3));
+        }
+        return list;
+    }
+
     @Test
     public void testSort()
     {
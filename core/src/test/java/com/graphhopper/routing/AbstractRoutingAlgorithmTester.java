@@ -399,6 +399,89 @@ public abstract class AbstractRoutingAlgorithmTester
         assertEquals(38f, p.getDistance(), 1e-3);
     }
 
+    @Test
+    public void testReuseCollections()
+    {
+        Graph graph = getMatrixGraph();
+        RoutingAlgorithmFactory factory = createFactory(graph, defaultOpts);
+        // small initial size to force growing
+        AlgorithmCollections collections = new AlgorithmCollections(5);
+        Random rand = new Random(0);
+        for (int i = 0; i < 50; i++)
+        {
+            int from = rand.nextInt(graph.getNodes());
+            int to = rand.nextInt(graph.getNodes());
+            Path expected = factory.createAlgo(graph, defaultOpts).calcPath(from, to);
+
+            RoutingAlgorithm algo = factory.createAlgo(graph, defaultOpts);
+            if (algo instanceof AbstractRoutingAlgorithm)
+                ((AbstractRoutingAlgorithm) algo).setReusableCollections(collections);
+
+            Path p = algo.calcPath(from, to);
+            assertEquals("from " + from + " to " + to, expected.isFound(), p.isFound());
+            assertEquals("from " + from + " to " + to, expected.getWeight(), p.getWeight(), 1e-4);
+            assertEquals("from " + from + " to " + to, expected.calcNodes(), p.calcNodes());
+        }
+    }
+
+    @Test
+    public void testAbortIfInterrupted()
+    {
+        Graph graph = getMatrixGraph();
+        int to = graph.getNodes() - 1;
+        assertTrue(createAlgo(graph).calcPath(0, to).isFound());
+
+        RoutingAlgorithm algo = createAlgo(graph);
+        Thread.currentThread().interrupt();
+        try
+        {
+            algo.calcPath(0, to);
+            assertTrue(false);
+        } catch (RoutingAbortedException ex)
+        {
+            assertEquals(RoutingAbortedException.Reason.CANCELLED, ex.getReason());
+        } finally
+        {
+            // clear the flag for the following tests
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    public void testBudget()
+    {
+        Graph graph = getMatrixGraph();
+        int to = graph.getNodes() - 1;
+        Path p = createAlgo(graph, new RoutingBudget(1000, 0)).calcPath(0, to);
+        assertTrue(p.isFound());
+
+        try
+        {
+            createAlgo(graph, new RoutingBudget(3, 0)).calcPath(0, to);
+            assertTrue(false);
+        } catch (RoutingAbortedException ex)
+        {
+            assertEquals(RoutingAbortedException.Reason.MAX_VISITED_NODES, ex.getReason());
+            assertTrue(ex.getVisitedNodes() > 3);
+        }
+
+        RoutingBudget budget = new RoutingBudget(1000, 0);
+        budget.cancel();
+        try
+        {
+            createAlgo(graph, budget).calcPath(0, to);
+            assertTrue(false);
+        } catch (RoutingAbortedException ex)
+        {
+            assertEquals(RoutingAbortedException.Reason.CANCELLED, ex.getReason());
+        }
+    }
+
+    RoutingAlgorithm createAlgo( Graph graph, RoutingBudget budget )
+    {
+        return ((AbstractRoutingAlgorithm) createAlgo(graph)).setBudget(budget);
+    }
+
     @Test
     public void testCannotCalculateSP()
     {
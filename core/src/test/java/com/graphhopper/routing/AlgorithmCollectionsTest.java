@@ -0,0 +1,76 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.coll.VersionedIntObjectMap;
+import com.graphhopper.storage.EdgeEntry;
+import java.util.PriorityQueue;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class AlgorithmCollectionsTest
+{
+    @Test
+    public void testClearKeepsSmallCollections()
+    {
+        AlgorithmCollections collections = new AlgorithmCollections(5);
+        VersionedIntObjectMap<EdgeEntry> map = collections.getFromMap();
+        for (int i = 0; i < 100; i++)
+        {
+            map.put(i, new EdgeEntry(i, i, i));
+        }
+        int capacity = map.getCapacity();
+
+        collections.clear();
+        assertSame(map, collections.getFromMap());
+        assertTrue(map.isEmpty());
+        assertEquals(capacity, map.getCapacity());
+    }
+
+    @Test
+    public void testClearReplacesOversizedCollections()
+    {
+        AlgorithmCollections collections = new AlgorithmCollections(5);
+        VersionedIntObjectMap<EdgeEntry> fromMap = collections.getFromMap();
+        PriorityQueue<EdgeEntry> fromQueue = collections.getFromQueue();
+        VersionedIntObjectMap<EdgeEntry> toMap = collections.getToMap();
+        int initialCapacity = fromMap.getCapacity();
+        for (int i = 0; i < AlgorithmCollections.MAX_RETAINED_CAPACITY; i++)
+        {
+            EdgeEntry entry = new EdgeEntry(i, i, i);
+            fromMap.put(i, entry);
+            fromQueue.add(entry);
+        }
+        toMap.put(1, new EdgeEntry(1, 1, 1));
+        assertTrue(fromMap.getCapacity() > AlgorithmCollections.MAX_RETAINED_CAPACITY);
+
+        collections.clear();
+        assertNotSame(fromMap, collections.getFromMap());
+        assertNotSame(fromQueue, collections.getFromQueue());
+        assertEquals(initialCapacity, collections.getFromMap().getCapacity());
+        assertTrue(collections.getFromMap().isEmpty());
+        assertTrue(collections.getFromQueue().isEmpty());
+
+        // only the oversized side is replaced
+        assertSame(toMap, collections.getToMap());
+        assertTrue(toMap.isEmpty());
+    }
+}
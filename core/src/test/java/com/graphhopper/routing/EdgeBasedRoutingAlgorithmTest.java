@@ -60,7 +60,9 @@ public class EdgeBasedRoutingAlgorithmTest
             { AlgorithmOptions.DIJKSTRA },
             { AlgorithmOptions.DIJKSTRA_BI },
             { AlgorithmOptions.ASTAR },
-            { AlgorithmOptions.ASTAR_BI }
+            { AlgorithmOptions.ASTAR_BI },
+            { AlgorithmOptions.DIJKSTRA_NATIVE },
+            { AlgorithmOptions.ASTAR_NATIVE }
         // TODO { AlgorithmOptions.DIJKSTRA_ONE_TO_MANY }
         });
     }
@@ -17,6 +17,8 @@
  */
 package com.graphhopper.routing;
 
+import com.graphhopper.GHMatrixRequest;
+import com.graphhopper.GHMatrixResponse;
 import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
 import com.graphhopper.GraphHopper;
@@ -26,6 +28,7 @@ import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.GHPoint;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import org.junit.After;
@@ -57,6 +60,58 @@ public class GraphHopperIT
         Helper.removeDir(new File(graphFile));
     }
 
+    @Test
+    public void testMonacoMatrix()
+    {
+        GraphHopper hopper = new GraphHopper().
+                setStoreOnFlush(true).
+                setOSMFile(osmFile).
+                setCHWeighting(weightCalcStr).
+                setGraphHopperLocation(graphFile).
+                setEncodingManager(new EncodingManager(importVehicles)).
+                importOrLoad();
+
+        List<GHPoint> points = Arrays.asList(new GHPoint(43.727687, 7.418737), new GHPoint(43.74958, 7.436566),
+                new GHPoint(43.730729, 7.42135), new GHPoint(43.727697, 7.419199), new GHPoint(43.741, 7.427));
+        GHMatrixResponse matrixRsp = hopper.matrix(new GHMatrixRequest(points).setVehicle(vehicle).
+                setWeighting(weightCalcStr));
+        assertFalse(matrixRsp.getErrors().toString(), matrixRsp.hasErrors());
+        for (int i = 0; i < points.size(); i++)
+        {
+            for (int j = 0; j < points.size(); j++)
+            {
+                GHResponse rsp = hopper.route(new GHRequest(points.get(i), points.get(j)).setVehicle(vehicle).
+                        setWeighting(weightCalcStr));
+                assertFalse(rsp.hasErrors());
+                String str = i + "->" + j;
+                assertTrue(str, matrixRsp.isFound(i, j));
+                assertEquals(str, rsp.getDistance(), matrixRsp.getDistance(i, j), 1e-3);
+                assertEquals(str, rsp.getMillis(), matrixRsp.getMillis(i, j));
+            }
+        }
+
+        GHMatrixRequest noTimesReq = new GHMatrixRequest(points).setVehicle(vehicle).setWeighting(weightCalcStr);
+        noTimesReq.getHints().put("calcTimes", false);
+        GHMatrixResponse noTimesRsp = hopper.matrix(noTimesReq);
+        assertFalse(noTimesRsp.getErrors().toString(), noTimesRsp.hasErrors());
+        for (int i = 0; i < points.size(); i++)
+        {
+            for (int j = 0; j < points.size(); j++)
+            {
+                String str = i + "->" + j;
+                assertEquals(str, matrixRsp.getDistance(i, j), noTimesRsp.getDistance(i, j), 1e-2);
+                assertEquals(str, matrixRsp.getWeight(i, j), noTimesRsp.getWeight(i, j), 1e-6);
+                assertEquals(str, 0, noTimesRsp.getMillis(i, j));
+            }
+        }
+
+        // no contraction hierarchy is prepared for fastest
+        GHMatrixResponse fastestRsp = hopper.matrix(new GHMatrixRequest(points).setVehicle(vehicle).
+                setWeighting("fastest"));
+        assertTrue(fastestRsp.hasErrors());
+        assertTrue(fastestRsp.getErrors().get(0) instanceof IllegalArgumentException);
+    }
+
     @Test
     public void testMonacoWithInstructions() throws Exception
     {
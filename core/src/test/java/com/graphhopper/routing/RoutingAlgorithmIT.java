@@ -22,6 +22,7 @@ import com.graphhopper.GraphHopper;
 import com.graphhopper.reader.PrinctonReader;
 import com.graphhopper.reader.dem.SRTMProvider;
 import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.routing.ch.PrepareEdgeBasedCH;
 import com.graphhopper.routing.util.*;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.routing.util.TestAlgoCollector.AlgoHelperEntry;
@@ -134,8 +135,7 @@ public class RoutingAlgorithmIT
         List<OneRun> list = new ArrayList<OneRun>();
         list.add(new OneRun(55.813357, 37.5958585, 55.811042, 37.594689, 1043.99, 12));
         list.add(new OneRun(55.813159, 37.593884, 55.811278, 37.594217, 1048, 13));
-        // TODO include CH
-        boolean testAlsoCH = false, is3D = false;
+        boolean testAlsoCH = true, is3D = false;
         runAlgo(testCollector, "files/moscow.osm.gz", "target/graph-moscow",
                 list, "CAR|turnCosts=true", testAlsoCH, "CAR", "fastest", is3D);
 
@@ -617,6 +617,8 @@ public class RoutingAlgorithmIT
         prepare.add(new AlgoHelperEntry(g, new AlgorithmOptions(AlgorithmOptions.ASTAR, encoder, weighting, tMode), idx));
         // later: include dijkstraOneToMany        
         prepare.add(new AlgoHelperEntry(g, new AlgorithmOptions(AlgorithmOptions.DIJKSTRA, encoder, weighting, tMode), idx));
+        prepare.add(new AlgoHelperEntry(g, new AlgorithmOptions(AlgorithmOptions.ASTAR_NATIVE, encoder, weighting, tMode), idx));
+        prepare.add(new AlgoHelperEntry(g, new AlgorithmOptions(AlgorithmOptions.DIJKSTRA_NATIVE, encoder, weighting, tMode), idx));
 
         final AlgorithmOptions astarbiOpts = new AlgorithmOptions(AlgorithmOptions.ASTAR_BI, encoder, weighting, tMode);
         astarbiOpts.getHints().put(AlgorithmOptions.ASTAR_BI + ".approximation", "BeelineSimplification");
@@ -624,7 +626,27 @@ public class RoutingAlgorithmIT
         prepare.add(new AlgoHelperEntry(g, astarbiOpts, idx));
         prepare.add(new AlgoHelperEntry(g, dijkstrabiOpts, idx));
 
-        if (withCh)
+        if (withCh && tMode.isEdgeBased())
+        {
+            final PrepareEdgeBasedCH prepareEdgeCH = new PrepareEdgeBasedCH(new RAMDirectory(), (GraphStorage) g,
+                    encoder, weighting, tMode);
+            prepareEdgeCH.doWork();
+            prepare.add(new AlgoHelperEntry(g, dijkstrabiOpts, idx)
+            {
+                @Override
+                public RoutingAlgorithm createAlgo( Graph qGraph )
+                {
+                    return prepareEdgeCH.createAlgo(qGraph, AlgorithmOptions.start(dijkstrabiOpts).
+                            weighting(new TurnWeighting(weighting, encoder, (TurnCostExtension) qGraph.getExtension())).build());
+                }
+
+                @Override
+                public String toString()
+                {
+                    return "dijkstrabiEdgeCH";
+                }
+            });
+        } else if (withCh)
         {
             final LevelGraph graphCH = (LevelGraph) ((GraphStorage) g).copyTo(new GraphBuilder(manager).
                     set3D(g.getNodeAccess().is3D()).levelGraphCreate());
@@ -0,0 +1,186 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.GHMatrixResponse;
+import com.graphhopper.routing.Dijkstra;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.RoutingAbortedException;
+import com.graphhopper.routing.RoutingBudget;
+import com.graphhopper.routing.util.*;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.LevelGraph;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * @author Peter Karich
+ */
+public class ManyToManyCHTest
+{
+    private final EncodingManager encodingManager = new EncodingManager("CAR");
+    private final CarFlagEncoder carEncoder = (CarFlagEncoder) encodingManager.getEncoder("CAR");
+    private final TraversalMode tMode = TraversalMode.NODE_BASED;
+
+    LevelGraph createGraph()
+    {
+        return new GraphBuilder(encodingManager).levelGraphCreate();
+    }
+
+    void assertMatrix( Graph expectedGraph, LevelGraph g, Weighting weighting, int[] fromNodes, int[] toNodes )
+    {
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies(g, carEncoder, weighting, tMode);
+        prepare.doWork();
+        GHMatrixResponse rsp = new GHMatrixResponse().init(fromNodes.length, toNodes.length);
+        prepare.createManyToMany(g).calcMatrix(fromNodes, toNodes, rsp);
+        for (int i = 0; i < fromNodes.length; i++)
+        {
+            for (int j = 0; j < toNodes.length; j++)
+            {
+                Path expected = new Dijkstra(expectedGraph, carEncoder, weighting, tMode).calcPath(fromNodes[i], toNodes[j]);
+                String str = fromNodes[i] + "->" + toNodes[j];
+                assertEquals(str, expected.isFound(), rsp.isFound(i, j));
+                if (!expected.isFound())
+                    continue;
+
+                assertEquals(str, expected.getDistance(), rsp.getDistance(i, j), 1e-6);
+                assertEquals(str, expected.getMillis(), rsp.getMillis(i, j));
+                // shortcuts store the weight with a lower precision
+                assertEquals(str, expected.getWeight(), rsp.getWeight(i, j), 1e-2);
+            }
+        }
+    }
+
+    @Test
+    public void testShortcutsGraph()
+    {
+        LevelGraph g = PrepareContractionHierarchiesTest.initShortcutsGraph(createGraph());
+        Graph expectedGraph = PrepareContractionHierarchiesTest.initShortcutsGraph(createGraph());
+        assertMatrix(expectedGraph, g, new ShortestWeighting(), new int[]
+        {
+            0, 3, 7, 16
+        }, new int[]
+        {
+            16, 5, 0, 10, 13
+        });
+    }
+
+    @Test
+    public void testDirectedGraph()
+    {
+        LevelGraph g = createGraph();
+        PrepareContractionHierarchiesTest.initDirected2(g);
+        Graph expectedGraph = createGraph();
+        PrepareContractionHierarchiesTest.initDirected2(expectedGraph);
+        int[] nodes = new int[]
+        {
+            0, 9, 10, 11, 17
+        };
+        assertMatrix(expectedGraph, g, new ShortestWeighting(), nodes, nodes);
+    }
+
+    @Test
+    public void testRandomGraph()
+    {
+        Random rand = new Random(12);
+        LevelGraph g = createGraph();
+        Graph expectedGraph = createGraph();
+        for (int i = 0; i < 200; i++)
+        {
+            int from = rand.nextInt(80);
+            int to = rand.nextInt(80);
+            double dist = 1 + rand.nextInt(1000);
+            boolean bothDir = rand.nextInt(4) > 0;
+            g.edge(from, to, dist, bothDir);
+            expectedGraph.edge(from, to, dist, bothDir);
+        }
+        int[] fromNodes = new int[20];
+        int[] toNodes = new int[30];
+        for (int i = 0; i < fromNodes.length; i++)
+        {
+            fromNodes[i] = rand.nextInt(80);
+        }
+        for (int i = 0; i < toNodes.length; i++)
+        {
+            toNodes[i] = rand.nextInt(80);
+        }
+        assertMatrix(expectedGraph, g, new FastestWeighting(carEncoder), fromNodes, toNodes);
+    }
+
+    @Test
+    public void testWithoutTimes()
+    {
+        LevelGraph g = PrepareContractionHierarchiesTest.initShortcutsGraph(createGraph());
+        Graph expectedGraph = PrepareContractionHierarchiesTest.initShortcutsGraph(createGraph());
+        Weighting weighting = new ShortestWeighting();
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies(g, carEncoder, weighting, tMode);
+        prepare.doWork();
+        GHMatrixResponse rsp = new GHMatrixResponse().init(1, 1);
+        prepare.createManyToMany(g).setCalcTimes(false).calcMatrix(new int[]
+        {
+            0
+        }, new int[]
+        {
+            16
+        }, rsp);
+        Path expected = new Dijkstra(expectedGraph, carEncoder, weighting, tMode).calcPath(0, 16);
+        assertTrue(rsp.isFound(0, 0));
+        // summed from the shortcuts which store the distance in millimeter
+        assertEquals(expected.getDistance(), rsp.getDistance(0, 0), 1e-2);
+        assertEquals(expected.getWeight(), rsp.getWeight(0, 0), 1e-2);
+        assertEquals(0, rsp.getMillis(0, 0));
+    }
+
+    @Test
+    public void testBudget()
+    {
+        LevelGraph g = PrepareContractionHierarchiesTest.initShortcutsGraph(createGraph());
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies(g, carEncoder, new ShortestWeighting(), tMode);
+        prepare.doWork();
+        int[] nodes = new int[]
+        {
+            0, 16
+        };
+        RoutingBudget budget = new RoutingBudget(1000, 0);
+        budget.cancel();
+        try
+        {
+            prepare.createManyToMany(g).setBudget(budget).calcMatrix(nodes, nodes, new GHMatrixResponse().init(2, 2));
+            assertTrue(false);
+        } catch (RoutingAbortedException ex)
+        {
+            assertEquals(RoutingAbortedException.Reason.CANCELLED, ex.getReason());
+        }
+
+        try
+        {
+            prepare.createManyToMany(g).setBudget(new RoutingBudget(1, 0)).
+                    calcMatrix(nodes, nodes, new GHMatrixResponse().init(2, 2));
+            assertTrue(false);
+        } catch (RoutingAbortedException ex)
+        {
+            assertEquals(RoutingAbortedException.Reason.MAX_VISITED_NODES, ex.getReason());
+        }
+
+        GHMatrixResponse rsp = new GHMatrixResponse().init(2, 2);
+        prepare.createManyToMany(g).setBudget(new RoutingBudget(1000, 0)).calcMatrix(nodes, nodes, rsp);
+        assertTrue(rsp.isFound(0, 1));
+    }
+}
@@ -25,8 +25,12 @@ import com.graphhopper.storage.LevelGraph;
 import com.graphhopper.storage.LevelGraphStorage;
 import com.graphhopper.storage.GraphBuilder;
 import com.graphhopper.util.*;
+import gnu.trove.list.TIntList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
 import static org.junit.Assert.*;
 import org.junit.Test;
 
@@ -213,6 +217,115 @@ public class PrepareContractionHierarchiesTest
         assertEquals(sc2.toString(), 12, sc2.weight, 1e-4);
     }
 
+    @Test
+    public void testParallelContraction()
+    {
+        LevelGraph g = initShortcutsGraph(createGraph());
+        Graph expectedGraph = initShortcutsGraph(createGraph());
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies(g, carEncoder, weighting, tMode);
+        prepare.setThreads(3).doWork();
+        assertTrue(prepare.getShortcuts() > 0);
+        assertSameDistances(expectedGraph, g, prepare);
+    }
+
+    @Test
+    public void testParallelContractionRandomGraph()
+    {
+        Random rand = new Random(42);
+        LevelGraph g = createGraph();
+        Graph expectedGraph = createGraph();
+        for (int i = 0; i < 300; i++)
+        {
+            int from = rand.nextInt(100);
+            int to = rand.nextInt(100);
+            double dist = 1 + rand.nextInt(20);
+            boolean bothDir = rand.nextInt(5) > 0;
+            g.edge(from, to, dist, bothDir);
+            expectedGraph.edge(from, to, dist, bothDir);
+        }
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies(g, carEncoder, weighting, tMode);
+        prepare.setThreads(4).doWork();
+        assertSameDistances(expectedGraph, g, prepare);
+    }
+
+    @Test
+    public void testSortPreparedGraph()
+    {
+        Random rand = new Random(42);
+        LevelGraph g = createGraph();
+        Graph expectedGraph = createGraph();
+        for (int node = 0; node < 100; node++)
+        {
+            double lat = 50 + rand.nextDouble(), lon = 10 + rand.nextDouble();
+            g.getNodeAccess().setNode(node, lat, lon);
+            expectedGraph.getNodeAccess().setNode(node, lat, lon);
+        }
+        for (int i = 0; i < 300; i++)
+        {
+            int from = rand.nextInt(100);
+            int to = rand.nextInt(100);
+            double dist = 1 + rand.nextInt(20);
+            boolean bothDir = rand.nextInt(5) > 0;
+            g.edge(from, to, dist, bothDir);
+            expectedGraph.edge(from, to, dist, bothDir);
+        }
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies(g, carEncoder, weighting, tMode);
+        prepare.doWork();
+
+        LevelGraph sortedGraph = (LevelGraph) GHUtility.sortHilbert(g, createGraph());
+        assertEquals(g.getAllEdges().getCount(), sortedGraph.getAllEdges().getCount());
+        // the coordinates are unique, use them to find the old node
+        Map<Double, Integer> latToOldNode = new HashMap<Double, Integer>();
+        for (int node = 0; node < g.getNodes(); node++)
+        {
+            latToOldNode.put(g.getNodeAccess().getLatitude(node), node);
+        }
+        int[] newToOld = new int[sortedGraph.getNodes()];
+        for (int node = 0; node < sortedGraph.getNodes(); node++)
+        {
+            newToOld[node] = latToOldNode.get(sortedGraph.getNodeAccess().getLatitude(node));
+            assertEquals(g.getLevel(newToOld[node]), sortedGraph.getLevel(node));
+            // the same edges have to be disconnected
+            assertEquals(GHUtility.count(g.createEdgeExplorer().setBaseNode(newToOld[node])),
+                    GHUtility.count(sortedGraph.createEdgeExplorer().setBaseNode(node)));
+        }
+
+        AlgorithmOptions opts = new AlgorithmOptions(AlgorithmOptions.DIJKSTRA_BI, carEncoder, weighting, tMode);
+        for (int from = 0; from < sortedGraph.getNodes(); from++)
+        {
+            for (int to = 0; to < sortedGraph.getNodes(); to++)
+            {
+                Path expected = new Dijkstra(expectedGraph, carEncoder, weighting, tMode).calcPath(newToOld[from], newToOld[to]);
+                Path p = prepare.createAlgo(sortedGraph, opts).calcPath(from, to);
+                String str = from + "->" + to;
+                assertEquals(str, expected.isFound(), p.isFound());
+                assertEquals(str, expected.getDistance(), p.getDistance(), 1e-6);
+                if (p.isFound())
+                {
+                    TIntList nodes = p.calcNodes();
+                    assertEquals(str, from, nodes.get(0));
+                    assertEquals(str, to, nodes.get(nodes.size() - 1));
+                }
+            }
+        }
+    }
+
+    void assertSameDistances( Graph expectedGraph, LevelGraph g, PrepareContractionHierarchies prepare )
+    {
+        AlgorithmOptions opts = new AlgorithmOptions(AlgorithmOptions.DIJKSTRA_BI, carEncoder, weighting, tMode);
+        for (int from = 0; from < g.getNodes(); from++)
+        {
+            for (int to = 0; to < g.getNodes(); to++)
+            {
+                Path expected = new Dijkstra(expectedGraph, carEncoder, weighting, tMode).calcPath(from, to);
+                Path p = prepare.createAlgo(g, opts).calcPath(from, to);
+                String str = from + "->" + to;
+                assertEquals(str, expected.isFound(), p.isFound());
+                assertEquals(str, expected.getDistance(), p.getDistance(), 1e-6);
+            }
+        }
+    }
+
     void initRoundaboutGraph( Graph g )
     {
         //              roundabout:
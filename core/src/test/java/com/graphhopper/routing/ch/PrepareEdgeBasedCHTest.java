@@ -0,0 +1,260 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.*;
+import com.graphhopper.routing.util.*;
+import com.graphhopper.storage.*;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Helper;
+import java.io.File;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static com.graphhopper.util.GHUtility.*;
+
+/**
+ * @author Peter Karich
+ */
+public class PrepareEdgeBasedCHTest
+{
+    private CarFlagEncoder encoder;
+    private Weighting weighting;
+    private GraphStorage graph;
+    private TurnCostExtension tcs;
+
+    @Before
+    public void setUp()
+    {
+        encoder = new CarFlagEncoder(5, 5, 31);
+        graph = new GraphBuilder(new EncodingManager(encoder)).create();
+        weighting = new FastestWeighting(encoder);
+        tcs = (TurnCostExtension) graph.getExtension();
+    }
+
+    private AlgorithmOptions createOptions( TraversalMode tMode )
+    {
+        return AlgorithmOptions.start().algorithm(AlgorithmOptions.DIJKSTRA_BI).flagEncoder(encoder).
+                weighting(new TurnWeighting(weighting, encoder, tcs)).traversalMode(tMode).build();
+    }
+
+    /**
+     * Creates a grid with random speeds, some one-way edges and random turn costs and restrictions.
+     */
+    private void initGrid( int width, int height )
+    {
+        Random rand = new Random(1);
+        NodeAccess na = graph.getNodeAccess();
+        for (int h = 0; h < height; h++)
+        {
+            for (int w = 0; w < width; w++)
+            {
+                int node = h * width + w;
+                na.setNode(node, h * 0.001, w * 0.001);
+                if (w > 0)
+                    connect(node - 1, node, rand);
+                if (h > 0)
+                    connect(node - width, node, rand);
+            }
+        }
+
+        EdgeExplorer explorer = graph.createEdgeExplorer();
+        for (int node = 0; node < graph.getNodes(); node++)
+        {
+            EdgeIterator inIter = explorer.setBaseNode(node);
+            while (inIter.next())
+            {
+                EdgeIterator outIter = graph.createEdgeExplorer().setBaseNode(node);
+                while (outIter.next())
+                {
+                    if (inIter.getEdge() == outIter.getEdge())
+                        continue;
+
+                    int r = rand.nextInt(10);
+                    if (r == 0)
+                        tcs.addTurnInfo(inIter.getEdge(), node, outIter.getEdge(), encoder.getTurnFlags(true, 0));
+                    else if (r < 4)
+                        tcs.addTurnInfo(inIter.getEdge(), node, outIter.getEdge(), encoder.getTurnFlags(false, 5 * r));
+                }
+            }
+        }
+    }
+
+    private void connect( int from, int to, Random rand )
+    {
+        double dist = Helper.DIST_PLANE.calcDist(graph.getNodeAccess().getLatitude(from), graph.getNodeAccess().getLongitude(from),
+                graph.getNodeAccess().getLatitude(to), graph.getNodeAccess().getLongitude(to));
+        boolean bothDirections = rand.nextInt(10) > 0;
+        EdgeIteratorState edge = graph.edge(from, to).setDistance(dist);
+        edge.setFlags(encoder.setProperties(10 + rand.nextInt(80), true, bothDirections));
+    }
+
+    @Test
+    public void testBasicTurnRestriction()
+    {
+        EdgeBasedRoutingAlgorithmTest.initGraph(graph);
+        long tflags = encoder.getTurnFlags(true, 0);
+        tcs.addTurnInfo(getEdge(graph, 2, 3).getEdge(), 3, getEdge(graph, 3, 6).getEdge(), tflags);
+        tcs.addTurnInfo(getEdge(graph, 2, 3).getEdge(), 3, getEdge(graph, 3, 1).getEdge(), tflags);
+        tcs.addTurnInfo(getEdge(graph, 5, 2).getEdge(), 2, getEdge(graph, 2, 0).getEdge(), tflags);
+        tcs.addTurnInfo(getEdge(graph, 7, 6).getEdge(), 6, getEdge(graph, 6, 5).getEdge(), tflags);
+        tcs.addTurnInfo(getEdge(graph, 5, 6).getEdge(), 6, getEdge(graph, 6, 3).getEdge(), tflags);
+        tcs.addTurnInfo(getEdge(graph, 4, 3).getEdge(), 3, getEdge(graph, 3, 1).getEdge(), tflags);
+        tcs.addTurnInfo(getEdge(graph, 4, 3).getEdge(), 3, getEdge(graph, 3, 2).getEdge(), tflags);
+        tcs.addTurnInfo(getEdge(graph, 6, 7).getEdge(), 7, getEdge(graph, 7, 6).getEdge(), tflags);
+        tcs.addTurnInfo(getEdge(graph, 3, 6).getEdge(), 6, getEdge(graph, 6, 3).getEdge(), tflags);
+
+        PrepareEdgeBasedCH prepare = new PrepareEdgeBasedCH(new RAMDirectory(), graph, encoder, weighting,
+                TraversalMode.EDGE_BASED_2DIR);
+        prepare.doWork();
+        assertEquals(2 * graph.getAllEdges().getCount(), prepare.getTurnGraph().getNodes());
+
+        AlgorithmOptions opts = createOptions(TraversalMode.EDGE_BASED_2DIR);
+        RoutingAlgorithm algo = prepare.createAlgo(graph, opts);
+        assertTrue(algo instanceof EdgeBasedCHAlgorithm);
+        Path p = algo.calcPath(5, 1);
+        assertEquals(Helper.createTList(5, 2, 3, 4, 7, 6, 3, 1), p.calcNodes());
+        Path expected = new Dijkstra(graph, encoder, opts.getWeighting(), TraversalMode.EDGE_BASED_2DIR).calcPath(5, 1);
+        assertEquals(expected.getWeight(), p.getWeight(), 1e-6);
+        assertEquals(expected.getDistance(), p.getDistance(), 1e-6);
+        assertEquals(expected.getMillis(), p.getMillis());
+
+        p = prepare.createAlgo(graph, opts).calcPath(7, 5);
+        assertEquals(Helper.createTList(7, 6, 3, 2, 5), p.calcNodes());
+
+        p = prepare.createAlgo(graph, opts).calcPath(3, 3);
+        assertTrue(p.isFound());
+        assertEquals(Helper.createTList(3), p.calcNodes());
+    }
+
+    @Test
+    public void testCompareWithDijkstra()
+    {
+        initGrid(15, 15);
+        for (TraversalMode tMode : new TraversalMode[]
+        {
+            TraversalMode.EDGE_BASED_2DIR, TraversalMode.EDGE_BASED_2DIR_UTURN
+        })
+        {
+            PrepareEdgeBasedCH prepare = new PrepareEdgeBasedCH(new RAMDirectory(), graph, encoder, weighting, tMode);
+            prepare.doWork();
+            AlgorithmOptions opts = createOptions(tMode);
+            Random rand = new Random(0);
+            for (int i = 0; i < 100; i++)
+            {
+                int from = rand.nextInt(graph.getNodes());
+                int to = rand.nextInt(graph.getNodes());
+                Path expected = new Dijkstra(graph, encoder, opts.getWeighting(), tMode).calcPath(from, to);
+                Path path = prepare.createAlgo(graph, opts).calcPath(from, to);
+                assertEquals(tMode + " " + from + "->" + to, expected.isFound(), path.isFound());
+                assertEquals(tMode + " " + from + "->" + to, expected.getWeight(), path.getWeight(), 1e-6);
+                assertEquals(tMode + " " + from + "->" + to, expected.getDistance(), path.getDistance(), 1e-3);
+            }
+        }
+    }
+
+    @Test
+    public void testVirtualNodes()
+    {
+        initGrid(15, 15);
+        PrepareEdgeBasedCH prepare = new PrepareEdgeBasedCH(new RAMDirectory(), graph, encoder, weighting,
+                TraversalMode.EDGE_BASED_2DIR);
+        prepare.doWork();
+        LocationIndexTree index = new LocationIndexTree(graph, new RAMDirectory());
+        index.prepareIndex();
+
+        Random rand = new Random(0);
+        for (int i = 0; i < 100; i++)
+        {
+            QueryResult fromRes = index.findClosest(rand.nextDouble() * 0.014, rand.nextDouble() * 0.014, new DefaultEdgeFilter(encoder));
+            QueryResult toRes = index.findClosest(rand.nextDouble() * 0.014, rand.nextDouble() * 0.014, new DefaultEdgeFilter(encoder));
+            QueryGraph qGraph = new QueryGraph(graph).lookup(fromRes, toRes);
+            int from = fromRes.getClosestNode();
+            int to = toRes.getClosestNode();
+            // the weighting has to use the turn costs of the query graph
+            AlgorithmOptions opts = AlgorithmOptions.start(createOptions(TraversalMode.EDGE_BASED_2DIR)).
+                    weighting(new TurnWeighting(weighting, encoder, (TurnCostExtension) qGraph.getExtension())).build();
+            Path expected = new Dijkstra(qGraph, encoder, opts.getWeighting(), TraversalMode.EDGE_BASED_2DIR).calcPath(from, to);
+            Path path = prepare.createAlgo(qGraph, opts).calcPath(from, to);
+            assertEquals(from + "->" + to, expected.isFound(), path.isFound());
+            assertEquals(from + "->" + to, expected.getWeight(), path.getWeight(), 1e-6);
+            assertEquals(from + "->" + to, expected.getDistance(), path.getDistance(), 1e-3);
+        }
+    }
+
+    @Test
+    public void testNotApplicable()
+    {
+        initGrid(5, 5);
+        PrepareEdgeBasedCH prepare = new PrepareEdgeBasedCH(new RAMDirectory(), graph, encoder, weighting,
+                TraversalMode.EDGE_BASED_2DIR);
+        // not prepared
+        assertFalse(prepare.createAlgo(graph, createOptions(TraversalMode.EDGE_BASED_2DIR)) instanceof EdgeBasedCHAlgorithm);
+        prepare.doWork();
+
+        assertTrue(prepare.isApplicable(createOptions(TraversalMode.EDGE_BASED_2DIR)));
+        assertTrue(prepare.isApplicable(createOptions(TraversalMode.EDGE_BASED_1DIR)));
+        assertFalse(prepare.isApplicable(createOptions(TraversalMode.EDGE_BASED_2DIR_UTURN)));
+        assertFalse(prepare.isApplicable(createOptions(TraversalMode.NODE_BASED)));
+        assertFalse(prepare.isApplicable(AlgorithmOptions.start(createOptions(TraversalMode.EDGE_BASED_2DIR)).
+                algorithm(AlgorithmOptions.DIJKSTRA).build()));
+        assertFalse(prepare.isApplicable(AlgorithmOptions.start(createOptions(TraversalMode.EDGE_BASED_2DIR)).
+                weighting(new TurnWeighting(new ShortestWeighting(), encoder, tcs)).build()));
+        assertFalse(prepare.isApplicable(AlgorithmOptions.start(createOptions(TraversalMode.EDGE_BASED_2DIR)).
+                weighting(weighting).build()));
+
+        AlgorithmOptions opts = AlgorithmOptions.start(createOptions(TraversalMode.EDGE_BASED_2DIR)).
+                algorithm(AlgorithmOptions.DIJKSTRA).build();
+        assertTrue(prepare.createAlgo(graph, opts) instanceof Dijkstra);
+    }
+
+    @Test
+    public void testStoreAndLoad()
+    {
+        initGrid(10, 10);
+        String location = "./target/tmp/edge-ch";
+        Helper.removeDir(new File(location));
+        try
+        {
+            PrepareEdgeBasedCH prepare = new PrepareEdgeBasedCH(new GHDirectory(location, DAType.RAM_STORE), graph,
+                    encoder, weighting, TraversalMode.EDGE_BASED_2DIR);
+            prepare.doWork();
+            prepare.flush();
+            AlgorithmOptions opts = createOptions(TraversalMode.EDGE_BASED_2DIR);
+            Path expected = prepare.createAlgo(graph, opts).calcPath(0, 99);
+            assertTrue(expected.isFound());
+            prepare.close();
+
+            prepare = new PrepareEdgeBasedCH(new GHDirectory(location, DAType.RAM_STORE), graph,
+                    encoder, weighting, TraversalMode.EDGE_BASED_2DIR);
+            assertTrue(prepare.loadExisting());
+            Path path = prepare.createAlgo(graph, opts).calcPath(0, 99);
+            assertEquals(expected.calcNodes(), path.calcNodes());
+            assertEquals(expected.getWeight(), path.getWeight(), 1e-6);
+            prepare.close();
+        } finally
+        {
+            Helper.removeDir(new File(location));
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.*;
+import com.graphhopper.routing.util.*;
+import com.graphhopper.storage.*;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Helper;
+import java.io.File;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class PrepareMultipleCHTest
+{
+    private final String location = "./target/tmp/multiple-ch";
+    private CarFlagEncoder carEncoder;
+    private FootFlagEncoder footEncoder;
+    private EncodingManager encodingManager;
+
+    @Before
+    public void setUp()
+    {
+        Helper.removeDir(new File(location));
+        carEncoder = new CarFlagEncoder();
+        footEncoder = new FootFlagEncoder();
+        encodingManager = new EncodingManager(carEncoder, footEncoder);
+    }
+
+    @After
+    public void tearDown()
+    {
+        Helper.removeDir(new File(location));
+    }
+
+    /**
+     * Creates a grid with random car speeds and some one-way edges for car, foot can use every
+     * edge in both directions.
+     */
+    private void initGrid( GraphStorage graph, int width, int height )
+    {
+        Random rand = new Random(1);
+        NodeAccess na = graph.getNodeAccess();
+        for (int h = 0; h < height; h++)
+        {
+            for (int w = 0; w < width; w++)
+            {
+                int node = h * width + w;
+                na.setNode(node, h * 0.001, w * 0.001);
+                if (w > 0)
+                    connect(graph, node - 1, node, rand);
+                if (h > 0)
+                    connect(graph, node - width, node, rand);
+            }
+        }
+    }
+
+    private void connect( GraphStorage graph, int from, int to, Random rand )
+    {
+        NodeAccess na = graph.getNodeAccess();
+        double dist = Helper.DIST_PLANE.calcDist(na.getLatitude(from), na.getLongitude(from),
+                na.getLatitude(to), na.getLongitude(to)) * (1 + rand.nextDouble());
+        boolean bothDirections = rand.nextInt(10) > 0;
+        EdgeIteratorState edge = graph.edge(from, to).setDistance(dist);
+        edge.setFlags(carEncoder.setProperties(10 + rand.nextInt(80), true, bothDirections)
+                | footEncoder.setProperties(5, true, true));
+    }
+
+    private PrepareMultipleCH createPrepare( GraphStorage graph )
+    {
+        PrepareMultipleCH prepare = new PrepareMultipleCH(graph);
+        prepare.addPreparation("car_fastest", carEncoder, new FastestWeighting(carEncoder), TraversalMode.NODE_BASED);
+        prepare.addPreparation("car_shortest", carEncoder, new ShortestWeighting(), TraversalMode.NODE_BASED);
+        prepare.addPreparation("foot_fastest", footEncoder, new FastestWeighting(footEncoder), TraversalMode.NODE_BASED);
+        return prepare;
+    }
+
+    private void compareWithDijkstra( PrepareMultipleCH prepare, GraphStorage graph, FlagEncoder encoder,
+            Weighting weighting )
+    {
+        LevelGraph levelGraph = prepare.getGraph(AlgorithmOptions.DIJKSTRA_BI, encoder, weighting);
+        assertNotNull(levelGraph);
+        AlgorithmOptions opts = AlgorithmOptions.start().algorithm(AlgorithmOptions.DIJKSTRA_BI).
+                flagEncoder(encoder).weighting(weighting).build();
+        Random rand = new Random(2);
+        for (int i = 0; i < 50; i++)
+        {
+            int from = rand.nextInt(graph.getNodes());
+            int to = rand.nextInt(graph.getNodes());
+            Path expected = new Dijkstra(graph, encoder, weighting, TraversalMode.NODE_BASED).calcPath(from, to);
+            RoutingAlgorithm algo = prepare.createAlgo(levelGraph, opts);
+            assertEquals("dijkstrabiCH", algo.getName());
+            Path path = algo.calcPath(from, to);
+            assertEquals(encoder + " " + weighting + " " + from + "->" + to, expected.isFound(), path.isFound());
+            assertEquals(encoder + " " + weighting + " " + from + "->" + to, expected.getWeight(), path.getWeight(), 1e-2);
+            assertEquals(expected.getDistance(), path.getDistance(), 1e-2);
+        }
+    }
+
+    @Test
+    public void testCompareWithDijkstra()
+    {
+        GraphStorage graph = new GraphBuilder(encodingManager).create();
+        initGrid(graph, 15, 15);
+        PrepareMultipleCH prepare = createPrepare(graph);
+        prepare.doWork();
+
+        compareWithDijkstra(prepare, graph, carEncoder, new FastestWeighting(carEncoder));
+        compareWithDijkstra(prepare, graph, carEncoder, new ShortestWeighting());
+        compareWithDijkstra(prepare, graph, footEncoder, new FastestWeighting(footEncoder));
+
+        // the shortcuts are stored separately, the base graph is unchanged
+        assertEquals(2 * 15 * 14, graph.getAllEdges().getCount());
+
+        // unidirectional algorithms cannot use the hierarchy
+        assertNull(prepare.getGraph(AlgorithmOptions.DIJKSTRA, carEncoder, new ShortestWeighting()));
+
+        // not prepared => no CH
+        assertNull(prepare.getGraph(AlgorithmOptions.DIJKSTRA_BI, footEncoder, new ShortestWeighting()));
+        AlgorithmOptions opts = AlgorithmOptions.start().algorithm(AlgorithmOptions.DIJKSTRA_BI).
+                flagEncoder(footEncoder).weighting(new ShortestWeighting()).build();
+        assertEquals("dijkstrabi", prepare.createAlgo(graph, opts).getName());
+    }
+
+    @Test
+    public void testLoadExisting()
+    {
+        GraphStorage graph = new GraphBuilder(encodingManager).setLocation(location).setStore(true).create();
+        initGrid(graph, 10, 10);
+        PrepareMultipleCH prepare = createPrepare(graph);
+        prepare.doWork();
+        graph.flush();
+        prepare.flush();
+        int shortcuts = ((LevelGraphOverlay) prepare.getGraph(AlgorithmOptions.DIJKSTRA_BI, footEncoder, new FastestWeighting(footEncoder))).getShortcuts();
+        assertTrue(shortcuts > 0);
+        graph.close();
+        prepare.close();
+
+        graph = new GraphBuilder(encodingManager).setLocation(location).setStore(true).load();
+        prepare = createPrepare(graph);
+        assertNull(prepare.getGraph(AlgorithmOptions.DIJKSTRA_BI, footEncoder, new FastestWeighting(footEncoder)));
+        assertTrue(prepare.loadExisting());
+        assertFalse(prepare.isPrepared());
+        assertEquals(shortcuts, ((LevelGraphOverlay) prepare.getGraph(AlgorithmOptions.DIJKSTRA_BI, footEncoder, new FastestWeighting(footEncoder))).getShortcuts());
+        compareWithDijkstra(prepare, graph, carEncoder, new FastestWeighting(carEncoder));
+        compareWithDijkstra(prepare, graph, footEncoder, new FastestWeighting(footEncoder));
+        graph.close();
+        prepare.close();
+    }
+
+    @Test
+    public void testDuplicatePreparation()
+    {
+        GraphStorage graph = new GraphBuilder(encodingManager).create();
+        PrepareMultipleCH prepare = createPrepare(graph);
+        try
+        {
+            prepare.addPreparation("car_fastest2", carEncoder, new FastestWeighting(carEncoder), TraversalMode.NODE_BASED);
+            fail("the weighting is already prepared");
+        } catch (IllegalArgumentException ex)
+        {
+        }
+    }
+}
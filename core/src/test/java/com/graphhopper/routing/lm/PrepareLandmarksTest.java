@@ -0,0 +1,222 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.lm;
+
+import com.graphhopper.routing.*;
+import com.graphhopper.routing.util.*;
+import com.graphhopper.storage.*;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Helper;
+import java.io.File;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class PrepareLandmarksTest
+{
+    private EncodingManager encodingManager;
+    private FlagEncoder encoder;
+    private Weighting weighting;
+    private GraphStorage graph;
+
+    @Before
+    public void setUp()
+    {
+        encoder = new CarFlagEncoder();
+        encodingManager = new EncodingManager(encoder);
+        weighting = new FastestWeighting(encoder);
+        graph = new GraphBuilder(encodingManager).create();
+    }
+
+    /**
+     * Creates a grid with random speeds and some one-way edges.
+     */
+    private void initGrid( int width, int height )
+    {
+        Random rand = new Random(1);
+        NodeAccess na = graph.getNodeAccess();
+        for (int h = 0; h < height; h++)
+        {
+            for (int w = 0; w < width; w++)
+            {
+                int node = h * width + w;
+                na.setNode(node, h * 0.001, w * 0.001);
+                if (w > 0)
+                    connect(node - 1, node, rand);
+                if (h > 0)
+                    connect(node - width, node, rand);
+            }
+        }
+    }
+
+    private void connect( int from, int to, Random rand )
+    {
+        double dist = Helper.DIST_PLANE.calcDist(graph.getNodeAccess().getLatitude(from), graph.getNodeAccess().getLongitude(from),
+                graph.getNodeAccess().getLatitude(to), graph.getNodeAccess().getLongitude(to));
+        boolean bothDirections = rand.nextInt(10) > 0;
+        EdgeIteratorState edge = graph.edge(from, to).setDistance(dist);
+        edge.setFlags(encoder.setProperties(10 + rand.nextInt(80), true, bothDirections));
+    }
+
+    @Test
+    public void testLandmarkWeights()
+    {
+        initGrid(5, 5);
+        LandmarkStorage lms = new LandmarkStorage(graph, new RAMDirectory(), "landmarks", encoder, weighting, 2);
+        lms.createLandmarks();
+        int[] landmarks = lms.getLandmarks();
+        assertEquals(2, landmarks.length);
+        assertNotEquals(landmarks[0], landmarks[1]);
+        assertTrue(lms.getFactor() > 1);
+
+        for (int lmIndex = 0; lmIndex < landmarks.length; lmIndex++)
+        {
+            assertEquals(0, lms.getFromWeight(lmIndex, landmarks[lmIndex]));
+            assertEquals(0, lms.getToWeight(lmIndex, landmarks[lmIndex]));
+            for (int node = 0; node < graph.getNodes(); node++)
+            {
+                Path fromPath = new Dijkstra(graph, encoder, weighting, TraversalMode.NODE_BASED).calcPath(landmarks[lmIndex], node);
+                assertEquals(fromPath.getWeight(), lms.getFromWeight(lmIndex, node) / lms.getFactor(), 1e-3);
+                Path toPath = new Dijkstra(graph, encoder, weighting, TraversalMode.NODE_BASED).calcPath(node, landmarks[lmIndex]);
+                assertEquals(toPath.getWeight(), lms.getToWeight(lmIndex, node) / lms.getFactor(), 1e-3);
+            }
+        }
+    }
+
+    @Test
+    public void testCompareWithDijkstra()
+    {
+        initGrid(20, 20);
+        PrepareLandmarks prepare = new PrepareLandmarks(new RAMDirectory(), graph, encoder, weighting, 4);
+        prepare.doWork();
+
+        Random rand = new Random(0);
+        for (int i = 0; i < 100; i++)
+        {
+            int from = rand.nextInt(graph.getNodes());
+            int to = rand.nextInt(graph.getNodes());
+            Path expected = new Dijkstra(graph, encoder, weighting, TraversalMode.NODE_BASED).calcPath(from, to);
+            for (String algoStr : new String[]
+            {
+                AlgorithmOptions.ASTAR, AlgorithmOptions.ASTAR_BI
+            })
+            {
+                AlgorithmOptions opts = AlgorithmOptions.start().algorithm(algoStr).flagEncoder(encoder).
+                        weighting(weighting).build();
+                Path path = prepare.createAlgo(graph, opts).calcPath(from, to);
+                assertEquals(algoStr + " " + from + "->" + to, expected.isFound(), path.isFound());
+                assertEquals(algoStr + " " + from + "->" + to, expected.getWeight(), path.getWeight(), 1e-3);
+            }
+        }
+    }
+
+    @Test
+    public void testVirtualNodes()
+    {
+        initGrid(20, 20);
+        PrepareLandmarks prepare = new PrepareLandmarks(new RAMDirectory(), graph, encoder, weighting, 4);
+        prepare.doWork();
+        LocationIndexTree index = new LocationIndexTree(graph, new RAMDirectory());
+        index.prepareIndex();
+
+        Random rand = new Random(0);
+        for (int i = 0; i < 50; i++)
+        {
+            QueryResult fromRes = index.findClosest(rand.nextDouble() * 0.019, rand.nextDouble() * 0.019, new DefaultEdgeFilter(encoder));
+            QueryResult toRes = index.findClosest(rand.nextDouble() * 0.019, rand.nextDouble() * 0.019, new DefaultEdgeFilter(encoder));
+            QueryGraph qGraph = new QueryGraph(graph).lookup(fromRes, toRes);
+            int from = fromRes.getClosestNode();
+            int to = toRes.getClosestNode();
+            Path expected = new Dijkstra(qGraph, encoder, weighting, TraversalMode.NODE_BASED).calcPath(from, to);
+
+            AlgorithmOptions opts = AlgorithmOptions.start().algorithm(AlgorithmOptions.ASTAR_BI).
+                    flagEncoder(encoder).weighting(weighting).build();
+            Path path = prepare.createAlgo(qGraph, opts).calcPath(from, to);
+            assertEquals(from + "->" + to, expected.getWeight(), path.getWeight(), 1e-3);
+        }
+    }
+
+    @Test
+    public void testVisitsLessNodes()
+    {
+        initGrid(30, 30);
+        PrepareLandmarks prepare = new PrepareLandmarks(new RAMDirectory(), graph, encoder, weighting, 8);
+        prepare.doWork();
+
+        AlgorithmOptions opts = AlgorithmOptions.start().algorithm(AlgorithmOptions.ASTAR).flagEncoder(encoder).
+                weighting(weighting).build();
+        RoutingAlgorithm beeline = new RoutingAlgorithmFactorySimple().createAlgo(graph, opts);
+        RoutingAlgorithm landmarks = prepare.createAlgo(graph, opts);
+        Path expected = beeline.calcPath(0, 899);
+        Path path = landmarks.calcPath(0, 899);
+        assertEquals(expected.getWeight(), path.getWeight(), 1e-3);
+        assertTrue(landmarks.getVisitedNodes() + " vs. " + beeline.getVisitedNodes(),
+                landmarks.getVisitedNodes() < beeline.getVisitedNodes());
+
+        // not prepared weighting or disabled approximation falls back to the beeline approximation
+        AlgorithmOptions shortestOpts = AlgorithmOptions.start(opts).weighting(new ShortestWeighting()).build();
+        assertFalse(prepare.isApplicable(shortestOpts));
+        assertTrue(prepare.isApplicable(opts));
+        opts.getHints().put("astar.approximation", "BeelineSimplification");
+        RoutingAlgorithm algo = prepare.createAlgo(graph, opts);
+        algo.calcPath(0, 899);
+        assertEquals(beeline.getVisitedNodes(), algo.getVisitedNodes());
+    }
+
+    @Test
+    public void testStoreAndLoad()
+    {
+        initGrid(10, 10);
+        String location = "./target/tmp/landmarks";
+        Helper.removeDir(new File(location));
+        try
+        {
+            PrepareLandmarks prepare = new PrepareLandmarks(new GHDirectory(location, DAType.RAM_STORE), graph, encoder, weighting, 3);
+            prepare.doWork();
+            prepare.flush();
+            int[] landmarks = prepare.getLandmarkStorage().getLandmarks();
+            double factor = prepare.getLandmarkStorage().getFactor();
+            prepare.close();
+
+            prepare = new PrepareLandmarks(new GHDirectory(location, DAType.RAM_STORE), graph, encoder, weighting, 3);
+            assertTrue(prepare.loadExisting());
+            LandmarkStorage lms = prepare.getLandmarkStorage();
+            assertArrayEquals(landmarks, lms.getLandmarks());
+            assertEquals(factor, lms.getFactor(), 1e-6);
+            assertEquals(0, lms.getFromWeight(0, landmarks[0]));
+            prepare.close();
+
+            try
+            {
+                new PrepareLandmarks(new GHDirectory(location, DAType.RAM_STORE), graph, encoder, weighting, 4).loadExisting();
+                fail("landmark count must match");
+            } catch (IllegalStateException ex)
+            {
+            }
+        } finally
+        {
+            Helper.removeDir(new File(location));
+        }
+    }
+}
@@ -18,6 +18,8 @@
 package com.graphhopper.search;
 
 import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.Helper;
+import java.io.File;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -75,6 +77,80 @@ public class NameIndexTest
         index.close();
     }
 
+    @Test
+    public void testDeduplicate()
+    {
+        NameIndex index = new NameIndex(new RAMDirectory()).setDeduplicate(true).create(1000);
+        long main = index.put("Main Street");
+        long side = index.put("Side Street");
+        assertEquals(main, index.put("Main Street"));
+        assertEquals(side, index.put("Side Street"));
+        for (int i = 0; i < 2000; i++)
+        {
+            assertEquals(main, index.put("Main Street"));
+            assertEquals(side, index.put("Side Street"));
+            assertEquals("street " + i, index.get(index.put("street " + i)));
+        }
+        for (int i = 0; i < 2000; i++)
+        {
+            assertEquals(index.put("street " + i), index.put("street " + i));
+        }
+        assertEquals("Main Street", index.get(main));
+
+        // every distinct name is stored once: its length byte and its bytes
+        long expectedPointer = 1 + 12 + 12;
+        for (int i = 0; i < 2000; i++)
+        {
+            expectedPointer += 1 + ("street " + i).length();
+        }
+        assertEquals(expectedPointer, index.put("new street"));
+
+        NameIndex plain = new NameIndex(new RAMDirectory()).create(1000);
+        plain.put("Main Street");
+        plain.put("Side Street");
+        assertNotEquals(plain.put("Main Street"), plain.put("Side Street"));
+        assertNotEquals(1, plain.put("Main Street"));
+        index.close();
+        plain.close();
+    }
+
+    @Test
+    public void testDeduplicateAfterLoad()
+    {
+        RAMDirectory dir = new RAMDirectory("./target/tmp/names", true);
+        NameIndex index = new NameIndex(dir).create(1000);
+        long main = index.put("Main Street");
+        index.put("Side Street");
+        index.flush();
+        index.close();
+
+        index = new NameIndex(new RAMDirectory("./target/tmp/names", true)).setDeduplicate(true);
+        assertTrue(index.loadExisting());
+        assertEquals(main, index.put("Main Street"));
+        long other = index.put("Other Street");
+        assertTrue(other > main);
+        assertEquals("Other Street", index.get(other));
+        index.close();
+        Helper.removeDir(new File("./target/tmp/names"));
+    }
+
+    @Test
+    public void testCache()
+    {
+        NameIndex index = new NameIndex(new RAMDirectory()).setCacheSize(10).create(1000);
+        long main = index.put("Main Street");
+        long side = index.put("Side Street");
+        String name = index.get(main);
+        assertEquals("Main Street", name);
+        assertSame(name, index.get(main));
+        assertEquals("Side Street", index.get(side));
+        assertEquals("", index.get(0));
+        index.setCacheSize(0);
+        assertNotSame(name, index.get(main));
+        assertEquals(name, index.get(main));
+        index.close();
+    }
+
     @Test
     public void testTooLongNameNoError()
     {
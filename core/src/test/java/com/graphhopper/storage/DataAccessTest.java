@@ -90,6 +90,31 @@ public abstract class DataAccessTest
         da.close();
     }
 
+    @Test
+    public void testFlushParallel()
+    {
+        DataAccess da = createDataAccess(name);
+        ((AbstractDataAccess) da).setFlushThreads(4);
+        ((AbstractDataAccess) da).setFsync(true);
+        // 128 bytes per segment => 40 segments
+        da.create(40 * 128);
+        for (int i = 0; i < 40 * 32; i++)
+        {
+            da.setInt(i * 4, i * 3);
+        }
+        da.flush();
+        da.close();
+
+        da = createDataAccess(name);
+        assertTrue(da.loadExisting());
+        assertEquals(40, da.getSegments());
+        for (int i = 0; i < 40 * 32; i++)
+        {
+            assertEquals(i * 3, da.getInt(i * 4));
+        }
+        da.close();
+    }
+
     @Test
     public void testExceptionIfNoEnsureCapacityWasCalled()
     {
@@ -0,0 +1,150 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.Helper;
+import java.io.File;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class DirectoryWarmupTest
+{
+    private final String location = "./target/tmp/warmup";
+
+    @Before
+    public void setUp()
+    {
+        Helper.removeDir(new File(location));
+    }
+
+    @After
+    public void tearDown()
+    {
+        Helper.removeDir(new File(location));
+    }
+
+    private void createFile( GHDirectory dir, String name, int segments )
+    {
+        DataAccess da = dir.find(name).setSegmentSize(128).create(128 * segments);
+        for (int i = 0; i < segments * 32; i++)
+        {
+            da.setInt(i * 4, i);
+        }
+        da.flush();
+        da.close();
+    }
+
+    @Test
+    public void testLoadAllSegments() throws Exception
+    {
+        GHDirectory dir = new GHDirectory(location, DAType.MMAP);
+        createFile(dir, "names", 2);
+        createFile(dir, "edges", 3);
+        createFile(dir, "nodes", 1);
+        createFile(dir, "shortcuts_car_fastest", 2);
+
+        dir = new GHDirectory(location, DAType.MMAP);
+        for (String name : new String[]
+        {
+            "names", "edges", "nodes", "shortcuts_car_fastest"
+        })
+        {
+            assertTrue(dir.find(name).setSegmentSize(128).loadExisting());
+        }
+
+        DirectoryWarmup warmup = new DirectoryWarmup(dir);
+        // nodes and edges first, names last
+        assertEquals("nodes", warmup.getDataAccessList().get(0).getName());
+        assertEquals("edges", warmup.getDataAccessList().get(1).getName());
+        assertEquals("shortcuts_car_fastest", warmup.getDataAccessList().get(2).getName());
+        assertEquals("names", warmup.getDataAccessList().get(3).getName());
+        assertFalse(warmup.isReady());
+        assertEquals(0, warmup.getProgress(), 1e-6);
+
+        warmup.start(2);
+        assertTrue(warmup.awaitReady(10000));
+        assertTrue(warmup.isReady());
+        assertEquals(1, warmup.getProgress(), 1e-6);
+        warmup.stop();
+        assertEquals(64, dir.find("edges").getInt(64 * 4));
+        for (MMapDataAccess da : warmup.getDataAccessList())
+        {
+            da.close();
+        }
+    }
+
+    @Test
+    public void testFailedSegmentIsNotReady() throws Exception
+    {
+        GHDirectory dir = new GHDirectory(location, DAType.MMAP);
+        createFile(dir, "nodes", 1);
+        createFile(dir, "edges", 2);
+
+        dir = new GHDirectory(location, DAType.MMAP);
+        assertTrue(dir.find("nodes").setSegmentSize(128).loadExisting());
+        assertTrue(dir.find("edges").setSegmentSize(128).loadExisting());
+        DirectoryWarmup warmup = new DirectoryWarmup(dir);
+        // the segments of a closed file cannot be loaded
+        dir.find("edges").close();
+
+        warmup.start(1);
+        assertFalse(warmup.awaitReady(10000));
+        warmup.stop();
+        assertTrue(warmup.isFailed());
+        assertFalse(warmup.isReady());
+        assertEquals(1 / 3f, warmup.getProgress(), 1e-6);
+        dir.find("nodes").close();
+    }
+
+    @Test
+    public void testStopWaitsWhenInterrupted() throws Exception
+    {
+        GHDirectory dir = new GHDirectory(location, DAType.MMAP);
+        createFile(dir, "nodes", 4);
+        dir = new GHDirectory(location, DAType.MMAP);
+        assertTrue(dir.find("nodes").setSegmentSize(128).loadExisting());
+        DirectoryWarmup warmup = dir.warmup(1);
+
+        Thread.currentThread().interrupt();
+        warmup.stop();
+        // the interrupt status is kept
+        assertTrue(Thread.interrupted());
+        for (Thread thread : warmup.getThreads())
+        {
+            assertFalse(thread.isAlive());
+        }
+        dir.find("nodes").close();
+    }
+
+    @Test
+    public void testIgnoreInMemory() throws Exception
+    {
+        GHDirectory dir = new RAMDirectory();
+        dir.find("nodes").create(1000);
+        DirectoryWarmup warmup = dir.warmup(1);
+        assertTrue(warmup.getDataAccessList().isEmpty());
+        assertTrue(warmup.awaitReady(1000));
+        assertEquals(1, warmup.getProgress(), 1e-6);
+        warmup.stop();
+    }
+}
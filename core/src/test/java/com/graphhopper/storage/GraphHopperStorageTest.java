@@ -17,9 +17,12 @@
  */
 package com.graphhopper.storage;
 
+import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.BBox;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import static org.junit.Assert.*;
 import org.junit.Test;
 
@@ -187,6 +190,159 @@ public class GraphHopperStorageTest extends AbstractGraphStorageTester
         graph.close();
     }
 
+    @Test
+    public void testFreeze()
+    {
+        graph = newGraph(new RAMDirectory(defaultGraphLoc, true), false).create(defaultSize);
+        initExampleGraph(graph);
+        graph.edge(3, 3, 10, true);
+        EdgeExplorer explorer = graph.createEdgeExplorer();
+        List<String> expected = new ArrayList<String>();
+        for (int node = 0; node < graph.getNodes(); node++)
+        {
+            expected.add(toAdjacencyString(explorer.setBaseNode(node)));
+        }
+
+        assertFalse(graph.isFrozen());
+        graph.freeze();
+        assertTrue(graph.isFrozen());
+        for (int node = 0; node < graph.getNodes(); node++)
+        {
+            assertEquals(expected.get(node), toAdjacencyString(explorer.setBaseNode(node)));
+        }
+
+        EdgeIterator iter = explorer.setBaseNode(0);
+        assertTrue(iter.next());
+        EdgeIteratorState detached = iter.detach(false);
+        assertEquals(iter.getEdge(), detached.getEdge());
+        assertEquals(iter.getAdjNode(), detached.getAdjNode());
+
+        try
+        {
+            graph.edge(0, 5, 10, true);
+            assertTrue(false);
+        } catch (IllegalStateException ex)
+        {
+        }
+
+        graph.flush();
+        graph.close();
+
+        graph = newGraph(new RAMDirectory(defaultGraphLoc, true), false);
+        assertTrue(graph.loadExisting());
+        assertTrue(graph.isFrozen());
+        explorer = graph.createEdgeExplorer(carOutFilter);
+        assertEquals(GHUtility.asSet(5, 4, 3, 2, 1), GHUtility.getNeighbors(explorer.setBaseNode(0)));
+        explorer = graph.createEdgeExplorer();
+        for (int node = 0; node < graph.getNodes(); node++)
+        {
+            assertEquals(expected.get(node), toAdjacencyString(explorer.setBaseNode(node)));
+        }
+    }
+
+    private static String toAdjacencyString( EdgeIterator iter )
+    {
+        StringBuilder sb = new StringBuilder();
+        while (iter.next())
+        {
+            sb.append(iter.getEdge()).append(':').append(iter.getAdjNode()).append(' ');
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testCompressedGeometry()
+    {
+        PointList pl = new PointList(10, true);
+        pl.add(-33.9, 151.2, 10);
+        pl.add(-33.8991, 151.2005, 12);
+        pl.add(-33.8989, 151.2012, 7.5);
+        pl.add(60.1, -0.5, -4);
+        pl.add(-89.9, 179.9, 4000);
+
+        GraphHopperStorage gs = (GraphHopperStorage) newGraph(new RAMDirectory(defaultGraphLoc, true), true);
+        gs.setCompressedGeometry(true);
+        graph = gs.create(defaultSize);
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, -34, 151, 0);
+        na.setNode(1, -33, 152, 0);
+        graph.edge(0, 1, 100, true).setWayGeometry(pl.clone(false));
+        graph.edge(1, 0, 100, true).setWayGeometry(Helper.createPointList3D(1, 2, 3));
+        graph.edge(0, 1, 100, true);
+
+        // compare with the uncompressed format to ensure the same rounding
+        GraphStorage uncompressed = createGraph(defaultGraphLoc + "2", true);
+        PointList expected = uncompressed.edge(0, 1, 100, true).setWayGeometry(pl.clone(false)).fetchWayGeometry(0);
+        uncompressed.close();
+        assertEquals(expected, graph.getEdgeProps(0, 1).fetchWayGeometry(0));
+        assertEquals(expected.clone(true), graph.getEdgeProps(0, 0).fetchWayGeometry(0));
+
+        graph.flush();
+        graph.close();
+
+        gs = (GraphHopperStorage) newGraph(new RAMDirectory(defaultGraphLoc, true), true);
+        graph = gs;
+        assertTrue(graph.loadExisting());
+        assertTrue(gs.isCompressedGeometry());
+        assertEquals(expected, graph.getEdgeProps(0, 1).fetchWayGeometry(0));
+        assertEquals(expected.clone(true), graph.getEdgeProps(0, 0).fetchWayGeometry(0));
+        assertEquals(Helper.createPointList3D(1, 2, 3), graph.getEdgeProps(1, 0).fetchWayGeometry(0));
+        assertEquals(PointList.EMPTY, graph.getEdgeProps(2, 1).fetchWayGeometry(0));
+    }
+
+    @Test
+    public void testColdEdges()
+    {
+        GraphHopperStorage gs = (GraphHopperStorage) newGraph(new RAMDirectory(defaultGraphLoc, true), false);
+        gs.setColdEdges(true);
+        graph = gs.create(defaultSize);
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 10, 10);
+        na.setNode(1, 11, 11);
+        na.setNode(2, 12, 12);
+        graph.edge(0, 1, 100, true).setName("main street").setWayGeometry(Helper.createPointList(10.5, 10.5));
+        graph.edge(1, 2, 200, false).setName("side street");
+        for (int i = 3; i < defaultSize; i++)
+        {
+            graph.edge(i - 1, i, i, true).setName("street " + i).setWayGeometry(Helper.createPointList(i, i, i + 1, i));
+        }
+
+        GraphHopperStorage hot = (GraphHopperStorage) newGraph(new RAMDirectory(), false);
+        hot.create(defaultSize);
+        assertTrue(gs.edgeEntryBytes + " vs " + hot.edgeEntryBytes, gs.edgeEntryBytes < hot.edgeEntryBytes);
+        hot.close();
+
+        graph.flush();
+        graph.close();
+
+        gs = (GraphHopperStorage) newGraph(new RAMDirectory(defaultGraphLoc, true), false);
+        graph = gs;
+        assertTrue(graph.loadExisting());
+        assertTrue(gs.isColdEdges());
+        EdgeIteratorState edge = graph.getEdgeProps(0, 1);
+        assertEquals("main street", edge.getName());
+        assertEquals(100, edge.getDistance(), 1e-4);
+        assertEquals(Helper.createPointList(10.5, 10.5), edge.fetchWayGeometry(0));
+        edge = graph.getEdgeProps(1, 2);
+        assertEquals("side street", edge.getName());
+        assertEquals(PointList.EMPTY, edge.fetchWayGeometry(0));
+        assertEquals(GHUtility.asSet(1), GHUtility.getNeighbors(graph.createEdgeExplorer(carOutFilter).setBaseNode(0)));
+
+        AllEdgesIterator iter = graph.getAllEdges();
+        int count = 0;
+        while (iter.next())
+        {
+            int adj = iter.getAdjNode();
+            if (adj >= 3)
+            {
+                assertEquals("street " + adj, iter.getName());
+                assertEquals(Helper.createPointList(adj, adj, adj + 1, adj), iter.fetchWayGeometry(0));
+            }
+            count++;
+        }
+        assertEquals(defaultSize - 1, count);
+    }
+
     @Test
     public void testDoThrowExceptionIfDimDoesNotMatch()
     {
@@ -0,0 +1,156 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.routing.util.*;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeSkipExplorer;
+import com.graphhopper.util.EdgeSkipIterState;
+import com.graphhopper.util.EdgeSkipIterator;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.Helper;
+import java.io.File;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class LevelGraphOverlayTest
+{
+    private CarFlagEncoder carEncoder;
+    private FootFlagEncoder footEncoder;
+    private GraphStorage graph;
+
+    @Before
+    public void setUp()
+    {
+        carEncoder = new CarFlagEncoder();
+        footEncoder = new FootFlagEncoder();
+        graph = new GraphBuilder(new EncodingManager(carEncoder, footEncoder)).create();
+        long flags = carEncoder.setProperties(60, true, true) | footEncoder.setProperties(5, true, true);
+        graph.edge(0, 1).setDistance(10).setFlags(flags);
+        graph.edge(1, 2).setDistance(10).setFlags(flags);
+        graph.edge(2, 3).setDistance(10).setFlags(flags);
+    }
+
+    @Test
+    public void testShortcuts()
+    {
+        LevelGraphOverlay overlay = new LevelGraphOverlay("foot_fastest", graph, footEncoder).create(100);
+        assertEquals(4, overlay.getNodes());
+        assertEquals(3, overlay.getAllEdges().getCount());
+
+        EdgeSkipIterState sc = overlay.shortcut(0, 2);
+        sc.setFlags(footEncoder.setAccess(0, true, false));
+        sc.setWeight(20.5);
+        sc.setDistance(20);
+        sc.setSkippedEdges(0, 1);
+        assertEquals(3, sc.getEdge());
+        assertTrue(sc.isShortcut());
+        assertEquals(4, overlay.getAllEdges().getCount());
+
+        // the direction is stored in the access bits of foot
+        EdgeSkipExplorer footOutExplorer = overlay.createEdgeExplorer(new DefaultEdgeFilter(footEncoder, false, true));
+        assertEquals(GHUtility.asSet(1, 2), GHUtility.getNeighbors(footOutExplorer.setBaseNode(0)));
+        assertEquals(GHUtility.asSet(1, 3), GHUtility.getNeighbors(footOutExplorer.setBaseNode(2)));
+        EdgeSkipExplorer footInExplorer = overlay.createEdgeExplorer(new DefaultEdgeFilter(footEncoder, true, false));
+        assertEquals(GHUtility.asSet(0, 1, 3), GHUtility.getNeighbors(footInExplorer.setBaseNode(2)));
+
+        EdgeSkipIterator iter = overlay.createEdgeExplorer().setBaseNode(2);
+        assertTrue(iter.next());
+        assertTrue(iter.isShortcut());
+        assertEquals(0, iter.getAdjNode());
+        assertFalse(footEncoder.isBool(iter.getFlags(), FlagEncoder.K_FORWARD));
+        assertTrue(footEncoder.isBool(iter.getFlags(), FlagEncoder.K_BACKWARD));
+        assertEquals(20.5, iter.getWeight(), 1e-3);
+        assertEquals(20, iter.getDistance(), 1e-3);
+        assertEquals(0, iter.getSkippedEdge1());
+        assertEquals(1, iter.getSkippedEdge2());
+        assertTrue(iter.next());
+        assertFalse(iter.isShortcut());
+        assertEquals(EdgeIterator.NO_EDGE, iter.getSkippedEdge1());
+
+        EdgeSkipIterState edgeState = overlay.getEdgeProps(3, 0);
+        assertEquals(2, edgeState.getBaseNode());
+        assertTrue(footEncoder.isBool(edgeState.getFlags(), FlagEncoder.K_BACKWARD));
+        assertNull(overlay.getEdgeProps(3, 1));
+        assertFalse(overlay.getEdgeProps(1, 2).isShortcut());
+
+        // the base graph does not know the shortcuts
+        assertEquals(3, graph.getAllEdges().getCount());
+        assertEquals(GHUtility.asSet(1, 3), GHUtility.getNeighbors(graph.createEdgeExplorer().setBaseNode(2)));
+    }
+
+    @Test
+    public void testLevels()
+    {
+        LevelGraphOverlay carOverlay = new LevelGraphOverlay("car_fastest", graph, carEncoder).create(100);
+        LevelGraphOverlay footOverlay = new LevelGraphOverlay("foot_fastest", graph, footEncoder).create(100);
+        carOverlay.setLevel(1, 3);
+        footOverlay.setLevel(1, 5);
+        assertEquals(3, carOverlay.getLevel(1));
+        assertEquals(5, footOverlay.getLevel(1));
+        assertEquals(0, carOverlay.getLevel(0));
+
+        carOverlay.shortcut(0, 2);
+        assertEquals(4, carOverlay.getAllEdges().getCount());
+        assertEquals(3, footOverlay.getAllEdges().getCount());
+    }
+
+    @Test
+    public void testLoadNotMatchingGraph()
+    {
+        String location = "./target/tmp/overlay";
+        Helper.removeDir(new File(location));
+        try
+        {
+            GraphStorage g = new GraphHopperStorage(new RAMDirectory(location, true), graph.getEncodingManager(), false).create(100);
+            g.edge(0, 1);
+            LevelGraphOverlay overlay = new LevelGraphOverlay("car_fastest", g, carEncoder).create(100);
+            overlay.setLevel(1, 2);
+            g.flush();
+            overlay.flush();
+            g.close();
+            overlay.close();
+
+            g = new GraphHopperStorage(new RAMDirectory(location, true), graph.getEncodingManager(), false);
+            assertTrue(g.loadExisting());
+            overlay = new LevelGraphOverlay("car_fastest", g, carEncoder);
+            assertTrue(overlay.loadExisting());
+            assertEquals(2, overlay.getLevel(1));
+            g.close();
+            overlay.close();
+
+            g = new GraphHopperStorage(new RAMDirectory(location, true), graph.getEncodingManager(), false);
+            assertTrue(g.loadExisting());
+            g.edge(1, 2);
+            try
+            {
+                new LevelGraphOverlay("car_fastest", g, carEncoder).loadExisting();
+                fail("the graph has more edges than the overlay was created for");
+            } catch (IllegalStateException ex)
+            {
+            }
+        } finally
+        {
+            Helper.removeDir(new File(location));
+        }
+    }
+}
@@ -17,6 +17,9 @@
  */
 package com.graphhopper.storage;
 
+import org.junit.Test;
+import static org.junit.Assert.*;
+
 /**
  *
  * @author Peter Karich
@@ -34,4 +37,28 @@ public class RAMIntDataAccessTest extends DataAccessTest
     {
         // should we implement this?
     }
+
+    @Test
+    public void testLoadParallel()
+    {
+        DataAccess da = createDataAccess(name);
+        // 128 bytes per segment => 40 segments
+        da.create(40 * 128 - 20);
+        for (int i = 0; i < 40 * 32 - 5; i++)
+        {
+            da.setInt(i * 4, i * 7);
+        }
+        da.flush();
+        da.close();
+
+        DataAccess loaded = createDataAccess(name);
+        ((AbstractDataAccess) loaded).setLoadThreads(4);
+        assertTrue(loaded.loadExisting());
+        assertEquals(40, loaded.getSegments());
+        for (int i = 0; i < 40 * 32 - 5; i++)
+        {
+            assertEquals(i * 7, loaded.getInt(i * 4));
+        }
+        loaded.close();
+    }
 }
@@ -62,4 +62,25 @@ public class VLongStorageTest
         assertEquals(7L, store.readVLong());
         assertEquals(777666555L, store.readVLong());
     }
+
+    @Test
+    public void testSignedVLong()
+    {
+        VLongStorage store = new VLongStorage();
+        store.writeSignedVLong(0);
+        store.writeSignedVLong(-1);
+        store.writeSignedVLong(63);
+        store.writeSignedVLong(-64);
+        assertEquals(4, store.getPosition());
+        store.writeSignedVLong(-3600000000L);
+        store.writeSignedVLong(Integer.MAX_VALUE);
+
+        store.seek(0);
+        assertEquals(0L, store.readSignedVLong());
+        assertEquals(-1L, store.readSignedVLong());
+        assertEquals(63L, store.readSignedVLong());
+        assertEquals(-64L, store.readSignedVLong());
+        assertEquals(-3600000000L, store.readSignedVLong());
+        assertEquals(Integer.MAX_VALUE, store.readSignedVLong());
+    }
 }
@@ -0,0 +1,125 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage.index;
+
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.RAMDirectory;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Runs the tests of LocationIndexTree with an index which is bulk loaded in several runs.
+ * <p/>
+ * @author Peter Karich
+ */
+public class LocationIndexTreeBulkLoadTest extends LocationIndexTreeTest
+{
+    @Override
+    public LocationIndexTree internalCreateIndex( Graph g, int minMeter )
+    {
+        Directory dir = new RAMDirectory(location);
+        LocationIndexTree tmpIDX = new LocationIndexTree(g, dir).setBulkLoadRunSize(7);
+        tmpIDX.setResolution(minMeter).prepareIndex();
+        return tmpIDX;
+    }
+
+    Graph createRandomGraph()
+    {
+        Graph graph = createGraph(new RAMDirectory(), new EncodingManager("CAR"), false);
+        NodeAccess na = graph.getNodeAccess();
+        Random rand = new Random(0);
+        for (int i = 0; i < 1000; i++)
+        {
+            na.setNode(i, 49 + rand.nextDouble(), 11 + rand.nextDouble());
+        }
+        for (int i = 0; i < 3000; i++)
+        {
+            graph.edge(rand.nextInt(1000), rand.nextInt(1000), 1000, true);
+        }
+        return graph;
+    }
+
+    @Test
+    public void testSameAsInMemIndex()
+    {
+        Graph graph = createRandomGraph();
+        LocationIndexTree inMem = new LocationIndexTree(graph, new RAMDirectory());
+        inMem.setResolution(2000);
+        inMem.prepareIndex();
+        for (int runSize : new int[]
+        {
+            100, 1000000
+        })
+        {
+            Directory dir = new RAMDirectory();
+            LocationIndexTree bulk = new LocationIndexTree(graph, dir).setBulkLoadRunSize(runSize);
+            bulk.setResolution(2000);
+            bulk.prepareIndex();
+            assertEquals(inMem.dataAccess.getCapacity(), bulk.dataAccess.getCapacity());
+            assertEquals(inMem.getEntries(), bulk.getEntries());
+            assertEqualInts(inMem.dataAccess, bulk.dataAccess);
+            // the temporary runs are removed
+            assertEquals(0, dir.find("locationIndex_runs").getCapacity());
+        }
+    }
+
+    @Test
+    public void testRunsAreMemoryMappedForStoringDirectory()
+    {
+        Graph graph = createRandomGraph();
+        LocationIndexTree inMem = new LocationIndexTree(graph, new RAMDirectory());
+        inMem.setResolution(2000);
+        inMem.prepareIndex();
+
+        final List<DAType> runTypes = new ArrayList<DAType>();
+        Directory dir = new RAMDirectory(location, true)
+        {
+            @Override
+            public DataAccess find( String name, DAType type )
+            {
+                if (name.equals("locationIndex_runs"))
+                    runTypes.add(type);
+                return super.find(name, type);
+            }
+        };
+        LocationIndexTree bulk = new LocationIndexTree(graph, dir).setBulkLoadRunSize(100);
+        bulk.setResolution(2000);
+        bulk.prepareIndex();
+        assertEquals(Arrays.asList(DAType.MMAP), runTypes);
+        assertEqualInts(inMem.dataAccess, bulk.dataAccess);
+        assertFalse(new File(location + "locationIndex_runs").exists());
+    }
+
+    private void assertEqualInts( DataAccess expected, DataAccess da )
+    {
+        for (long pointer = 0; pointer < expected.getCapacity(); pointer += 4)
+        {
+            assertEquals("pointer " + pointer, expected.getInt(pointer), da.getInt(pointer));
+        }
+    }
+}
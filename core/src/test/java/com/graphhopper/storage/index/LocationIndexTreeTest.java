@@ -17,6 +17,7 @@
  */
 package com.graphhopper.storage.index;
 
+import com.graphhopper.routing.util.DefaultEdgeFilter;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.storage.Directory;
@@ -24,9 +25,13 @@ import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.NodeAccess;
 import com.graphhopper.storage.RAMDirectory;
 import com.graphhopper.util.*;
+import com.graphhopper.util.shapes.BBox;
 import com.graphhopper.util.shapes.GHPoint;
 import gnu.trove.set.hash.TIntHashSet;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -398,6 +403,78 @@ public class LocationIndexTreeTest extends AbstractLocationIndexTester
         return graph;
     }
 
+    @Test
+    public void testFindClosestBatch()
+    {
+        Graph graph = createSampleGraph(encodingManager);
+        LocationIndexTree index = internalCreateIndex(graph, 50000);
+        BBox bounds = graph.getBounds();
+        Random rand = new Random(1);
+        List<GHPoint> points = new ArrayList<GHPoint>();
+        for (int i = 0; i < 100; i++)
+        {
+            points.add(new GHPoint(bounds.minLat + rand.nextDouble() * (bounds.maxLat - bounds.minLat),
+                    bounds.minLon + rand.nextDouble() * (bounds.maxLon - bounds.minLon)));
+        }
+        // repeated points
+        points.add(points.get(3));
+        points.add(0, points.get(50));
+
+        List<QueryResult> results = index.findClosest(points, EdgeFilter.ALL_EDGES);
+        assertEquals(points.size(), results.size());
+        for (int i = 0; i < points.size(); i++)
+        {
+            GHPoint point = points.get(i);
+            QueryResult expected = index.findClosest(point.lat, point.lon, EdgeFilter.ALL_EDGES);
+            QueryResult res = results.get(i);
+            assertEquals(point, res.getQueryPoint());
+            assertEquals(expected.getClosestNode(), res.getClosestNode());
+            assertEquals(expected.getClosestEdge().getEdge(), res.getClosestEdge().getEdge());
+            assertEquals(expected.getWayIndex(), res.getWayIndex());
+            assertEquals(expected.getSnappedPoint().lat, res.getSnappedPoint().lat, 1e-6);
+            assertEquals(expected.getSnappedPoint().lon, res.getSnappedPoint().lon, 1e-6);
+            assertEquals(expected.getQueryDistance(), res.getQueryDistance(), 1e-1);
+        }
+        // the repeated points get their own result
+        assertNotSame(results.get(0), results.get(51));
+    }
+
+    @Test
+    public void testSnapCache()
+    {
+        Graph graph = createTestGraph();
+        LocationIndexTree index = internalCreateIndex(graph, 500000);
+        SnapCache cache = new SnapCache(2, 1);
+        index.setSnapCache(cache);
+
+        QueryResult res = index.findClosest(-0.2, 0.3, EdgeFilter.ALL_EDGES);
+        assertEquals(new GHPoint(-0.441624, 0.317259), res.getSnappedPoint());
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        // the same cell
+        QueryResult cached = index.findClosest(-0.2000001, 0.3000001, EdgeFilter.ALL_EDGES);
+        assertEquals(1, cache.getHits());
+        assertNotSame(res, cached);
+        assertEquals(new GHPoint(-0.2000001, 0.3000001), cached.getQueryPoint());
+        assertEquals(res.getClosestEdge().getEdge(), cached.getClosestEdge().getEdge());
+        assertEquals(res.getSnappedPoint().lat, cached.getSnappedPoint().lat, 1e-6);
+        assertEquals(res.getQueryDistance(), cached.getQueryDistance(), 1e-1);
+
+        // a different edge filter does not share the result
+        EdgeFilter carFilter = new DefaultEdgeFilter(encodingManager.getEncoder("CAR"));
+        index.findClosest(-0.2, 0.3, carFilter);
+        assertEquals(2, cache.getMisses());
+        index.findClosest(-0.2, 0.3, new DefaultEdgeFilter(encodingManager.getEncoder("CAR")));
+        assertEquals(2, cache.getHits());
+
+        // evict the least recently used entry
+        assertEquals(new GHPoint(-0.4, 0.9), index.findClosest(-0.4, 0.9, EdgeFilter.ALL_EDGES).getSnappedPoint());
+        assertEquals(2, cache.getSize());
+        index.findClosest(-0.2, 0.3, EdgeFilter.ALL_EDGES);
+        assertEquals(4, cache.getMisses());
+    }
+
     @Test
     public void testRMin()
     {
@@ -18,10 +18,13 @@
 package com.graphhopper.util;
 
 import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.GHDirectory;
 import com.graphhopper.storage.GraphBuilder;
 import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphHopperStorage;
 import com.graphhopper.storage.LevelGraph;
 import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.RAMDirectory;
 import static org.junit.Assert.*;
 import org.junit.Test;
 
@@ -89,6 +92,89 @@ public class GHUtilityTest
         assertEquals(4.6, na.getLatitude(3), 1e-4); // 8        
     }
 
+    @Test
+    public void testSortHilbert()
+    {
+        Graph g = initUnsorted(createGraph());
+        Graph newG = GHUtility.sortHilbert(g, createGraph());
+        assertEquals(g.getNodes(), newG.getNodes());
+        assertEquals(g.getAllEdges().getCount(), newG.getAllEdges().getCount());
+        NodeAccess na = newG.getNodeAccess();
+        // starts in the south west and ends in the south east corner
+        assertEquals(0, na.getLatitude(0), 1e-4);
+        assertEquals(2.3, na.getLatitude(1), 1e-4);
+        assertEquals(2.5, na.getLatitude(8), 1e-4);
+        assertEquals(4.5, na.getLongitude(8), 1e-4);
+        assertEquals(3, GHUtility.count(newG.createEdgeExplorer().setBaseNode(8)));
+    }
+
+    @Test
+    public void testSortKeepsStorageSettings()
+    {
+        RAMDirectory dir = new RAMDirectory();
+        dir.setFlushThreads(2).setLoadThreads(3).setFsync(true);
+        GraphHopperStorage g = new GraphHopperStorage(dir, encodingManager, false);
+        g.setCompressedGeometry(true).setColdEdges(true).setDeduplicateNames(true).setNameCacheSize(100);
+        g.create(100);
+        initUnsorted(g);
+        EdgeIteratorState edge = GHUtility.getEdge(g, 8, 2);
+        edge.setName("main street");
+        edge.setWayGeometry(Helper.createPointList(4.55, 4.25, 4.52, 4.4));
+        GHUtility.getEdge(g, 1, 2).setName("main street");
+
+        GraphHopperStorage newG = (GraphHopperStorage) GHUtility.newStorage(g);
+        assertTrue(newG.isCompressedGeometry());
+        assertTrue(newG.isColdEdges());
+        assertTrue(newG.isDeduplicateNames());
+        assertEquals(100, newG.getNameCacheSize());
+        GHDirectory newDir = (GHDirectory) newG.getDirectory();
+        assertEquals(3, newDir.getLoadThreads());
+        assertEquals(2, newDir.getFlushThreads());
+        assertTrue(newDir.isFsync());
+
+        GHUtility.sortHilbert(g, newG);
+        edge = GHUtility.getEdge(newG, findNode(newG, 4.6, 4), findNode(newG, 4.5, 4.5));
+        assertEquals("main street", edge.getName());
+        assertEquals(Helper.createPointList(4.55, 4.25, 4.52, 4.4), edge.fetchWayGeometry(0));
+        assertEquals(g.getAllEdges().getCount(), newG.getAllEdges().getCount());
+    }
+
+    int findNode( Graph g, double lat, double lon )
+    {
+        NodeAccess na = g.getNodeAccess();
+        for (int node = 0; node < g.getNodes(); node++)
+        {
+            if (Math.abs(na.getLatitude(node) - lat) < 1e-4 && Math.abs(na.getLongitude(node) - lon) < 1e-4)
+                return node;
+        }
+        throw new IllegalArgumentException("no node at " + lat + "," + lon);
+    }
+
+    @Test
+    public void testHilbertIndex()
+    {
+        assertEquals(0, GHUtility.hilbertIndex(0, 0, 1));
+        assertEquals(1, GHUtility.hilbertIndex(0, 1, 1));
+        assertEquals(2, GHUtility.hilbertIndex(1, 1, 1));
+        assertEquals(3, GHUtility.hilbertIndex(1, 0, 1));
+
+        // consecutive indices are neighboring cells
+        int[] xs = new int[64], ys = new int[64];
+        for (int x = 0; x < 8; x++)
+        {
+            for (int y = 0; y < 8; y++)
+            {
+                int index = (int) GHUtility.hilbertIndex(x, y, 3);
+                xs[index] = x;
+                ys[index] = y;
+            }
+        }
+        for (int i = 1; i < 64; i++)
+        {
+            assertEquals(1, Math.abs(xs[i] - xs[i - 1]) + Math.abs(ys[i] - ys[i - 1]));
+        }
+    }
+
     @Test
     public void testSortDirected()
     {
@@ -403,6 +403,26 @@ public class InstructionListTest
         verifyGPX(instructions.createGPX());
     }
 
+    @Test
+    public void testWriteGPX() throws Exception
+    {
+        InstructionList instructions = new InstructionList(usTR);
+        PointList pl = new PointList();
+        pl.add(49.942576, 11.580384);
+        pl.add(49.941858, 11.582422);
+        instructions.add(new Instruction(Instruction.CONTINUE_ON_STREET, "Maxi's Weg", InstructionAnnotation.EMPTY, pl).
+                setDistance(240).setTime(15000));
+        instructions.add(new FinishInstruction(49.941029, 11.584514, 0));
+
+        StringWriter writer = new StringWriter();
+        instructions.writeGPX(writer, "test", 0, "GMT", false);
+        String gpxStr = writer.toString();
+        assertEquals(instructions.createGPX("test", 0, "GMT"), gpxStr);
+        // the apostrophe of the street name must not be replaced by a quote
+        assertTrue(gpxStr, gpxStr.contains("<desc>continue onto Maxi's Weg</desc>"));
+        verifyGPX(gpxStr);
+    }
+
     private long flagsForSpeed( EncodingManager encodingManager, int speedKmPerHour )
     {
         OSMWay way = new OSMWay(1);
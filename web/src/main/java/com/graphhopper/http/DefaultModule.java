@@ -77,6 +77,18 @@ public class DefaultModule extends AbstractModule
                 logger.info("jsonp disabled");
 
             bind(Boolean.class).annotatedWith(Names.named("jsonpAllowed")).toInstance(jsonpAllowed);
+            boolean streamResponse = args.getBool("web.streamResponse", false);
+            bind(Boolean.class).annotatedWith(Names.named("streamResponse")).toInstance(streamResponse);
+            int matrixMaxSize = args.getInt("web.matrix.maxSize", 10000);
+            bind(Integer.class).annotatedWith(Names.named("matrixMaxSize")).toInstance(matrixMaxSize);
+
+            int routingThreads = args.getInt("web.routing.threads", 0);
+            int routingQueueSize = args.getInt("web.routing.queueSize", 100);
+            if (routingThreads > 0)
+                logger.info("routing executor with " + routingThreads + " threads, queue size "
+                        + routingQueueSize + " and timeout " + timeout + "ms");
+
+            bind(RoutingExecutor.class).toInstance(new RoutingExecutor(routingThreads, routingQueueSize, timeout));
         } catch (Exception ex)
         {
             throw new IllegalStateException("Couldn't load graph", ex);
@@ -17,9 +17,16 @@
  */
 package com.graphhopper.http;
 
+import com.graphhopper.routing.util.WeightingMap;
+import com.graphhopper.util.StopWatch;
 import java.io.IOException;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.inject.Named;
 import javax.inject.Inject;
+import javax.servlet.AsyncContext;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -80,6 +87,109 @@ public class GHBaseServlet extends HttpServlet
         }
     }
 
+    void handleError( HttpServletRequest req, HttpServletResponse res, Exception ex )
+    {
+        if (ex instanceof IllegalArgumentException)
+        {
+            writeError(res, SC_BAD_REQUEST, ex.getMessage());
+        } else
+        {
+            logger.error("Error while executing request: " + req.getQueryString(), ex);
+            writeError(res, SC_INTERNAL_SERVER_ERROR, "Problem occured:" + ex.getMessage());
+        }
+    }
+
+    /**
+     * The work of a request which is calculated asynchronously, see executeAsync.
+     */
+    protected interface AsyncCalculation<T>
+    {
+        /**
+         * Calculates the result in a thread of the routing executor.
+         */
+        T calc() throws Exception;
+
+        /**
+         * Writes the result, only called if the deadline did not pass before.
+         */
+        void write( T result, float took ) throws Exception;
+    }
+
+    /**
+     * Calculates the result in the thread pool of the routing executor and releases the request
+     * thread of the servlet container. If the queue of the executor is full or the deadline passes
+     * before the result was calculated a 503 is returned.
+     * <p/>
+     * @param onDeadline is called when the deadline passed, e.g. to cancel the budget of the
+     * calculation. Can be null.
+     */
+    protected <T> void executeAsync( final RoutingExecutor routingExecutor, final HttpServletRequest req,
+            final HttpServletResponse res, final AsyncCalculation<T> calculation, final Runnable onDeadline )
+    {
+        // use the wrapped request and response e.g. to keep gzip working
+        final AsyncContext ctx = req.startAsync(req, res);
+        // the deadline is handled by the routing executor
+        ctx.setTimeout(0);
+        final AtomicBoolean done = new AtomicBoolean(false);
+        try
+        {
+            routingExecutor.submit(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    StopWatch sw = new StopWatch().start();
+                    T result = null;
+                    Exception error = null;
+                    try
+                    {
+                        result = calculation.calc();
+                    } catch (Exception ex)
+                    {
+                        error = ex;
+                    }
+                    float took = sw.stop().getSeconds();
+                    // the deadline passed and already wrote the response
+                    if (!done.compareAndSet(false, true))
+                        return;
+
+                    try
+                    {
+                        if (error != null)
+                            throw error;
+
+                        calculation.write(result, took);
+                    } catch (Exception ex)
+                    {
+                        handleError(req, res, ex);
+                    } finally
+                    {
+                        ctx.complete();
+                    }
+                }
+            }, done, new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    if (onDeadline != null)
+                        onDeadline.run();
+
+                    logger.warn("Request timed out after " + routingExecutor.getTimeoutMillis() + "ms: " + req.getQueryString());
+                    writeError(res, SC_SERVICE_UNAVAILABLE, "Request timed out");
+                    ctx.complete();
+                }
+            });
+        } catch (RejectedExecutionException ex)
+        {
+            done.set(true);
+            logger.warn("Request rejected as too many requests are queued: " + req.getQueryString());
+            res.setHeader("Retry-After", "1");
+            writeError(res, SC_SERVICE_UNAVAILABLE, "Too many requests, try again later");
+            ctx.complete();
+        }
+    }
+
     void returnError( HttpServletResponse res, String errorMessage ) throws IOException
     {
         res.sendError(SC_BAD_REQUEST, errorMessage);
@@ -137,6 +247,18 @@ public class GHBaseServlet extends HttpServlet
         }
     }
 
+    /**
+     * Copies every parameter with a single value into the hints, e.g. for the weighting.
+     */
+    protected void initHints( WeightingMap m, Map<String, String[]> parameterMap )
+    {
+        for (Entry<String, String[]> e : parameterMap.entrySet())
+        {
+            if (e.getValue().length == 1)
+                m.put(e.getKey(), e.getValue()[0]);
+        }
+    }
+
     public void writeError( HttpServletResponse res, int code, String str )
     {
         try
@@ -78,9 +78,13 @@ public class GHServer
         ServletContextHandler servHandler = new ServletContextHandler(ServletContextHandler.NO_SECURITY | ServletContextHandler.NO_SESSIONS);
         servHandler.setContextPath("/");
 
-        servHandler.addServlet(new ServletHolder(new InvalidRequestServlet()), "/*");
+        ServletHolder invalidRequestHolder = new ServletHolder(new InvalidRequestServlet());
+        // necessary for the asynchronous route requests, see web.routing.threads
+        invalidRequestHolder.setAsyncSupported(true);
+        servHandler.addServlet(invalidRequestHolder, "/*");
 
         FilterHolder guiceFilter = new FilterHolder(injector.getInstance(GuiceFilter.class));
+        guiceFilter.setAsyncSupported(true);
         servHandler.addFilter(guiceFilter, "/*", EnumSet.allOf(DispatcherType.class));
 
         SelectChannelConnector connector0 = new SelectChannelConnector();
@@ -64,5 +64,8 @@ public class GHServletModule extends ServletModule
 
         serve("/route*").with(GraphHopperServlet.class);
         bind(GraphHopperServlet.class).in(Singleton.class);
+
+        serve("/matrix*").with(MatrixServlet.class);
+        bind(MatrixServlet.class).in(Singleton.class);
     }
 }
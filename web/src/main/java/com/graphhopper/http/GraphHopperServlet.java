@@ -21,15 +21,17 @@ import com.graphhopper.GHRequest;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.GHResponse;
 import com.graphhopper.routing.util.FlagEncoder;
-import com.graphhopper.routing.util.WeightingMap;
 import com.graphhopper.util.*;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.shapes.GHPoint;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.util.*;
-import java.util.Map.Entry;
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -55,24 +57,60 @@ public class GraphHopperServlet extends GHBaseServlet
 {
     @Inject
     private GraphHopper hopper;
+    @Inject
+    @Named("streamResponse")
+    private boolean streamResponse;
+    @Inject
+    private RoutingExecutor routingExecutor;
 
     @Override
     public void doGet( HttpServletRequest req, HttpServletResponse res ) throws ServletException, IOException
     {
+        if (routingExecutor.isEnabled() && req.isAsyncSupported())
+        {
+            writePathAsync(req, res);
+            return;
+        }
+
         try
         {
             writePath(req, res);
-        } catch (IllegalArgumentException ex)
-        {
-            writeError(res, SC_BAD_REQUEST, ex.getMessage());
         } catch (Exception ex)
         {
-            logger.error("Error while executing request: " + req.getQueryString(), ex);
-            writeError(res, SC_INTERNAL_SERVER_ERROR, "Problem occured:" + ex.getMessage());
+            handleError(req, res, ex);
         }
     }
 
+    /**
+     * Calculates the route in the thread pool of the routing executor, see executeAsync.
+     */
+    void writePathAsync( final HttpServletRequest req, final HttpServletResponse res )
+    {
+        executeAsync(routingExecutor, req, res, new AsyncCalculation<GHResponse>()
+        {
+            @Override
+            public GHResponse calc() throws Exception
+            {
+                return calcPath(req);
+            }
+
+            @Override
+            public void write( GHResponse ghRsp, float took ) throws Exception
+            {
+                writePath(req, res, ghRsp, took);
+            }
+        }, null);
+    }
+
     void writePath( HttpServletRequest req, HttpServletResponse res ) throws Exception
+    {
+        StopWatch sw = new StopWatch().start();
+        GHResponse ghRsp = calcPath(req);
+        float took = sw.stop().getSeconds();
+        writePath(req, res, ghRsp, took);
+    }
+
+    GHResponse calcPath( HttpServletRequest req ) throws Exception
     {
         List<GHPoint> infoPoints = getPoints(req);
 
@@ -87,7 +125,6 @@ public class GraphHopperServlet extends GHBaseServlet
         String algoStr = getParam(req, "algorithm", "");
         String localeStr = getParam(req, "locale", "en");
 
-        StopWatch sw = new StopWatch().start();
         GHResponse ghRsp;
         if (!hopper.getEncodingManager().supports(vehicleStr))
         {
@@ -100,7 +137,7 @@ public class GraphHopperServlet extends GHBaseServlet
             FlagEncoder algoVehicle = hopper.getEncodingManager().getEncoder(vehicleStr);
             GHRequest request = new GHRequest(infoPoints);
 
-            initHints(request, req.getParameterMap());
+            initHints(request.getHints(), req.getParameterMap());
             request.setVehicle(algoVehicle.toString()).
                     setWeighting(weighting).
                     setAlgorithm(algoStr).
@@ -112,8 +149,16 @@ public class GraphHopperServlet extends GHBaseServlet
 
             ghRsp = hopper.route(request);
         }
+        return ghRsp;
+    }
 
-        float took = sw.stop().getSeconds();
+    void writePath( HttpServletRequest req, HttpServletResponse res, GHResponse ghRsp, float took ) throws Exception
+    {
+        List<GHPoint> infoPoints = getPoints(req);
+        boolean writeGPX = "gpx".equalsIgnoreCase(getParam(req, "type", "json"));
+        String vehicleStr = getParam(req, "vehicle", "CAR").toUpperCase();
+        String weighting = getParam(req, "weighting", "fastest");
+        String algoStr = getParam(req, "algorithm", "");
         String infoStr = req.getRemoteAddr() + " " + req.getLocale() + " " + req.getHeader("User-Agent");
         String logStr = req.getQueryString() + " " + infoStr + " " + infoPoints + ", took:"
                 + took + ", " + algoStr + ", " + weighting + ", " + vehicleStr;
@@ -126,19 +171,70 @@ public class GraphHopperServlet extends GHBaseServlet
                     + "min, points:" + ghRsp.getPoints().getSize() + ", debug - " + ghRsp.getDebugInfo());
 
         if (writeGPX)
-            writeResponse(res, createGPXString(req, res, ghRsp));
-        else
+        {
+            if (streamResponse && !ghRsp.hasErrors())
+                writeGPXStream(req, res, ghRsp);
+            else
+                writeResponse(res, createGPXString(req, res, ghRsp));
+        } else if (streamResponse && !ghRsp.hasErrors() && "json".equals(getParam(req, "type", "json"))
+                && !getBooleanParam(req, "debug", false) && !getBooleanParam(req, "pretty", false))
+        {
+            writeJsonStream(req, res, ghRsp, took);
+        } else
             writeJson(req, res, new JSONObject(createJson(req, ghRsp, took)));
     }
 
-    protected String createGPXString( HttpServletRequest req, HttpServletResponse res, GHResponse rsp )
-            throws Exception
+    /**
+     * Writes the JSON directly into the response stream instead of creating the intermediate maps
+     * and string via createJson.
+     */
+    protected void writeJsonStream( HttpServletRequest req, HttpServletResponse res, GHResponse rsp, float took )
+            throws IOException
+    {
+        res.setCharacterEncoding("UTF-8");
+        res.setContentType("application/json");
+        res.setStatus(SC_OK);
+        Writer writer = createStreamWriter(res);
+        new StreamingResponseWriter(writer).
+                setCalcPoints(getBooleanParam(req, "calc_points", true)).
+                setPointsEncoded(getBooleanParam(req, "points_encoded", true)).
+                setIncludeElevation(getBooleanParam(req, "elevation", false)).
+                setEnableInstructions(getBooleanParam(req, "instructions", true)).
+                writeJson(rsp, took, hopper.getGraph().getBounds());
+        writer.flush();
+    }
+
+    protected void writeGPXStream( HttpServletRequest req, HttpServletResponse res, GHResponse rsp )
+            throws IOException
     {
         boolean includeElevation = getBooleanParam(req, "elevation", false);
+        String trackName = initGPXResponse(req, res);
+        String timeZone = getParam(req, "timezone", "GMT");
+        long time = getLongParam(req, "millis", System.currentTimeMillis());
+        res.setStatus(SC_OK);
+        Writer writer = createStreamWriter(res);
+        rsp.getInstructions().writeGPX(writer, trackName, time, timeZone, includeElevation);
+        writer.flush();
+    }
+
+    private Writer createStreamWriter( HttpServletResponse res ) throws IOException
+    {
+        return new BufferedWriter(new OutputStreamWriter(res.getOutputStream(), "UTF-8"), 8192);
+    }
+
+    private String initGPXResponse( HttpServletRequest req, HttpServletResponse res )
+    {
         res.setCharacterEncoding("UTF-8");
         res.setContentType("application/xml");
-        String trackName = getParam(req, "track", "GraphHopper Track");
         res.setHeader("Content-Disposition", "attachment;filename=" + "GraphHopper.gpx");
+        return getParam(req, "track", "GraphHopper Track");
+    }
+
+    protected String createGPXString( HttpServletRequest req, HttpServletResponse res, GHResponse rsp )
+            throws Exception
+    {
+        boolean includeElevation = getBooleanParam(req, "elevation", false);
+        String trackName = initGPXResponse(req, res);
         String timeZone = getParam(req, "timezone", "GMT");
         long time = getLongParam(req, "millis", System.currentTimeMillis());
         if (rsp.hasErrors())
@@ -256,14 +352,4 @@ public class GraphHopperServlet extends GHBaseServlet
 
         return infoPoints;
     }
-
-    private void initHints( GHRequest request, Map<String, String[]> parameterMap )
-    {
-        WeightingMap m = request.getHints();
-        for (Entry<String, String[]> e : parameterMap.entrySet())
-        {
-            if (e.getValue().length == 1)
-                m.put(e.getKey(), e.getValue()[0]);
-        }
-    }
 }
@@ -18,6 +18,8 @@
 package com.graphhopper.http;
 
 import com.graphhopper.GraphHopper;
+import com.graphhopper.RouteCache;
+import com.graphhopper.storage.DirectoryWarmup;
 import com.graphhopper.storage.StorableProperties;
 import com.graphhopper.util.Constants;
 import com.graphhopper.util.Helper;
@@ -31,6 +33,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
 import static javax.servlet.http.HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+import static javax.servlet.http.HttpServletResponse.SC_SERVICE_UNAVAILABLE;
 import org.json.JSONObject;
 
 /**
@@ -40,13 +43,18 @@ public class InfoServlet extends GHBaseServlet
 {
     @Inject
     private GraphHopper hopper;
+    @Inject
+    private RoutingExecutor routingExecutor;
 
     @Override
     public void doGet( HttpServletRequest req, HttpServletResponse res ) throws ServletException, IOException
     {
         try
         {
-            writeInfos(req, res);
+            if (req.getRequestURI().endsWith("/ready"))
+                writeReady(req, res);
+            else
+                writeInfos(req, res);
         } catch (IllegalArgumentException ex)
         {
             writeError(res, SC_BAD_REQUEST, ex.getMessage());
@@ -57,6 +65,20 @@ public class InfoServlet extends GHBaseServlet
         }
     }
 
+    /**
+     * Health check for load balancers: responds with 503 until the graph is loaded and warmed up.
+     */
+    void writeReady( HttpServletRequest req, HttpServletResponse res ) throws Exception
+    {
+        boolean ready = hopper.isReady();
+        if (!ready)
+            res.setStatus(SC_SERVICE_UNAVAILABLE);
+
+        JSONObject json = new JSONObject();
+        json.put("ready", ready);
+        writeJson(req, res, json);
+    }
+
     void writeInfos( HttpServletRequest req, HttpServletResponse res ) throws Exception
     {
         BBox bb = hopper.getGraph().getBounds();
@@ -89,6 +111,39 @@ public class InfoServlet extends GHBaseServlet
         if (!Helper.isEmpty(props.get("prepare.date")))
             json.put("prepare_date", props.get("prepare.date"));
 
+        json.put("ready", hopper.isReady());
+        DirectoryWarmup warmup = hopper.getWarmup();
+        if (warmup != null)
+        {
+            JSONObject warmupJson = new JSONObject();
+            warmupJson.put("ready", warmup.isReady());
+            warmupJson.put("progress", warmup.getProgress());
+            warmupJson.put("failed", warmup.isFailed());
+            json.put("warmup", warmupJson);
+        }
+
+        RouteCache routeCache = hopper.getRouteCache();
+        if (routeCache != null)
+        {
+            JSONObject cacheJson = new JSONObject();
+            cacheJson.put("size", routeCache.getSize());
+            cacheJson.put("max_size", routeCache.getMaxSize());
+            cacheJson.put("hits", routeCache.getHits());
+            cacheJson.put("misses", routeCache.getMisses());
+            cacheJson.put("evictions", routeCache.getEvictions());
+            json.put("route_cache", cacheJson);
+        }
+
+        if (routingExecutor.isEnabled())
+        {
+            JSONObject routingJson = new JSONObject();
+            routingJson.put("queue_size", routingExecutor.getQueueSize());
+            routingJson.put("active", routingExecutor.getActiveCount());
+            routingJson.put("rejected", routingExecutor.getRejected());
+            routingJson.put("timed_out", routingExecutor.getTimedOut());
+            json.put("routing", routingJson);
+        }
+
         writeJson(req, res, json);
     }
 }
@@ -0,0 +1,240 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHMatrixRequest;
+import com.graphhopper.GHMatrixResponse;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.RoutingBudget;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.GHPoint;
+import java.io.IOException;
+import java.util.*;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.json.JSONObject;
+
+/**
+ * Servlet to calculate the distances and times between many locations with one request. Use
+ * from_point and to_point to specify origins and destinations or point for the matrix between
+ * all specified locations. Not reachable entries are returned as null. Like routes the matrix is
+ * calculated in the routing executor if enabled, then its budget ends with the deadline.
+ * <p/>
+ * @author Peter Karich
+ */
+public class MatrixServlet extends GHBaseServlet
+{
+    @Inject
+    private GraphHopper hopper;
+    @Inject
+    @Named("matrixMaxSize")
+    private int maxSize;
+    @Inject
+    private RoutingExecutor routingExecutor;
+
+    @Override
+    public void doGet( HttpServletRequest req, HttpServletResponse res ) throws ServletException, IOException
+    {
+        try
+        {
+            GHMatrixRequest request = createRequest(req);
+            if (routingExecutor.isEnabled() && req.isAsyncSupported())
+                writeMatrixAsync(req, res, request);
+            else
+                writeMatrix(req, res, request);
+        } catch (Exception ex)
+        {
+            handleError(req, res, ex);
+        }
+    }
+
+    /**
+     * Calculates the matrix in the thread pool of the routing executor, see executeAsync. The
+     * budget of the request is cancelled if the deadline passes.
+     */
+    void writeMatrixAsync( final HttpServletRequest req, final HttpServletResponse res, final GHMatrixRequest request )
+    {
+        final RoutingBudget budget = createBudget(request);
+        request.setBudget(budget);
+        executeAsync(routingExecutor, req, res, new AsyncCalculation<GHMatrixResponse>()
+        {
+            @Override
+            public GHMatrixResponse calc() throws Exception
+            {
+                return calcMatrix(request);
+            }
+
+            @Override
+            public void write( GHMatrixResponse ghRsp, float took ) throws Exception
+            {
+                writeMatrix(req, res, request, ghRsp, took);
+            }
+        }, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                budget.cancel();
+            }
+        });
+    }
+
+    /**
+     * Creates a budget which ends with the deadline of the routing executor, the limits configured
+     * in GraphHopper still apply.
+     */
+    RoutingBudget createBudget( GHMatrixRequest request )
+    {
+        long maxMillis = routingExecutor.getTimeoutMillis();
+        if (hopper.getMaxRoutingTime() > 0)
+            maxMillis = Math.min(maxMillis, hopper.getMaxRoutingTime());
+
+        int maxVisitedNodes = Math.min(hopper.getMaxVisitedNodes(),
+                request.getHints().getInt("maxVisitedNodes", Integer.MAX_VALUE));
+        return new RoutingBudget(maxVisitedNodes, maxMillis);
+    }
+
+    void writeMatrix( HttpServletRequest req, HttpServletResponse res, GHMatrixRequest request ) throws Exception
+    {
+        StopWatch sw = new StopWatch().start();
+        GHMatrixResponse ghRsp = calcMatrix(request);
+        writeMatrix(req, res, request, ghRsp, sw.stop().getSeconds());
+    }
+
+    GHMatrixRequest createRequest( HttpServletRequest req ) throws IOException
+    {
+        List<GHPoint> fromPoints = getPoints(req, "from_point");
+        List<GHPoint> toPoints = getPoints(req, "to_point");
+        if (fromPoints.isEmpty() && toPoints.isEmpty())
+            fromPoints = toPoints = getPoints(req, "point");
+
+        // the size is checked before any work is done, the memory and time grow with the product
+        if ((long) fromPoints.size() * toPoints.size() > maxSize)
+            throw new IllegalArgumentException("Too many matrix entries " + fromPoints.size() + "x" + toPoints.size()
+                    + ", the maximum is " + maxSize);
+
+        GHMatrixRequest request = new GHMatrixRequest(fromPoints, toPoints);
+        initHints(request.getHints(), req.getParameterMap());
+        request.setVehicle(getParam(req, "vehicle", "CAR").toUpperCase()).
+                setWeighting(getParam(req, "weighting", "fastest")).
+                getHints().put("calcTimes", getBooleanParam(req, "calc_times", true));
+        return request;
+    }
+
+    GHMatrixResponse calcMatrix( GHMatrixRequest request )
+    {
+        String vehicleStr = request.getVehicle();
+        if (!hopper.getEncodingManager().supports(vehicleStr))
+            return new GHMatrixResponse().addError(new IllegalArgumentException("Vehicle not supported: " + vehicleStr));
+
+        request.setVehicle(hopper.getEncodingManager().getEncoder(vehicleStr).toString());
+        return hopper.matrix(request);
+    }
+
+    void writeMatrix( HttpServletRequest req, HttpServletResponse res, GHMatrixRequest request,
+            GHMatrixResponse ghRsp, float took ) throws Exception
+    {
+        String logStr = req.getQueryString() + " " + req.getRemoteAddr() + " " + request.getFromPoints().size()
+                + "x" + request.getToPoints().size() + ", took:" + took + ", " + request.getWeighting()
+                + ", " + request.getVehicle();
+        if (ghRsp.hasErrors())
+            logger.error(logStr + ", errors:" + ghRsp.getErrors());
+        else
+            logger.info(logStr + ", debug - " + ghRsp.getDebugInfo());
+
+        boolean calcTimes = request.getHints().getBool("calcTimes", true);
+        writeJson(req, res, new JSONObject(createJson(ghRsp, took, calcTimes)));
+    }
+
+    protected Map<String, Object> createJson( GHMatrixResponse rsp, float took, boolean calcTimes )
+    {
+        Map<String, Object> json = new HashMap<String, Object>();
+        Map<String, Object> jsonInfo = new HashMap<String, Object>();
+        json.put("info", jsonInfo);
+        jsonInfo.put("copyrights", Arrays.asList("GraphHopper", "OpenStreetMap contributors"));
+
+        if (rsp.hasErrors())
+        {
+            List<Map<String, String>> list = new ArrayList<Map<String, String>>();
+            for (Throwable t : rsp.getErrors())
+            {
+                Map<String, String> map = new HashMap<String, String>();
+                map.put("message", t.getMessage());
+                map.put("details", t.getClass().getName());
+                list.add(map);
+            }
+            jsonInfo.put("errors", list);
+            return json;
+        }
+
+        jsonInfo.put("took", Math.round(took * 1000));
+        List<List<Object>> distances = new ArrayList<List<Object>>(rsp.getFromSize());
+        List<List<Object>> times = new ArrayList<List<Object>>(rsp.getFromSize());
+        List<List<Object>> weights = new ArrayList<List<Object>>(rsp.getFromSize());
+        for (int i = 0; i < rsp.getFromSize(); i++)
+        {
+            List<Object> distanceRow = new ArrayList<Object>(rsp.getToSize());
+            List<Object> timeRow = new ArrayList<Object>(rsp.getToSize());
+            List<Object> weightRow = new ArrayList<Object>(rsp.getToSize());
+            for (int j = 0; j < rsp.getToSize(); j++)
+            {
+                if (rsp.isFound(i, j))
+                {
+                    distanceRow.add(Helper.round(rsp.getDistance(i, j), 3));
+                    timeRow.add(rsp.getMillis(i, j));
+                    weightRow.add(Helper.round6(rsp.getWeight(i, j)));
+                } else
+                {
+                    distanceRow.add(JSONObject.NULL);
+                    timeRow.add(JSONObject.NULL);
+                    weightRow.add(JSONObject.NULL);
+                }
+            }
+            distances.add(distanceRow);
+            times.add(timeRow);
+            weights.add(weightRow);
+        }
+        json.put("distances", distances);
+        if (calcTimes)
+            json.put("times", times);
+        json.put("weights", weights);
+        return json;
+    }
+
+    private List<GHPoint> getPoints( HttpServletRequest req, String key ) throws IOException
+    {
+        String[] pointsAsStr = getParams(req, key);
+        final List<GHPoint> infoPoints = new ArrayList<GHPoint>(pointsAsStr.length);
+        for (String str : pointsAsStr)
+        {
+            String[] fromStrs = str.split(",");
+            if (fromStrs.length == 2)
+            {
+                GHPoint place = GHPoint.parse(str);
+                if (place != null)
+                    infoPoints.add(place);
+            }
+        }
+
+        return infoPoints;
+    }
+}
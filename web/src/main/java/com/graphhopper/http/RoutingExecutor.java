@@ -0,0 +1,216 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executes the route calculations of the servlets in a dedicated thread pool with a bounded queue.
+ * If the queue is full new requests are rejected (load shedding) instead of piling up unbounded
+ * work, and every request gets a deadline after which its calculation is cancelled.
+ * <p/>
+ * @author Peter Karich
+ */
+public class RoutingExecutor
+{
+    private final ThreadPoolExecutor executor;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final long timeoutMillis;
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+
+    /**
+     * @param threads the number of routing threads. If 0 no executor is created and the requests
+     * are calculated synchronously in the request thread of the servlet container.
+     * @param queueSize the maximum number of requests waiting for a routing thread
+     * @param timeoutMillis the deadline of a request including the time waiting in the queue
+     */
+    public RoutingExecutor( int threads, int queueSize, long timeoutMillis )
+    {
+        if (threads < 0)
+            throw new IllegalArgumentException("threads cannot be negative " + threads);
+        if (queueSize < 0)
+            throw new IllegalArgumentException("queueSize cannot be negative " + queueSize);
+        if (timeoutMillis <= 0)
+            throw new IllegalArgumentException("timeout has to be positive " + timeoutMillis);
+
+        this.timeoutMillis = timeoutMillis;
+        if (threads == 0)
+        {
+            executor = null;
+            scheduler = null;
+            return;
+        }
+
+        // a SynchronousQueue hands over directly and rejects if all threads are busy
+        BlockingQueue<Runnable> queue = queueSize == 0
+                ? new SynchronousQueue<Runnable>()
+                : new ArrayBlockingQueue<Runnable>(queueSize);
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, queue,
+                new DaemonThreadFactory("gh-routing-"), new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        scheduler = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("gh-deadline-"));
+        // the deadlines cancelled by finished tasks would stay in the queue until their timeout,
+        // setRemoveOnCancelPolicy is not available in Java 6
+        long purgeMillis = Math.min(1000, timeoutMillis);
+        scheduler.scheduleWithFixedDelay(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                scheduler.purge();
+            }
+        }, purgeMillis, purgeMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isEnabled()
+    {
+        return executor != null;
+    }
+
+    public long getTimeoutMillis()
+    {
+        return timeoutMillis;
+    }
+
+    /**
+     * Queues the specified task and schedules the deadline. Whoever sets the done flag first is
+     * allowed to write the response: the task before writing its result, or the deadline after the
+     * timeout in which case the task is cancelled and its thread interrupted. If the task has set
+     * the done flag the deadline is cancelled when the task returns.
+     * <p/>
+     * @return the future of the queued task
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public Future<?> submit( Runnable task, final AtomicBoolean done, final Runnable deadline )
+    {
+        if (!isEnabled())
+            throw new IllegalStateException("Executor is disabled");
+
+        final RoutingTask future = new RoutingTask(task, done);
+        // schedule before executing so that the task always sees its deadline
+        future.deadlineFuture = scheduler.schedule(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (!done.compareAndSet(false, true))
+                    return;
+
+                timedOut.incrementAndGet();
+                future.cancel(true);
+                deadline.run();
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        try
+        {
+            executor.execute(future);
+        } catch (RejectedExecutionException ex)
+        {
+            future.deadlineFuture.cancel(false);
+            rejected.incrementAndGet();
+            throw ex;
+        }
+        return future;
+    }
+
+    ScheduledThreadPoolExecutor getScheduler()
+    {
+        return scheduler;
+    }
+
+    /**
+     * @return the number of requests waiting for a routing thread
+     */
+    public int getQueueSize()
+    {
+        return isEnabled() ? executor.getQueue().size() : 0;
+    }
+
+    public int getActiveCount()
+    {
+        return isEnabled() ? executor.getActiveCount() : 0;
+    }
+
+    public long getRejected()
+    {
+        return rejected.get();
+    }
+
+    public long getTimedOut()
+    {
+        return timedOut.get();
+    }
+
+    public void shutdown()
+    {
+        if (!isEnabled())
+            return;
+
+        scheduler.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private static class RoutingTask extends FutureTask<Object>
+    {
+        private final AtomicBoolean done;
+        private volatile ScheduledFuture<?> deadlineFuture;
+
+        RoutingTask( Runnable task, AtomicBoolean done )
+        {
+            super(task, null);
+            this.done = done;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                super.run();
+            } finally
+            {
+                // if the task didn't set the flag, e.g. because of an exception, the deadline answers
+                if (done.get())
+                    deadlineFuture.cancel(false);
+            }
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory
+    {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        DaemonThreadFactory( String prefix )
+        {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread( Runnable r )
+        {
+            Thread thread = new Thread(r, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHResponse;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.Instruction;
+import com.graphhopper.util.InstructionAnnotation;
+import com.graphhopper.util.InstructionList;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.shapes.BBox;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import org.json.JSONObject;
+
+/**
+ * Writes the route response as JSON directly into the specified writer, e.g. the one wrapping the
+ * servlet output stream. In contrast to GraphHopperServlet.createJson no intermediate maps, lists
+ * or the complete string are created which matters for long routes with many points and
+ * instructions. The written structure is identical to the one of the map based approach. Responses
+ * with errors are small and are still written via createJson.
+ * <p/>
+ * @author Peter Karich
+ */
+public class StreamingResponseWriter
+{
+    private final Writer writer;
+    private boolean calcPoints = true;
+    private boolean pointsEncoded = true;
+    private boolean includeElevation = false;
+    private boolean enableInstructions = true;
+
+    public StreamingResponseWriter( Writer writer )
+    {
+        this.writer = writer;
+    }
+
+    public StreamingResponseWriter setCalcPoints( boolean calcPoints )
+    {
+        this.calcPoints = calcPoints;
+        return this;
+    }
+
+    public StreamingResponseWriter setPointsEncoded( boolean pointsEncoded )
+    {
+        this.pointsEncoded = pointsEncoded;
+        return this;
+    }
+
+    public StreamingResponseWriter setIncludeElevation( boolean includeElevation )
+    {
+        this.includeElevation = includeElevation;
+        return this;
+    }
+
+    public StreamingResponseWriter setEnableInstructions( boolean enableInstructions )
+    {
+        this.enableInstructions = enableInstructions;
+        return this;
+    }
+
+    /**
+     * @param rsp the successful response, it must not contain errors
+     * @param took the time in seconds necessary to calculate the response
+     * @param bounds the bounds of the graph used as fallback for the bbox of the route
+     */
+    public void writeJson( GHResponse rsp, float took, BBox bounds ) throws IOException
+    {
+        if (rsp.hasErrors())
+            throw new IllegalArgumentException("Responses with errors cannot be streamed: " + rsp.getErrors());
+
+        writer.write("{\"info\":{\"copyrights\":[\"GraphHopper\",\"OpenStreetMap contributors\"]");
+        writer.write(",\"took\":");
+        writer.write(Integer.toString(Math.round(took * 1000)));
+        writer.write("},\"paths\":[{");
+        writeKey("distance");
+        writeDouble(Helper.round(rsp.getDistance(), 3));
+        writer.write(',');
+        writeKey("weight");
+        writeDouble(Helper.round6(rsp.getDistance()));
+        writer.write(',');
+        writeKey("time");
+        writer.write(Long.toString(rsp.getMillis()));
+
+        if (calcPoints)
+        {
+            writer.write(',');
+            writeKey("points_encoded");
+            writer.write(Boolean.toString(pointsEncoded));
+
+            PointList points = rsp.getPoints();
+            if (points.getSize() >= 2)
+            {
+                writer.write(',');
+                writeKey("bbox");
+                writeDoubles(rsp.calcRouteBBox(bounds).toGeoJson());
+            }
+
+            writer.write(',');
+            writeKey("points");
+            writePoints(points);
+
+            if (enableInstructions)
+            {
+                writer.write(',');
+                writeKey("instructions");
+                writeInstructions(rsp.getInstructions());
+            }
+        }
+        writer.write("}]}");
+    }
+
+    void writePoints( PointList points ) throws IOException
+    {
+        if (pointsEncoded)
+        {
+            writer.write('"');
+            WebHelper.encodePolyline(points, includeElevation, new EscapingAppendable(writer));
+            writer.write('"');
+            return;
+        }
+
+        writer.write("{\"type\":\"LineString\",\"coordinates\":[");
+        int size = points.getSize();
+        for (int i = 0; i < size; i++)
+        {
+            if (i > 0)
+                writer.write(',');
+
+            writer.write('[');
+            writeDouble(Helper.round6(points.getLongitude(i)));
+            writer.write(',');
+            writeDouble(Helper.round6(points.getLatitude(i)));
+            if (includeElevation)
+            {
+                writer.write(',');
+                writeDouble(Helper.round2(points.getElevation(i)));
+            }
+            writer.write(']');
+        }
+        writer.write("]}");
+    }
+
+    void writeInstructions( InstructionList instructions ) throws IOException
+    {
+        writer.write('[');
+        int pointsIndex = 0;
+        int size = instructions.getSize();
+        for (int counter = 0; counter < size; counter++)
+        {
+            Instruction instruction = instructions.get(counter);
+            if (counter > 0)
+                writer.write(',');
+
+            writer.write('{');
+            writeKey("text");
+            JSONObject.quote(instructions.createText(instruction), writer);
+            InstructionAnnotation ia = instruction.getAnnotation();
+            if (!ia.isEmpty())
+            {
+                writer.write(',');
+                writeKey("annotationText");
+                JSONObject.quote(ia.getMessage(), writer);
+                writer.write(',');
+                writeKey("annotationImportance");
+                writer.write(Integer.toString(ia.getImportance()));
+            }
+
+            writer.write(',');
+            writeKey("time");
+            writer.write(Long.toString(instruction.getTime()));
+            writer.write(',');
+            writeKey("distance");
+            writeDouble(Helper.round(instruction.getDistance(), 3));
+            writer.write(',');
+            writeKey("sign");
+            writer.write(Integer.toString(instruction.getSign()));
+
+            int tmpIndex = pointsIndex + instruction.getPoints().size();
+            // the last instruction should not point to the next instruction
+            if (counter + 1 == size)
+                tmpIndex--;
+
+            writer.write(',');
+            writeKey("interval");
+            writer.write('[');
+            writer.write(Integer.toString(pointsIndex));
+            writer.write(',');
+            writer.write(Integer.toString(tmpIndex));
+            writer.write(']');
+            pointsIndex = tmpIndex;
+            writer.write('}');
+        }
+        writer.write(']');
+    }
+
+    private void writeKey( String key ) throws IOException
+    {
+        writer.write('"');
+        writer.write(key);
+        writer.write("\":");
+    }
+
+    /**
+     * Uses the number format of org.json so that both serializers produce the same output.
+     */
+    private void writeDouble( double value ) throws IOException
+    {
+        writer.write(JSONObject.doubleToString(value));
+    }
+
+    private void writeDoubles( List<Double> list ) throws IOException
+    {
+        writer.write('[');
+        for (int i = 0; i < list.size(); i++)
+        {
+            if (i > 0)
+                writer.write(',');
+
+            writeDouble(list.get(i));
+        }
+        writer.write(']');
+    }
+
+    /**
+     * The polyline alphabet contains the backslash which needs to be escaped within a JSON string.
+     */
+    private static class EscapingAppendable implements Appendable
+    {
+        private final Writer writer;
+
+        EscapingAppendable( Writer writer )
+        {
+            this.writer = writer;
+        }
+
+        @Override
+        public Appendable append( CharSequence csq ) throws IOException
+        {
+            return append(csq, 0, csq.length());
+        }
+
+        @Override
+        public Appendable append( CharSequence csq, int start, int end ) throws IOException
+        {
+            for (int i = start; i < end; i++)
+            {
+                append(csq.charAt(i));
+            }
+            return this;
+        }
+
+        @Override
+        public Appendable append( char c ) throws IOException
+        {
+            if (c == '\\')
+                writer.write("\\\\");
+            else
+                writer.write(c);
+            return this;
+        }
+    }
+}
@@ -108,6 +108,23 @@ public class WebHelper
     public static String encodePolyline( PointList poly, boolean includeElevation )
     {
         StringBuilder sb = new StringBuilder();
+        try
+        {
+            encodePolyline(poly, includeElevation, sb);
+        } catch (IOException ex)
+        {
+            throw new IllegalStateException("Cannot happen for a StringBuilder", ex);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Appends the encoded polyline directly to the specified output e.g. a Writer of the servlet
+     * response, avoiding the creation of the intermediate string.
+     */
+    public static void encodePolyline( PointList poly, boolean includeElevation, Appendable sb )
+            throws IOException
+    {
         int size = poly.getSize();
         int prevLat = 0;
         int prevLon = 0;
@@ -127,10 +144,9 @@ public class WebHelper
                 prevEle = num;
             }
         }
-        return sb.toString();
     }
 
-    private static void encodeNumber( StringBuilder sb, int num )
+    private static void encodeNumber( Appendable sb, int num ) throws IOException
     {
         num = num << 1;
         if (num < 0)
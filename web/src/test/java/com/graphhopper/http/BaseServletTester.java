@@ -96,12 +96,22 @@ public class BaseServletTester
     }
 
     protected String getTestAPIUrl()
+    {
+        return getTestAPIUrl("route");
+    }
+
+    protected String getTestAPIUrl( String service )
     {
         String host = "localhost";
-        return "http://" + host + ":" + port + "/route";
+        return "http://" + host + ":" + port + "/" + service;
     }
 
     protected JSONObject query( String query ) throws Exception
+    {
+        return query(query, "route");
+    }
+
+    protected JSONObject query( String query, String service ) throws Exception
     {
         String resQuery = "";
         for (String q : query.split("\\&"))
@@ -114,7 +124,7 @@ public class BaseServletTester
 
             resQuery += "&";
         }
-        String url = getTestAPIUrl() + "?" + resQuery;
+        String url = getTestAPIUrl(service) + "?" + resQuery;
         Downloader downloader = new Downloader("web integration tester");
         return new JSONObject(downloader.downloadAsString(url));
     }    
@@ -20,9 +20,13 @@ package com.graphhopper.http;
 import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
 import com.graphhopper.GraphHopperAPI;
+import com.graphhopper.routing.RoutingAbortedException;
 import com.graphhopper.util.CmdArgs;
 import com.graphhopper.util.Helper;
 import java.io.File;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -49,7 +53,10 @@ public class GraphHopperServletIT extends BaseServletTester
         CmdArgs args = new CmdArgs().
                 put("config", "../config-example.properties").
                 put("osmreader.osm", "../core/files/andorra.osm.pbf").
-                put("graph.location", dir);
+                put("graph.location", dir).
+                // calculate the routes asynchronously in the routing executor
+                put("web.routing.threads", "2").
+                put("web.matrix.maxSize", "4");
         setUpJetty(args);
     }
 
@@ -65,6 +72,57 @@ public class GraphHopperServletIT extends BaseServletTester
         assertTrue("distance wasn't correct:" + distance, distance < 9500);
     }
 
+    @Test
+    public void testMatrix() throws Exception
+    {
+        JSONObject json = query("point=42.554851,1.536198&point=42.510071,1.548128", "matrix");
+        assertFalse(json.getJSONObject("info").has("errors"));
+        JSONArray distances = json.getJSONArray("distances");
+        assertEquals(2, distances.length());
+        assertEquals(0, distances.getJSONArray(0).getDouble(0), 1e-3);
+        double distance = distances.getJSONArray(0).getDouble(1);
+        assertTrue("distance wasn't correct:" + distance, distance > 9000);
+        assertTrue("distance wasn't correct:" + distance, distance < 9500);
+
+        JSONArray times = json.getJSONArray("times");
+        assertTrue(times.getJSONArray(1).getLong(0) > 0);
+
+        json = query("from_point=42.554851,1.536198&to_point=42.510071,1.548128&to_point=42.554851,1.536198", "matrix");
+        distances = json.getJSONArray("distances");
+        assertEquals(1, distances.length());
+        assertEquals(2, distances.getJSONArray(0).length());
+        assertEquals(distance, distances.getJSONArray(0).getDouble(0), 1e-3);
+
+        json = query("point=42.554851,1.536198&point=42.510071,1.548128&calc_times=false", "matrix");
+        assertFalse(json.has("times"));
+        assertEquals(distance, json.getJSONArray("distances").getJSONArray(0).getDouble(1), 1e-2);
+
+        // the matrix is calculated in the routing executor with a budget
+        json = query("point=42.554851,1.536198&point=42.510071,1.548128&maxVisitedNodes=1", "matrix");
+        assertFalse(json.has("distances"));
+        JSONObject error = json.getJSONObject("info").getJSONArray("errors").getJSONObject(0);
+        assertEquals(RoutingAbortedException.class.getName(), error.getString("details"));
+    }
+
+    @Test
+    public void testMatrixTooLarge() throws Exception
+    {
+        URL url = new URL(getTestAPIUrl("matrix") + "?point=42.554851,1.536198&point=42.510071,1.548128"
+                + "&point=42.52,1.54");
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        assertEquals(400, conn.getResponseCode());
+        conn.disconnect();
+    }
+
+    @Test
+    public void testInfoReady() throws Exception
+    {
+        JSONObject json = query("", "info");
+        assertTrue(json.getBoolean("ready"));
+        json = query("", "info/ready");
+        assertTrue(json.getBoolean("ready"));
+    }
+
     @Test
     public void testJsonRounding() throws Exception
     {
@@ -0,0 +1,204 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class RoutingExecutorTest
+{
+    private RoutingExecutor executor;
+    private final Runnable noop = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+        }
+    };
+
+    @After
+    public void tearDown()
+    {
+        if (executor != null)
+            executor.shutdown();
+    }
+
+    @Test
+    public void testDisabled()
+    {
+        executor = new RoutingExecutor(0, 10, 1000);
+        assertFalse(executor.isEnabled());
+        assertEquals(0, executor.getQueueSize());
+        try
+        {
+            executor.submit(noop, new AtomicBoolean(), noop);
+            assertTrue(false);
+        } catch (IllegalStateException ex)
+        {
+        }
+    }
+
+    @Test
+    public void testRejectIfQueueIsFull() throws Exception
+    {
+        executor = new RoutingExecutor(1, 1, 10000);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Runnable blocking = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                started.countDown();
+                try
+                {
+                    release.await();
+                } catch (InterruptedException ex)
+                {
+                }
+            }
+        };
+        Future<?> first = executor.submit(blocking, new AtomicBoolean(), noop);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        // occupies the only queue slot
+        Future<?> second = executor.submit(noop, new AtomicBoolean(), noop);
+        assertEquals(1, executor.getQueueSize());
+        try
+        {
+            executor.submit(noop, new AtomicBoolean(), noop);
+            assertTrue(false);
+        } catch (RejectedExecutionException ex)
+        {
+        }
+        assertEquals(1, executor.getRejected());
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        assertEquals(0, executor.getTimedOut());
+    }
+
+    @Test
+    public void testDeadlineInterruptsTask() throws Exception
+    {
+        executor = new RoutingExecutor(1, 1, 50);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final CountDownLatch deadlineCalled = new CountDownLatch(1);
+        final AtomicBoolean done = new AtomicBoolean();
+        executor.submit(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                while (!Thread.currentThread().isInterrupted())
+                {
+                    Thread.yield();
+                }
+                interrupted.countDown();
+            }
+        }, done, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                deadlineCalled.countDown();
+            }
+        });
+        assertTrue(deadlineCalled.await(5, TimeUnit.SECONDS));
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertTrue(done.get());
+        assertEquals(1, executor.getTimedOut());
+    }
+
+    @Test
+    public void testNoDeadlineIfTaskWasFaster() throws Exception
+    {
+        executor = new RoutingExecutor(1, 1, 10000);
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicBoolean deadlineCalled = new AtomicBoolean();
+        Future<?> future = executor.submit(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                assertTrue(done.compareAndSet(false, true));
+            }
+        }, done, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                deadlineCalled.set(true);
+            }
+        });
+        future.get(5, TimeUnit.SECONDS);
+        // the single routing thread runs the next task only after the previous cancelled its deadline
+        executor.submit(noop, new AtomicBoolean(), noop).get(5, TimeUnit.SECONDS);
+        assertFalse(deadlineCalled.get());
+        assertEquals(0, executor.getTimedOut());
+
+        // only the deadline of the second task, which didn't set its flag, and the purge task are left
+        executor.getScheduler().purge();
+        assertEquals(2, executor.getScheduler().getQueue().size());
+    }
+
+    @Test
+    public void testRejectedTaskHasNoDeadline() throws Exception
+    {
+        executor = new RoutingExecutor(1, 1, 10000);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicBoolean done = new AtomicBoolean();
+        executor.submit(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    release.await();
+                } catch (InterruptedException ex)
+                {
+                }
+                done.set(true);
+            }
+        }, done, noop);
+        Future<?> second = executor.submit(noop, new AtomicBoolean(), noop);
+        try
+        {
+            executor.submit(noop, new AtomicBoolean(), noop);
+            assertTrue(false);
+        } catch (RejectedExecutionException ex)
+        {
+        }
+        release.countDown();
+        second.get(5, TimeUnit.SECONDS);
+
+        // the deadline of the first task is cancelled and the rejected task got none
+        executor.getScheduler().purge();
+        assertEquals(2, executor.getScheduler().getQueue().size());
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHResponse;
+import com.graphhopper.util.*;
+import com.graphhopper.util.shapes.BBox;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class StreamingResponseWriterTest
+{
+    private final Translation usTR = new TranslationMap().doImport().getWithFallBack(Locale.US);
+    private final BBox bounds = new BBox(11, 12, 49, 50);
+
+    GHResponse createResponse()
+    {
+        InstructionAnnotation ea = InstructionAnnotation.EMPTY;
+        InstructionList instructions = new InstructionList(usTR);
+        PointList points = new PointList();
+        PointList pl = new PointList();
+        pl.add(49.942576, 11.580384);
+        pl.add(49.941858, 11.582422);
+        points.add(pl);
+        instructions.add(new Instruction(Instruction.CONTINUE_ON_STREET, "Maxi's Weg", ea, pl).setDistance(240).setTime(15000));
+
+        pl = new PointList();
+        pl.add(49.941575, 11.583501);
+        points.add(pl);
+        instructions.add(new Instruction(Instruction.TURN_LEFT, "temp\"2", new InstructionAnnotation(1, "toll"), pl).
+                setDistance(25.1234).setTime(4000));
+        instructions.add(new FinishInstruction(49.941029, 11.584514, 0));
+        points.add(49.941029, 11.584514);
+
+        GHResponse rsp = new GHResponse().setPoints(points).setDistance(265.1234).setMillis(19000);
+        rsp.setInstructions(instructions);
+        return rsp;
+    }
+
+    JSONObject write( GHResponse rsp, boolean pointsEncoded ) throws Exception
+    {
+        StringWriter sw = new StringWriter();
+        new StreamingResponseWriter(sw).setPointsEncoded(pointsEncoded).writeJson(rsp, 0.0123f, bounds);
+        return new JSONObject(sw.toString());
+    }
+
+    @Test
+    public void testWriteJson() throws Exception
+    {
+        GHResponse rsp = createResponse();
+        JSONObject json = write(rsp, true);
+        assertEquals(12, json.getJSONObject("info").getLong("took"));
+        assertEquals(2, json.getJSONObject("info").getJSONArray("copyrights").length());
+
+        JSONObject path = json.getJSONArray("paths").getJSONObject(0);
+        assertEquals(265.123, path.getDouble("distance"), 1e-6);
+        assertEquals(19000, path.getLong("time"));
+        assertTrue(path.getBoolean("points_encoded"));
+        assertEquals(WebHelper.encodePolyline(rsp.getPoints(), false), path.getString("points"));
+        assertEquals(4, WebHelper.decodePolyline(path.getString("points"), 10, false).getSize());
+        assertEquals(4, path.getJSONArray("bbox").length());
+        assertEquals(11.580384, path.getJSONArray("bbox").getDouble(0), 1e-6);
+
+        JSONArray instructions = path.getJSONArray("instructions");
+        List<Map<String, Object>> expected = rsp.getInstructions().createJson();
+        assertEquals(expected.size(), instructions.length());
+        for (int i = 0; i < expected.size(); i++)
+        {
+            JSONObject streamed = instructions.getJSONObject(i);
+            JSONObject fromMap = new JSONObject(expected.get(i));
+            assertEquals(fromMap.length(), streamed.length());
+            for (String key : JSONObject.getNames(fromMap))
+            {
+                assertEquals(key, JSONObject.valueToString(fromMap.get(key)), JSONObject.valueToString(streamed.get(key)));
+            }
+        }
+        assertEquals("Continue onto Maxi's Weg", instructions.getJSONObject(0).getString("text"));
+        assertEquals("toll", instructions.getJSONObject(1).getString("annotationText"));
+        assertEquals("[3,3]", instructions.getJSONObject(2).getJSONArray("interval").toString());
+    }
+
+    @Test
+    public void testWriteCoordinates() throws Exception
+    {
+        JSONObject path = write(createResponse(), false).getJSONArray("paths").getJSONObject(0);
+        assertFalse(path.getBoolean("points_encoded"));
+        JSONObject points = path.getJSONObject("points");
+        assertEquals("LineString", points.getString("type"));
+        JSONArray coords = points.getJSONArray("coordinates");
+        assertEquals(4, coords.length());
+        assertEquals("[11.580384,49.942576]", coords.getJSONArray(0).toString());
+    }
+
+    @Test
+    public void testEscapedPolyline() throws Exception
+    {
+        // the encoding of this point contains a backslash
+        PointList points = Helper.createPointList(-0.000145, 0);
+        String encoded = WebHelper.encodePolyline(points, false);
+        assertTrue(encoded, encoded.contains("\\"));
+
+        GHResponse rsp = new GHResponse().setPoints(points);
+        rsp.setInstructions(new InstructionList(usTR));
+        JSONObject path = write(rsp, true).getJSONArray("paths").getJSONObject(0);
+        assertEquals(encoded, path.getString("points"));
+    }
+
+    @Test
+    public void testErrorsAreNotStreamed() throws Exception
+    {
+        GHResponse rsp = new GHResponse().addError(new IllegalArgumentException("Point \"1\" not found"));
+        StringWriter sw = new StringWriter();
+        try
+        {
+            new StreamingResponseWriter(sw).writeJson(rsp, 0, bounds);
+            assertTrue(false);
+        } catch (IllegalArgumentException ex)
+        {
+        }
+        assertEquals("", sw.toString());
+    }
+}